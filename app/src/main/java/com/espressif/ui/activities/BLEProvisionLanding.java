@@ -71,6 +71,8 @@ public class BLEProvisionLanding extends ManualProvBaseActivity {
 
     // Time out
     private static final long DEVICE_CONNECT_TIMEOUT = 20000;
+    // Scan results are delivered in batches to avoid refreshing list for every advertisement.
+    private static final long SCAN_REPORT_DELAY = 500;
 
 //    public static boolean isBleWorkDone = false;
 
@@ -353,7 +355,7 @@ public class BLEProvisionLanding extends ManualProvBaseActivity {
         bluetoothDevices.clear();
 
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            provisionManager.searchBleEspDevices(deviceNamePrefix, bleScanListener);
+            provisionManager.searchBleEspDevices(deviceNamePrefix, SCAN_REPORT_DELAY, bleScanListener);
             updateProgressAndScanBtn();
         } else {
             Log.e(TAG, "Not able to start scan as Location permission is not granted.");
@@ -267,6 +267,7 @@ public class ProvisionActivity extends AppCompatActivity {
                 @Override
                 public void deviceProvisioningSuccess() {
 
+                    provisionManager.getProvisionedDeviceJournal().add(provisionManager.getEspDevice().getDeviceName());
                     runOnUiThread(new Runnable() {
 
                         @Override
@@ -419,6 +420,7 @@ public class ProvisionActivity extends AppCompatActivity {
                 @Override
                 public void deviceProvisioningSuccess() {
 
+                    provisionManager.getProvisionedDeviceJournal().add(provisionManager.getEspDevice().getDeviceName());
                     runOnUiThread(new Runnable() {
 
                         @Override
@@ -0,0 +1,690 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.Manifest;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.util.Range;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.WindowManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresPermission;
+
+import com.google.android.gms.common.images.Size;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Camera2 based frame source for the detector.
+ * Frames are received from ImageReader in YUV_420_888 format. Y plane is reduced with {@link FrameRegionReducer}
+ * if it is set, otherwise it is copied without row padding in a reused NV21 buffer with neutral chroma.
+ * Image is given back to the camera before detection. If ImageReader has newer frame when detector is free,
+ * older frames are dropped.
+ * <p>
+ * Detector gets only luma, so it should be used with detectors which work on luma like barcode detector.
+ */
+public class Camera2Source implements CameraFrameSource {
+
+    private static final String TAG = "ESP:" + Camera2Source.class.getSimpleName();
+
+    // One image is with the detector and one is being filled by the camera.
+    private static final int MAX_IMAGES = 2;
+
+    private Context context;
+    private Detector<?> detector;
+    private FrameRegionReducer frameReducer;
+    private FrameRateController frameRateController;
+    private int facing = CameraSource.CAMERA_FACING_BACK;
+    private int requestedPreviewWidth = 1024;
+    private int requestedPreviewHeight = 768;
+
+    private final Object cameraLock = new Object();
+
+    // Camera selected for the last used settings, see prepare().
+    private static final Object selectedLock = new Object();
+    private static SelectedCamera selectedCamera;
+
+    // Guarded by cameraLock
+    private CameraDevice cameraDevice;
+    private CameraCaptureSession captureSession;
+    private ImageReader imageReader;
+    private HandlerThread backgroundThread;
+    private Handler backgroundHandler;
+    private Surface previewSurface;
+    private CaptureRequest.Builder requestBuilder;
+
+    private Size previewSize;
+    private Range<Integer>[] fpsRanges;
+    // Frame rate set in the repeating request. Only changed on background thread.
+    private float appliedFps;
+    private int rotation;
+    private int frameId;
+    private long startTimeNanos;
+
+    // Frames are given to the detector one at a time on background thread, so builder is reused.
+    private final Frame.Builder frameBuilder = new Frame.Builder();
+    // Used when frame is not reduced, only on background thread.
+    private byte[] lumaFrame;
+    private ByteBuffer lumaFrameBuffer;
+
+    /**
+     * Builder for configuring and creating Camera2Source.
+     */
+    public static class Builder {
+
+        private Camera2Source camera2Source = new Camera2Source();
+
+        /**
+         * Creates builder with the context and the detector to which frames will be given.
+         */
+        public Builder(Context context, Detector<?> detector) {
+
+            if (context == null) {
+                throw new IllegalArgumentException("No context supplied.");
+            }
+            if (detector == null) {
+                throw new IllegalArgumentException("No detector supplied.");
+            }
+            camera2Source.context = context;
+            camera2Source.detector = detector;
+        }
+
+        /**
+         * Sets the desired size of frames. Closest size supported by the camera is selected. Default: 1024x768.
+         */
+        public Builder setRequestedPreviewSize(int width, int height) {
+
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Invalid preview size: " + width + "x" + height);
+            }
+            camera2Source.requestedPreviewWidth = width;
+            camera2Source.requestedPreviewHeight = height;
+            return this;
+        }
+
+        /**
+         * Sets the camera to use, either CameraSource.CAMERA_FACING_BACK or CameraSource.CAMERA_FACING_FRONT.
+         * Default: back facing.
+         */
+        public Builder setFacing(int facing) {
+
+            if (facing != CameraSource.CAMERA_FACING_BACK && facing != CameraSource.CAMERA_FACING_FRONT) {
+                throw new IllegalArgumentException("Invalid camera: " + facing);
+            }
+            camera2Source.facing = facing;
+            return this;
+        }
+
+        /**
+         * Sets the stage which reduces each frame to a region of interest before it is given to the detector.
+         * Default: none, full Y plane is given to the detector.
+         */
+        public Builder setFrameRegionReducer(FrameRegionReducer frameReducer) {
+            camera2Source.frameReducer = frameReducer;
+            return this;
+        }
+
+        /**
+         * Sets the controller which decides which frames are given to the detector and at which frame rate
+         * the camera runs. Default: none, all frames are processed at the default frame rate of the camera.
+         */
+        public Builder setFrameRateController(FrameRateController frameRateController) {
+            camera2Source.frameRateController = frameRateController;
+            return this;
+        }
+
+        public Camera2Source build() {
+            return camera2Source;
+        }
+    }
+
+    private Camera2Source() {
+    }
+
+    @Override
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public Camera2Source start(SurfaceHolder surfaceHolder) throws IOException {
+
+        synchronized (cameraLock) {
+
+            if (cameraDevice != null || backgroundThread != null) {
+                return this;
+            }
+
+            CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+
+            try {
+                SelectedCamera camera = selectCamera(cameraManager);
+                previewSize = camera.previewSize;
+                fpsRanges = camera.fpsRanges;
+                appliedFps = 0;
+                rotation = getFrameRotation(camera.sensorOrientation);
+
+                backgroundThread = new HandlerThread("Camera2Source");
+                backgroundThread.start();
+                backgroundHandler = new Handler(backgroundThread.getLooper());
+
+                imageReader = ImageReader.newInstance(previewSize.getWidth(), previewSize.getHeight(),
+                        ImageFormat.YUV_420_888, MAX_IMAGES);
+                imageReader.setOnImageAvailableListener(imageAvailableListener, backgroundHandler);
+
+                surfaceHolder.setFixedSize(previewSize.getWidth(), previewSize.getHeight());
+                previewSurface = surfaceHolder.getSurface();
+                frameId = 0;
+                startTimeNanos = 0;
+
+                cameraManager.openCamera(camera.cameraId, stateCallback, backgroundHandler);
+
+            } catch (CameraAccessException | SecurityException e) {
+                stop();
+                throw new IOException("Could not open camera.", e);
+            } catch (IOException e) {
+                stop();
+                throw e;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void stop() {
+
+        HandlerThread thread;
+        ImageReader reader;
+
+        synchronized (cameraLock) {
+
+            if (captureSession != null) {
+                captureSession.close();
+                captureSession = null;
+            }
+            if (cameraDevice != null) {
+                cameraDevice.close();
+                cameraDevice = null;
+            }
+            requestBuilder = null;
+            thread = backgroundThread;
+            reader = imageReader;
+            backgroundThread = null;
+            backgroundHandler = null;
+            imageReader = null;
+            previewSurface = null;
+        }
+
+        // Camera callbacks take the lock on background thread, so wait for it without holding the lock.
+        // Stop can also be called from background thread itself on camera error.
+        if (thread != null) {
+            thread.quitSafely();
+
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "Background thread interrupted on stop.");
+                }
+            }
+        }
+
+        // Closed after the thread is done, so that image is not closed while detector is using it.
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    @Override
+    public void release() {
+
+        stop();
+
+        synchronized (cameraLock) {
+
+            if (detector != null) {
+                detector.release();
+                detector = null;
+            }
+        }
+    }
+
+    /**
+     * This method is used to select camera and preview size for the settings of this source before it is started,
+     * e.g. at app start. Selected values are used by later starts with the same settings. It is optional.
+     */
+    @Override
+    public void prepare() {
+
+        CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+
+        try {
+            selectCamera(cameraManager);
+        } catch (CameraAccessException | IOException e) {
+            Log.e(TAG, "Failed to prepare camera", e);
+        }
+    }
+
+    @Override
+    public Size getPreviewSize() {
+        return previewSize;
+    }
+
+    @Override
+    public int getCameraFacing() {
+        return facing;
+    }
+
+    /**
+     * Returns camera and preview size for the settings of this source, selecting them only if they are not
+     * already selected for the same settings.
+     */
+    private SelectedCamera selectCamera(CameraManager cameraManager) throws CameraAccessException, IOException {
+
+        synchronized (selectedLock) {
+            if (selectedCamera != null && selectedCamera.matches(facing, requestedPreviewWidth, requestedPreviewHeight)) {
+                return selectedCamera;
+            }
+        }
+
+        String cameraId = getCameraId(cameraManager);
+
+        if (cameraId == null) {
+            throw new IOException("Could not find requested camera.");
+        }
+
+        CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(cameraId);
+        Size size = selectPreviewSize(characteristics);
+
+        if (size == null) {
+            throw new IOException("Could not find suitable preview size.");
+        }
+
+        Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        Range<Integer>[] fpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        SelectedCamera camera = new SelectedCamera(facing, requestedPreviewWidth, requestedPreviewHeight,
+                cameraId, size, sensorOrientation == null ? 0 : sensorOrientation, fpsRanges);
+
+        synchronized (selectedLock) {
+            selectedCamera = camera;
+        }
+        return camera;
+    }
+
+    private String getCameraId(CameraManager cameraManager) throws CameraAccessException {
+
+        int lensFacing = facing == CameraSource.CAMERA_FACING_FRONT
+                ? CameraCharacteristics.LENS_FACING_FRONT : CameraCharacteristics.LENS_FACING_BACK;
+
+        for (String cameraId : cameraManager.getCameraIdList()) {
+
+            Integer cameraFacing = cameraManager.getCameraCharacteristics(cameraId).get(CameraCharacteristics.LENS_FACING);
+
+            if (cameraFacing != null && cameraFacing == lensFacing) {
+                return cameraId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects YUV size which is also supported for preview and is closest to the requested size.
+     */
+    private Size selectPreviewSize(CameraCharacteristics characteristics) {
+
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+
+        if (map == null) {
+            return null;
+        }
+
+        android.util.Size[] yuvSizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        android.util.Size[] previewSizes = map.getOutputSizes(SurfaceHolder.class);
+
+        if (yuvSizes == null || previewSizes == null) {
+            return null;
+        }
+
+        android.util.Size selectedSize = null;
+        int minDiff = Integer.MAX_VALUE;
+
+        for (android.util.Size size : yuvSizes) {
+
+            if (!Arrays.asList(previewSizes).contains(size)) {
+                continue;
+            }
+
+            int diff = Math.abs(size.getWidth() - requestedPreviewWidth) + Math.abs(size.getHeight() - requestedPreviewHeight);
+
+            if (diff < minDiff) {
+                selectedSize = size;
+                minDiff = diff;
+            }
+        }
+        return selectedSize == null ? null : new Size(selectedSize.getWidth(), selectedSize.getHeight());
+    }
+
+    /**
+     * Calculates rotation of frames relative to the display, as Frame rotation constant.
+     */
+    private int getFrameRotation(int sensorOrientation) {
+
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        int degrees = windowManager.getDefaultDisplay().getRotation() * 90;
+        int angle;
+
+        if (facing == CameraSource.CAMERA_FACING_FRONT) {
+            angle = (sensorOrientation + degrees) % 360;
+        } else {
+            angle = (sensorOrientation - degrees + 360) % 360;
+        }
+        // Frame.ROTATION_0 to Frame.ROTATION_270 are 0 to 3.
+        return angle / 90;
+    }
+
+    private void createCaptureSession() {
+
+        try {
+            cameraDevice.createCaptureSession(Arrays.asList(previewSurface, imageReader.getSurface()),
+                    sessionStateCallback, backgroundHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Failed to create capture session", e);
+        }
+    }
+
+    /**
+     * Selects frame rate range which is closest to the given frame rate, like CameraSource.
+     */
+    private Range<Integer> selectFpsRange(float fps) {
+
+        if (fpsRanges == null) {
+            return null;
+        }
+
+        Range<Integer> selectedRange = null;
+        int minDiff = Integer.MAX_VALUE;
+
+        for (Range<Integer> range : fpsRanges) {
+
+            int diff = (int) (Math.abs(fps - range.getLower()) + Math.abs(fps - range.getUpper()));
+
+            if (diff < minDiff) {
+                selectedRange = range;
+                minDiff = diff;
+            }
+        }
+        return selectedRange;
+    }
+
+    /**
+     * Changes frame rate range of the repeating request if the target frame rate is changed.
+     */
+    private void updateFrameRate(float fps) {
+
+        if (fps == appliedFps) {
+            return;
+        }
+
+        synchronized (cameraLock) {
+
+            if (captureSession == null || requestBuilder == null) {
+                return;
+            }
+            appliedFps = fps;
+            Range<Integer> range = selectFpsRange(fps);
+
+            if (range == null) {
+                return;
+            }
+
+            try {
+                requestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, range);
+                captureSession.setRepeatingRequest(requestBuilder.build(), null, backgroundHandler);
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.w(TAG, "Failed to change frame rate", e);
+            }
+        }
+    }
+
+    private void processImage(Image image) {
+
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer luma = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        long timestamp = image.getTimestamp();
+
+        if (frameRateController != null) {
+
+            boolean process = frameRateController.shouldProcess(luma, rowStride, image.getWidth(), image.getHeight());
+            updateFrameRate(frameRateController.getTargetFps());
+
+            if (!process) {
+                image.close();
+                return;
+            }
+        }
+
+        if (startTimeNanos == 0) {
+            startTimeNanos = timestamp;
+        }
+        frameBuilder.setId(frameId++)
+                .setTimestampMillis((timestamp - startTimeNanos) / 1000000)
+                .setRotation(rotation);
+
+        if (frameReducer != null) {
+
+            ByteBuffer reducedData = frameReducer.reduce(luma, rowStride, image.getWidth(), image.getHeight());
+            // Reduced copy is enough for detection, give image back to the camera.
+            image.close();
+            frameBuilder.setImageData(reducedData, frameReducer.getOutputWidth(), frameReducer.getOutputHeight(), ImageFormat.NV21);
+
+            long startTime = System.nanoTime();
+            detect(frameBuilder.build());
+            long decodeTime = System.nanoTime() - startTime;
+            frameReducer.onFrameProcessed(decodeTime);
+            onFrameProcessed(decodeTime);
+
+        } else {
+
+            int width = image.getWidth();
+            int height = image.getHeight();
+            ByteBuffer frameData = copyLuma(luma, rowStride, width, height);
+            image.close();
+            frameBuilder.setImageData(frameData, width, height, ImageFormat.NV21);
+
+            long startTime = System.nanoTime();
+            detect(frameBuilder.build());
+            onFrameProcessed(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Copies Y plane without row padding in NV21 buffer. Chroma is neutral and set only when buffer is allocated.
+     */
+    private ByteBuffer copyLuma(ByteBuffer luma, int rowStride, int width, int height) {
+
+        int lumaSize = width * height;
+
+        if (lumaFrame == null || lumaFrame.length != lumaSize * 3 / 2) {
+            lumaFrame = new byte[lumaSize * 3 / 2];
+            Arrays.fill(lumaFrame, lumaSize, lumaFrame.length, (byte) 0x80);
+            lumaFrameBuffer = ByteBuffer.wrap(lumaFrame);
+        }
+
+        int start = luma.position();
+
+        for (int row = 0; row < height; row++) {
+            // Last row may not have padding.
+            luma.position(start + row * rowStride);
+            luma.get(lumaFrame, row * width, width);
+        }
+        luma.position(start);
+        lumaFrameBuffer.clear();
+        return lumaFrameBuffer;
+    }
+
+    private void onFrameProcessed(long decodeTimeNanos) {
+
+        if (frameRateController != null) {
+            frameRateController.onFrameProcessed(decodeTimeNanos);
+        }
+    }
+
+    private void detect(Frame frame) {
+
+        try {
+            detector.receiveFrame(frame);
+        } catch (Throwable t) {
+            Log.e(TAG, "Exception thrown from receiver.", t);
+        }
+    }
+
+    private final ImageReader.OnImageAvailableListener imageAvailableListener = new ImageReader.OnImageAvailableListener() {
+
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+
+            Image image = reader.acquireNextImage();
+
+            if (image == null) {
+                return;
+            }
+
+            // Like acquireLatestImage(), but frames which are not processed are counted.
+            Image nextImage;
+
+            while ((nextImage = reader.acquireNextImage()) != null) {
+
+                image.close();
+                image = nextImage;
+
+                if (frameRateController != null) {
+                    frameRateController.onFrameDropped();
+                }
+            }
+
+            if (detector == null) {
+                image.close();
+                return;
+            }
+            processImage(image);
+        }
+    };
+
+    private final CameraDevice.StateCallback stateCallback = new CameraDevice.StateCallback() {
+
+        @Override
+        public void onOpened(@NonNull CameraDevice camera) {
+
+            synchronized (cameraLock) {
+
+                if (backgroundThread == null) {
+                    // Stopped while camera was being opened.
+                    camera.close();
+                    return;
+                }
+                cameraDevice = camera;
+                createCaptureSession();
+            }
+        }
+
+        @Override
+        public void onDisconnected(@NonNull CameraDevice camera) {
+            Log.e(TAG, "Camera disconnected");
+            stop();
+        }
+
+        @Override
+        public void onError(@NonNull CameraDevice camera, int error) {
+            Log.e(TAG, "Camera error : " + error);
+            stop();
+        }
+    };
+
+    private final CameraCaptureSession.StateCallback sessionStateCallback = new CameraCaptureSession.StateCallback() {
+
+        @Override
+        public void onConfigured(@NonNull CameraCaptureSession session) {
+
+            synchronized (cameraLock) {
+
+                if (cameraDevice == null) {
+                    session.close();
+                    return;
+                }
+                captureSession = session;
+
+                try {
+                    requestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                    requestBuilder.addTarget(previewSurface);
+                    requestBuilder.addTarget(imageReader.getSurface());
+                    requestBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                    captureSession.setRepeatingRequest(requestBuilder.build(), null, backgroundHandler);
+                } catch (CameraAccessException | IllegalStateException e) {
+                    Log.e(TAG, "Failed to start preview", e);
+                }
+            }
+        }
+
+        @Override
+        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+            Log.e(TAG, "Failed to configure capture session");
+        }
+    };
+
+    /**
+     * Camera and preview size selected for requested settings.
+     */
+    private static class SelectedCamera {
+
+        private final int facing;
+        private final int requestedWidth;
+        private final int requestedHeight;
+        private final String cameraId;
+        private final Size previewSize;
+        private final int sensorOrientation;
+        private final Range<Integer>[] fpsRanges;
+
+        SelectedCamera(int facing, int requestedWidth, int requestedHeight, String cameraId, Size previewSize,
+                       int sensorOrientation, Range<Integer>[] fpsRanges) {
+            this.facing = facing;
+            this.requestedWidth = requestedWidth;
+            this.requestedHeight = requestedHeight;
+            this.cameraId = cameraId;
+            this.previewSize = previewSize;
+            this.sensorOrientation = sensorOrientation;
+            this.fpsRanges = fpsRanges;
+        }
+
+        boolean matches(int facing, int requestedWidth, int requestedHeight) {
+            return this.facing == facing && this.requestedWidth == requestedWidth && this.requestedHeight == requestedHeight;
+        }
+    }
+}
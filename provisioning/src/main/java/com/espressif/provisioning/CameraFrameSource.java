@@ -0,0 +1,67 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.Manifest;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.RequiresPermission;
+
+import com.google.android.gms.common.images.Size;
+
+import java.io.IOException;
+
+/**
+ * Camera which displays preview and gives frames to a detector. It is used by CameraSourcePreview.
+ */
+public interface CameraFrameSource {
+
+    /**
+     * Opens the camera and starts sending frames to the detector.
+     *
+     * @param surfaceHolder Surface holder used to display preview.
+     * @return Returns this frame source.
+     * @throws IOException If preview could not be started.
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    CameraFrameSource start(SurfaceHolder surfaceHolder) throws IOException;
+
+    /**
+     * Selects camera parameters in advance for the settings of this source, so that it starts faster.
+     * It is optional and should be called on a background thread.
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    void prepare();
+
+    /**
+     * Closes the camera and stops sending frames to the detector. It can be started again.
+     */
+    void stop();
+
+    /**
+     * Stops the camera and releases the resources of the camera and the detector.
+     */
+    void release();
+
+    /**
+     * @return Returns preview size in use, or null if camera is not started.
+     */
+    Size getPreviewSize();
+
+    /**
+     * @return Returns CameraSource.CAMERA_FACING_BACK or CameraSource.CAMERA_FACING_FRONT.
+     */
+    int getCameraFacing();
+}
@@ -72,7 +72,7 @@ import java.util.Map;
  * </ul>
  */
 @SuppressWarnings("deprecation")
-public class CameraSource {
+public class CameraSource implements CameraFrameSource {
     @SuppressLint("InlinedApi")
     public static final int CAMERA_FACING_BACK = CameraInfo.CAMERA_FACING_BACK;
     @SuppressLint("InlinedApi")
@@ -154,6 +154,20 @@ public class CameraSource {
     private Thread mProcessingThread;
     private FrameProcessingRunnable mFrameProcessor;
 
+    /**
+     * Optional stage which crops and downsamples frames before detection.
+     */
+    private FrameRegionReducer mFrameReducer;
+
+    /**
+     * Optional stage which skips frames and changes the preview frame rate while no QR code is
+     * seen.
+     */
+    private FrameRateController mFrameRateController;
+
+    // Preview frame rate set in the camera.  Only changed on the processing thread after start.
+    private float mAppliedFps;
+
     /**
      * Map to convert between a byte array, received from the camera, and its associated byte
      * buffer.  We use byte buffers internally because this is a more efficient way to call into
@@ -161,6 +175,16 @@ public class CameraSource {
      */
     private Map<byte[], ByteBuffer> mBytesToByteBuffer = new HashMap<>();
 
+    /**
+     * Camera parameters selected for the last used settings.  Selecting them needs parsing of the
+     * camera parameters, so they are kept for later starts and can be selected early with
+     * {@link #prepare()}.
+     */
+    private static final Object sSelectedLock = new Object();
+
+    // Guarded by sSelectedLock
+    private static SelectedParameters sSelectedParameters;
+
     //==============================================================================================
     // Builder
     //==============================================================================================
@@ -241,6 +265,25 @@ public class CameraSource {
             return this;
         }
 
+        /**
+         * Sets the stage which reduces each frame to a region of interest before it is given to the
+         * detector.  Default: none, full frames are given to the detector.
+         */
+        public Builder setFrameRegionReducer(FrameRegionReducer frameReducer) {
+            mCameraSource.mFrameReducer = frameReducer;
+            return this;
+        }
+
+        /**
+         * Sets the controller which decides which frames are given to the detector and at which
+         * frame rate the camera runs.  Default: none, all frames are processed at the requested
+         * frame rate.
+         */
+        public Builder setFrameRateController(FrameRateController frameRateController) {
+            mCameraSource.mFrameRateController = frameRateController;
+            return this;
+        }
+
         /**
          * Creates an instance of the camera source.
          */
@@ -320,6 +363,7 @@ public class CameraSource {
     /**
      * Stops the camera and releases the resources of the camera and underlying detector.
      */
+    @Override
     public void release() {
         synchronized (mCameraLock) {
             stop();
@@ -368,6 +412,7 @@ public class CameraSource {
      * @throws IOException if the supplied surface holder could not be used as the preview display
      */
     @RequiresPermission(Manifest.permission.CAMERA)
+    @Override
     public CameraSource start(SurfaceHolder surfaceHolder) throws IOException {
         synchronized (mCameraLock) {
             if (mCamera != null) {
@@ -394,6 +439,7 @@ public class CameraSource {
      * Call {@link #release()} instead to completely shut down this camera source and release the
      * resources of the underlying detector.
      */
+    @Override
     public void stop() {
         synchronized (mCameraLock) {
             mFrameProcessor.setActive(false);
@@ -439,6 +485,7 @@ public class CameraSource {
     /**
      * Returns the preview size that is currently in use by the underlying camera.
      */
+    @Override
     public Size getPreviewSize() {
         return mPreviewSize;
     }
@@ -447,6 +494,7 @@ public class CameraSource {
      * Returns the selected camera; one of {@link #CAMERA_FACING_BACK} or
      * {@link #CAMERA_FACING_FRONT}.
      */
+    @Override
     public int getCameraFacing() {
         return mFacing;
     }
@@ -747,17 +795,13 @@ public class CameraSource {
         }
         Camera camera = Camera.open(requestedCameraId);
 
-        SizePair sizePair = selectSizePair(camera, mRequestedPreviewWidth, mRequestedPreviewHeight);
-        if (sizePair == null) {
-            throw new RuntimeException("Could not find suitable preview size.");
-        }
+        SelectedParameters selectedParameters = selectParameters(camera, requestedCameraId);
+        SizePair sizePair = selectedParameters.mSizePair;
         Size pictureSize = sizePair.pictureSize();
         mPreviewSize = sizePair.previewSize();
 
-        int[] previewFpsRange = selectPreviewFpsRange(camera, mRequestedFps);
-        if (previewFpsRange == null) {
-            throw new RuntimeException("Could not find suitable preview frames per second range.");
-        }
+        int[] previewFpsRange = selectedParameters.mFpsRange;
+        mAppliedFps = mRequestedFps;
 
         Camera.Parameters parameters = camera.getParameters();
 
@@ -815,6 +859,94 @@ public class CameraSource {
         return camera;
     }
 
+    /**
+     * Opens the camera once to select preview size and frames per second range for the settings of
+     * this camera source, and closes it.  Selected values are used by later starts with the same
+     * settings.  Opening the camera also loads the camera service, so the camera opens faster when
+     * the camera source is started.  This is optional and should be called on a background thread.
+     */
+    @Override
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public void prepare() {
+        int requestedCameraId = getIdForRequestedCamera(mFacing);
+        if (requestedCameraId == -1) {
+            Log.w(TAG, "Could not find requested camera to prepare.");
+            return;
+        }
+
+        Camera camera = null;
+        try {
+            camera = Camera.open(requestedCameraId);
+            selectParameters(camera, requestedCameraId);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to prepare camera.", e);
+        } finally {
+            if (camera != null) {
+                camera.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the preview size and frames per second range for the settings of this camera source,
+     * selecting them only if they are not already selected for the same settings.
+     *
+     * @throws RuntimeException if suitable values are not available
+     */
+    private SelectedParameters selectParameters(Camera camera, int cameraId) {
+        synchronized (sSelectedLock) {
+            if (sSelectedParameters != null && sSelectedParameters.matches(cameraId,
+                    mRequestedPreviewWidth, mRequestedPreviewHeight, mRequestedFps)) {
+                return sSelectedParameters;
+            }
+        }
+
+        SizePair sizePair = selectSizePair(camera, mRequestedPreviewWidth, mRequestedPreviewHeight);
+        if (sizePair == null) {
+            throw new RuntimeException("Could not find suitable preview size.");
+        }
+
+        int[] previewFpsRange = selectPreviewFpsRange(camera, mRequestedFps);
+        if (previewFpsRange == null) {
+            throw new RuntimeException("Could not find suitable preview frames per second range.");
+        }
+
+        SelectedParameters selectedParameters = new SelectedParameters(cameraId,
+                mRequestedPreviewWidth, mRequestedPreviewHeight, mRequestedFps, sizePair,
+                previewFpsRange);
+        synchronized (sSelectedLock) {
+            sSelectedParameters = selectedParameters;
+        }
+        return selectedParameters;
+    }
+
+    /**
+     * Preview size and frames per second range selected for a camera and requested settings.
+     */
+    private static class SelectedParameters {
+        private final int mCameraId;
+        private final int mRequestedWidth;
+        private final int mRequestedHeight;
+        private final float mRequestedFps;
+        private final SizePair mSizePair;
+        private final int[] mFpsRange;
+
+        SelectedParameters(int cameraId, int requestedWidth, int requestedHeight,
+                           float requestedFps, SizePair sizePair, int[] fpsRange) {
+            mCameraId = cameraId;
+            mRequestedWidth = requestedWidth;
+            mRequestedHeight = requestedHeight;
+            mRequestedFps = requestedFps;
+            mSizePair = sizePair;
+            mFpsRange = fpsRange;
+        }
+
+        boolean matches(int cameraId, int requestedWidth, int requestedHeight, float requestedFps) {
+            return mCameraId == cameraId && mRequestedWidth == requestedWidth
+                    && mRequestedHeight == requestedHeight && mRequestedFps == requestedFps;
+        }
+    }
+
     /**
      * Gets the id for the camera specified by the direction it is facing.  Returns -1 if no such
      * camera was found.
@@ -1123,6 +1255,10 @@ public class CameraSource {
                 if (mPendingFrameData != null) {
                     camera.addCallbackBuffer(mPendingFrameData.array());
                     mPendingFrameData = null;
+
+                    if (mFrameRateController != null) {
+                        mFrameRateController.onFrameDropped();
+                    }
                 }
 
                 if (!mBytesToByteBuffer.containsKey(data)) {
@@ -1161,6 +1297,8 @@ public class CameraSource {
         public void run() {
             Frame outputFrame;
             ByteBuffer data;
+            int frameId;
+            long timeMillis;
 
             while (true) {
                 synchronized (mLock) {
@@ -1183,18 +1321,12 @@ public class CameraSource {
                         return;
                     }
 
-                    outputFrame = new Frame.Builder()
-                            .setImageData(mPendingFrameData, mPreviewSize.getWidth(),
-                                    mPreviewSize.getHeight(), ImageFormat.NV21)
-                            .setId(mPendingFrameId)
-                            .setTimestampMillis(mPendingTimeMillis)
-                            .setRotation(mRotation)
-                            .build();
-
                     // Hold onto the frame data locally, so that we can use this for detection
                     // below.  We need to clear mPendingFrameData to ensure that this buffer isn't
                     // recycled back to the camera before we are done using that data.
                     data = mPendingFrameData;
+                    frameId = mPendingFrameId;
+                    timeMillis = mPendingTimeMillis;
                     mPendingFrameData = null;
                 }
 
@@ -1202,6 +1334,33 @@ public class CameraSource {
                 // the camera to add pending frame(s) while we are running detection on the current
                 // frame.
 
+                if (mFrameRateController != null) {
+                    boolean process = mFrameRateController.shouldProcess(data.array(),
+                            mPreviewSize.getWidth(), mPreviewSize.getWidth(),
+                            mPreviewSize.getHeight());
+                    updatePreviewFps(mFrameRateController.getTargetFps());
+
+                    if (!process) {
+                        mCamera.addCallbackBuffer(data.array());
+                        continue;
+                    }
+                }
+
+                if (mFrameReducer != null) {
+                    processReducedFrame(data, frameId, timeMillis);
+                    continue;
+                }
+
+                outputFrame = new Frame.Builder()
+                        .setImageData(data, mPreviewSize.getWidth(),
+                                mPreviewSize.getHeight(), ImageFormat.NV21)
+                        .setId(frameId)
+                        .setTimestampMillis(timeMillis)
+                        .setRotation(mRotation)
+                        .build();
+
+                long startTime = System.nanoTime();
+
                 try {
                     mDetector.receiveFrame(outputFrame);
                 } catch (Throwable t) {
@@ -1209,6 +1368,73 @@ public class CameraSource {
                 } finally {
                     mCamera.addCallbackBuffer(data.array());
                 }
+
+                if (mFrameRateController != null) {
+                    mFrameRateController.onFrameProcessed(System.nanoTime() - startTime);
+                }
+            }
+        }
+
+        /**
+         * Changes the preview frames per second range if the target frame rate is changed.  The
+         * camera is used without the camera lock like for the callback buffers, as stop() waits
+         * for this thread before releasing the camera.
+         */
+        private void updatePreviewFps(float fps) {
+            if (fps == mAppliedFps) {
+                return;
+            }
+            mAppliedFps = fps;
+
+            try {
+                int[] previewFpsRange = selectPreviewFpsRange(mCamera, fps);
+                if (previewFpsRange == null) {
+                    return;
+                }
+                Camera.Parameters parameters = mCamera.getParameters();
+                parameters.setPreviewFpsRange(
+                        previewFpsRange[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
+                        previewFpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+                mCamera.setParameters(parameters);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to change preview frames per second range.", e);
+            }
+        }
+
+        /**
+         * Reduces the frame and runs detection on it.  Camera buffer is given back to the camera as
+         * soon as the frame is reduced, as detection only needs the reduced copy.
+         */
+        private void processReducedFrame(ByteBuffer data, int frameId, long timeMillis) {
+            ByteBuffer reducedData;
+
+            try {
+                reducedData = mFrameReducer.reduce(data.array(), mPreviewSize.getWidth(),
+                        mPreviewSize.getHeight());
+            } finally {
+                mCamera.addCallbackBuffer(data.array());
+            }
+
+            Frame outputFrame = new Frame.Builder()
+                    .setImageData(reducedData, mFrameReducer.getOutputWidth(),
+                            mFrameReducer.getOutputHeight(), ImageFormat.NV21)
+                    .setId(frameId)
+                    .setTimestampMillis(timeMillis)
+                    .setRotation(mRotation)
+                    .build();
+
+            long startTime = System.nanoTime();
+
+            try {
+                mDetector.receiveFrame(outputFrame);
+            } catch (Throwable t) {
+                Log.e(TAG, "Exception thrown from receiver.", t);
+            }
+            long decodeTime = System.nanoTime() - startTime;
+            mFrameReducer.onFrameProcessed(decodeTime);
+
+            if (mFrameRateController != null) {
+                mFrameRateController.onFrameProcessed(decodeTime);
             }
         }
     }
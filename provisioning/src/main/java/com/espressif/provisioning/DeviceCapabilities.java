@@ -0,0 +1,217 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.text.TextUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable version and capability information of a device, parsed once from the response of "proto-ver" endpoint.
+ * Known capabilities are also kept as bit flags, so they can be checked without searching the list.
+ */
+public final class DeviceCapabilities {
+
+    public static final String CAPABILITY_NO_POP = "no_pop";
+    public static final String CAPABILITY_NO_SEC = "no_sec";
+    public static final String CAPABILITY_WIFI_SCAN = "wifi_scan";
+    public static final String CAPABILITY_THREAD_SCAN = "thread_scan";
+    public static final String CAPABILITY_THREAD_PROV = "thread_prov";
+
+    public static final int FLAG_NO_POP = 1;
+    public static final int FLAG_NO_SEC = 1 << 1;
+    public static final int FLAG_WIFI_SCAN = 1 << 2;
+    public static final int FLAG_THREAD_SCAN = 1 << 3;
+    public static final int FLAG_THREAD_PROV = 1 << 4;
+
+    // Security version is not available in older firmware.
+    public static final int SECURITY_VERSION_NOT_AVAILABLE = -1;
+
+    private final String versionInfo;
+    private final String version;
+    private final int securityVersion;
+    private final int flags;
+    private final List<String> capabilities;
+
+    private DeviceCapabilities(String versionInfo, String version, int securityVersion, List<String> capabilities) {
+
+        this.versionInfo = versionInfo;
+        this.version = version;
+        this.securityVersion = securityVersion;
+        this.capabilities = Collections.unmodifiableList(capabilities);
+
+        int flags = 0;
+        for (String capability : capabilities) {
+            flags |= getFlag(capability);
+        }
+        this.flags = flags;
+    }
+
+    /**
+     * This method is used to parse version information received from device.
+     * If JSON is not valid, returned object has no version and capabilities.
+     *
+     * @param versionInfo Response of "proto-ver" endpoint.
+     * @return Returns device capabilities.
+     */
+    public static DeviceCapabilities parse(String versionInfo) {
+
+        String version = null;
+        int securityVersion = SECURITY_VERSION_NOT_AVAILABLE;
+        ArrayList<String> capabilities = new ArrayList<>();
+
+        try {
+            JSONObject provInfo = new JSONObject(versionInfo).getJSONObject("prov");
+            version = provInfo.getString("ver");
+
+            if (provInfo.has("sec_ver")) {
+                securityVersion = provInfo.optInt("sec_ver");
+            }
+
+            JSONArray capabilityArray = provInfo.optJSONArray("cap");
+
+            if (capabilityArray != null) {
+                for (int i = 0; i < capabilityArray.length(); i++) {
+                    capabilities.add(capabilityArray.getString(i));
+                }
+            }
+        } catch (JSONException | NullPointerException e) {
+            version = null;
+            securityVersion = SECURITY_VERSION_NOT_AVAILABLE;
+            capabilities.clear();
+        }
+        return new DeviceCapabilities(versionInfo, version, securityVersion, capabilities);
+    }
+
+    /**
+     * This method is used to get flag of known capability.
+     *
+     * @param capability Capability name.
+     * @return Returns flag or 0 if capability is not known.
+     */
+    public static int getFlag(String capability) {
+
+        if (capability == null) {
+            return 0;
+        }
+
+        switch (capability) {
+            case CAPABILITY_NO_POP:
+                return FLAG_NO_POP;
+            case CAPABILITY_NO_SEC:
+                return FLAG_NO_SEC;
+            case CAPABILITY_WIFI_SCAN:
+                return FLAG_WIFI_SCAN;
+            case CAPABILITY_THREAD_SCAN:
+                return FLAG_THREAD_SCAN;
+            case CAPABILITY_THREAD_PROV:
+                return FLAG_THREAD_PROV;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * This method is used to check whether device has all given known capabilities.
+     *
+     * @param capabilityFlags One or more FLAG_* values.
+     * @return Returns true if all capabilities are available.
+     */
+    public boolean has(int capabilityFlags) {
+        return (flags & capabilityFlags) == capabilityFlags;
+    }
+
+    /**
+     * This method is used to check whether device has given capability.
+     * Known capabilities are checked with flags, others are searched in the list.
+     *
+     * @param capability Capability name.
+     * @return Returns true if capability is available.
+     */
+    public boolean hasCapability(String capability) {
+
+        int flag = getFlag(capability);
+
+        if (flag != 0) {
+            return has(flag);
+        }
+        return capabilities.contains(capability);
+    }
+
+    /**
+     * @return Returns true if version information is valid JSON with "prov" information.
+     */
+    public boolean isValid() {
+        return version != null;
+    }
+
+    /**
+     * @return Returns raw version information as received from device.
+     */
+    public String getVersionInfo() {
+        return versionInfo;
+    }
+
+    /**
+     * @return Returns provisioning version of the firmware, or null if not available.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Returns security version or {@link #SECURITY_VERSION_NOT_AVAILABLE}.
+     */
+    public int getSecurityVersion() {
+        return securityVersion;
+    }
+
+    /**
+     * @return Returns FLAG_* values of known capabilities.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return Returns unmodifiable list of all capabilities.
+     */
+    public List<String> getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DeviceCapabilities)) {
+            return false;
+        }
+        return TextUtils.equals(versionInfo, ((DeviceCapabilities) o).versionInfo);
+    }
+
+    @Override
+    public int hashCode() {
+        return versionInfo == null ? 0 : versionInfo.hashCode();
+    }
+}
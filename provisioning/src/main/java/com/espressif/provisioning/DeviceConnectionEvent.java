@@ -23,15 +23,28 @@ public class DeviceConnectionEvent {
 
     private short eventType;
     private Bundle data;
+    private ESPDevice device;
 
     public DeviceConnectionEvent(short type) {
         eventType = type;
     }
 
+    public DeviceConnectionEvent(short type, ESPDevice device) {
+        eventType = type;
+        this.device = device;
+    }
+
     public short getEventType() {
         return eventType;
     }
 
+    /**
+     * @return Returns device which has sent this event, null if it is not known.
+     */
+    public ESPDevice getDevice() {
+        return device;
+    }
+
     public Bundle getData() {
         return data;
     }
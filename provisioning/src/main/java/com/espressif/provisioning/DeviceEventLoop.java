@@ -0,0 +1,274 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event loop which runs tasks of one device one at a time, in the order they are posted.
+ * Tasks run on threads of given executor, so event loops of many devices can share a small thread pool.
+ * A task of the loop never runs in parallel with another task of the same loop, so state used only from
+ * the loop doesn't need locks.
+ * <p>
+ * Delayed tasks can be posted and removed like with Handler. This class is thread safe.
+ */
+public class DeviceEventLoop implements Executor {
+
+    private static final String TAG = "ESP:" + DeviceEventLoop.class.getSimpleName();
+
+    private static final int SHARED_POOL_SIZE = 2;
+    // Loop gives its thread to other loops after running these many tasks in a row.
+    private static final int MAX_TASKS_PER_RUN = 32;
+
+    private static ScheduledExecutorService sharedPool;
+    // Loop whose task is running on the current thread.
+    private static final ThreadLocal<DeviceEventLoop> currentLoop = new ThreadLocal<>();
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final HashMap<Runnable, ArrayList<DelayedTask>> delayedTasks = new HashMap<>();
+    // True while run task is posted on executor or running.
+    private boolean isScheduled;
+    private volatile Thread loopThread;
+
+    private final Runnable runTask = new Runnable() {
+
+        @Override
+        public void run() {
+            runTasks();
+        }
+    };
+
+    /**
+     * Creates event loop which runs on thread pool shared by all devices.
+     */
+    public DeviceEventLoop() {
+        this(getSharedPool());
+    }
+
+    /**
+     * @param executor Executor on which tasks are run. It may run tasks of other loops too.
+     */
+    public DeviceEventLoop(Executor executor) {
+
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor is required");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * This method is used to get thread pool shared by event loops created without executor.
+     *
+     * @return Returns shared thread pool.
+     */
+    public static synchronized ScheduledExecutorService getSharedPool() {
+
+        if (sharedPool == null) {
+
+            final AtomicInteger threadCount = new AtomicInteger();
+            ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(SHARED_POOL_SIZE, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ESPDevice-loop-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.setRemoveOnCancelPolicy(true);
+            sharedPool = pool;
+        }
+        return sharedPool;
+    }
+
+    /**
+     * @return Returns true if it is called from task of this loop.
+     */
+    public boolean inEventLoop() {
+        return loopThread == Thread.currentThread();
+    }
+
+    /**
+     * @return Returns true if it is called from task of any event loop.
+     */
+    public static boolean inAnyEventLoop() {
+        return currentLoop.get() != null;
+    }
+
+    /**
+     * This method is used to post task at the end of the loop's queue.
+     *
+     * @param task Task to be run.
+     */
+    @Override
+    public void execute(Runnable task) {
+
+        boolean schedule;
+
+        synchronized (tasks) {
+            schedule = enqueue(task);
+        }
+
+        if (schedule) {
+            executor.execute(runTask);
+        }
+    }
+
+    /**
+     * This method is used to post task which is run after given delay.
+     *
+     * @param task        Task to be run.
+     * @param delayMillis Delay in milliseconds.
+     */
+    public void postDelayed(Runnable task, long delayMillis) {
+
+        DelayedTask delayedTask = new DelayedTask(task);
+
+        synchronized (tasks) {
+
+            ArrayList<DelayedTask> list = delayedTasks.get(task);
+
+            if (list == null) {
+                list = new ArrayList<>(1);
+                delayedTasks.put(task, list);
+            }
+            list.add(delayedTask);
+            delayedTask.future = getSharedPool().schedule(delayedTask, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * This method is used to remove pending posts of given task, including delayed posts.
+     * Task which is already running is not stopped.
+     *
+     * @param task Task to be removed.
+     */
+    public void removeCallbacks(Runnable task) {
+
+        synchronized (tasks) {
+
+            while (tasks.removeFirstOccurrence(task)) {
+                // Remove all occurrences.
+            }
+
+            ArrayList<DelayedTask> list = delayedTasks.remove(task);
+
+            if (list != null) {
+                for (DelayedTask delayedTask : list) {
+                    delayedTask.future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding lock.
+     *
+     * @return Returns true if run task needs to be posted on executor.
+     */
+    private boolean enqueue(Runnable task) {
+
+        tasks.add(task);
+
+        if (isScheduled) {
+            return false;
+        }
+        isScheduled = true;
+        return true;
+    }
+
+    private void runTasks() {
+
+        loopThread = Thread.currentThread();
+        currentLoop.set(this);
+
+        try {
+            for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+
+                Runnable task;
+
+                synchronized (tasks) {
+
+                    task = tasks.poll();
+
+                    if (task == null) {
+                        isScheduled = false;
+                        return;
+                    }
+                }
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Task failed : " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            loopThread = null;
+            currentLoop.remove();
+        }
+
+        // Remaining tasks are run after tasks of other loops already posted on executor.
+        executor.execute(runTask);
+    }
+
+    private class DelayedTask implements Runnable {
+
+        private final Runnable task;
+        private ScheduledFuture<?> future;
+
+        DelayedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+
+            boolean schedule;
+
+            synchronized (tasks) {
+
+                ArrayList<DelayedTask> list = delayedTasks.get(task);
+
+                // Removed after it was due to run.
+                if (list == null || !list.remove(this)) {
+                    return;
+                }
+
+                if (list.isEmpty()) {
+                    delayedTasks.remove(task);
+                }
+                schedule = enqueue(task);
+            }
+
+            if (schedule) {
+                executor.execute(runTask);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps version and capability information of devices which are connected before,
+ * so that "proto-ver" request can be skipped or done in parallel on next connection.
+ * Key is BLE address for BLE devices and SSID for SoftAP devices. Firmware version is stored with the entry
+ * and entry is replaced when device reports different information.
+ */
+public class DeviceInfoCache {
+
+    private static final String TAG = "ESP:" + DeviceInfoCache.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "esp_device_info";
+    private static final String KEY_VERSION_INFO = "version_info";
+    private static final String KEY_FIRMWARE_VERSION = "firmware_version";
+    private static final String KEY_SAVED_TIME = "saved_time";
+
+    private static final long DEFAULT_MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+
+    private SharedPreferences sharedPreferences;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private long maxAge = DEFAULT_MAX_AGE;
+
+    public DeviceInfoCache(Context context) {
+
+        sharedPreferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        for (Map.Entry<String, ?> savedEntry : sharedPreferences.getAll().entrySet()) {
+
+            if (!(savedEntry.getValue() instanceof String)) {
+                continue;
+            }
+
+            try {
+                JSONObject jsonObject = new JSONObject((String) savedEntry.getValue());
+                DeviceCapabilities capabilities = DeviceCapabilities.parse(jsonObject.getString(KEY_VERSION_INFO));
+
+                if (capabilities.isValid()) {
+                    entries.put(savedEntry.getKey(), new Entry(capabilities, jsonObject.getLong(KEY_SAVED_TIME)));
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid cache entry for " + savedEntry.getKey());
+            }
+        }
+    }
+
+    /**
+     * This method is used to set time after which cached information is not used and device is asked again.
+     * Default is 7 days.
+     *
+     * @param maxAge Maximum age in milliseconds.
+     */
+    public synchronized void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * This method is used to get cached information of the device.
+     *
+     * @param deviceKey BLE address or SoftAP SSID of the device.
+     * @return Returns device capabilities or null if device is not cached or information is too old.
+     */
+    public synchronized DeviceCapabilities get(String deviceKey) {
+
+        if (TextUtils.isEmpty(deviceKey)) {
+            return null;
+        }
+        Entry entry = entries.get(deviceKey);
+
+        if (entry == null) {
+            return null;
+        }
+
+        long age = System.currentTimeMillis() - entry.savedTime;
+
+        if (age < 0 || age > maxAge) {
+            return null;
+        }
+        return entry.capabilities;
+    }
+
+    /**
+     * This method is used to save information received from device.
+     * Invalid information is not saved.
+     *
+     * @param deviceKey    BLE address or SoftAP SSID of the device.
+     * @param capabilities Capabilities received from device.
+     */
+    public synchronized void put(String deviceKey, DeviceCapabilities capabilities) {
+
+        if (TextUtils.isEmpty(deviceKey) || capabilities == null || !capabilities.isValid()) {
+            return;
+        }
+
+        Entry oldEntry = entries.get(deviceKey);
+
+        if (oldEntry != null && !TextUtils.equals(oldEntry.capabilities.getVersion(), capabilities.getVersion())) {
+            Log.d(TAG, "Firmware version changed for " + deviceKey + " : " + oldEntry.capabilities.getVersion()
+                    + " -> " + capabilities.getVersion());
+        }
+
+        long now = System.currentTimeMillis();
+        entries.put(deviceKey, new Entry(capabilities, now));
+
+        try {
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put(KEY_VERSION_INFO, capabilities.getVersionInfo());
+            jsonObject.put(KEY_FIRMWARE_VERSION, capabilities.getVersion());
+            jsonObject.put(KEY_SAVED_TIME, now);
+            sharedPreferences.edit().putString(deviceKey, jsonObject.toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to save cache entry for " + deviceKey);
+        }
+    }
+
+    /**
+     * This method is used to remove device from cache, e.g. when session could not be established with cached information.
+     *
+     * @param deviceKey BLE address or SoftAP SSID of the device.
+     */
+    public synchronized void remove(String deviceKey) {
+
+        if (deviceKey != null && entries.remove(deviceKey) != null) {
+            sharedPreferences.edit().remove(deviceKey).apply();
+        }
+    }
+
+    /**
+     * This method is used to remove all devices from cache.
+     */
+    public synchronized void clear() {
+
+        entries.clear();
+        sharedPreferences.edit().clear().apply();
+    }
+
+    private static class Entry {
+
+        private final DeviceCapabilities capabilities;
+        private final long savedTime;
+
+        Entry(DeviceCapabilities capabilities, long savedTime) {
+            this.capabilities = capabilities;
+            this.savedTime = savedTime;
+        }
+    }
+}
@@ -14,8 +14,6 @@
 
 package com.espressif.provisioning;
 
-import static java.lang.Thread.sleep;
-
 import android.Manifest;
 import android.bluetooth.BluetoothDevice;
 import android.content.Context;
@@ -37,6 +35,8 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 
+import com.espressif.provisioning.listeners.BufferResponseListener;
+import com.espressif.provisioning.listeners.DeviceConnectionListener;
 import com.espressif.provisioning.listeners.ProvisionListener;
 import com.espressif.provisioning.listeners.ResponseListener;
 import com.espressif.provisioning.listeners.WiFiScanListener;
@@ -45,40 +45,54 @@ import com.espressif.provisioning.security.Security0;
 import com.espressif.provisioning.security.Security1;
 import com.espressif.provisioning.security.Security2;
 import com.espressif.provisioning.transport.BLETransport;
+import com.espressif.provisioning.transport.BufferTransport;
+import com.espressif.provisioning.transport.EventLoopTransport;
 import com.espressif.provisioning.transport.SoftAPTransport;
 import com.espressif.provisioning.transport.Transport;
+import com.espressif.provisioning.utils.BufferPool;
 import com.espressif.provisioning.utils.MessengeHelper;
+import com.espressif.provisioning.utils.ResponseDecoder;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import org.greenrobot.eventbus.EventBus;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
 
 import espressif.Constants;
-import espressif.NetworkConfig;
 import espressif.NetworkConstants;
-import espressif.NetworkScan;
 
 /**
  * ESPDevice class to hold device information. This will give facility to connect device, send data to device and
  * do provisioning of it.
+ * <p>
+ * Threading : State of the device is changed only on its event loop. Methods which start an operation can be called
+ * from any thread, they post the operation on event loop. Transport responses and connection events are also handled
+ * on event loop, so listeners are called on it, except connection listener which is called on its executor.
+ * Listeners should not block, as event loops of many devices may share same threads.
+ * Device details like proof of possession and username should be set before connecting the device.
  */
 public class ESPDevice {
 
     private static final String TAG = "ESP:" + ESPDevice.class.getSimpleName();
 
+    private static final long CONFIG_APPLY_DELAY_MS = 2000;
+    private static final long STATUS_POLL_INTERVAL_MS = 5000;
+
     private Context context;
-    private Handler handler;
+    private Handler mainHandler;
+    private final DeviceEventLoop eventLoop;
 
     private Session session;
     private Security security;
     private Transport transport;
+    // Transport which gives responses on event loop, used for all requests.
+    private EventLoopTransport loopTransport;
 
     private WiFiScanListener wifiScanListener;
     private ProvisionListener provisionListener;
@@ -86,27 +100,51 @@ public class ESPDevice {
 
     // Transport & security type must be set before session init.
     private ESPConstants.TransportType transportType;
-    private ESPConstants.SecurityType securityType;
+    private volatile ESPConstants.SecurityType securityType;
 
     private String proofOfPossession = "";
     private String userName = "";
-    private String versionInfo;
+    private volatile DeviceCapabilities capabilities;
+    private DeviceInfoCache deviceInfoCache;
+    // True if connection is reported with cached version info. It is checked with version info received from device
+    // (receivedCapabilities, null until received) before session is reported as established.
+    private boolean isVersionInfoFromCache;
+    private DeviceCapabilities receivedCapabilities;
+    private String deviceInfoKey;
     private int totalCount;
     private int startIndex;
     private ArrayList<WiFiAccessPoint> wifiApList;
-    private ArrayList<String> deviceCapabilities = new ArrayList<>();
+    private volatile ArrayList<String> deviceCapabilities = new ArrayList<>();
     private BluetoothDevice bluetoothDevice;
     private WiFiAccessPoint wifiDevice;
     private String primaryServiceUuid;
-    private String deviceName;
+    private volatile String deviceName;
     private WifiManager wifiManager;
     private ConnectivityManager connectivityManager;
     private ConnectivityManager.NetworkCallback networkCallback;
+    // Future of connectAsync, completed by connection event.
+    private ESPFuture<Void> connectFuture;
+    private DeviceConnectionListener connectionListener;
+    private Executor connectionListenerExecutor;
+    private volatile boolean isEventBusEnabled = true;
 
     public ESPDevice(Context context, ESPConstants.TransportType transportType, ESPConstants.SecurityType securityType) {
+        this(context, transportType, securityType, null);
+    }
+
+    /**
+     * @param context       Context
+     * @param transportType Transport type.
+     * @param securityType  Security type.
+     * @param executor      Executor on which event loop of the device runs. It can be shared by many devices.
+     *                      Null to use thread pool shared by all devices.
+     */
+    public ESPDevice(Context context, ESPConstants.TransportType transportType, ESPConstants.SecurityType securityType,
+                     Executor executor) {
 
         this.context = context;
-        handler = new Handler(Looper.getMainLooper());
+        mainHandler = new Handler(Looper.getMainLooper());
+        eventLoop = executor == null ? new DeviceEventLoop() : new DeviceEventLoop(executor);
         this.transportType = transportType;
         this.securityType = securityType;
         wifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
@@ -115,13 +153,66 @@ public class ESPDevice {
         switch (transportType) {
 
             case TRANSPORT_BLE:
-                transport = new BLETransport(context);
+                BLETransport bleTransport = new BLETransport(context);
+                bleTransport.setConnectionEventListener(new BLETransport.ConnectionEventListener() {
+
+                    @Override
+                    public void onConnectionEvent(final short eventType) {
+
+                        eventLoop.execute(new Runnable() {
+
+                            @Override
+                            public void run() {
+
+                                if (eventType == ESPConstants.EVENT_DEVICE_CONNECTED) {
+                                    onBleDeviceConnected();
+                                }
+                                postConnectionEvent(eventType);
+                            }
+                        });
+                    }
+                });
+                transport = bleTransport;
                 break;
 
             case TRANSPORT_SOFTAP:
                 transport = new SoftAPTransport();
                 break;
         }
+        loopTransport = new EventLoopTransport((BufferTransport) transport, eventLoop);
+    }
+
+    /**
+     * This method is used to set listener for connection events of this device.
+     * Listener is called on main thread.
+     *
+     * @param listener Listener for connection events. Null to remove listener.
+     */
+    public void setConnectionListener(DeviceConnectionListener listener) {
+        setConnectionListener(listener, null);
+    }
+
+    /**
+     * This method is used to set listener for connection events of this device.
+     * Events are given to the listener directly, so only this device's events are received.
+     *
+     * @param listener Listener for connection events. Null to remove listener.
+     * @param executor Executor on which listener is called. Null to call it on main thread.
+     */
+    public synchronized void setConnectionListener(DeviceConnectionListener listener, Executor executor) {
+        connectionListener = listener;
+        connectionListenerExecutor = executor;
+    }
+
+    /**
+     * This method is used to enable / disable posting of connection events on EventBus.
+     * It is enabled by default. It can be disabled if app uses connection listener,
+     * to avoid dispatching events to all EventBus subscribers.
+     *
+     * @param enable True to post DeviceConnectionEvent on EventBus.
+     */
+    public void setEventBusEnabled(boolean enable) {
+        isEventBusEnabled = enable;
     }
 
     /**
@@ -130,9 +221,22 @@ public class ESPDevice {
     @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
     public void connectToDevice() {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
+                @Override
+                public void run() {
+                    connectToDevice();
+                }
+            });
+            return;
+        }
+
         switch (transportType) {
 
             case TRANSPORT_BLE:
+                deviceInfoKey = bluetoothDevice.getAddress();
                 ((BLETransport) transport).connect(bluetoothDevice, UUID.fromString(primaryServiceUuid));
                 break;
 
@@ -150,14 +254,27 @@ public class ESPDevice {
      * @param primaryServiceUuid Primary service UUID.
      */
     @RequiresPermission(Manifest.permission.BLUETOOTH)
-    public void connectBLEDevice(BluetoothDevice bluetoothDevice, String primaryServiceUuid) {
+    public void connectBLEDevice(final BluetoothDevice bluetoothDevice, final String primaryServiceUuid) {
+
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @RequiresPermission(Manifest.permission.BLUETOOTH)
+                @Override
+                public void run() {
+                    connectBLEDevice(bluetoothDevice, primaryServiceUuid);
+                }
+            });
+            return;
+        }
 
         if (transport instanceof BLETransport) {
             deviceName = bluetoothDevice.getName();
+            deviceInfoKey = bluetoothDevice.getAddress();
             ((BLETransport) transport).connect(bluetoothDevice, UUID.fromString(primaryServiceUuid));
         } else {
             Log.e(TAG, "Trying to connect device with wrong transport.");
-            EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
         }
     }
 
@@ -167,6 +284,18 @@ public class ESPDevice {
     @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
     public void connectWiFiDevice() {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+                @Override
+                public void run() {
+                    connectWiFiDevice();
+                }
+            });
+            return;
+        }
+
         if (transport instanceof SoftAPTransport) {
 
             enableOnlyWifiNetwork();
@@ -175,7 +304,7 @@ public class ESPDevice {
 
         } else {
             Log.e(TAG, "Trying to connect device with wrong transport.");
-            EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
         }
     }
 
@@ -186,7 +315,19 @@ public class ESPDevice {
      * @param password Password of Wi-Fi device.
      */
     @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
-    public void connectWiFiDevice(String ssid, String password) {
+    public void connectWiFiDevice(final String ssid, final String password) {
+
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
+                @Override
+                public void run() {
+                    connectWiFiDevice(ssid, password);
+                }
+            });
+            return;
+        }
 
         Log.d(TAG, "connectWiFiDevice ========== SSID : " + ssid + " and Password : " + password);
 
@@ -219,7 +360,7 @@ public class ESPDevice {
                 public void onUnavailable() {
                     super.onUnavailable();
                     Log.e(TAG, "Network is Unavailable - 1");
-                    handler.postDelayed(wifiConnectionFailedTask, 200);
+                    eventLoop.postDelayed(wifiConnectionFailedTask, 200);
                 }
 
                 @Override
@@ -304,7 +445,7 @@ public class ESPDevice {
 
             } else {
                 Log.e(TAG, "Failed to add network");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
             }
         }
     }
@@ -312,18 +453,57 @@ public class ESPDevice {
     /**
      * This method is used to disconnect ESPDevice.
      * Note : It will disconnect only if device is connected thorough BLE transport.
+     * For Wi-Fi transport, request which is in progress and pending connection attempts are cancelled.
      */
     public void disconnectDevice() {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    disconnectDevice();
+                }
+            });
+            return;
+        }
+
         if (transport instanceof BLETransport) {
             ((BLETransport) transport).disconnect();
+        } else if (transport instanceof SoftAPTransport) {
+            ((SoftAPTransport) transport).cancelActiveRequest();
+        }
+        eventLoop.removeCallbacks(getCapabilitiesTask);
+        eventLoop.removeCallbacks(deviceConnectionFailedTask);
+        eventLoop.removeCallbacks(wifiConnectionFailedTask);
+        eventLoop.removeCallbacks(pollWiFiStatusTask);
+        eventLoop.removeCallbacks(pollThreadStatusTask);
+        if (task != null) {
+            eventLoop.removeCallbacks(task);
         }
         session = null;
         disableOnlyWifiNetwork();
+
+        ESPFuture<Void> future = connectFuture;
+        connectFuture = null;
+        if (future != null) {
+            future.fail(new CancellationException("Device disconnected"));
+        }
     }
 
     public void refreshServicesOfBleDevice() {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    refreshServicesOfBleDevice();
+                }
+            });
+            return;
+        }
+
         if (transport instanceof BLETransport) {
             ((BLETransport) transport).refreshServices();
         }
@@ -372,10 +552,38 @@ public class ESPDevice {
      */
     public String getVersionInfo() {
 
+        DeviceCapabilities deviceInfo = getCapabilities();
+        return deviceInfo == null ? null : deviceInfo.getVersionInfo();
+    }
+
+    /**
+     * This method is used to get version and capabilities of the device parsed from version information.
+     *
+     * @return Returns device capabilities or null if device is not connected yet.
+     */
+    public DeviceCapabilities getCapabilities() {
+
+        if (capabilities == null && transport instanceof BLETransport) {
+            return ((BLETransport) transport).getCapabilities();
+        }
+        return capabilities;
+    }
+
+    /**
+     * This method is used to set cache of device information.
+     * If device is found in cache, connection does not wait for version information from device.
+     * Version information is still requested before session establishment. If security version of the device
+     * is changed, cache is updated and session establishment fails, so that it can be initialised again.
+     * It should be set before connecting the device.
+     *
+     * @param deviceInfoCache Cache of device information. Null to always get information from device.
+     */
+    public void setDeviceInfoCache(DeviceInfoCache deviceInfoCache) {
+
+        this.deviceInfoCache = deviceInfoCache;
+
         if (transport instanceof BLETransport) {
-            return ((BLETransport) transport).versionInfo;
-        } else {
-            return versionInfo;
+            ((BLETransport) transport).setDeviceInfoCache(deviceInfoCache);
         }
     }
 
@@ -495,6 +703,17 @@ public class ESPDevice {
      */
     public void scanNetworks(final WiFiScanListener wifiScanListener) {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    scanNetworks(wifiScanListener);
+                }
+            });
+            return;
+        }
+
         Log.d(TAG, "Send Wi-Fi scan command to device");
         this.wifiScanListener = wifiScanListener;
 
@@ -527,6 +746,17 @@ public class ESPDevice {
      */
     public void scanThreadNetworks(final WiFiScanListener wifiScanListener) {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    scanThreadNetworks(wifiScanListener);
+                }
+            });
+            return;
+        }
+
         Log.d(TAG, "Send Thread scan command to device");
         this.wifiScanListener = wifiScanListener;
 
@@ -561,6 +791,17 @@ public class ESPDevice {
      */
     public void sendDataToCustomEndPoint(final String path, final byte[] data, final ResponseListener listener) {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    sendDataToCustomEndPoint(path, data, listener);
+                }
+            });
+            return;
+        }
+
         this.responseListener = listener;
 
         if (session == null || !session.isEstablished()) {
@@ -594,6 +835,17 @@ public class ESPDevice {
      */
     public void provision(final String ssid, final String passphrase, final ProvisionListener provisionListener) {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    provision(ssid, passphrase, provisionListener);
+                }
+            });
+            return;
+        }
+
         this.provisionListener = provisionListener;
 
         if (session == null || !session.isEstablished()) {
@@ -627,6 +879,17 @@ public class ESPDevice {
      */
     public void provision(final String activeDataset, final ProvisionListener provisionListener) {
 
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    provision(activeDataset, provisionListener);
+                }
+            });
+            return;
+        }
+
         this.provisionListener = provisionListener;
 
         if (session == null || !session.isEstablished()) {
@@ -654,18 +917,30 @@ public class ESPDevice {
 
     public void initSession(final ResponseListener listener) {
 
-        try {
-            JSONObject jsonObject = new JSONObject(getVersionInfo());
-            JSONObject provInfo = jsonObject.getJSONObject("prov");
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    initSession(listener);
+                }
+            });
+            return;
+        }
+
+        DeviceCapabilities deviceInfo = getCapabilities();
+        final int sessionSecurityVersion = deviceInfo == null ? DeviceCapabilities.SECURITY_VERSION_NOT_AVAILABLE
+                : deviceInfo.getSecurityVersion();
+
+        if (deviceInfo == null || !deviceInfo.isValid()) {
+            Log.d(TAG, "Capabilities JSON not available.");
+        } else {
 
-            String deviceVersion = provInfo.getString("ver");
-            Log.d(TAG, "Device Version : " + deviceVersion);
-            Log.d(TAG, "sec_ver value : " + provInfo.optInt("sec_ver"));
-            Log.d(TAG, "Has sec_ver key : " + provInfo.has("sec_ver"));
+            Log.d(TAG, "Device Version : " + deviceInfo.getVersion());
+            int serVer = deviceInfo.getSecurityVersion();
 
-            if (provInfo.has("sec_ver")) {
+            if (serVer != DeviceCapabilities.SECURITY_VERSION_NOT_AVAILABLE) {
 
-                int serVer = provInfo.optInt("sec_ver");
                 Log.d(TAG, "Security Version : " + serVer);
 
                 switch (serVer) {
@@ -686,9 +961,6 @@ public class ESPDevice {
                     securityType = ESPConstants.SecurityType.SECURITY_1;
                 }
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
-            Log.d(TAG, "Capabilities JSON not available.");
         }
 
         try {
@@ -706,17 +978,29 @@ public class ESPDevice {
                     break;
             }
 
-            session = new Session(transport, security);
+            session = new Session(loopTransport, security);
 
             session.init(null, new Session.SessionListener() {
 
                 @Override
                 public void OnSessionEstablished() {
+
+                    // Version info request is sent before session, so its response is already received here.
+                    if (isVersionInfoFromCache && (receivedCapabilities == null
+                            || receivedCapabilities.getSecurityVersion() != sessionSecurityVersion)) {
+                        session = null;
+                        listener.onFailure(new RuntimeException("Cached device information could not be confirmed by device"));
+                        return;
+                    }
                     listener.onSuccess(null);
                 }
 
                 @Override
                 public void OnSessionEstablishFailed(Exception e) {
+                    // Cached information may be outdated, e.g. after firmware update. Get it from device next time.
+                    if (deviceInfoCache != null) {
+                        deviceInfoCache.remove(deviceInfoKey);
+                    }
                     listener.onFailure(e);
                 }
             });
@@ -726,6 +1010,265 @@ public class ESPDevice {
         }
     }
 
+    /**
+     * This method is used to connect ESPDevice asynchronously.
+     * Connection listener is also called and event is posted on EventBus if it is enabled, as done by connectToDevice.
+     * Cancelling the future or reaching its timeout disconnects the device.
+     *
+     * @return Returns future which is completed when device is connected,
+     * or fails if connection is failed or device is disconnected.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
+    public ESPFuture<Void> connectAsync() {
+
+        final ESPFuture<Void> future = new ESPFuture<>(abortTask);
+
+        eventLoop.execute(new Runnable() {
+
+            @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
+            @Override
+            public void run() {
+
+                ESPFuture<Void> previous = connectFuture;
+                connectFuture = future;
+
+                if (previous != null) {
+                    previous.fail(new CancellationException("Connection requested again"));
+                }
+
+                try {
+                    connectToDevice();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to start connection : " + e.getMessage());
+                    connectFuture = null;
+                    future.fail(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * This method is used to establish session with device asynchronously.
+     * Cancelling the future or reaching its timeout disconnects the device.
+     *
+     * @return Returns future which is completed when session is established.
+     */
+    public ESPFuture<Void> initSessionAsync() {
+
+        final ESPFuture<Void> future = new ESPFuture<>(abortTask);
+
+        initSession(new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                future.complete(null);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.fail(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * This method is used to get Wi-Fi access points scanned by device asynchronously.
+     * Session is established first if it is not available.
+     * Cancelling the future or reaching its timeout cancels request in progress, device stays connected.
+     *
+     * @return Returns future of the Wi-Fi access point list.
+     */
+    public ESPFuture<ArrayList<WiFiAccessPoint>> scanNetworksAsync() {
+
+        ESPFuture<ArrayList<WiFiAccessPoint>> future = new ESPFuture<>(abortRequestTask);
+        scanNetworks(createScanListener(future));
+        return future;
+    }
+
+    /**
+     * This method is used to get Thread networks scanned by device asynchronously.
+     * Session is established first if it is not available.
+     * Cancelling the future or reaching its timeout cancels request in progress, device stays connected.
+     *
+     * @return Returns future of the Thread network list.
+     */
+    public ESPFuture<ArrayList<WiFiAccessPoint>> scanThreadNetworksAsync() {
+
+        ESPFuture<ArrayList<WiFiAccessPoint>> future = new ESPFuture<>(abortRequestTask);
+        scanThreadNetworks(createScanListener(future));
+        return future;
+    }
+
+    /**
+     * This method is used to send data to custom endpoint of the device asynchronously.
+     * Session is established first if it is not available.
+     * Cancelling the future or reaching its timeout cancels request in progress, device stays connected.
+     *
+     * @param path Endpoint.
+     * @param data Data to be send.
+     * @return Returns future of the response data.
+     */
+    public ESPFuture<byte[]> sendDataAsync(String path, byte[] data) {
+
+        final ESPFuture<byte[]> future = new ESPFuture<>(abortRequestTask);
+
+        sendDataToCustomEndPoint(path, data, new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                future.complete(returnData);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.fail(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * This method is used to send Wi-Fi credentials to device for provisioning asynchronously.
+     * Intermediate steps are not reported, provision method can be used if they are needed.
+     * Cancelling the future or reaching its timeout cancels request in progress, device stays connected.
+     *
+     * @param ssid       SSID of the Wi-Fi which is to be configure in device.
+     * @param passphrase Password of the Wi-Fi which is to be configure in device.
+     * @return Returns future which is completed when device is provisioned successfully.
+     */
+    public ESPFuture<Void> provisionAsync(String ssid, String passphrase) {
+
+        ESPFuture<Void> future = new ESPFuture<>(abortRequestTask);
+        provision(ssid, passphrase, createProvisionListener(future));
+        return future;
+    }
+
+    /**
+     * This method is used to send Thread credentials to device for provisioning asynchronously.
+     * Intermediate steps are not reported, provision method can be used if they are needed.
+     * Cancelling the future or reaching its timeout cancels request in progress, device stays connected.
+     *
+     * @param activeDataset Thread dataset of a thread network which is to be configure in device.
+     * @return Returns future which is completed when device is provisioned successfully.
+     */
+    public ESPFuture<Void> provisionAsync(String activeDataset) {
+
+        ESPFuture<Void> future = new ESPFuture<>(abortRequestTask);
+        provision(activeDataset, createProvisionListener(future));
+        return future;
+    }
+
+    private WiFiScanListener createScanListener(final ESPFuture<ArrayList<WiFiAccessPoint>> future) {
+
+        return new WiFiScanListener() {
+
+            @Override
+            public void onWifiListReceived(ArrayList<WiFiAccessPoint> wifiList) {
+                future.complete(wifiList);
+            }
+
+            @Override
+            public void onWiFiScanFailed(Exception e) {
+                future.fail(e);
+            }
+        };
+    }
+
+    private ProvisionListener createProvisionListener(final ESPFuture<Void> future) {
+
+        return new ProvisionListener() {
+
+            @Override
+            public void createSessionFailed(Exception e) {
+                future.fail(e);
+            }
+
+            @Override
+            public void wifiConfigSent() {
+                Log.d(TAG, "Config sent");
+            }
+
+            @Override
+            public void wifiConfigFailed(Exception e) {
+                future.fail(e);
+            }
+
+            @Override
+            public void wifiConfigApplied() {
+                Log.d(TAG, "Config applied");
+            }
+
+            @Override
+            public void wifiConfigApplyFailed(Exception e) {
+                future.fail(e);
+            }
+
+            @Override
+            public void provisioningFailedFromDevice(ESPConstants.ProvisionFailureReason failureReason) {
+                future.fail(new RuntimeException("Provisioning failed from device : " + failureReason));
+            }
+
+            @Override
+            public void deviceProvisioningSuccess() {
+                future.complete(null);
+            }
+
+            @Override
+            public void onProvisioningFailed(Exception e) {
+                future.fail(e);
+            }
+        };
+    }
+
+    /**
+     * Stops the operation of cancelled or timed out future.
+     * Transport request can't be stopped alone, so device is disconnected.
+     */
+    // Used for connection and session futures, nothing is left to keep if they are not completed.
+    private Runnable abortTask = new Runnable() {
+
+        @Override
+        public void run() {
+            Log.d(TAG, "Operation cancelled, disconnect device");
+            disconnectDevice();
+        }
+    };
+
+    // Used for other futures, only request in progress is cancelled.
+    private Runnable abortRequestTask = new Runnable() {
+
+        @Override
+        public void run() {
+
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    abortActiveRequest();
+                }
+            });
+        }
+    };
+
+    private void abortActiveRequest() {
+
+        Log.d(TAG, "Operation cancelled, cancel active request");
+
+        if (transport instanceof SoftAPTransport) {
+            ((SoftAPTransport) transport).cancelActiveRequest();
+        } else if (transport instanceof BLETransport) {
+            ((BLETransport) transport).cancelActiveRequest();
+        }
+
+        // Security 1 uses one AES-CTR stream for both directions, it is out of sync if a response is skipped.
+        // Session is established again by next operation.
+        if (securityType == ESPConstants.SecurityType.SECURITY_1) {
+            session = null;
+        }
+    }
+
     private void sendData(final String path, byte[] data, final ResponseListener listener) {
 
         session.sendDataToDevice(path, data, new ResponseListener() {
@@ -752,20 +1295,20 @@ public class ESPDevice {
         totalCount = 0;
         startIndex = 0;
         wifiApList = new ArrayList<>();
-        byte[] scanCommand = MessengeHelper.prepareWiFiScanMsg();
+        ByteBuffer scanCommand = MessengeHelper.prepareWiFiScanBuffer();
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, scanCommand, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
                 processStartScanResponse(returnData);
 
-                byte[] getScanStatusCmd = MessengeHelper.prepareGetWiFiScanStatusMsg();
-                session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, getScanStatusCmd, new ResponseListener() {
+                ByteBuffer getScanStatusCmd = MessengeHelper.prepareGetWiFiScanStatusBuffer();
+                session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, getScanStatusCmd, new BufferResponseListener() {
 
                     @Override
-                    public void onSuccess(byte[] returnData) {
+                    public void onSuccess(ByteBuffer returnData) {
                         processWifiStatusResponse(returnData);
                     }
 
@@ -795,20 +1338,20 @@ public class ESPDevice {
         totalCount = 0;
         startIndex = 0;
         wifiApList = new ArrayList<>();
-        byte[] scanCommand = MessengeHelper.prepareThreadScanMsg();
+        ByteBuffer scanCommand = MessengeHelper.prepareThreadScanBuffer();
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, scanCommand, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
                 processStartThreadScanResponse(returnData);
 
-                byte[] getScanStatusCmd = MessengeHelper.prepareGetThreadScanStatusMsg();
-                session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, getScanStatusCmd, new ResponseListener() {
+                ByteBuffer getScanStatusCmd = MessengeHelper.prepareGetThreadScanStatusBuffer();
+                session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, getScanStatusCmd, new BufferResponseListener() {
 
                     @Override
-                    public void onSuccess(byte[] returnData) {
+                    public void onSuccess(ByteBuffer returnData) {
                         processThreadStatusResponse(returnData);
                     }
 
@@ -895,17 +1438,20 @@ public class ESPDevice {
             return;
         }
 
-        byte[] data = MessengeHelper.prepareGetWiFiScanListMsg(start, count);
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, data, new ResponseListener() {
+        final BufferPool bufferPool = session.getBufferPool();
+        final ByteBuffer data = MessengeHelper.prepareGetWiFiScanListBuffer(start, count, bufferPool);
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, data, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
+                bufferPool.release(data);
                 Log.d(TAG, "Successfully got SSID list");
                 processGetSSIDs(returnData);
             }
 
             @Override
             public void onFailure(Exception e) {
+                bufferPool.release(data);
                 e.printStackTrace();
                 if (wifiScanListener != null) {
                     wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to get Wi-Fi Networks."));
@@ -923,17 +1469,20 @@ public class ESPDevice {
             return;
         }
 
-        byte[] data = MessengeHelper.prepareGetThreadScanListMsg(start, count);
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, data, new ResponseListener() {
+        final BufferPool bufferPool = session.getBufferPool();
+        final ByteBuffer data = MessengeHelper.prepareGetThreadScanListBuffer(start, count, bufferPool);
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, data, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
+                bufferPool.release(data);
                 Log.d(TAG, "Successfully got thread networks");
                 processGetThreadNetworks(returnData);
             }
 
             @Override
             public void onFailure(Exception e) {
+                bufferPool.release(data);
                 e.printStackTrace();
                 if (wifiScanListener != null) {
                     wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to get Thread Networks."));
@@ -951,13 +1500,15 @@ public class ESPDevice {
 
     private void sendWiFiConfig(final String ssid, final String passphrase, final ProvisionListener provisionListener) {
 
-        byte[] scanCommand = MessengeHelper.prepareWiFiConfigMsg(ssid, passphrase);
+        final BufferPool bufferPool = session.getBufferPool();
+        final ByteBuffer scanCommand = MessengeHelper.prepareWiFiConfigBuffer(ssid, passphrase, bufferPool);
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
+                bufferPool.release(scanCommand);
                 Constants.Status status = processWifiConfigResponse(returnData);
                 if (provisionListener != null) {
                     if (status != Constants.Status.Success) {
@@ -976,6 +1527,7 @@ public class ESPDevice {
 
             @Override
             public void onFailure(Exception e) {
+                bufferPool.release(scanCommand);
                 e.printStackTrace();
                 disableOnlyWifiNetwork();
                 if (provisionListener != null) {
@@ -987,13 +1539,15 @@ public class ESPDevice {
 
     private void sendThreadConfig(final String activeDataset, final ProvisionListener provisionListener) {
 
-        byte[] scanCommand = MessengeHelper.prepareThreadConfigMsg(activeDataset);
+        final BufferPool bufferPool = session.getBufferPool();
+        final ByteBuffer scanCommand = MessengeHelper.prepareThreadConfigBuffer(activeDataset, bufferPool);
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
+                bufferPool.release(scanCommand);
                 Constants.Status status = processThreadConfigResponse(returnData);
                 if (provisionListener != null) {
                     if (status != Constants.Status.Success) {
@@ -1012,6 +1566,7 @@ public class ESPDevice {
 
             @Override
             public void onFailure(Exception e) {
+                bufferPool.release(scanCommand);
                 e.printStackTrace();
                 disableOnlyWifiNetwork();
                 if (provisionListener != null) {
@@ -1023,12 +1578,12 @@ public class ESPDevice {
 
     private void applyWiFiConfig() {
 
-        byte[] scanCommand = MessengeHelper.prepareApplyWiFiConfigMsg();
+        ByteBuffer scanCommand = MessengeHelper.prepareApplyWiFiConfigBuffer();
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
                 Constants.Status status = processApplyConfigResponse(returnData);
 
@@ -1037,12 +1592,7 @@ public class ESPDevice {
                         provisionListener.wifiConfigApplied();
                     }
 
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    pollForWifiConnectionStatus();
+                    eventLoop.postDelayed(pollWiFiStatusTask, CONFIG_APPLY_DELAY_MS);
                 } else {
                     disableOnlyWifiNetwork();
                     if (provisionListener != null) {
@@ -1064,12 +1614,12 @@ public class ESPDevice {
 
     private void applyThreadConfig() {
 
-        byte[] scanCommand = MessengeHelper.prepareApplyThreadConfigMsg();
+        ByteBuffer scanCommand = MessengeHelper.prepareApplyThreadConfigBuffer();
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, scanCommand, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
                 Constants.Status status = processApplyThreadConfigResponse(returnData);
 
@@ -1078,12 +1628,7 @@ public class ESPDevice {
                         provisionListener.wifiConfigApplied();
                     }
 
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    pollForThreadConnectionStatus();
+                    eventLoop.postDelayed(pollThreadStatusTask, CONFIG_APPLY_DELAY_MS);
                 } else {
                     disableOnlyWifiNetwork();
                     if (provisionListener != null) {
@@ -1103,13 +1648,29 @@ public class ESPDevice {
         });
     }
 
+    private Runnable pollWiFiStatusTask = new Runnable() {
+
+        @Override
+        public void run() {
+            pollForWifiConnectionStatus();
+        }
+    };
+
+    private Runnable pollThreadStatusTask = new Runnable() {
+
+        @Override
+        public void run() {
+            pollForThreadConnectionStatus();
+        }
+    };
+
     private void pollForWifiConnectionStatus() {
 
-        byte[] message = MessengeHelper.prepareGetWiFiConfigStatusMsg();
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, message, new ResponseListener() {
+        ByteBuffer message = MessengeHelper.prepareGetWiFiConfigStatusBuffer();
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, message, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
                 Object[] statuses = processProvisioningStatusResponse(returnData);
                 NetworkConstants.WifiStationState wifiStationState = (NetworkConstants.WifiStationState) statuses[0];
@@ -1135,15 +1696,7 @@ public class ESPDevice {
 
                 } else if (wifiStationState == NetworkConstants.WifiStationState.Connecting) {
 
-                    try {
-                        sleep(5000);
-                        pollForWifiConnectionStatus();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                        session = null;
-                        disableOnlyWifiNetwork();
-                        provisionListener.onProvisioningFailed(new RuntimeException("Provisioning Failed"));
-                    }
+                    eventLoop.postDelayed(pollWiFiStatusTask, STATUS_POLL_INTERVAL_MS);
                 } else {
 
                     if (failedReason == NetworkConstants.WifiConnectFailedReason.AuthError) {
@@ -1173,11 +1726,11 @@ public class ESPDevice {
 
     private void pollForThreadConnectionStatus() {
 
-        byte[] message = MessengeHelper.prepareGetThreadConfigStatusMsg();
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, message, new ResponseListener() {
+        ByteBuffer message = MessengeHelper.prepareGetThreadConfigStatusBuffer();
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_CONFIG, message, new BufferResponseListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer returnData) {
 
                 Object[] statuses = processThreadProvisioningStatusResponse(returnData);
                 NetworkConstants.ThreadNetworkState threadNetworkState = (NetworkConstants.ThreadNetworkState) statuses[0];
@@ -1203,15 +1756,7 @@ public class ESPDevice {
 
                 } else if (threadNetworkState == NetworkConstants.ThreadNetworkState.Attaching) {
 
-                    try {
-                        sleep(5000);
-                        pollForThreadConnectionStatus();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                        session = null;
-                        disableOnlyWifiNetwork();
-                        provisionListener.onProvisioningFailed(new RuntimeException("Provisioning Failed"));
-                    }
+                    eventLoop.postDelayed(pollThreadStatusTask, STATUS_POLL_INTERVAL_MS);
                 } else {
 
                     if (failedReason == NetworkConstants.ThreadAttachFailedReason.DatasetInvalid) {
@@ -1239,43 +1784,28 @@ public class ESPDevice {
         });
     }
 
-    private void processStartScanResponse(byte[] responseData) {
+    private void processStartScanResponse(ByteBuffer responseData) {
 
         Log.d(TAG, "Process Wi-Fi start scan command response");
-
-        try {
-            NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.parseFrom(responseData);
-            NetworkScan.RespScanWifiStart response = NetworkScan.RespScanWifiStart.parseFrom(payload.toByteArray());
-            // TODO Proto should send status as ok started or failed
-        } catch (InvalidProtocolBufferException e) {
-            e.printStackTrace();
-        }
+        // TODO Proto should send status as ok started or failed
     }
 
-    private void processStartThreadScanResponse(byte[] responseData) {
+    private void processStartThreadScanResponse(ByteBuffer responseData) {
 
         Log.d(TAG, "Process Thread start scan command response");
-
-        try {
-            NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.parseFrom(responseData);
-            NetworkScan.RespScanThreadStart response = NetworkScan.RespScanThreadStart.parseFrom(payload.toByteArray());
-            // TODO Proto should send status as ok started or failed
-        } catch (InvalidProtocolBufferException e) {
-            e.printStackTrace();
-        }
+        // TODO Proto should send status as ok started or failed
     }
 
-    private void processWifiStatusResponse(byte[] responseData) {
+    private void processWifiStatusResponse(ByteBuffer responseData) {
 
         Log.d(TAG, "Process Wi-Fi scan status command response");
         try {
-            NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.parseFrom(responseData);
-            NetworkScan.RespScanWifiStatus response = payload.getRespScanWifiStatus();
-            boolean scanFinished = response.getScanFinished();
+            int resultCount = ResponseDecoder.decodeWiFiScanStatus(responseData);
+            boolean scanFinished = resultCount >= 0;
             Log.d(TAG, "scanFinished : " + scanFinished);
 
             if (scanFinished) {
-                totalCount = response.getResultCount();
+                totalCount = resultCount;
                 getFullWiFiList();
             } else {
                 // TODO Error case
@@ -1290,19 +1820,17 @@ public class ESPDevice {
         }
     }
 
-    private void processThreadStatusResponse(byte[] responseData) {
+    private void processThreadStatusResponse(ByteBuffer responseData) {
 
         Log.d(TAG, "Process Thread scan status command response");
         try {
-            NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.parseFrom(responseData);
-            NetworkScan.RespScanThreadStatus response = payload.getRespScanThreadStatus();
-            boolean scanFinished = response.getScanFinished();
+            int resultCount = ResponseDecoder.decodeThreadScanStatus(responseData);
+            boolean scanFinished = resultCount >= 0;
             Log.d(TAG, "scanFinished : " + scanFinished);
 
             if (scanFinished) {
-                totalCount = response.getResultCount();
+                totalCount = resultCount;
                 getFullThreadList();
-                ;
             } else {
                 // TODO Error case
             }
@@ -1316,46 +1844,12 @@ public class ESPDevice {
         }
     }
 
-    private void processGetSSIDs(byte[] responseData) {
+    private void processGetSSIDs(ByteBuffer responseData) {
 
         try {
-            NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.parseFrom(responseData);
-            final NetworkScan.RespScanWifiResult response = payload.getRespScanWifiResult();
-
-            Log.d(TAG, "Response count : " + response.getEntriesCount());
-
-            for (int i = 0; i < response.getEntriesCount(); i++) {
-
-                Log.d(TAG, "SSID : " + response.getEntries(i).getSsid().toStringUtf8());
-                String ssid = response.getEntries(i).getSsid().toStringUtf8();
-                int rssi = response.getEntries(i).getRssi();
-                boolean isAvailable = false;
-
-                for (int index = 0; index < wifiApList.size(); index++) {
-
-                    if (ssid.equals(wifiApList.get(index).getWifiName())) {
-
-                        isAvailable = true;
-
-                        if (wifiApList.get(index).getRssi() < rssi) {
-
-                            wifiApList.get(index).setRssi(rssi);
-                        }
-                        break;
-                    }
-                }
-
-                if (!isAvailable) {
-
-                    WiFiAccessPoint wifiAp = new WiFiAccessPoint();
-                    wifiAp.setWifiName(ssid);
-                    wifiAp.setRssi(response.getEntries(i).getRssi());
-                    wifiAp.setSecurity(response.getEntries(i).getAuthValue());
-                    wifiApList.add(wifiAp);
-                }
-
-                Log.d(TAG, "Size of  list : " + wifiApList.size());
-            }
+            int count = ResponseDecoder.decodeWiFiScanResult(responseData, wiFiScanEntryListener);
+            Log.d(TAG, "Response count : " + count);
+            Log.d(TAG, "Size of  list : " + wifiApList.size());
 
             startIndex = startIndex + 4;
 
@@ -1376,45 +1870,12 @@ public class ESPDevice {
         }
     }
 
-    private void processGetThreadNetworks(byte[] responseData) {
+    private void processGetThreadNetworks(ByteBuffer responseData) {
 
         try {
-            NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.parseFrom(responseData);
-            final NetworkScan.RespScanThreadResult response = payload.getRespScanThreadResult();
-
-            Log.d(TAG, "Response count : " + response.getEntriesCount());
-
-            for (int i = 0; i < response.getEntriesCount(); i++) {
-
-                Log.d(TAG, "Network Name : " + response.getEntries(i).getNetworkName());
-                String ssid = response.getEntries(i).getNetworkName();
-                int rssi = response.getEntries(i).getRssi();
-                boolean isAvailable = false;
-
-                for (int index = 0; index < wifiApList.size(); index++) {
-
-                    if (ssid.equals(wifiApList.get(index).getWifiName())) {
-
-                        isAvailable = true;
-
-                        if (wifiApList.get(index).getRssi() < rssi) {
-                            wifiApList.get(index).setRssi(rssi);
-                        }
-                        break;
-                    }
-                }
-
-                if (!isAvailable) {
-
-                    WiFiAccessPoint wifiAp = new WiFiAccessPoint();
-                    wifiAp.setWifiName(ssid);
-                    wifiAp.setRssi(response.getEntries(i).getRssi());
-                    wifiAp.setSecurity(0);
-                    wifiApList.add(wifiAp);
-                }
-
-                Log.d(TAG, "Size of  list : " + wifiApList.size());
-            }
+            int count = ResponseDecoder.decodeThreadScanResult(responseData, threadScanEntryListener);
+            Log.d(TAG, "Response count : " + count);
+            Log.d(TAG, "Size of  list : " + wifiApList.size());
 
             startIndex = startIndex + 4;
 
@@ -1435,53 +1896,97 @@ public class ESPDevice {
         }
     }
 
-    private Constants.Status processWifiConfigResponse(byte[] responseData) {
+    /**
+     * Adds scan entry in Wi-Fi list, or updates RSSI if network with same name is already added.
+     */
+    private void addScanEntry(String ssid, int rssi, int security) {
+
+        for (int index = 0; index < wifiApList.size(); index++) {
+
+            WiFiAccessPoint wifiAp = wifiApList.get(index);
+
+            if (ssid.equals(wifiAp.getWifiName())) {
+
+                if (wifiAp.getRssi() < rssi) {
+                    wifiAp.setRssi(rssi);
+                }
+                return;
+            }
+        }
+
+        WiFiAccessPoint wifiAp = new WiFiAccessPoint();
+        wifiAp.setWifiName(ssid);
+        wifiAp.setRssi(rssi);
+        wifiAp.setSecurity(security);
+        wifiApList.add(wifiAp);
+    }
+
+    private ResponseDecoder.WiFiScanEntryListener wiFiScanEntryListener = new ResponseDecoder.WiFiScanEntryListener() {
+
+        @Override
+        public void onWiFiScanEntry(byte[] data, int ssidOffset, int ssidLength, int channel, int rssi,
+                                    int bssidOffset, int bssidLength, int auth) {
+
+            String ssid = new String(data, ssidOffset, ssidLength, StandardCharsets.UTF_8);
+            Log.d(TAG, "SSID : " + ssid);
+            addScanEntry(ssid, rssi, auth);
+        }
+    };
+
+    private ResponseDecoder.ThreadScanEntryListener threadScanEntryListener = new ResponseDecoder.ThreadScanEntryListener() {
+
+        @Override
+        public void onThreadScanEntry(byte[] data, int nameOffset, int nameLength, int panId, int channel, int rssi, int lqi) {
+
+            String networkName = new String(data, nameOffset, nameLength, StandardCharsets.UTF_8);
+            Log.d(TAG, "Network Name : " + networkName);
+            addScanEntry(networkName, rssi, 0);
+        }
+    };
+
+    private Constants.Status processWifiConfigResponse(ByteBuffer responseData) {
 
         Constants.Status status = Constants.Status.InvalidSession;
         try {
-            NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload.parseFrom(responseData);
-            status = wiFiConfigPayload.getRespSetWifiConfig().getStatus();
+            status = getStatus(ResponseDecoder.decodeSetWiFiConfigStatus(responseData));
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
         return status;
     }
 
-    private Constants.Status processThreadConfigResponse(byte[] responseData) {
+    private Constants.Status processThreadConfigResponse(ByteBuffer responseData) {
 
         Constants.Status status = Constants.Status.InvalidSession;
         try {
-            NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload.parseFrom(responseData);
-            status = wiFiConfigPayload.getRespSetThreadConfig().getStatus();
+            status = getStatus(ResponseDecoder.decodeSetThreadConfigStatus(responseData));
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
         return status;
     }
 
-    private Constants.Status processApplyConfigResponse(byte[] responseData) {
+    private Constants.Status processApplyConfigResponse(ByteBuffer responseData) {
         Constants.Status status = Constants.Status.InvalidSession;
         try {
-            NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload.parseFrom(responseData);
-            status = wiFiConfigPayload.getRespApplyWifiConfig().getStatus();
+            status = getStatus(ResponseDecoder.decodeApplyWiFiConfigStatus(responseData));
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
         return status;
     }
 
-    private Constants.Status processApplyThreadConfigResponse(byte[] responseData) {
+    private Constants.Status processApplyThreadConfigResponse(ByteBuffer responseData) {
         Constants.Status status = Constants.Status.InvalidSession;
         try {
-            NetworkConfig.NetworkConfigPayload threadConfigPayload = NetworkConfig.NetworkConfigPayload.parseFrom(responseData);
-            status = threadConfigPayload.getRespApplyThreadConfig().getStatus();
+            status = getStatus(ResponseDecoder.decodeApplyThreadConfigStatus(responseData));
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
         return status;
     }
 
-    private Object[] processProvisioningStatusResponse(byte[] responseData) {
+    private Object[] processProvisioningStatusResponse(ByteBuffer responseData) {
 
         NetworkConstants.WifiStationState wifiStationState = NetworkConstants.WifiStationState.Disconnected;
         NetworkConstants.WifiConnectFailedReason failedReason = NetworkConstants.WifiConnectFailedReason.UNRECOGNIZED;
@@ -1491,16 +1996,23 @@ public class ESPDevice {
         }
 
         try {
-            NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload.parseFrom(responseData);
-            wifiStationState = wiFiConfigPayload.getRespGetWifiStatus().getWifiStaState();
-            failedReason = wiFiConfigPayload.getRespGetWifiStatus().getWifiFailReason();
+            int[] status = ResponseDecoder.decodeWiFiStatus(responseData);
+            wifiStationState = NetworkConstants.WifiStationState.forNumber(status[0]);
+            failedReason = NetworkConstants.WifiConnectFailedReason.forNumber(status[1]);
+
+            if (wifiStationState == null) {
+                wifiStationState = NetworkConstants.WifiStationState.UNRECOGNIZED;
+            }
+            if (failedReason == null) {
+                failedReason = NetworkConstants.WifiConnectFailedReason.UNRECOGNIZED;
+            }
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
         return new Object[]{wifiStationState, failedReason};
     }
 
-    private Object[] processThreadProvisioningStatusResponse(byte[] responseData) {
+    private Object[] processThreadProvisioningStatusResponse(ByteBuffer responseData) {
 
         NetworkConstants.ThreadNetworkState threadNetworkState = NetworkConstants.ThreadNetworkState.Dettached;
         NetworkConstants.ThreadAttachFailedReason failedReason = NetworkConstants.ThreadAttachFailedReason.UNRECOGNIZED;
@@ -1510,15 +2022,28 @@ public class ESPDevice {
         }
 
         try {
-            NetworkConfig.NetworkConfigPayload threadConfigPayload = NetworkConfig.NetworkConfigPayload.parseFrom(responseData);
-            threadNetworkState = threadConfigPayload.getRespGetThreadStatus().getThreadState();
-            failedReason = threadConfigPayload.getRespGetThreadStatus().getThreadFailReason();
+            int[] status = ResponseDecoder.decodeThreadStatus(responseData);
+            threadNetworkState = NetworkConstants.ThreadNetworkState.forNumber(status[0]);
+            failedReason = NetworkConstants.ThreadAttachFailedReason.forNumber(status[1]);
+
+            if (threadNetworkState == null) {
+                threadNetworkState = NetworkConstants.ThreadNetworkState.UNRECOGNIZED;
+            }
+            if (failedReason == null) {
+                failedReason = NetworkConstants.ThreadAttachFailedReason.UNRECOGNIZED;
+            }
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
         return new Object[]{threadNetworkState, failedReason};
     }
 
+    private static Constants.Status getStatus(int number) {
+
+        Constants.Status status = Constants.Status.forNumber(number);
+        return status == null ? Constants.Status.UNRECOGNIZED : status;
+    }
+
     private int deviceConnectionReqCount = 0;
 
     @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
@@ -1570,6 +2095,7 @@ public class ESPDevice {
 
     private Runnable getCapabilitiesTask = new Runnable() {
 
+        @RequiresPermission(allOf = {Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_WIFI_STATE})
         @Override
         public void run() {
 
@@ -1577,7 +2103,21 @@ public class ESPDevice {
             deviceConnectionReqCount++;
             String tempData = "ESP";
 
-            transport.sendConfigData(ESPConstants.HANDLER_PROTO_VER, tempData.getBytes(), new ResponseListener() {
+            deviceInfoKey = !TextUtils.isEmpty(deviceName) ? deviceName : (wifiDevice != null ? wifiDevice.getWifiName() : null);
+            final DeviceCapabilities cachedCapabilities = deviceInfoCache == null ? null : deviceInfoCache.get(deviceInfoKey);
+
+            isVersionInfoFromCache = cachedCapabilities != null;
+            receivedCapabilities = null;
+
+            if (cachedCapabilities != null) {
+                // Report connection now, version info is still requested to check the cache.
+                // Transport sends requests in order, so it is received before session is established.
+                Log.d(TAG, "Using cached version info : " + cachedCapabilities.getVersionInfo());
+                setCapabilities(cachedCapabilities);
+                onDeviceConnected();
+            }
+
+            loopTransport.sendConfigData(ESPConstants.HANDLER_PROTO_VER, tempData.getBytes(), new ResponseListener() {
 
                 @RequiresPermission(allOf = {Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_WIFI_STATE})
                 @Override
@@ -1585,40 +2125,25 @@ public class ESPDevice {
 
                     String data = new String(returnData, StandardCharsets.UTF_8);
                     Log.d(TAG, "Value : " + data);
-                    versionInfo = data;
-                    deviceCapabilities = new ArrayList<>();
+                    onVersionInfoReceived(DeviceCapabilities.parse(data));
 
-                    try {
-                        JSONObject jsonObject = new JSONObject(data);
-                        JSONObject provInfo = jsonObject.getJSONObject("prov");
-
-                        String versionInfo = provInfo.getString("ver");
-                        Log.d(TAG, "Device Version : " + versionInfo);
-
-                        JSONArray capabilities = provInfo.getJSONArray("cap");
-
-                        for (int i = 0; i < capabilities.length(); i++) {
-                            String cap = capabilities.getString(i);
-                            deviceCapabilities.add(cap);
-                        }
-                        Log.d(TAG, "Capabilities : " + deviceCapabilities);
-
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                        Log.d(TAG, "Capabilities JSON not available.");
+                    if (cachedCapabilities == null) {
+                        onDeviceConnected();
                     }
-                    deviceName = fetchWiFiSSID();
-                    handler.removeCallbacks(wifiConnectionFailedTask);
-                    EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED));
                 }
 
                 @Override
                 public void onFailure(Exception e) {
                     e.printStackTrace();
 
+                    if (cachedCapabilities != null) {
+                        onVersionInfoCheckFailed(e);
+                        return;
+                    }
+
                     if (deviceConnectionReqCount == 3) {
 
-                        handler.removeCallbacks(getCapabilitiesTask);
+                        eventLoop.removeCallbacks(getCapabilitiesTask);
                         sendDeviceConnectionFailure();
                     } else {
                         getCapabilitiesFromDevice();
@@ -1633,26 +2158,180 @@ public class ESPDevice {
         @Override
         public void run() {
 
-            handler.removeCallbacks(getCapabilitiesTask);
-            handler.removeCallbacks(deviceConnectionFailedTask);
+            eventLoop.removeCallbacks(getCapabilitiesTask);
+            eventLoop.removeCallbacks(deviceConnectionFailedTask);
             Log.e(TAG, "deviceConnectionFailedTask");
-            EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
         }
     };
 
+    private void setCapabilities(DeviceCapabilities capabilities) {
+
+        this.capabilities = capabilities;
+        deviceCapabilities = new ArrayList<>(capabilities.getCapabilities());
+        Log.d(TAG, "Device Version : " + capabilities.getVersion() + ", Capabilities : " + deviceCapabilities);
+
+        if (transport instanceof BLETransport) {
+            ((BLETransport) transport).setCapabilities(capabilities);
+        }
+    }
+
+    private void onBleDeviceConnected() {
+
+        BLETransport bleTransport = (BLETransport) transport;
+        isVersionInfoFromCache = bleTransport.isVersionInfoCached();
+        receivedCapabilities = isVersionInfoFromCache ? null : bleTransport.getCapabilities();
+
+        if (bleTransport.getCapabilities() != null) {
+            setCapabilities(bleTransport.getCapabilities());
+        }
+
+        if (!isVersionInfoFromCache) {
+            return;
+        }
+
+        // Connection is reported with cached version info, check it with device as done for SoftAP devices.
+        // Request is sent before connection event is given, so it is sent before session establishment.
+        loopTransport.sendConfigData(ESPConstants.HANDLER_PROTO_VER, "ESP".getBytes(), new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+
+                String data = new String(returnData, StandardCharsets.UTF_8);
+                Log.d(TAG, "Value : " + data);
+                onVersionInfoReceived(DeviceCapabilities.parse(data));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                onVersionInfoCheckFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Updates cache and capabilities with version info received from device.
+     * If connection was reported with cached version info, session establishment checks security version with it.
+     */
+    private void onVersionInfoReceived(DeviceCapabilities received) {
+
+        receivedCapabilities = received;
+
+        if (!received.isValid()) {
+            Log.d(TAG, "Capabilities JSON not available.");
+
+            if (isVersionInfoFromCache && deviceInfoCache != null) {
+                deviceInfoCache.remove(deviceInfoKey);
+            }
+        } else if (deviceInfoCache != null) {
+            deviceInfoCache.put(deviceInfoKey, received);
+        }
+
+        if (isVersionInfoFromCache && !received.equals(capabilities)) {
+            Log.w(TAG, "Version info changed since it was cached");
+        }
+        setCapabilities(received);
+    }
+
+    private void onVersionInfoCheckFailed(Exception e) {
+
+        // Cached information can not be checked, so session establishment fails and information is read from device next time.
+        Log.e(TAG, "Failed to check cached version info : " + e.getMessage());
+
+        if (deviceInfoCache != null) {
+            deviceInfoCache.remove(deviceInfoKey);
+        }
+    }
+
+    @RequiresPermission(allOf = {Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_WIFI_STATE})
+    private void onDeviceConnected() {
+
+        deviceName = fetchWiFiSSID();
+        eventLoop.removeCallbacks(wifiConnectionFailedTask);
+        postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED);
+    }
+
+    /**
+     * Completes future of connectAsync, calls connection listener and posts event on EventBus if it is enabled.
+     */
+    private void postConnectionEvent(final short eventType) {
+
+        ESPFuture<Void> future = connectFuture;
+
+        if (future != null) {
+
+            connectFuture = null;
+
+            if (eventType == ESPConstants.EVENT_DEVICE_CONNECTED) {
+                future.complete(null);
+            } else if (eventType == ESPConstants.EVENT_DEVICE_DISCONNECTED) {
+                future.fail(new RuntimeException("Device disconnected"));
+            } else {
+                future.fail(new RuntimeException("Failed to connect device"));
+            }
+        }
+
+        final DeviceConnectionListener listener;
+        Executor executor;
+
+        synchronized (this) {
+            listener = connectionListener;
+            executor = connectionListenerExecutor;
+        }
+
+        if (listener != null) {
+
+            Runnable callback = new Runnable() {
+
+                @Override
+                public void run() {
+
+                    switch (eventType) {
+
+                        case ESPConstants.EVENT_DEVICE_CONNECTED:
+                            listener.onDeviceConnected(ESPDevice.this);
+                            break;
+
+                        case ESPConstants.EVENT_DEVICE_CONNECTION_FAILED:
+                            listener.onDeviceConnectionFailed(ESPDevice.this);
+                            break;
+
+                        case ESPConstants.EVENT_DEVICE_DISCONNECTED:
+                            listener.onDeviceDisconnected(ESPDevice.this);
+                            break;
+                    }
+                }
+            };
+
+            if (executor != null) {
+                executor.execute(callback);
+            } else {
+                mainHandler.post(callback);
+            }
+        }
+
+        if (isEventBusEnabled) {
+            EventBus.getDefault().post(new DeviceConnectionEvent(eventType, this));
+        }
+    }
+
     private void sendDeviceConnectionFailure() {
-        handler.postDelayed(deviceConnectionFailedTask, 1000);
+        eventLoop.postDelayed(deviceConnectionFailedTask, 1000);
     }
 
     private void getCapabilitiesFromDevice() {
+        getCapabilitiesFromDevice(100);
+    }
+
+    private void getCapabilitiesFromDevice(long delayMillis) {
 
-        handler.removeCallbacks(getCapabilitiesTask);
-        handler.postDelayed(getCapabilitiesTask, 100);
+        eventLoop.removeCallbacks(getCapabilitiesTask);
+        eventLoop.postDelayed(getCapabilitiesTask, delayMillis);
     }
 
     private void scheduleWiFiConnectionFailure() {
         Log.e(TAG, "Schedule wifiConnectionFailedTask");
-        handler.postDelayed(wifiConnectionFailedTask, 12000);
+        eventLoop.postDelayed(wifiConnectionFailedTask, 12000);
     }
 
     @RequiresPermission(allOf = {Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_WIFI_STATE})
@@ -1674,9 +2353,9 @@ public class ESPDevice {
         @Override
         public void run() {
 
-            handler.removeCallbacks(task);
+            eventLoop.removeCallbacks(task);
             Log.e(TAG, "wifiConnectionFailedTask");
-            EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
         }
     };
 
@@ -1698,19 +2377,15 @@ public class ESPDevice {
 
             if (!TextUtils.isEmpty(ssid) && !TextUtils.isEmpty(networkName) && ssid.equals(networkName)) {
 
-                try {
-                    Thread.sleep(2500);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
                 Log.e(TAG, "Removed wifiConnectionFailedTask");
-                handler.removeCallbacks(wifiConnectionFailedTask);
+                eventLoop.removeCallbacks(wifiConnectionFailedTask);
                 deviceName = ssid;
-                getCapabilitiesFromDevice();
+                // Give time to device network to settle, without blocking event loop.
+                getCapabilitiesFromDevice(2600);
 
             } else {
 
-                handler.removeCallbacks(task);
+                eventLoop.removeCallbacks(task);
                 checkDeviceConnection(ssid);
             }
         }
@@ -1721,6 +2396,6 @@ public class ESPDevice {
     private void checkDeviceConnection(String ssid) {
 
         task = new FetchNetworkName(ssid);
-        handler.postDelayed(task, 2000);
+        eventLoop.postDelayed(task, 2000);
     }
 }
@@ -0,0 +1,472 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of an asynchronous ESPDevice operation.
+ * Callbacks can be added to get the result and operations can be chained with thenCompose, so steps like
+ * connect, session, scan and provision don't need nested listeners.
+ * <p>
+ * Future is completed only once, later results are ignored. Cancelling the future or reaching its timeout
+ * stops the operation which is in progress.
+ * <p>
+ * Threading : ESPDevice completes its futures on the device event loop ({@link DeviceEventLoop}), which runs
+ * on a thread pool shared by all devices. Callbacks added with {@link #addCallback(Callback)} and
+ * continuations are called on the thread which completes the future (or on the calling thread if future is
+ * already completed), so they must return quickly and must not block. Use
+ * {@link #addCallback(Callback, Executor)} to get the callback on another executor, e.g. main thread.
+ * Blocking get methods can be called from any thread except the event loop threads; calling them from
+ * a callback or listener run on the event loop throws IllegalStateException, as it would deadlock.
+ *
+ * @param <T> Type of the result.
+ */
+public class ESPFuture<T> implements Future<T> {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCESS = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private static Handler timeoutHandler;
+
+    /**
+     * Callback to get result of the future.
+     *
+     * @param <T> Type of the result.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called when operation is completed successfully.
+         *
+         * @param result Result of the operation.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called when operation is failed, cancelled or timed out.
+         * Exception is CancellationException for cancelled and TimeoutException for timed out operation.
+         *
+         * @param e Exception
+         */
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Next operation to be started with result of the previous one.
+     *
+     * @param <T> Type of the previous result.
+     * @param <U> Type of the next result.
+     */
+    public interface Continuation<T, U> {
+
+        /**
+         * @param result Result of the previous operation.
+         * @return Returns future of the next operation.
+         * @throws Exception Thrown exception fails the chained future.
+         */
+        ESPFuture<U> then(T result) throws Exception;
+    }
+
+    private final Object lock = new Object();
+    private final ArrayList<Callback<? super T>> callbacks = new ArrayList<>();
+
+    private int state = STATE_PENDING;
+    private T result;
+    private Exception exception;
+    private Runnable cancelAction;
+    private Runnable timeoutTask;
+    // Future of the current step, used by chained future to cancel it.
+    private volatile ESPFuture<?> currentStep;
+
+    public ESPFuture() {
+    }
+
+    /**
+     * @param cancelAction Action to stop the operation, called once when future is cancelled or timed out.
+     */
+    public ESPFuture(Runnable cancelAction) {
+        this.cancelAction = cancelAction;
+    }
+
+    /**
+     * This method is used to complete the future with given result.
+     *
+     * @param result Result of the operation.
+     * @return Returns true if future is completed by this call, false if it was already completed.
+     */
+    public boolean complete(T result) {
+        return finish(STATE_SUCCESS, result, null);
+    }
+
+    /**
+     * This method is used to fail the future with given exception.
+     * Failing with CancellationException marks the future as cancelled, without calling its cancel action.
+     *
+     * @param e Exception
+     * @return Returns true if future is completed by this call, false if it was already completed.
+     */
+    public boolean fail(Exception e) {
+
+        if (e == null) {
+            e = new RuntimeException("Operation failed");
+        }
+        return finish(e instanceof CancellationException ? STATE_CANCELLED : STATE_FAILED, null, e);
+    }
+
+    /**
+     * This method is used to cancel the operation.
+     * Cancel action is called, e.g. ESPDevice disconnects the device to stop the transport operation.
+     *
+     * @param mayInterruptIfRunning Not used, operation is always stopped if it is in progress.
+     * @return Returns true if future is cancelled by this call.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        if (!finish(STATE_CANCELLED, null, new CancellationException("Operation cancelled"))) {
+            return false;
+        }
+        runCancelAction();
+        return true;
+    }
+
+    /**
+     * This method is used to set maximum time for the operation.
+     * If future is not completed in given time, it fails with TimeoutException and its cancel action is called.
+     *
+     * @param timeoutMillis Timeout in milliseconds.
+     * @return Returns this future.
+     */
+    public ESPFuture<T> setTimeout(long timeoutMillis) {
+
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+
+                if (finish(STATE_FAILED, null, new TimeoutException("Operation timed out"))) {
+                    runCancelAction();
+                }
+            }
+        };
+
+        synchronized (lock) {
+
+            if (state != STATE_PENDING) {
+                return this;
+            }
+
+            if (timeoutTask != null) {
+                getTimeoutHandler().removeCallbacks(timeoutTask);
+            }
+            timeoutTask = task;
+        }
+        getTimeoutHandler().postDelayed(task, timeoutMillis);
+        return this;
+    }
+
+    /**
+     * This method is used to add callback to get result of the future.
+     *
+     * @param callback Callback
+     * @return Returns this future.
+     */
+    public ESPFuture<T> addCallback(Callback<? super T> callback) {
+
+        synchronized (lock) {
+
+            if (state == STATE_PENDING) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        notifyCallback(callback);
+        return this;
+    }
+
+    /**
+     * This method is used to add callback which is called on given executor.
+     *
+     * @param callback Callback
+     * @param executor Executor on which callback is called, e.g. executor of main thread Handler.
+     * @return Returns this future.
+     */
+    public ESPFuture<T> addCallback(final Callback<? super T> callback, final Executor executor) {
+
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor is required");
+        }
+
+        return addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(final T result) {
+
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        callback.onSuccess(result);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        callback.onFailure(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * This method is used to start next operation when this one is completed successfully.
+     * Returned future is completed with result of the next operation, or fails if any of the operations fails.
+     * Cancelling returned future cancels the operation which is in progress.
+     *
+     * @param continuation Next operation.
+     * @param <U>          Type of the next result.
+     * @return Returns future of the next operation.
+     */
+    public <U> ESPFuture<U> thenCompose(final Continuation<? super T, U> continuation) {
+
+        final ESPFuture<U> next = new ESPFuture<>();
+        next.currentStep = this;
+        next.cancelAction = new Runnable() {
+
+            @Override
+            public void run() {
+
+                ESPFuture<?> step = next.currentStep;
+                if (step != null) {
+                    step.cancel(true);
+                }
+            }
+        };
+
+        addCallback(new Callback<T>() {
+
+            @Override
+            public void onSuccess(T result) {
+
+                ESPFuture<U> step;
+                try {
+                    step = continuation.then(result);
+                } catch (Exception e) {
+                    next.fail(e);
+                    return;
+                }
+
+                if (step == null) {
+                    next.fail(new NullPointerException("Continuation returned null future"));
+                    return;
+                }
+                next.currentStep = step;
+
+                if (next.isDone()) {
+                    // Cancelled while next step was being started.
+                    step.cancel(true);
+                    return;
+                }
+
+                step.addCallback(new Callback<U>() {
+
+                    @Override
+                    public void onSuccess(U result) {
+                        next.complete(result);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        next.fail(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                next.fail(e);
+            }
+        });
+        return next;
+    }
+
+    @Override
+    public boolean isCancelled() {
+
+        synchronized (lock) {
+            return state == STATE_CANCELLED;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+
+        synchronized (lock) {
+            return state != STATE_PENDING;
+        }
+    }
+
+    /**
+     * @return Returns exception of failed or cancelled future, null otherwise.
+     */
+    public Exception getException() {
+
+        synchronized (lock) {
+            return exception;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException If future is not completed and it is called from event loop thread.
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+
+        synchronized (lock) {
+
+            checkNotInEventLoop();
+
+            while (state == STATE_PENDING) {
+                lock.wait();
+            }
+            return getResult();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException If future is not completed and it is called from event loop thread.
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (lock) {
+
+            checkNotInEventLoop();
+
+            while (state == STATE_PENDING) {
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("Operation is not completed in given time");
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            return getResult();
+        }
+    }
+
+    /**
+     * Must be called while holding lock.
+     */
+    private void checkNotInEventLoop() {
+
+        // Blocking event loop thread can stop the loop which would complete this future.
+        if (state == STATE_PENDING && DeviceEventLoop.inAnyEventLoop()) {
+            throw new IllegalStateException("Blocking get must not be called from device event loop");
+        }
+    }
+
+    /**
+     * Must be called while holding lock.
+     */
+    private T getResult() throws ExecutionException {
+
+        switch (state) {
+            case STATE_SUCCESS:
+                return result;
+            case STATE_CANCELLED:
+                throw (CancellationException) exception;
+            default:
+                throw new ExecutionException(exception);
+        }
+    }
+
+    private boolean finish(int newState, T result, Exception e) {
+
+        ArrayList<Callback<? super T>> toNotify;
+
+        synchronized (lock) {
+
+            if (state != STATE_PENDING) {
+                return false;
+            }
+            state = newState;
+            this.result = result;
+            exception = e;
+
+            if (timeoutTask != null) {
+                getTimeoutHandler().removeCallbacks(timeoutTask);
+                timeoutTask = null;
+            }
+            toNotify = new ArrayList<>(callbacks);
+            callbacks.clear();
+            lock.notifyAll();
+        }
+
+        for (Callback<? super T> callback : toNotify) {
+            notifyCallback(callback);
+        }
+        return true;
+    }
+
+    private void notifyCallback(Callback<? super T> callback) {
+
+        // State is not changed after completion, so it can be read without lock here.
+        if (state == STATE_SUCCESS) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(exception);
+        }
+    }
+
+    private void runCancelAction() {
+
+        Runnable action = cancelAction;
+        cancelAction = null;
+
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    private static synchronized Handler getTimeoutHandler() {
+
+        if (timeoutHandler == null) {
+            timeoutHandler = new Handler(Looper.getMainLooper());
+        }
+        return timeoutHandler;
+    }
+}
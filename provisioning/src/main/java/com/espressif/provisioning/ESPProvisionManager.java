@@ -21,9 +21,12 @@ import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanResult;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.SparseArray;
@@ -33,24 +36,43 @@ import androidx.annotation.RequiresPermission;
 
 import com.budiyev.android.codescanner.CodeScanner;
 import com.budiyev.android.codescanner.DecodeCallback;
+import com.espressif.provisioning.device_scanner.BleDiscoveryRegistry;
 import com.espressif.provisioning.device_scanner.BleScanner;
+import com.espressif.provisioning.device_scanner.DiscoveredBleDevice;
+import com.espressif.provisioning.device_scanner.NearestDeviceSelector;
 import com.espressif.provisioning.device_scanner.WiFiScanner;
 import com.espressif.provisioning.listeners.BleScanListener;
+import com.espressif.provisioning.listeners.NearestDeviceListener;
+import com.espressif.provisioning.listeners.QRCodeBatchScanListener;
 import com.espressif.provisioning.listeners.QRCodeScanListener;
 import com.espressif.provisioning.listeners.WiFiScanListener;
-import com.google.android.gms.vision.CameraSource;
+import com.espressif.provisioning.qrcode.QRCodeDecoder;
+import com.espressif.provisioning.qrcode.QRCodeDecoderBenchmark;
+import com.espressif.provisioning.qrcode.QRCodeDecoderDetector;
+import com.espressif.provisioning.qrcode.QRCodePayload;
+import com.espressif.provisioning.qrcode.QRCodePayloadParser;
+import com.espressif.provisioning.qrcode.VisionQRCodeDecoder;
+import com.espressif.provisioning.qrcode.ZXingQRCodeDecoder;
 import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
 import com.google.android.gms.vision.barcode.Barcode;
 import com.google.android.gms.vision.barcode.BarcodeDetector;
-import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
-
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * App can use this class to provision device. It has APIs to scan devices, scan QR code and connect with the device to get
@@ -60,14 +82,47 @@ public class ESPProvisionManager {
 
     private static final String TAG = "ESP:" + ESPProvisionManager.class.getSimpleName();
 
+    private static final long WIFI_SEARCH_MAX_CACHE_AGE = 5000;
+    private static final int QR_PREVIEW_WIDTH = 1600;
+    private static final int QR_PREVIEW_HEIGHT = 1024;
+    private static final int WARM_UP_IMAGE_SIZE = 64;
+    private static final int QR_BENCHMARK_ROUNDS = 3;
+    private static final long BATCH_BLE_SCAN_TIME_OUT = 10000;
+
     private static ESPProvisionManager provision;
 
     private ESPDevice espDevice;
     private BleScanner bleScanner;
+    private BleDiscoveryRegistry bleDiscoveryRegistry;
+    private NearestDeviceSelector nearestDeviceSelector;
+    private ProvisionedDeviceJournal provisionedDeviceJournal;
+    private DeviceInfoCache deviceInfoCache;
     private WiFiScanner wifiScanner;
+    private QRCodeDecoder qrCodeDecoder;
     private Context context;
     private Handler handler;
     private boolean isScanned = false;
+    private boolean isDeviceInfoCacheEnabled = false;
+    private boolean isCamera2Enabled = false;
+    private boolean isAdaptiveFrameRateEnabled = true;
+    private volatile FrameRateController frameRateController;
+    // Parsers are reused for all frames, so that parsing does not allocate.
+    private final QRCodePayloadParser payloadParser = new QRCodePayloadParser();
+
+    // Batch QR code scanning
+    private CameraSourcePreview batchScanPreview;
+    private final LinkedBlockingQueue<ESPDevice> scannedDeviceQueue = new LinkedBlockingQueue<>();
+    // Guarded by itself. Raw QR code data already handled and names of queued devices.
+    private final HashSet<String> batchScannedCodes = new HashSet<>();
+    private final HashSet<String> batchQueuedNames = new HashSet<>();
+    private final QRCodePayloadParser batchPayloadParser = new QRCodePayloadParser();
+    private final BatchBleDeviceResolver batchBleDeviceResolver = new BatchBleDeviceResolver();
+
+    // QR code scanner warm up
+    private final AtomicBoolean isWarmingUp = new AtomicBoolean(false);
+    private final Object warmUpLock = new Object();
+    // Guarded by warmUpLock
+    private BarcodeDetector warmBarcodeDetector;
 
     /**
      * This method is used to get singleton instance of
@@ -85,7 +140,7 @@ public class ESPProvisionManager {
 
     private ESPProvisionManager(Context context) {
         this.context = context;
-        handler = new Handler();
+        handler = new Handler(Looper.getMainLooper());
     }
 
     /**
@@ -98,6 +153,7 @@ public class ESPProvisionManager {
     public ESPDevice createESPDevice(ESPConstants.TransportType transportType, ESPConstants.SecurityType securityType) {
 
         espDevice = new ESPDevice(context, transportType, securityType);
+        applyDeviceInfoCache(espDevice);
         return espDevice;
     }
 
@@ -110,6 +166,83 @@ public class ESPProvisionManager {
         return espDevice;
     }
 
+    /**
+     * This method is used to scan QR code with Camera2 API instead of deprecated Camera API,
+     * when scanning is started with CameraSourcePreview. Disabled by default.
+     *
+     * @param enable True to use Camera2 API.
+     */
+    public void setCamera2Enabled(boolean enable) {
+        isCamera2Enabled = enable;
+    }
+
+    /**
+     * This method is used to lower camera frame rate and skip frames while QR code is not seen in the camera,
+     * when scanning is started with CameraSourcePreview. Enabled by default.
+     *
+     * @param enable False to process all frames at full frame rate.
+     */
+    public void setAdaptiveFrameRateEnabled(boolean enable) {
+        isAdaptiveFrameRateEnabled = enable;
+    }
+
+    /**
+     * This method is used to get frame rate controller of the current or last QR code scan, e.g. to check
+     * decode time and drop rate statistics.
+     *
+     * @return Returns FrameRateController or null if adaptive frame rate is not used.
+     */
+    public FrameRateController getFrameRateController() {
+        return frameRateController;
+    }
+
+    /**
+     * This method is used to set QR code decoder used when scanning is started with CameraSourcePreview.
+     * Play services Vision barcode detector is used by default and for VisionQRCodeDecoder.
+     *
+     * @param decoder QR code decoder, null to use default decoder. It is not released by this class.
+     */
+    public void setQRCodeDecoder(QRCodeDecoder decoder) {
+        qrCodeDecoder = decoder;
+    }
+
+    public QRCodeDecoder getQRCodeDecoder() {
+        return qrCodeDecoder;
+    }
+
+    /**
+     * This method is used to benchmark available QR code decoders with given frames (e.g. frames recorded from camera of
+     * this device) and set fastest decoder which decodes most frames. Other decoders are released.
+     * Frames of this device can be recorded by setting {@link QRCodeDecoderBenchmark.SampleRecorder} as QR code decoder
+     * for a normal scan.
+     * It takes time, so it should be called from background thread.
+     *
+     * @param samples Frames having QR code.
+     * @return Returns benchmark result.
+     */
+    public QRCodeDecoderBenchmark.Result selectQRCodeDecoder(List<QRCodeDecoderBenchmark.Sample> samples) {
+
+        ArrayList<QRCodeDecoder> decoders = new ArrayList<>();
+        decoders.add(new VisionQRCodeDecoder(context.getApplicationContext()));
+        decoders.add(new ZXingQRCodeDecoder());
+
+        QRCodeDecoderBenchmark.Result result = QRCodeDecoderBenchmark.run(decoders, samples, QR_BENCHMARK_ROUNDS);
+        QRCodeDecoder fastest = result.getFastestDecoder();
+        Log.d(TAG, "QR code decoder benchmark :\n" + result);
+
+        // Vision decoder is the default, so its instance is not kept. Scanning uses warm barcode detector with it.
+        for (QRCodeDecoder decoder : decoders) {
+            if (decoder != fastest || decoder instanceof VisionQRCodeDecoder) {
+                decoder.release();
+            }
+        }
+
+        if (fastest != null) {
+            setQRCodeDecoder(fastest instanceof VisionQRCodeDecoder ? null : fastest);
+        }
+        return result;
+    }
+
     /**
      * This method scans QR code from, get the device information and checks whether this device is available or not.
      * If device is available in scanning (BLE / Wi-Fi), then it will return ESPDevice.
@@ -122,218 +255,680 @@ public class ESPProvisionManager {
     public void scanQRCode(final Activity activityContext, final CameraSourcePreview cameraSourcePreview, final QRCodeScanListener qrCodeScanListener) {
 
         isScanned = false;
-        BarcodeDetector barcodeDetector = new BarcodeDetector.Builder(activityContext)
-                .setBarcodeFormats(Barcode.QR_CODE)
-                .build();
 
-        CameraSource cameraSource = new CameraSource.Builder(activityContext, barcodeDetector)
-                .setFacing(CameraSource.CAMERA_FACING_BACK)
-                .setRequestedPreviewSize(1600, 1024)
-                .setAutoFocusEnabled(true)
-                .build();
+        // Detector works on small region in the centre of the frame, which is widened if QR code is not found.
+        final FrameRegionReducer frameReducer = new FrameRegionReducer();
+        final FrameRateController rateController = createFrameRateController();
+        final Runnable releaseCamera = new Runnable() {
 
-        if (cameraSource != null) {
-            try {
-                cameraSourcePreview.start(cameraSource);
-            } catch (IOException e) {
-                Log.e(TAG, "Unable to start camera source.", e);
-                cameraSource.release();
-                cameraSource = null;
+            @Override
+            public void run() {
+                cameraSourcePreview.release();
             }
+        };
+        Detector<?> detector;
+
+        if (qrCodeDecoder == null || qrCodeDecoder instanceof VisionQRCodeDecoder) {
+
+            BarcodeDetector barcodeDetector = obtainBarcodeDetector(activityContext);
+            barcodeDetector.setProcessor(new Detector.Processor<Barcode>() {
+
+                @Override
+                public void release() {
+                }
+
+                @Override
+                @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+                public void receiveDetections(Detector.Detections<Barcode> detections) {
+
+                    SparseArray<Barcode> barcodes = detections.getDetectedItems();
+                    frameReducer.onDetections(barcodes.size());
+
+                    if (rateController != null) {
+                        rateController.onDetections(barcodes.size());
+                    }
+
+                    if (barcodes.size() != 0 && !isScanned) {
+                        Log.d(TAG, "Barcodes size : " + barcodes.size());
+                        processQRCodeData(barcodes.valueAt(0).rawValue, releaseCamera, qrCodeScanListener);
+                    }
+                }
+            });
+            detector = barcodeDetector;
+
+        } else {
+
+            Log.d(TAG, "Scan QR code with decoder : " + qrCodeDecoder.getName());
+            QRCodeDecoderDetector decoderDetector = new QRCodeDecoderDetector(qrCodeDecoder);
+            decoderDetector.setProcessor(new Detector.Processor<String>() {
+
+                @Override
+                public void release() {
+                }
+
+                @Override
+                @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+                public void receiveDetections(Detector.Detections<String> detections) {
+
+                    SparseArray<String> codes = detections.getDetectedItems();
+                    frameReducer.onDetections(codes.size());
+
+                    if (rateController != null) {
+                        rateController.onDetections(codes.size());
+                    }
+
+                    if (codes.size() != 0 && !isScanned) {
+                        processQRCodeData(codes.valueAt(0), releaseCamera, qrCodeScanListener);
+                    }
+                }
+            });
+            detector = decoderDetector;
+        }
+
+        CameraFrameSource cameraSource = buildCameraSource(activityContext, detector, frameReducer, rateController);
+
+        try {
+            cameraSourcePreview.start(cameraSource);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to start camera source.", e);
+            cameraSource.release();
         }
+    }
+
+    /**
+     * This method scans QR code from, get the device information and checks whether this device is available or not.
+     * If device is available in scanning (BLE / Wi-Fi), then it will return ESPDevice.
+     *
+     * @param codeScanner        CodeScanner in which CameraSource needs to be display to scan QR code.
+     * @param qrCodeScanListener QRCodeScanListener
+     */
+    @RequiresPermission(allOf = {Manifest.permission.CAMERA, Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    public void scanQRCode(final CodeScanner codeScanner, final QRCodeScanListener qrCodeScanListener) {
 
-        barcodeDetector.setProcessor(new Detector.Processor<Barcode>() {
+        isScanned = false;
+        final Runnable releaseCamera = new Runnable() {
 
             @Override
-            public void release() {
+            public void run() {
+                codeScanner.releaseResources();
             }
+        };
+
+        codeScanner.setDecodeCallback(new DecodeCallback() {
 
             @Override
             @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
-            public void receiveDetections(Detector.Detections<Barcode> detections) {
-
-                final SparseArray<Barcode> barcodes = detections.getDetectedItems();
+            public void onDecoded(@NonNull final Result result) {
+                processQRCodeData(result.getText(), releaseCamera, qrCodeScanListener);
+            }
+        });
+    }
 
-                if (barcodes.size() != 0 && !isScanned) {
+    /**
+     * Handles QR code data decoded by any decoder. Creates ESPDevice from the data and checks whether device is available.
+     *
+     * @param scannedData        Text of QR code.
+     * @param releaseCamera      Task to release camera, it is run on main thread once valid data is received.
+     * @param qrCodeScanListener QRCodeScanListener to give callbacks to app.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    private void processQRCodeData(String scannedData, Runnable releaseCamera, QRCodeScanListener qrCodeScanListener) {
 
-                    Log.d(TAG, "Barcodes size : " + barcodes.size());
-                    Barcode barcode = barcodes.valueAt(0);
-                    Log.d(TAG, "QR Code Data : " + barcode.rawValue);
-                    String scannedData = barcode.rawValue;
+        if (isScanned) {
+            return;
+        }
 
-                    try {
-                        JSONObject jsonObject = new JSONObject(scannedData);
+        // Codes of other products are rejected before parsing.
+        if (!QRCodePayloadParser.isCandidate(scannedData)) {
+            qrCodeScanListener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+            return;
+        }
+        Log.d(TAG, "QR Code Data : " + scannedData);
+        QRCodePayload payload;
 
-                        String deviceName = jsonObject.optString("name");
-                        String pop = jsonObject.optString("pop");
-                        String transport = jsonObject.optString("transport");
-                        int security = jsonObject.optInt("security", ESPConstants.SecurityType.SECURITY_2.ordinal());
-                        String userName = jsonObject.optString("username");
-                        String password = jsonObject.optString("password");
-                        isScanned = true;
+        synchronized (payloadParser) {
+            payload = payloadParser.parse(scannedData) ? payloadParser.toPayload() : null;
+        }
 
-                        if (qrCodeScanListener != null) {
-                            qrCodeScanListener.qrCodeScanned();
-                        }
+        if (payload == null) {
+            Log.e(TAG, "QR code data is not valid");
+            qrCodeScanListener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+            return;
+        }
 
-                        Handler handler = new Handler(Looper.getMainLooper());
-                        handler.post(new Runnable() {
+        isScanned = true;
 
-                            @Override
-                            public void run() {
-                                cameraSourcePreview.release();
-                            }
-                        });
+        if (qrCodeScanListener != null) {
+            qrCodeScanListener.qrCodeScanned();
+        }
+        new Handler(Looper.getMainLooper()).post(releaseCamera);
+
+        ESPConstants.TransportType transportType = payload.getTransportType();
+
+        if (TextUtils.isEmpty(payload.getTransport())) {
+            Log.e(TAG, "Transport is not available in QR code data");
+            qrCodeScanListener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+            return;
+        } else if (transportType == null) {
+            Log.e(TAG, "" + payload.getTransport() + " Transport type is not supported");
+            qrCodeScanListener.onFailure(new RuntimeException("Transport type is not supported"));
+            return;
+        }
 
-                        ESPConstants.TransportType transportType = null;
-                        ESPConstants.SecurityType securityType = null;
+        String deviceName = payload.getDeviceName();
+        espDevice = new ESPDevice(context, transportType, payload.getSecurityType());
+        applyDeviceInfoCache(espDevice);
+        espDevice.setDeviceName(deviceName);
+        espDevice.setProofOfPossession(payload.getProofOfPossession());
+        espDevice.setUserName(payload.getUserName());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && transportType.equals(ESPConstants.TransportType.TRANSPORT_SOFTAP)) {
+
+            WiFiAccessPoint wiFiDevice = new WiFiAccessPoint();
+            wiFiDevice.setWifiName(deviceName);
+            wiFiDevice.setPassword(payload.getPassword());
+            espDevice.setWifiDevice(wiFiDevice);
+            qrCodeScanListener.deviceDetected(espDevice);
+        } else {
+            isDeviceAvailable(espDevice, payload.getPassword(), qrCodeScanListener);
+        }
+    }
 
-                        if (!TextUtils.isEmpty(transport)) {
+    /**
+     * This method is used to prepare QR code scanning in background, e.g. at app start, so that camera
+     * shows decoding preview quickly when scanning is started. It is optional.
+     * It loads barcode detector with its native model and keeps it for next scan and loads ZXing QR code reader
+     * used with CodeScanner. Camera is not opened. If Camera2 is enabled, camera and preview size are also selected
+     * from camera characteristics. Legacy camera source selects its parameters when it is started,
+     * as it can read them only from opened camera.
+     * Warm barcode detector is used by one scan, this method can be called again after that.
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public void warmUpQRCodeScanner() {
 
-                            if (transport.equalsIgnoreCase("softap")) {
+        if (!isWarmingUp.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
 
-                                transportType = ESPConstants.TransportType.TRANSPORT_SOFTAP;
+        new Thread(new Runnable() {
 
-                            } else if (transport.equalsIgnoreCase("ble")) {
+            @Override
+            @RequiresPermission(Manifest.permission.CAMERA)
+            public void run() {
 
-                                transportType = ESPConstants.TransportType.TRANSPORT_BLE;
+                long startTime = SystemClock.elapsedRealtime();
 
-                            } else {
-                                qrCodeScanListener.onFailure(new RuntimeException("Transport type not supported"));
-                            }
+                try {
+                    BarcodeDetector detector = createBarcodeDetector(appContext);
 
-                        } else {
-                            qrCodeScanListener.onFailure(new RuntimeException("Transport is not available"));
-                        }
+                    if (isCamera2Enabled) {
+                        buildCameraSource(appContext, detector, null, null).prepare();
+                    }
 
-                        securityType = setSecurityType(security);
+                    if (detector.isOperational()) {
 
-                        espDevice = new ESPDevice(context, transportType, securityType);
-                        espDevice.setDeviceName(deviceName);
-                        espDevice.setProofOfPossession(pop);
-                        espDevice.setUserName(userName);
+                        // First detection loads the native model.
+                        int size = WARM_UP_IMAGE_SIZE;
+                        detector.detect(new Frame.Builder()
+                                .setImageData(ByteBuffer.wrap(new byte[size * size * 3 / 2]), size, size, ImageFormat.NV21)
+                                .build());
 
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && transportType.equals(ESPConstants.TransportType.TRANSPORT_SOFTAP)) {
+                        BarcodeDetector oldDetector;
 
-                            WiFiAccessPoint wiFiDevice = new WiFiAccessPoint();
-                            wiFiDevice.setWifiName(deviceName);
-                            wiFiDevice.setPassword(password);
-                            espDevice.setWifiDevice(wiFiDevice);
-                            qrCodeScanListener.deviceDetected(espDevice);
-                        } else {
-                            isDeviceAvailable(espDevice, password, qrCodeScanListener);
+                        synchronized (warmUpLock) {
+                            oldDetector = warmBarcodeDetector;
+                            warmBarcodeDetector = detector;
                         }
 
-                    } catch (JSONException e) {
-
-                        e.printStackTrace();
-                        qrCodeScanListener.onFailure(new RuntimeException("QR code not valid"));
+                        if (oldDetector != null) {
+                            oldDetector.release();
+                        }
+                    } else {
+                        // Detector dependencies are still being downloaded by Play services.
+                        Log.w(TAG, "Barcode detector is not operational yet");
+                        detector.release();
                     }
+                    warmUpZXing();
+                    Log.d(TAG, "QR code scanner warm up done in " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "QR code scanner warm up failed", e);
+                } finally {
+                    isWarmingUp.set(false);
                 }
             }
-        });
+        }).start();
     }
 
     /**
-     * This method scans QR code from, get the device information and checks whether this device is available or not.
-     * If device is available in scanning (BLE / Wi-Fi), then it will return ESPDevice.
+     * This method is used to scan QR codes of many devices without stopping the camera.
+     * QR codes are decoded with decoder set by setQRCodeDecoder. Default Vision barcode detector decodes all
+     * QR codes in each frame, other decoders decode one QR code per frame.
+     * Each device is added once in the scanned device queue. Devices recorded in ProvisionedDeviceJournal are skipped.
+     * BLE devices are added in the queue with their BluetoothDevice, so that they can be connected directly.
+     * It is taken from BLE discovery if it is running and has seen the device, otherwise from a BLE scan.
+     * Camera keeps running till stopBatchQRCodeScan is called.
      *
-     * @param codeScanner        CodeScanner in which CameraSource needs to be display to scan QR code.
-     * @param qrCodeScanListener QRCodeScanListener
+     * @param activityContext     Activity Context.
+     * @param cameraSourcePreview CameraSourcePreview in which camera preview needs to be displayed.
+     * @param listener            QRCodeBatchScanListener
      */
     @RequiresPermission(allOf = {Manifest.permission.CAMERA, Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
-    public void scanQRCode(final CodeScanner codeScanner, final QRCodeScanListener qrCodeScanListener) {
+    public void startBatchQRCodeScan(final Activity activityContext, final CameraSourcePreview cameraSourcePreview, final QRCodeBatchScanListener listener) {
 
-        isScanned = false;
-        List<BarcodeFormat> formats = new ArrayList<>();
-        formats.add(BarcodeFormat.QR_CODE);
+        stopBatchQRCodeScan();
+
+        synchronized (batchScannedCodes) {
+            batchScannedCodes.clear();
+            batchQueuedNames.clear();
+
+            // Devices still waiting in the queue are not added again.
+            for (ESPDevice device : scannedDeviceQueue) {
+                batchQueuedNames.add(device.getDeviceName());
+            }
+        }
+
+        final FrameRateController rateController = createFrameRateController();
+        Detector<?> detector;
+
+        if (qrCodeDecoder == null || qrCodeDecoder instanceof VisionQRCodeDecoder) {
+
+            BarcodeDetector barcodeDetector = obtainBarcodeDetector(activityContext);
+            barcodeDetector.setProcessor(new Detector.Processor<Barcode>() {
+
+                @Override
+                public void release() {
+                }
+
+                @Override
+                @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+                public void receiveDetections(Detector.Detections<Barcode> detections) {
+
+                    SparseArray<Barcode> barcodes = detections.getDetectedItems();
+
+                    if (rateController != null) {
+                        rateController.onDetections(barcodes.size());
+                    }
+
+                    for (int i = 0; i < barcodes.size(); i++) {
+                        queueScannedDevice(barcodes.valueAt(i).rawValue, listener);
+                    }
+                }
+            });
+            detector = barcodeDetector;
+
+        } else {
+
+            Log.d(TAG, "Batch scan QR codes with decoder : " + qrCodeDecoder.getName());
+            QRCodeDecoderDetector decoderDetector = new QRCodeDecoderDetector(qrCodeDecoder);
+            decoderDetector.setProcessor(new Detector.Processor<String>() {
+
+                @Override
+                public void release() {
+                }
+
+                @Override
+                @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+                public void receiveDetections(Detector.Detections<String> detections) {
+
+                    SparseArray<String> codes = detections.getDetectedItems();
+
+                    if (rateController != null) {
+                        rateController.onDetections(codes.size());
+                    }
+
+                    for (int i = 0; i < codes.size(); i++) {
+                        queueScannedDevice(codes.valueAt(i), listener);
+                    }
+                }
+            });
+            detector = decoderDetector;
+        }
+
+        // Full frames are given to the detector, as codes can be anywhere in the frame.
+        CameraFrameSource cameraSource = buildCameraSource(activityContext, detector, null, rateController);
+
+        try {
+            cameraSourcePreview.start(cameraSource);
+            batchScanPreview = cameraSourcePreview;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to start camera source.", e);
+            cameraSource.release();
+        }
+    }
+
+    /**
+     * This method is used to stop batch QR code scanning and release the camera.
+     * Devices already in the queue are kept and BLE devices which are being searched are added when they are found.
+     */
+    public void stopBatchQRCodeScan() {
+
+        final CameraSourcePreview preview = batchScanPreview;
+        batchScanPreview = null;
+
+        if (preview != null) {
+
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+
+                @Override
+                public void run() {
+                    preview.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * This method is used to get queue of devices scanned in batch mode.
+     * Provisioning flow can take devices from this queue one by one, e.g. with BlockingQueue.take().
+     *
+     * @return Returns queue of scanned devices.
+     */
+    public BlockingQueue<ESPDevice> getScannedDeviceQueue() {
+        return scannedDeviceQueue;
+    }
+
+    private BarcodeDetector createBarcodeDetector(Context context) {
+        return new BarcodeDetector.Builder(context)
+                .setBarcodeFormats(Barcode.QR_CODE)
+                .build();
+    }
+
+    /**
+     * Returns warm barcode detector if available, otherwise creates new one.
+     */
+    private BarcodeDetector obtainBarcodeDetector(Context context) {
+
+        synchronized (warmUpLock) {
+
+            if (warmBarcodeDetector != null) {
+                BarcodeDetector detector = warmBarcodeDetector;
+                warmBarcodeDetector = null;
+                return detector;
+            }
+        }
+        return createBarcodeDetector(context);
+    }
+
+    /**
+     * Returns new frame rate controller for QR code scan if adaptive frame rate is enabled, otherwise null.
+     */
+    private FrameRateController createFrameRateController() {
+
+        FrameRateController controller = isAdaptiveFrameRateEnabled ? new FrameRateController() : null;
+        frameRateController = controller;
+        return controller;
+    }
+
+    private CameraFrameSource buildCameraSource(Context context, Detector<?> detector, FrameRegionReducer frameReducer,
+                                                FrameRateController rateController) {
+
+        if (isCamera2Enabled) {
+            return new Camera2Source.Builder(context, detector)
+                    .setFacing(CameraSource.CAMERA_FACING_BACK)
+                    .setRequestedPreviewSize(QR_PREVIEW_WIDTH, QR_PREVIEW_HEIGHT)
+                    .setFrameRegionReducer(frameReducer)
+                    .setFrameRateController(rateController)
+                    .build();
+        }
+        return new CameraSource.Builder(context, detector)
+                .setFacing(CameraSource.CAMERA_FACING_BACK)
+                .setRequestedPreviewSize(QR_PREVIEW_WIDTH, QR_PREVIEW_HEIGHT)
+                .setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)
+                .setFrameRegionReducer(frameReducer)
+                .setFrameRateController(rateController)
+                .build();
+    }
+
+    /**
+     * Decodes blank image, so that ZXing classes used by CodeScanner are loaded before scanning.
+     */
+    private static void warmUpZXing() {
+
+        int size = WARM_UP_IMAGE_SIZE;
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(new byte[size * size], size, size, 0, 0, size, size, false);
+
+        try {
+            new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (Exception e) {
+            // Expected, image does not have QR code.
+        }
+    }
+
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    private void queueScannedDevice(String scannedData, QRCodeBatchScanListener listener) {
+
+        if (TextUtils.isEmpty(scannedData)) {
+            return;
+        }
+
+        synchronized (batchScannedCodes) {
+            // Same code is seen in many frames, parse it only once.
+            if (!batchScannedCodes.add(scannedData)) {
+                return;
+            }
+        }
+        Log.d(TAG, "QR Code Data : " + scannedData);
+
+        QRCodePayload payload;
+
+        synchronized (batchPayloadParser) {
+            payload = batchPayloadParser.parse(scannedData) ? batchPayloadParser.toPayload() : null;
+        }
+
+        if (payload == null) {
+            listener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+            return;
+        }
+
+        String deviceName = payload.getDeviceName();
+        ESPConstants.TransportType transportType = payload.getTransportType();
+
+        if (TextUtils.isEmpty(deviceName)) {
+            listener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+            return;
+        } else if (transportType == null) {
+            listener.onFailure(new RuntimeException("Transport type is not supported"), scannedData);
+            return;
+        }
+
+        synchronized (batchScannedCodes) {
+            if (!batchQueuedNames.add(deviceName)) {
+                return;
+            }
+        }
+
+        if (getProvisionedDeviceJournal().contains(deviceName)) {
+            Log.d(TAG, "Device " + deviceName + " is already provisioned, skipping");
+            return;
+        }
+
+        ESPDevice device = new ESPDevice(context, transportType, payload.getSecurityType());
+        applyDeviceInfoCache(device);
+        device.setDeviceName(deviceName);
+        device.setProofOfPossession(payload.getProofOfPossession());
+        device.setUserName(payload.getUserName());
+
+        if (transportType == ESPConstants.TransportType.TRANSPORT_SOFTAP) {
+
+            WiFiAccessPoint wiFiDevice = new WiFiAccessPoint();
+            wiFiDevice.setWifiName(deviceName);
+            wiFiDevice.setPassword(payload.getPassword());
+            device.setWifiDevice(wiFiDevice);
+
+        } else {
+
+            DiscoveredBleDevice discoveredDevice = bleDiscoveryRegistry == null ? null : bleDiscoveryRegistry.getDevice(deviceName);
+
+            if (discoveredDevice == null) {
+                // Device can not be connected without BluetoothDevice, so it is queued once it is found in BLE scan.
+                batchBleDeviceResolver.add(device, scannedData, listener);
+                return;
+            }
+            device.setBluetoothDevice(discoveredDevice.getBluetoothDevice());
+            device.setPrimaryServiceUuid(discoveredDevice.getServiceUuid());
+        }
+
+        scannedDeviceQueue.add(device);
+        listener.onDeviceQueued(device, scannedDeviceQueue.size());
+    }
+
+    /**
+     * Finds BluetoothDevice of BLE devices scanned in batch mode, before they are added in the queue.
+     * Single scan is used for all pending devices and it always runs for full time out, so scan is started
+     * at most once in 10 seconds, which is well within the Android limit of 5 scan starts in 30 seconds.
+     * Device which is not found in a full scan is reported with QRCodeBatchScanListener.onFailure.
+     */
+    private class BatchBleDeviceResolver implements BleScanListener {
+
+        // Guarded by this. Key is device name.
+        private final HashMap<String, PendingBleDevice> pendingDevices = new HashMap<>();
+        private boolean isScanning;
+        private Exception scanError;
+
+        private class PendingBleDevice {
+
+            final ESPDevice device;
+            final String scannedData;
+            final QRCodeBatchScanListener listener;
+            // True if device is pending since start of the current scan.
+            boolean isInScan;
+
+            PendingBleDevice(ESPDevice device, String scannedData, QRCodeBatchScanListener listener) {
+                this.device = device;
+                this.scannedData = scannedData;
+                this.listener = listener;
+            }
+        }
+
+        private final Runnable startScanTask = new Runnable() {
 
-        codeScanner.setDecodeCallback(new DecodeCallback() {
             @Override
-            public void onDecoded(@NonNull final Result result) {
+            @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+            public void run() {
+                startScan();
+            }
+        };
 
-                String scannedData = result.getText();
+        synchronized void add(ESPDevice device, String scannedData, QRCodeBatchScanListener listener) {
 
-                if (!TextUtils.isEmpty(scannedData) && !isScanned) {
+            Log.d(TAG, "Search for BLE device : " + device.getDeviceName());
+            pendingDevices.put(device.getDeviceName(), new PendingBleDevice(device, scannedData, listener));
 
-                    Log.d(TAG, "QR Code Data : " + scannedData);
+            if (!isScanning) {
+                isScanning = true;
+                // BleScanner needs looper thread.
+                handler.post(startScanTask);
+            }
+        }
 
-                    try {
-                        JSONObject jsonObject = new JSONObject(scannedData);
+        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+        private void startScan() {
 
-                        String deviceName = jsonObject.optString("name");
-                        String pop = jsonObject.optString("pop");
-                        String transport = jsonObject.optString("transport");
-                        int security = jsonObject.optInt("security", ESPConstants.SecurityType.SECURITY_2.ordinal());
-                        String userName = jsonObject.optString("username");
-                        String password = jsonObject.optString("password");
-                        isScanned = true;
+            synchronized (this) {
+                scanError = null;
 
-                        if (qrCodeScanListener != null) {
-                            qrCodeScanListener.qrCodeScanned();
-                        }
+                for (PendingBleDevice pendingDevice : pendingDevices.values()) {
+                    pendingDevice.isInScan = true;
+                }
+            }
 
-                        Handler handler = new Handler(Looper.getMainLooper());
-                        handler.post(new Runnable() {
+            ScanSettings settings = new ScanSettings.Builder()
+                    .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                    .build();
+            BleScanner scanner = new BleScanner(context, this);
+            scanner.setScanTimeout(BATCH_BLE_SCAN_TIME_OUT);
+            scanner.startScan(settings);
+        }
 
-                            @Override
-                            public void run() {
-                                codeScanner.releaseResources();
-                            }
-                        });
+        @Override
+        public void scanStartFailed() {
+            finishScan(new RuntimeException("Please turn on bluetooth and try again."));
+        }
+
+        @Override
+        @RequiresPermission(Manifest.permission.BLUETOOTH)
+        public void onPeripheralFound(BluetoothDevice btDevice, ScanResult scanResult) {
+
+            if (btDevice == null || scanResult.getScanRecord() == null) {
+                return;
+            }
+            PendingBleDevice pendingDevice;
 
-                        ESPConstants.TransportType transportType = null;
-                        ESPConstants.SecurityType securityType = null;
+            synchronized (this) {
+                pendingDevice = pendingDevices.remove(scanResult.getScanRecord().getDeviceName());
+            }
 
-                        if (!TextUtils.isEmpty(transport)) {
+            if (pendingDevice == null) {
+                return;
+            }
+            String serviceUuid = "";
 
-                            if (transport.equalsIgnoreCase("softap")) {
+            if (scanResult.getScanRecord().getServiceUuids() != null && scanResult.getScanRecord().getServiceUuids().size() > 0) {
+                serviceUuid = scanResult.getScanRecord().getServiceUuids().get(0).toString();
+            }
 
-                                transportType = ESPConstants.TransportType.TRANSPORT_SOFTAP;
+            ESPDevice device = pendingDevice.device;
+            device.setBluetoothDevice(btDevice);
+            device.setPrimaryServiceUuid(serviceUuid);
+            scannedDeviceQueue.add(device);
+            pendingDevice.listener.onDeviceQueued(device, scannedDeviceQueue.size());
+        }
 
-                            } else if (transport.equalsIgnoreCase("ble")) {
+        @Override
+        public void scanCompleted() {
 
-                                transportType = ESPConstants.TransportType.TRANSPORT_BLE;
+            Exception e;
 
-                            } else {
-                                Log.e(TAG, "" + transport + " Transport type is not supported");
-                                qrCodeScanListener.onFailure(new RuntimeException("Transport type is not supported"));
-                                return;
-                            }
-                        } else {
-                            Log.e(TAG, "Transport is not available in QR code data");
-                            qrCodeScanListener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
-                            return;
-                        }
+            synchronized (this) {
+                e = scanError;
+            }
+            finishScan(e != null ? e : new RuntimeException("Device is not found in BLE scan"));
+        }
 
-                        securityType = setSecurityType(security);
+        @Override
+        public void onFailure(Exception e) {
 
-                        espDevice = new ESPDevice(context, transportType, securityType);
-                        espDevice.setDeviceName(deviceName);
-                        espDevice.setProofOfPossession(pop);
-                        espDevice.setUserName(userName);
+            // Scan completed callback is given after time out.
+            synchronized (this) {
+                scanError = e;
+            }
+        }
 
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && transportType.equals(ESPConstants.TransportType.TRANSPORT_SOFTAP)) {
+        /**
+         * Fails devices which were pending for the full scan and starts new scan for devices added during the scan.
+         */
+        private void finishScan(Exception e) {
 
-                            WiFiAccessPoint wiFiDevice = new WiFiAccessPoint();
-                            wiFiDevice.setWifiName(deviceName);
-                            wiFiDevice.setPassword(password);
-                            espDevice.setWifiDevice(wiFiDevice);
-                            qrCodeScanListener.deviceDetected(espDevice);
-                        } else {
-                            isDeviceAvailable(espDevice, password, qrCodeScanListener);
-                        }
+            ArrayList<PendingBleDevice> failedDevices = new ArrayList<>();
 
-                    } catch (JSONException e) {
+            synchronized (this) {
 
-                        e.printStackTrace();
-                        qrCodeScanListener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+                Iterator<PendingBleDevice> iterator = pendingDevices.values().iterator();
+
+                while (iterator.hasNext()) {
+
+                    PendingBleDevice pendingDevice = iterator.next();
+
+                    if (pendingDevice.isInScan) {
+                        iterator.remove();
+                        failedDevices.add(pendingDevice);
                     }
-                } else {
-                    qrCodeScanListener.onFailure(new RuntimeException("QR code is not valid"), scannedData);
+                }
+
+                isScanning = !pendingDevices.isEmpty();
+
+                if (isScanning) {
+                    handler.post(startScanTask);
                 }
             }
-        });
+
+            for (PendingBleDevice pendingDevice : failedDevices) {
+                Log.e(TAG, "BLE device " + pendingDevice.device.getDeviceName() + " is not available : " + e.getMessage());
+                pendingDevice.listener.onFailure(e, pendingDevice.scannedData);
+            }
+        }
     }
 
     /**
@@ -406,6 +1001,116 @@ public class ESPProvisionManager {
         bleScanner.startScan();
     }
 
+    /**
+     * This method is used to scan BLE devices with having given prefix in device name and get results in batches.
+     * Each device is reported once in BleScanListener.onPeripheralFound and, if listener implements
+     * BleScanBatchListener, devices seen in last report delay are delivered with smoothed RSSI.
+     *
+     * @param prefix             Prefix to filter devices from device name.
+     * @param reportDelayMs      Delay between two batches in milliseconds.
+     * @param bleScannerListener BleScanListener or BleScanBatchListener for scanning callbacks.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    public void searchBleEspDevices(String prefix, long reportDelayMs, BleScanListener bleScannerListener) {
+
+        Log.d(TAG, "Search for BLE devices, report delay : " + reportDelayMs);
+        bleScanner = new BleScanner(context, prefix, bleScannerListener);
+        bleScanner.setReportDelay(reportDelayMs);
+        bleScanner.startScan();
+    }
+
+    /**
+     * This method is used to select nearest BLE device having given prefix in device name, which is not provisioned yet.
+     * Devices recorded in ProvisionedDeviceJournal are skipped.
+     *
+     * @param prefix                Prefix to filter devices from device name.
+     * @param nearestDeviceListener NearestDeviceListener to get selected device.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    public void selectNearestBleEspDevice(String prefix, NearestDeviceListener nearestDeviceListener) {
+
+        Log.d(TAG, "Select nearest BLE device");
+        nearestDeviceSelector = new NearestDeviceSelector(context, prefix, getProvisionedDeviceJournal(), nearestDeviceListener);
+        nearestDeviceSelector.start();
+    }
+
+    /**
+     * This method is used to stop nearest device selection.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    public void stopNearestDeviceSelection() {
+
+        if (nearestDeviceSelector != null) {
+            nearestDeviceSelector.cancel();
+        }
+    }
+
+    /**
+     * This method is used to get journal of devices provisioned from this phone.
+     * App should add device in journal after provisioning is successful.
+     *
+     * @return Returns ProvisionedDeviceJournal.
+     */
+    public ProvisionedDeviceJournal getProvisionedDeviceJournal() {
+
+        if (provisionedDeviceJournal == null) {
+            provisionedDeviceJournal = new ProvisionedDeviceJournal(context);
+        }
+        return provisionedDeviceJournal;
+    }
+
+    /**
+     * This method is used to enable cache of device version and capabilities for devices created after this call.
+     * With cache, connection to already known device does not wait for "proto-ver" response.
+     * Cached information is removed if session can not be established with it. Disabled by default.
+     *
+     * @param enable True to enable cache.
+     */
+    public void setDeviceInfoCacheEnabled(boolean enable) {
+        isDeviceInfoCacheEnabled = enable;
+    }
+
+    /**
+     * This method is used to get cache of device version and capabilities.
+     *
+     * @return Returns DeviceInfoCache.
+     */
+    public DeviceInfoCache getDeviceInfoCache() {
+
+        if (deviceInfoCache == null) {
+            deviceInfoCache = new DeviceInfoCache(context);
+        }
+        return deviceInfoCache;
+    }
+
+    private void applyDeviceInfoCache(ESPDevice device) {
+
+        if (isDeviceInfoCacheEnabled) {
+            device.setDeviceInfoCache(getDeviceInfoCache());
+        }
+    }
+
+    /**
+     * This method is used to search BLE device with given name.
+     * Scanning will be stopped as soon as device is found and BleScanListener.scanCompleted will be called.
+     *
+     * @param deviceName         Name of the device to be searched.
+     * @param bleScannerListener BleScanListener for scanning callbacks.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    public void findBleEspDevice(String deviceName, BleScanListener bleScannerListener) {
+
+        findBleEspDevice(deviceName, true, bleScannerListener);
+    }
+
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    private void findBleEspDevice(String deviceName, boolean useScanFilter, BleScanListener bleScannerListener) {
+
+        Log.d(TAG, "Search for BLE device : " + deviceName);
+        bleScanner = new BleScanner(context, bleScannerListener);
+        bleScanner.findDevice(deviceName, useScanFilter);
+    }
+
     /**
      * This method is used to stop BLE scanning.
      */
@@ -417,6 +1122,52 @@ public class ESPProvisionManager {
         }
     }
 
+    /**
+     * This method is used to start background discovery of BLE devices.
+     * Devices seen in discovery are used to resolve device from QR code without waiting for a new scan.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    public void startBleDiscovery() {
+
+        startBleDiscovery(null);
+    }
+
+    /**
+     * This method is used to start background discovery of BLE devices having given prefix in device name.
+     *
+     * @param prefix Prefix to filter devices from device name.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH, Manifest.permission.ACCESS_FINE_LOCATION})
+    public void startBleDiscovery(String prefix) {
+
+        if (bleDiscoveryRegistry != null) {
+            bleDiscoveryRegistry.stop();
+        }
+        bleDiscoveryRegistry = new BleDiscoveryRegistry(context, prefix);
+        bleDiscoveryRegistry.start();
+    }
+
+    /**
+     * This method is used to stop background discovery of BLE devices.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    public void stopBleDiscovery() {
+
+        if (bleDiscoveryRegistry != null) {
+            bleDiscoveryRegistry.stop();
+            bleDiscoveryRegistry = null;
+        }
+    }
+
+    /**
+     * This method is used to get registry of BLE devices seen in background discovery.
+     *
+     * @return Returns registry or null if background discovery is not started.
+     */
+    public BleDiscoveryRegistry getBleDiscoveryRegistry() {
+        return bleDiscoveryRegistry;
+    }
+
     /**
      * This method is used to scan Wi-Fi devices.
      *
@@ -442,6 +1193,14 @@ public class ESPProvisionManager {
         wifiScanner.startScan();
     }
 
+    @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE})
+    private void searchWiFiEspDevices(long maxCacheAge, WiFiScanListener wiFiDeviceScanListener) {
+
+        wifiScanner = new WiFiScanner(context, wiFiDeviceScanListener);
+        wifiScanner.setMaxCacheAge(maxCacheAge);
+        wifiScanner.startScan();
+    }
+
     private int searchCnt = 0;
     private boolean isDeviceFound = false;
 
@@ -457,23 +1216,27 @@ public class ESPProvisionManager {
 
         searchCnt = 0;
         isDeviceFound = false;
+
+        if (device.getTransportType().equals(ESPConstants.TransportType.TRANSPORT_BLE) && bleDiscoveryRegistry != null) {
+
+            DiscoveredBleDevice discoveredDevice = bleDiscoveryRegistry.getDevice(device.getDeviceName());
+
+            if (discoveredDevice != null && !TextUtils.isEmpty(discoveredDevice.getServiceUuid())) {
+
+                Log.d(TAG, "Device found in discovery registry : " + device.getDeviceName());
+                isDeviceFound = true;
+                device.setBluetoothDevice(discoveredDevice.getBluetoothDevice());
+                device.setPrimaryServiceUuid(discoveredDevice.getServiceUuid());
+                qrCodeScanListener.deviceDetected(device);
+                return;
+            }
+        }
+
         // Check device is available in scanning.
         SearchDeviceTask searchDeviceTask = new SearchDeviceTask(device, password, qrCodeScanListener);
         handler.post(searchDeviceTask);
     }
 
-    private ESPConstants.SecurityType setSecurityType(int security) {
-        switch (security) {
-            case 0:
-                return ESPConstants.SecurityType.SECURITY_0;
-            case 1:
-                return ESPConstants.SecurityType.SECURITY_1;
-            case 2:
-            default:
-                return ESPConstants.SecurityType.SECURITY_2;
-        }
-    }
-
     class SearchDeviceTask implements Runnable {
 
         private ESPDevice device;
@@ -496,7 +1259,10 @@ public class ESPProvisionManager {
 
             if (device.getTransportType().equals(ESPConstants.TransportType.TRANSPORT_BLE)) {
 
-                searchBleEspDevices(new BleScanListener() {
+                // Last attempt matches device name in software, in case controller filtering missed the device.
+                boolean useScanFilter = searchCnt < 3;
+
+                findBleEspDevice(device.getDeviceName(), useScanFilter, new BleScanListener() {
 
                     @Override
                     public void scanStartFailed() {
@@ -569,7 +1335,10 @@ public class ESPProvisionManager {
                 });
             } else {
 
-                searchWiFiEspDevices(new WiFiScanListener() {
+                // Cached scan results are used for first attempt only, retries request new scan.
+                long maxCacheAge = searchCnt == 1 ? WIFI_SEARCH_MAX_CACHE_AGE : 0;
+
+                searchWiFiEspDevices(maxCacheAge, new WiFiScanListener() {
 
                     @Override
                     public void onWifiListReceived(ArrayList<WiFiAccessPoint> scanResults) {
@@ -0,0 +1,365 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class decides which camera frames are given to the QR code detector and at which frame rate camera should run.
+ * Each frame is checked with a cheap search of QR code finder patterns (dark-light-dark-light-dark runs
+ * in 1:1:3:1:1 ratio) on few sampled rows. If no finder pattern is seen for some time, controller becomes idle,
+ * lowers target frame rate and gives only every Nth frame to the detector. As soon as a finder pattern is seen
+ * or a code is detected, it goes back to full frame rate and all frames are processed.
+ * <p>
+ * Frame source should call shouldProcess for every frame and apply target frame rate if it is changed.
+ * All methods except onFrameDropped and getters are expected to be called from frame processing thread.
+ */
+public class FrameRateController {
+
+    private static final String TAG = "ESP:" + FrameRateController.class.getSimpleName();
+
+    private static final float DEFAULT_ACTIVE_FPS = 30.0f;
+    private static final float DEFAULT_IDLE_FPS = 15.0f;
+    private static final long DEFAULT_IDLE_DELAY = 1500;
+    private static final int DEFAULT_IDLE_FRAME_INTERVAL = 3;
+
+    private static final int SAMPLED_ROWS = 32;
+    private static final int MIN_FINDER_PATTERNS = 2;
+    // Finder pattern is 7 modules wide, smaller runs are mostly noise.
+    private static final int MIN_FINDER_PATTERN_WIDTH = 14;
+    // Minimum difference between darkest and brightest pixel of the row to search finder patterns in it.
+    private static final int MIN_CONTRAST = 40;
+    private static final int STATS_LOG_INTERVAL = 90;
+
+    // Weight given to the latest decode time while averaging.
+    private static final float DECODE_TIME_SMOOTHING_FACTOR = 0.2f;
+
+    private final float activeFps;
+    private final float idleFps;
+    private final long idleDelay;
+    private final int idleFrameInterval;
+
+    private long lastCandidateTime = -1;
+    private int idleFrameCount;
+    // Lengths of last five runs of same colour, oldest first.
+    private final int[] runs = new int[5];
+    // Used to read rows of direct buffers.
+    private byte[] rowBuffer;
+
+    private volatile boolean isIdle;
+    private volatile int checkedFrameCount;
+    private volatile int processedFrameCount;
+    private volatile int skippedFrameCount;
+    private volatile int droppedFrameCount;
+    private volatile long lastDecodeTimeNanos;
+    private volatile float averageDecodeTimeNanos;
+
+    public FrameRateController() {
+        this(DEFAULT_ACTIVE_FPS, DEFAULT_IDLE_FPS, DEFAULT_IDLE_DELAY, DEFAULT_IDLE_FRAME_INTERVAL);
+    }
+
+    /**
+     * @param activeFps         Frame rate used while QR code is seen.
+     * @param idleFps           Frame rate used while idle.
+     * @param idleDelay         Time in milliseconds without finder pattern after which controller becomes idle.
+     * @param idleFrameInterval Only every Nth frame is processed while idle.
+     */
+    public FrameRateController(float activeFps, float idleFps, long idleDelay, int idleFrameInterval) {
+
+        if (idleFps <= 0 || activeFps < idleFps) {
+            throw new IllegalArgumentException("Active frame rate must be greater than idle frame rate");
+        }
+        if (idleFrameInterval < 1) {
+            throw new IllegalArgumentException("Invalid idle frame interval: " + idleFrameInterval);
+        }
+        this.activeFps = activeFps;
+        this.idleFps = idleFps;
+        this.idleDelay = idleDelay;
+        this.idleFrameInterval = idleFrameInterval;
+    }
+
+    /**
+     * This method is used to check whether frame should be given to the detector.
+     *
+     * @param luma      Frame data starting with luma plane, e.g. NV21 frame.
+     * @param rowStride Number of bytes between start of two luma rows.
+     * @param width     Width of the frame.
+     * @param height    Height of the frame.
+     * @return Returns true if frame should be processed.
+     */
+    public boolean shouldProcess(byte[] luma, int rowStride, int width, int height) {
+        return shouldProcess(luma, 0, rowStride, width, height);
+    }
+
+    /**
+     * This method is used to check whether frame should be given to the detector.
+     *
+     * @param luma      Luma plane, e.g. Y plane of YUV_420_888 image. Position of the buffer is not changed.
+     * @param rowStride Number of bytes between start of two rows.
+     * @param width     Width of the frame.
+     * @param height    Height of the frame.
+     * @return Returns true if frame should be processed.
+     */
+    public boolean shouldProcess(ByteBuffer luma, int rowStride, int width, int height) {
+
+        if (luma.hasArray()) {
+            return shouldProcess(luma.array(), luma.arrayOffset() + luma.position(), rowStride, width, height);
+        }
+
+        if (rowBuffer == null || rowBuffer.length < width) {
+            rowBuffer = new byte[width];
+        }
+
+        ByteBuffer source = luma.duplicate();
+        int patterns = 0;
+        int rowStep = Math.max(1, height / SAMPLED_ROWS);
+
+        for (int y = rowStep / 2; y < height && patterns < MIN_FINDER_PATTERNS; y += rowStep) {
+            source.position(luma.position() + y * rowStride);
+            source.get(rowBuffer, 0, width);
+            patterns += countFinderPatterns(rowBuffer, 0, width);
+        }
+        return onFrameChecked(patterns >= MIN_FINDER_PATTERNS);
+    }
+
+    private boolean shouldProcess(byte[] luma, int offset, int rowStride, int width, int height) {
+
+        int patterns = 0;
+        int rowStep = Math.max(1, height / SAMPLED_ROWS);
+
+        for (int y = rowStep / 2; y < height && patterns < MIN_FINDER_PATTERNS; y += rowStep) {
+            patterns += countFinderPatterns(luma, offset + y * rowStride, width);
+        }
+        return onFrameChecked(patterns >= MIN_FINDER_PATTERNS);
+    }
+
+    /**
+     * This method is used to record frame received from camera but dropped, because detector was busy.
+     * It can be called from camera thread.
+     */
+    public void onFrameDropped() {
+        droppedFrameCount++;
+    }
+
+    /**
+     * This method is used to report result of detection for the last processed frame.
+     * It should be called from detector's processor.
+     *
+     * @param count Number of detected items.
+     */
+    public void onDetections(int count) {
+
+        if (count > 0) {
+            onCandidate(SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * This method is used to record that detection is completed for the last processed frame.
+     *
+     * @param decodeTimeNanos Time taken by the detector.
+     */
+    public void onFrameProcessed(long decodeTimeNanos) {
+
+        lastDecodeTimeNanos = decodeTimeNanos;
+        averageDecodeTimeNanos = processedFrameCount <= 1 ? decodeTimeNanos
+                : averageDecodeTimeNanos + DECODE_TIME_SMOOTHING_FACTOR * (decodeTimeNanos - averageDecodeTimeNanos);
+
+        if (processedFrameCount % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, "Frames : " + getReceivedFrameCount() + ", processed : " + processedFrameCount
+                    + ", drop rate : " + getDropRate() + ", average decode time : " + getAverageDecodeTimeMillis() + " ms");
+        }
+    }
+
+    /**
+     * @return Returns frame rate which camera should use now.
+     */
+    public float getTargetFps() {
+        return isIdle ? idleFps : activeFps;
+    }
+
+    /**
+     * @return Returns true if QR code is not seen recently and frames are skipped.
+     */
+    public boolean isIdle() {
+        return isIdle;
+    }
+
+    /**
+     * @return Returns number of frames received from camera, including dropped frames.
+     */
+    public int getReceivedFrameCount() {
+        return checkedFrameCount + droppedFrameCount;
+    }
+
+    /**
+     * @return Returns number of frames given to the detector.
+     */
+    public int getProcessedFrameCount() {
+        return processedFrameCount;
+    }
+
+    /**
+     * @return Returns number of frames skipped while idle.
+     */
+    public int getSkippedFrameCount() {
+        return skippedFrameCount;
+    }
+
+    /**
+     * @return Returns number of frames dropped while detector was busy.
+     */
+    public int getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * @return Returns fraction of received frames which are not given to the detector, skipped or dropped.
+     */
+    public float getDropRate() {
+
+        int received = getReceivedFrameCount();
+        return received == 0 ? 0 : (float) (received - processedFrameCount) / received;
+    }
+
+    /**
+     * @return Returns decode time of the last processed frame in milliseconds.
+     */
+    public float getLastDecodeTimeMillis() {
+        return lastDecodeTimeNanos / 1000000f;
+    }
+
+    /**
+     * @return Returns moving average of decode time in milliseconds.
+     */
+    public float getAverageDecodeTimeMillis() {
+        return averageDecodeTimeNanos / 1000000f;
+    }
+
+    private boolean onFrameChecked(boolean isCandidate) {
+
+        long now = SystemClock.elapsedRealtime();
+        checkedFrameCount++;
+
+        if (lastCandidateTime < 0) {
+            // Scanning is started, controller is active till idle delay.
+            lastCandidateTime = now;
+        }
+
+        if (isCandidate) {
+            onCandidate(now);
+        } else if (!isIdle && now - lastCandidateTime >= idleDelay) {
+            isIdle = true;
+            idleFrameCount = 0;
+            Log.d(TAG, "QR code is not seen, target frame rate : " + idleFps);
+        }
+
+        if (isIdle && ++idleFrameCount < idleFrameInterval) {
+            skippedFrameCount++;
+            return false;
+        }
+        idleFrameCount = 0;
+        processedFrameCount++;
+        return true;
+    }
+
+    private void onCandidate(long now) {
+
+        lastCandidateTime = now;
+
+        if (isIdle) {
+            isIdle = false;
+            Log.d(TAG, "QR code is seen, target frame rate : " + activeFps);
+        }
+    }
+
+    /**
+     * Counts finder pattern candidates in one row. Row is binarized at the middle of its darkest and brightest pixel.
+     */
+    private int countFinderPatterns(byte[] data, int start, int width) {
+
+        int min = 255;
+        int max = 0;
+
+        for (int i = start; i < start + width; i++) {
+            int value = data[i] & 0xFF;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        if (max - min < MIN_CONTRAST) {
+            return 0;
+        }
+
+        int threshold = (min + max) / 2;
+        int count = 0;
+        int runCount = 0;
+        int runLength = 0;
+        boolean isDark = (data[start] & 0xFF) < threshold;
+
+        for (int i = start; i <= start + width; i++) {
+
+            boolean isPixelDark = i < start + width && (data[i] & 0xFF) < threshold;
+
+            if (i < start + width && isPixelDark == isDark) {
+                runLength++;
+                continue;
+            }
+
+            // Run is completed, keep last five runs.
+            runs[0] = runs[1];
+            runs[1] = runs[2];
+            runs[2] = runs[3];
+            runs[3] = runs[4];
+            runs[4] = runLength;
+            runCount++;
+
+            if (isDark && runCount >= runs.length && isFinderPattern()) {
+                count++;
+            }
+            isDark = isPixelDark;
+            runLength = 1;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether last five runs, ending with a dark run, are in 1:1:3:1:1 ratio.
+     */
+    private boolean isFinderPattern() {
+
+        int total = 0;
+
+        for (int run : runs) {
+            total += run;
+        }
+
+        if (total < MIN_FINDER_PATTERN_WIDTH) {
+            return false;
+        }
+
+        float moduleSize = total / 7.0f;
+        float maxVariance = moduleSize / 2;
+
+        return Math.abs(moduleSize - runs[0]) < maxVariance
+                && Math.abs(moduleSize - runs[1]) < maxVariance
+                && Math.abs(3 * moduleSize - runs[2]) < 3 * maxVariance
+                && Math.abs(moduleSize - runs[3]) < maxVariance
+                && Math.abs(moduleSize - runs[4]) < maxVariance;
+    }
+}
@@ -0,0 +1,302 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class reduces NV21 camera frames before they are given to the QR code detector.
+ * Frame is cropped to a region of interest in the centre and luma is downsampled, so detector works on small image.
+ * If QR code is not found in the given number of frames, region is widened step by step till full frame
+ * and then starts again from the smallest region.
+ * <p>
+ * Reduced frame has neutral chroma, so it should be used only with detectors which work on luma like barcode detector.
+ * Positions of detected items are relative to the reduced frame.
+ * All methods except getters are expected to be called from frame processing thread.
+ */
+public class FrameRegionReducer {
+
+    private static final String TAG = "ESP:" + FrameRegionReducer.class.getSimpleName();
+
+    private static final float[] DEFAULT_REGION_STEPS = {0.5f, 0.75f, 1.0f};
+    private static final int DEFAULT_MISSES_PER_STEP = 10;
+    private static final int DEFAULT_MAX_DECODE_SIZE = 640;
+    private static final int STATS_LOG_INTERVAL = 30;
+
+    // Weight given to the latest decode time while averaging.
+    private static final float DECODE_TIME_SMOOTHING_FACTOR = 0.2f;
+
+    private final float[] regionSteps;
+    private final int missesPerStep;
+    private final int maxDecodeSize;
+
+    private int regionStep;
+    private int missCount;
+    private boolean isDetected;
+
+    private byte[] output;
+    private ByteBuffer outputBuffer;
+    private int[] rowSums;
+    // Used to read rows of direct buffers.
+    private byte[] rowBuffer;
+    private int outputWidth;
+    private int outputHeight;
+
+    private volatile int frameCount;
+    private volatile long lastDecodeTimeNanos;
+    private volatile float averageDecodeTimeNanos;
+
+    public FrameRegionReducer() {
+        this(DEFAULT_REGION_STEPS, DEFAULT_MISSES_PER_STEP, DEFAULT_MAX_DECODE_SIZE);
+    }
+
+    /**
+     * @param regionSteps   Sizes of region of interest as fraction of frame width and height, from smallest to largest.
+     * @param missesPerStep Number of frames without detection after which next region step is used.
+     * @param maxDecodeSize Maximum width or height of the reduced frame in pixels.
+     */
+    public FrameRegionReducer(float[] regionSteps, int missesPerStep, int maxDecodeSize) {
+
+        if (regionSteps == null || regionSteps.length == 0) {
+            throw new IllegalArgumentException("At least one region step is required");
+        }
+
+        for (float step : regionSteps) {
+            if (step <= 0 || step > 1) {
+                throw new IllegalArgumentException("Invalid region step: " + step);
+            }
+        }
+
+        if (missesPerStep <= 0 || maxDecodeSize < 2) {
+            throw new IllegalArgumentException("Invalid misses per step or decode size");
+        }
+        this.regionSteps = regionSteps.clone();
+        this.missesPerStep = missesPerStep;
+        this.maxDecodeSize = maxDecodeSize;
+    }
+
+    /**
+     * This method is used to crop and downsample NV21 frame as per current region step.
+     * Returned buffer is reused for next frame, so it should not be used after frame is processed.
+     *
+     * @param nv21   Frame data in NV21 format.
+     * @param width  Frame width.
+     * @param height Frame height.
+     * @return Returns reduced frame in NV21 format. Size is given by getOutputWidth and getOutputHeight.
+     */
+    public ByteBuffer reduce(byte[] nv21, int width, int height) {
+        return reduce(nv21, 0, null, width, width, height);
+    }
+
+    /**
+     * This method is used to crop and downsample luma plane, e.g. Y plane of YUV_420_888 image.
+     * Position of the buffer is not changed.
+     * Returned buffer is reused for next frame, so it should not be used after frame is processed.
+     *
+     * @param luma      Luma plane starting at buffer position. Pixel stride must be 1.
+     * @param rowStride Distance between start of two rows in bytes.
+     * @param width     Frame width.
+     * @param height    Frame height.
+     * @return Returns reduced frame in NV21 format. Size is given by getOutputWidth and getOutputHeight.
+     */
+    public ByteBuffer reduce(ByteBuffer luma, int rowStride, int width, int height) {
+
+        if (luma.hasArray()) {
+            return reduce(luma.array(), luma.arrayOffset() + luma.position(), null, rowStride, width, height);
+        }
+        return reduce(null, luma.position(), luma, rowStride, width, height);
+    }
+
+    /**
+     * Source is either array or direct buffer.
+     */
+    private ByteBuffer reduce(byte[] source, int offset, ByteBuffer directSource, int rowStride, int width, int height) {
+
+        isDetected = false;
+
+        float region = regionSteps[regionStep];
+        int regionWidth = Math.max(2, (int) (width * region));
+        int regionHeight = Math.max(2, (int) (height * region));
+        int factor = (Math.max(regionWidth, regionHeight) + maxDecodeSize - 1) / maxDecodeSize;
+
+        // NV21 needs even width and height.
+        int newWidth = (regionWidth / factor) & ~1;
+        int newHeight = (regionHeight / factor) & ~1;
+        int left = (width - newWidth * factor) / 2;
+        int top = (height - newHeight * factor) / 2;
+
+        prepareOutput(newWidth, newHeight, factor);
+
+        int start = offset + top * rowStride + left;
+
+        if (directSource != null) {
+
+            int position = directSource.position();
+
+            for (int y = 0; y < newHeight * factor; y++) {
+                directSource.position(start + y * rowStride);
+                directSource.get(rowBuffer, 0, newWidth * factor);
+                addRow(rowBuffer, 0, y, factor);
+            }
+            directSource.position(position);
+
+        } else if (factor == 1) {
+            for (int y = 0; y < newHeight; y++) {
+                System.arraycopy(source, start + y * rowStride, output, y * newWidth, newWidth);
+            }
+        } else {
+            for (int y = 0; y < newHeight * factor; y++) {
+                addRow(source, start + y * rowStride, y, factor);
+            }
+        }
+        outputBuffer.clear();
+        return outputBuffer;
+    }
+
+    /**
+     * This method is used to report result of detection for the last reduced frame.
+     * It should be called from detector's processor, which runs before detector returns.
+     *
+     * @param count Number of detected items.
+     */
+    public void onDetections(int count) {
+
+        if (count > 0) {
+            isDetected = true;
+        }
+    }
+
+    /**
+     * This method is used to record that detection is completed for the last reduced frame.
+     *
+     * @param decodeTimeNanos Time taken by the detector.
+     */
+    public void onFrameProcessed(long decodeTimeNanos) {
+
+        lastDecodeTimeNanos = decodeTimeNanos;
+        averageDecodeTimeNanos = frameCount == 0 ? decodeTimeNanos
+                : averageDecodeTimeNanos + DECODE_TIME_SMOOTHING_FACTOR * (decodeTimeNanos - averageDecodeTimeNanos);
+        frameCount++;
+
+        if (frameCount % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, "Frames : " + frameCount + ", decode size : " + outputWidth + "x" + outputHeight
+                    + ", average decode time : " + getAverageDecodeTimeMillis() + " ms");
+        }
+
+        if (isDetected) {
+            missCount = 0;
+            return;
+        }
+
+        missCount++;
+
+        if (missCount >= missesPerStep) {
+            missCount = 0;
+            regionStep = (regionStep + 1) % regionSteps.length;
+            Log.d(TAG, "No detection, region of interest : " + regionSteps[regionStep]);
+        }
+    }
+
+    /**
+     * @return Returns width of the last reduced frame.
+     */
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    /**
+     * @return Returns height of the last reduced frame.
+     */
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    /**
+     * @return Returns number of processed frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return Returns decode time of the last frame in milliseconds.
+     */
+    public float getLastDecodeTimeMillis() {
+        return lastDecodeTimeNanos / 1000000f;
+    }
+
+    /**
+     * @return Returns moving average of decode time in milliseconds.
+     */
+    public float getAverageDecodeTimeMillis() {
+        return averageDecodeTimeNanos / 1000000f;
+    }
+
+    private void prepareOutput(int newWidth, int newHeight, int factor) {
+
+        if (rowBuffer == null || rowBuffer.length < newWidth * factor) {
+            rowBuffer = new byte[newWidth * factor];
+        }
+
+        if (output != null && newWidth == outputWidth && newHeight == outputHeight) {
+            return;
+        }
+
+        int lumaSize = newWidth * newHeight;
+        output = new byte[lumaSize + lumaSize / 2];
+        // Chroma is not changed afterwards, fill it with neutral value once.
+        Arrays.fill(output, lumaSize, output.length, (byte) 128);
+        outputBuffer = ByteBuffer.wrap(output);
+        rowSums = new int[newWidth];
+        outputWidth = newWidth;
+        outputHeight = newHeight;
+    }
+
+    /**
+     * Adds one source row of the region in sums of factor x factor blocks.
+     * Output row is written when its last source row is added.
+     */
+    private void addRow(byte[] row, int start, int sourceY, int factor) {
+
+        int dy = sourceY % factor;
+
+        if (dy == 0) {
+            Arrays.fill(rowSums, 0);
+        }
+
+        for (int x = 0, src = start; x < outputWidth; x++) {
+
+            int sum = 0;
+
+            for (int dx = 0; dx < factor; dx++) {
+                sum += row[src++] & 0xFF;
+            }
+            rowSums[x] += sum;
+        }
+
+        if (dy == factor - 1) {
+
+            int area = factor * factor;
+            int dst = (sourceY / factor) * outputWidth;
+
+            for (int x = 0; x < outputWidth; x++) {
+                output[dst + x] = (byte) (rowSums[x] / area);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class keeps local record of devices which are provisioned from this phone.
+ * It is used to skip already provisioned devices while selecting next device to provision.
+ */
+public class ProvisionedDeviceJournal {
+
+    private static final String PREFERENCES_NAME = "esp_provisioned_devices";
+    private static final String KEY_DEVICE_NAMES = "device_names";
+
+    private SharedPreferences sharedPreferences;
+    private final HashSet<String> deviceNames = new HashSet<>();
+
+    public ProvisionedDeviceJournal(Context context) {
+
+        sharedPreferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        Set<String> savedNames = sharedPreferences.getStringSet(KEY_DEVICE_NAMES, null);
+
+        if (savedNames != null) {
+            deviceNames.addAll(savedNames);
+        }
+    }
+
+    /**
+     * This method is used to record device as provisioned.
+     *
+     * @param deviceName Name of the device.
+     */
+    public synchronized void add(String deviceName) {
+
+        if (!TextUtils.isEmpty(deviceName) && deviceNames.add(deviceName)) {
+            save();
+        }
+    }
+
+    /**
+     * This method is used to remove device from journal, e.g. when device is reset to factory settings.
+     *
+     * @param deviceName Name of the device.
+     */
+    public synchronized void remove(String deviceName) {
+
+        if (deviceNames.remove(deviceName)) {
+            save();
+        }
+    }
+
+    /**
+     * This method is used to check device is already provisioned or not.
+     *
+     * @param deviceName Name of the device.
+     * @return Returns true if device is recorded as provisioned.
+     */
+    public synchronized boolean contains(String deviceName) {
+        return deviceNames.contains(deviceName);
+    }
+
+    /**
+     * This method is used to remove all devices from journal.
+     */
+    public synchronized void clear() {
+
+        deviceNames.clear();
+        save();
+    }
+
+    private void save() {
+        // Set given to SharedPreferences should not be modified afterwards, so give a copy.
+        sharedPreferences.edit().putStringSet(KEY_DEVICE_NAMES, new HashSet<>(deviceNames)).apply();
+    }
+}
@@ -14,9 +14,16 @@
 
 package com.espressif.provisioning;
 
+import com.espressif.provisioning.listeners.BufferResponseListener;
 import com.espressif.provisioning.listeners.ResponseListener;
+import com.espressif.provisioning.security.BufferSecurity;
+import com.espressif.provisioning.security.CryptoException;
 import com.espressif.provisioning.security.Security;
+import com.espressif.provisioning.transport.BufferTransport;
 import com.espressif.provisioning.transport.Transport;
+import com.espressif.provisioning.utils.BufferPool;
+
+import java.nio.ByteBuffer;
 
 /**
  * Session object encapsulates the Transport and Security
@@ -28,6 +35,7 @@ public class Session {
     private static final String TAG = "Espressif::" + Session.class.getSimpleName();
     private Transport transport;
     private Security security;
+    private BufferPool bufferPool;
     private boolean isSessionEstablished;
 
     /**
@@ -37,8 +45,21 @@ public class Session {
      * @param security
      */
     public Session(Transport transport, Security security) {
+        this(transport, security, BufferPool.getDefault());
+    }
+
+    /**
+     * Initialize Session object with Transport and Security interface implementations
+     * and pool of buffers used for messages sent as ByteBuffer.
+     *
+     * @param transport
+     * @param security
+     * @param bufferPool
+     */
+    public Session(Transport transport, Security security, BufferPool bufferPool) {
         this.transport = transport;
         this.security = security;
+        this.bufferPool = bufferPool;
     }
 
     /**
@@ -59,6 +80,15 @@ public class Session {
         return transport;
     }
 
+    /**
+     * Get the pool of buffers used for messages sent as ByteBuffer.
+     *
+     * @return
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Get whether a secure Session has been established.
      *
@@ -179,6 +209,125 @@ public class Session {
         }
     }
 
+    /**
+     * Send remaining bytes of data to the device and give decrypted response as ByteBuffer.
+     * If both Security and Transport support buffers, request is encrypted in pooled buffer and
+     * response is decrypted in pooled buffer which is released after listener returns.
+     * Otherwise data is sent through byte array methods.
+     *
+     * @param path     path of the config endpoint.
+     * @param data     data to be sent, must not be modified till response is received.
+     * @param listener listener which receives decrypted response, valid only till onSuccess returns.
+     */
+    public void sendDataToDevice(final String path, final ByteBuffer data, final BufferResponseListener listener) {
+
+        if (!(security instanceof BufferSecurity) || !(transport instanceof BufferTransport)) {
+
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            sendDataToDevice(path, bytes, new ResponseListener() {
+
+                @Override
+                public void onSuccess(byte[] returnData) {
+                    if (listener != null) {
+                        listener.onSuccess(returnData == null ? null : ByteBuffer.wrap(returnData));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    if (listener != null) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+            return;
+        }
+
+        if (isSessionEstablished) {
+
+            sendBuffer(path, data, listener);
+
+        } else {
+
+            init(null, new SessionListener() {
+
+                @Override
+                public void OnSessionEstablished() {
+                    sendBuffer(path, data, listener);
+                }
+
+                @Override
+                public void OnSessionEstablishFailed(Exception e) {
+                    if (listener != null) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+    private void sendBuffer(final String path, ByteBuffer data, final BufferResponseListener listener) {
+
+        final BufferSecurity bufferSecurity = (BufferSecurity) security;
+        final ByteBuffer request = bufferPool.acquire(bufferSecurity.getEncryptedLength(data.remaining()));
+
+        try {
+            bufferSecurity.encrypt(data, request);
+        } catch (CryptoException e) {
+            bufferPool.release(request);
+            if (listener != null) {
+                listener.onFailure(e);
+            }
+            return;
+        }
+        request.flip();
+
+        ((BufferTransport) transport).sendConfigData(path, request, new BufferResponseListener() {
+
+            @Override
+            public void onSuccess(ByteBuffer returnData) {
+
+                // Request is released after response is decrypted, as transport may give a view of it.
+                ByteBuffer response = null;
+
+                try {
+                    if (returnData == null) {
+                        throw new RuntimeException("Response is not received");
+                    }
+                    response = bufferPool.acquire(bufferSecurity.getDecryptedLength(returnData.remaining()));
+                    bufferSecurity.decrypt(returnData, response);
+                    response.flip();
+                } catch (Exception e) {
+                    bufferPool.release(response);
+                    bufferPool.release(request);
+                    if (listener != null) {
+                        listener.onFailure(e);
+                    }
+                    return;
+                }
+                bufferPool.release(request);
+
+                try {
+                    if (listener != null) {
+                        listener.onSuccess(response);
+                    }
+                } finally {
+                    bufferPool.release(response);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                bufferPool.release(request);
+                isSessionEstablished = false;
+                if (listener != null) {
+                    listener.onFailure(e);
+                }
+            }
+        });
+    }
+
     /**
      * Callback interface for listening to Session
      * establish events.
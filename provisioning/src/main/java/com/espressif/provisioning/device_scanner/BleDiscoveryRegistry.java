@@ -0,0 +1,306 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.device_scanner;
+
+import android.Manifest;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.RequiresPermission;
+
+import com.espressif.provisioning.listeners.BleScanListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps track of recently seen BLE devices by running a continuous low power scan in background.
+ * Devices which are not seen within TTL are removed from the registry.
+ * Scan is restarted only when it reaches the system scan duration limit or after failure, so it stays
+ * well within the Android limit of 5 scan starts in 30 seconds, leaving room for foreground scans.
+ */
+public class BleDiscoveryRegistry {
+
+    private static final String TAG = "ESP:" + BleDiscoveryRegistry.class.getSimpleName();
+
+    // Android changes scans longer than 30 minutes to opportunistic, so scan is restarted before that.
+    private static final long SCAN_DURATION = 25 * 60 * 1000;
+    private static final long SCAN_RETRY_DELAY = 30000;
+    private static final long DEFAULT_TTL = 30000;
+
+    private Context context;
+    private Handler handler;
+    private BleScanner bleScanner;
+    private String prefix;
+
+    // Key is device address.
+    private final ConcurrentHashMap<String, DiscoveredBleDevice> devices = new ConcurrentHashMap<>();
+    // Key is device name and value is device address.
+    private final ConcurrentHashMap<String, String> nameIndex = new ConcurrentHashMap<>();
+
+    private long ttl = DEFAULT_TTL;
+    private volatile boolean isRunning = false;
+    private boolean isRetryPending = false;
+
+    public BleDiscoveryRegistry(Context context) {
+
+        this.context = context;
+        handler = new Handler(Looper.getMainLooper());
+    }
+
+    public BleDiscoveryRegistry(Context context, String prefix) {
+
+        this(context);
+        this.prefix = prefix;
+    }
+
+    /**
+     * This method is used to set time after which device will be removed from registry if it is not seen again.
+     *
+     * @param ttl Time to live in milliseconds.
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * This method is used to start background discovery.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    public void start() {
+
+        if (isRunning) {
+            return;
+        }
+        Log.d(TAG, "Start BLE discovery");
+        isRunning = true;
+        handler.post(scanTask);
+        handler.postDelayed(evictionTask, getEvictionInterval());
+    }
+
+    /**
+     * This method is used to stop background discovery. Devices already discovered are kept till they expire.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    public void stop() {
+
+        Log.d(TAG, "Stop BLE discovery");
+        isRunning = false;
+        isRetryPending = false;
+        handler.removeCallbacks(scanTask);
+        handler.removeCallbacks(evictionTask);
+
+        if (bleScanner != null && bleScanner.isScanning()) {
+            bleScanner.stopScan();
+        }
+    }
+
+    /**
+     * This method is used to check background discovery is running or not.
+     *
+     * @return Returns true if discovery is running.
+     */
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * This method is used to get recently seen device with given name.
+     *
+     * @param deviceName Name of the device.
+     * @return Returns device or null if device is not seen within TTL.
+     */
+    public DiscoveredBleDevice getDevice(String deviceName) {
+
+        if (TextUtils.isEmpty(deviceName)) {
+            return null;
+        }
+        String address = nameIndex.get(deviceName);
+
+        if (address == null) {
+            return null;
+        }
+        DiscoveredBleDevice device = devices.get(address);
+
+        if (device == null || isExpired(device, SystemClock.elapsedRealtime())) {
+            return null;
+        }
+        return device;
+    }
+
+    /**
+     * This method is used to get all devices seen within TTL.
+     *
+     * @return Returns list of devices.
+     */
+    public ArrayList<DiscoveredBleDevice> getDevices() {
+
+        long now = SystemClock.elapsedRealtime();
+        ArrayList<DiscoveredBleDevice> result = new ArrayList<>();
+
+        for (DiscoveredBleDevice device : devices.values()) {
+            if (!isExpired(device, now)) {
+                result.add(device);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method is used to remove all devices from registry.
+     */
+    public void clear() {
+        devices.clear();
+        nameIndex.clear();
+    }
+
+    private boolean isExpired(DiscoveredBleDevice device, long now) {
+        return now - device.getLastSeenTime() > ttl;
+    }
+
+    private void removeExpiredDevices() {
+
+        long now = SystemClock.elapsedRealtime();
+        Iterator<DiscoveredBleDevice> iterator = devices.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            DiscoveredBleDevice device = iterator.next();
+
+            if (isExpired(device, now)) {
+                iterator.remove();
+                nameIndex.remove(device.getDeviceName(), device.getAddress());
+            }
+        }
+    }
+
+    private long getEvictionInterval() {
+        return Math.max(ttl / 2, 1000);
+    }
+
+    private Runnable scanTask = new Runnable() {
+
+        @Override
+        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+        public void run() {
+
+            isRetryPending = false;
+
+            if (!isRunning) {
+                return;
+            }
+
+            ScanSettings settings = new ScanSettings.Builder()
+                    .setScanMode(ScanSettings.SCAN_MODE_LOW_POWER)
+                    .build();
+            bleScanner = new BleScanner(context, prefix, bleScanListener);
+            bleScanner.setScanTimeout(SCAN_DURATION);
+            bleScanner.startScan(settings);
+        }
+    };
+
+    private Runnable evictionTask = new Runnable() {
+
+        @Override
+        public void run() {
+
+            if (!isRunning) {
+                return;
+            }
+            removeExpiredDevices();
+            handler.postDelayed(evictionTask, getEvictionInterval());
+        }
+    };
+
+    private BleScanListener bleScanListener = new BleScanListener() {
+
+        @Override
+        public void scanStartFailed() {
+
+            // Bluetooth is off, try again later.
+            if (isRunning) {
+                handler.postDelayed(scanTask, SCAN_RETRY_DELAY);
+            }
+        }
+
+        @Override
+        public void onPeripheralFound(BluetoothDevice device, ScanResult scanResult) {
+
+            ScanRecord scanRecord = scanResult.getScanRecord();
+
+            // Devices are looked up by name, so results without name are not kept.
+            if (scanRecord == null || TextUtils.isEmpty(scanRecord.getDeviceName())) {
+                return;
+            }
+
+            String deviceName = scanRecord.getDeviceName();
+            List<ParcelUuid> serviceUuids = scanRecord.getServiceUuids();
+            String serviceUuid = "";
+
+            if (serviceUuids != null && serviceUuids.size() > 0) {
+                serviceUuid = serviceUuids.get(0).toString();
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            DiscoveredBleDevice discoveredDevice = devices.get(device.getAddress());
+
+            if (discoveredDevice == null) {
+                discoveredDevice = new DiscoveredBleDevice(device, deviceName, serviceUuid, scanResult.getRssi(), now);
+                devices.put(device.getAddress(), discoveredDevice);
+            } else {
+                discoveredDevice.update(serviceUuid, scanResult.getRssi(), now);
+            }
+            nameIndex.put(deviceName, device.getAddress());
+        }
+
+        @Override
+        public void scanCompleted() {
+
+            // Scan duration is over or scan is stopped after failure, start new scan.
+            if (isRunning && !isRetryPending) {
+                handler.post(scanTask);
+            }
+        }
+
+        @Override
+        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+        public void onFailure(Exception e) {
+
+            Log.e(TAG, "BLE discovery scan failed : " + e.getMessage());
+
+            if (!isRunning) {
+                return;
+            }
+            // Retry after delay, so that failing scan is not restarted repeatedly.
+            isRetryPending = true;
+            handler.postDelayed(scanTask, SCAN_RETRY_DELAY);
+
+            if (bleScanner != null && bleScanner.isScanning()) {
+                bleScanner.stopScan();
+            }
+        }
+    };
+}
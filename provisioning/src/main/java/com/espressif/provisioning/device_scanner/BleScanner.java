@@ -24,14 +24,20 @@ import android.bluetooth.le.ScanResult;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.RequiresPermission;
 
+import com.espressif.provisioning.listeners.BleScanBatchListener;
 import com.espressif.provisioning.listeners.BleScanListener;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 /**
@@ -42,6 +48,8 @@ public class BleScanner {
     private static final String TAG = "ESP:" + BleScanner.class.getSimpleName();
 
     private static final long SCAN_TIME_OUT = 6000;
+    // Maximum time to wait for results flushed from the Bluetooth controller before stopping the scan.
+    private static final long FLUSH_TIME_OUT = 200;
 
     private Handler handler;
     private BleScanListener bleScanListener;
@@ -49,7 +57,20 @@ public class BleScanner {
     private BluetoothLeScanner bluetoothLeScanner;
 
     private boolean isScanning = false;
+    // True if scan results are batched in the Bluetooth controller.
+    private boolean isBatchingOffloaded = false;
+    // True while waiting for flushed results before stopping the scan.
+    private boolean isStopping = false;
+    private long scanTimeout = SCAN_TIME_OUT;
+    private long reportDelay = 0;
     private String prefix = "";
+    private String targetDeviceName;
+
+    // Used only when report delay is set. Key is device address.
+    private final HashMap<String, DiscoveredBleDevice> discoveredDevices = new HashMap<>();
+    private final HashSet<String> rejectedAddresses = new HashSet<>();
+    private final LinkedHashMap<String, ScanResult> newDevices = new LinkedHashMap<>();
+    private final LinkedHashSet<DiscoveredBleDevice> updatedDevices = new LinkedHashSet<>();
 
     public BleScanner(Context context, BleScanListener bleScannerListener) {
 
@@ -66,16 +87,36 @@ public class BleScanner {
         this.prefix = prefix;
     }
 
+    /**
+     * This method is used to set duration of the scan. Default is 6 seconds.
+     * It should be set before starting the scan.
+     *
+     * @param timeoutMs Scan duration in milliseconds.
+     */
+    public void setScanTimeout(long timeoutMs) {
+        this.scanTimeout = timeoutMs;
+    }
+
+    /**
+     * This method is used to enable batched delivery of scan results. It should be set before starting the scan.
+     * When it is enabled, advertisements are de-duplicated by device address, RSSI is smoothed and
+     * results are delivered once per report delay. BleScanListener.onPeripheralFound is called only once
+     * for each device and BleScanBatchListener (if implemented) receives devices updated since the last batch.
+     * Batching is offloaded to the Bluetooth controller if it is supported.
+     *
+     * @param reportDelayMs Delay between two batches in milliseconds. 0 to disable batching.
+     */
+    public void setReportDelay(long reportDelayMs) {
+        this.reportDelay = reportDelayMs;
+    }
+
     /**
      * This method is used to start BLE scan.
      */
     @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH, Manifest.permission.BLUETOOTH_ADMIN})
     public void startScan() {
         List<ScanFilter> filters = new ArrayList<>();
-        ScanSettings settings = new ScanSettings.Builder()
-                .setScanMode(ScanSettings.SCAN_MODE_BALANCED)
-                .build();
-        startScan(filters, settings);
+        startScan(filters, buildScanSettings(ScanSettings.SCAN_MODE_BALANCED));
     }
 
     /**
@@ -85,10 +126,7 @@ public class BleScanner {
      */
     @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH, Manifest.permission.BLUETOOTH_ADMIN})
     public void startScan(List<ScanFilter> filters) {
-        ScanSettings settings = new ScanSettings.Builder()
-                .setScanMode(ScanSettings.SCAN_MODE_BALANCED)
-                .build();
-        startScan(filters, settings);
+        startScan(filters, buildScanSettings(ScanSettings.SCAN_MODE_BALANCED));
     }
 
     /**
@@ -110,6 +148,16 @@ public class BleScanner {
      */
     @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH, Manifest.permission.BLUETOOTH_ADMIN})
     public void startScan(List<ScanFilter> filters, ScanSettings scanSettings) {
+        startScan(filters, scanSettings, null);
+    }
+
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH, Manifest.permission.BLUETOOTH_ADMIN})
+    private void startScan(List<ScanFilter> filters, ScanSettings scanSettings, String deviceName) {
+
+        if (isStopping) {
+            // Previous scan is waiting for flushed results, it needs to be stopped before starting again.
+            finishStop();
+        }
 
         if (!bluetoothAdapter.isEnabled()) {
             bleScanListener.scanStartFailed();
@@ -119,29 +167,76 @@ public class BleScanner {
 
         bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
         isScanning = true;
+        isStopping = false;
+        targetDeviceName = deviceName;
+        isBatchingOffloaded = scanSettings.getReportDelayMillis() > 0;
+
+        if (reportDelay > 0) {
+            synchronized (discoveredDevices) {
+                discoveredDevices.clear();
+                rejectedAddresses.clear();
+                newDevices.clear();
+                updatedDevices.clear();
+            }
+            handler.postDelayed(deliverResultsTask, reportDelay);
+        }
         bluetoothLeScanner.startScan(filters, scanSettings, scanCallback);
-        handler.postDelayed(stopScanTask, SCAN_TIME_OUT);
+        handler.postDelayed(stopScanTask, scanTimeout);
     }
 
     /**
-     * This method is used to start BLE scan.
+     * This method is used to search for a single device with given name.
+     * Scan runs in low latency mode and it will be stopped as soon as the device is found.
+     *
+     * @param deviceName    Name of the device to be searched.
+     * @param useScanFilter True to offload name matching to the Bluetooth controller using ScanFilter.
+     *                      Some phones fail to match names from the scan response, so callers can
+     *                      retry with false to match names in the scan callback instead.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH, Manifest.permission.BLUETOOTH_ADMIN})
+    public void findDevice(String deviceName, boolean useScanFilter) {
+
+        List<ScanFilter> filters = new ArrayList<>();
+
+        if (useScanFilter) {
+            filters.add(new ScanFilter.Builder()
+                    .setDeviceName(deviceName)
+                    .build());
+        }
+        ScanSettings settings = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                .build();
+        startScan(filters, settings, deviceName);
+    }
+
+    /**
+     * This method is used to stop BLE scan.
+     * If results are batched in the Bluetooth controller, they are flushed first and scan is stopped once they
+     * are received (at most after 200 ms), so scanCompleted can be called after this method returns.
      */
     @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
     public void stopScan() {
 
+        if (isStopping) {
+            return;
+        }
         Log.d(TAG, "Stop BLE device scan");
         handler.removeCallbacks(stopScanTask);
+        handler.removeCallbacks(deliverResultsTask);
 
-        if (bluetoothLeScanner != null && bluetoothAdapter != null && bluetoothAdapter.isEnabled()) {
+        if (isScanning && isBatchingOffloaded && isBluetoothReady()) {
             try {
-                bluetoothLeScanner.stopScan(scanCallback);
+                // Results batched in controller are given in onBatchScanResults, scan is stopped after that.
+                bluetoothLeScanner.flushPendingScanResults(scanCallback);
+                isStopping = true;
+                handler.postDelayed(finishStopTask, FLUSH_TIME_OUT);
+                return;
             } catch (Exception e) {
                 Log.e(TAG, e.toString());
                 e.printStackTrace();
             }
         }
-        isScanning = false;
-        bleScanListener.scanCompleted();
+        finishStop();
     }
 
     /**
@@ -153,6 +248,133 @@ public class BleScanner {
         return isScanning;
     }
 
+    private boolean isBluetoothReady() {
+        return bluetoothLeScanner != null && bluetoothAdapter != null && bluetoothAdapter.isEnabled();
+    }
+
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    private void finishStop() {
+
+        handler.removeCallbacks(finishStopTask);
+        isStopping = false;
+
+        if (isBluetoothReady()) {
+            try {
+                bluetoothLeScanner.stopScan(scanCallback);
+            } catch (Exception e) {
+                Log.e(TAG, e.toString());
+                e.printStackTrace();
+            }
+        }
+        if (reportDelay > 0) {
+            deliverResults();
+        }
+        isScanning = false;
+        targetDeviceName = null;
+        bleScanListener.scanCompleted();
+    }
+
+    private ScanSettings buildScanSettings(int scanMode) {
+
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setScanMode(scanMode);
+
+        if (reportDelay > 0 && bluetoothAdapter.isOffloadedScanBatchingSupported()) {
+            builder.setReportDelay(reportDelay);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Records scan result for the next batch. Device name is checked only when device is seen for the first time.
+     */
+    private void addToBatch(ScanResult result) {
+
+        if (result.getDevice() == null) {
+            return;
+        }
+        String address = result.getDevice().getAddress();
+        long timestamp = SystemClock.elapsedRealtime();
+        String serviceUuid = getServiceUuid(result);
+
+        synchronized (discoveredDevices) {
+
+            DiscoveredBleDevice device = discoveredDevices.get(address);
+
+            if (device != null) {
+                device.update(serviceUuid, result.getRssi(), timestamp);
+                updatedDevices.add(device);
+                return;
+            }
+
+            if (rejectedAddresses.contains(address)) {
+                return;
+            }
+
+            String deviceName = result.getScanRecord() == null ? null : result.getScanRecord().getDeviceName();
+
+            if (TextUtils.isEmpty(deviceName)) {
+                // Name can be available in scan response, so do not reject this device yet.
+                return;
+            }
+
+            if (!TextUtils.isEmpty(prefix) && !deviceName.startsWith(prefix)) {
+                rejectedAddresses.add(address);
+                return;
+            }
+
+            Log.d(TAG, "========== Device Found : " + deviceName);
+            device = new DiscoveredBleDevice(result.getDevice(), deviceName, serviceUuid, result.getRssi(), timestamp);
+            discoveredDevices.put(address, device);
+            newDevices.put(address, result);
+            updatedDevices.add(device);
+        }
+    }
+
+    private void deliverResults() {
+
+        ArrayList<ScanResult> foundResults;
+        ArrayList<DiscoveredBleDevice> devices;
+
+        synchronized (discoveredDevices) {
+            foundResults = new ArrayList<>(newDevices.values());
+            devices = new ArrayList<>(updatedDevices);
+            newDevices.clear();
+            updatedDevices.clear();
+        }
+
+        for (ScanResult result : foundResults) {
+            bleScanListener.onPeripheralFound(result.getDevice(), result);
+        }
+
+        if (!devices.isEmpty() && bleScanListener instanceof BleScanBatchListener) {
+            ((BleScanBatchListener) bleScanListener).onPeripheralsUpdated(devices);
+        }
+    }
+
+    private static String getServiceUuid(ScanResult result) {
+
+        String serviceUuid = "";
+
+        if (result.getScanRecord() != null && result.getScanRecord().getServiceUuids() != null
+                && result.getScanRecord().getServiceUuids().size() > 0) {
+            serviceUuid = result.getScanRecord().getServiceUuids().get(0).toString();
+        }
+        return serviceUuid;
+    }
+
+    private Runnable deliverResultsTask = new Runnable() {
+
+        @Override
+        public void run() {
+
+            if (isScanning) {
+                deliverResults();
+                handler.postDelayed(deliverResultsTask, reportDelay);
+            }
+        }
+    };
+
     private Runnable stopScanTask = new Runnable() {
 
         @Override
@@ -162,22 +384,46 @@ public class BleScanner {
         }
     };
 
+    private Runnable finishStopTask = new Runnable() {
+
+        @Override
+        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+        public void run() {
+
+            if (isStopping) {
+                finishStop();
+            }
+        }
+    };
+
     /**
      * ScanCallback to get scanned Peripheral.
      */
     private final ScanCallback scanCallback = new ScanCallback() {
 
         @Override
-        @RequiresPermission(Manifest.permission.BLUETOOTH)
+        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
         public void onScanResult(int callbackType, ScanResult result) {
 
+            if (reportDelay > 0 && TextUtils.isEmpty(targetDeviceName)) {
+                addToBatch(result);
+                return;
+            }
+
             String deviceName = result.getScanRecord().getDeviceName();
 
             if (result.getDevice() != null && !TextUtils.isEmpty(deviceName)) {
                 // Found BLE device
                 Log.d(TAG, "========== Device Found : " + deviceName);
 
-                if (TextUtils.isEmpty(prefix)) {
+                if (!TextUtils.isEmpty(targetDeviceName)) {
+
+                    // Results which are already queued can arrive after scan is stopped.
+                    if (isScanning && deviceName.equals(targetDeviceName)) {
+                        bleScanListener.onPeripheralFound(result.getDevice(), result);
+                        stopScan();
+                    }
+                } else if (TextUtils.isEmpty(prefix)) {
                     bleScanListener.onPeripheralFound(result.getDevice(), result);
                 } else if (deviceName.startsWith(prefix)) {
                     bleScanListener.onPeripheralFound(result.getDevice(), result);
@@ -188,7 +434,17 @@ public class BleScanner {
         @Override
         public void onBatchScanResults(List<ScanResult> results) {
             super.onBatchScanResults(results);
-            Log.d(TAG, "onBatchScanResults()");
+            Log.d(TAG, "onBatchScanResults(), size : " + results.size());
+
+            for (ScanResult result : results) {
+                addToBatch(result);
+            }
+
+            if (isStopping) {
+                // Flushed results are received, scan can be stopped now.
+                handler.removeCallbacks(finishStopTask);
+                handler.post(finishStopTask);
+            }
         }
 
         @Override
@@ -0,0 +1,106 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.device_scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * This class holds information of a BLE peripheral seen in scanning like name, address,
+ * primary service UUID, smoothed RSSI and time when it was last seen.
+ */
+public class DiscoveredBleDevice {
+
+    // Weight given to the latest RSSI sample while smoothing.
+    private static final float RSSI_SMOOTHING_FACTOR = 0.3f;
+
+    private final BluetoothDevice bluetoothDevice;
+    private final String deviceName;
+    private final String address;
+    private volatile String serviceUuid;
+    private volatile float smoothedRssi;
+    private volatile int sampleCount;
+    private volatile long lastSeenTime;
+
+    DiscoveredBleDevice(BluetoothDevice bluetoothDevice, String deviceName, String serviceUuid, int rssi, long timestamp) {
+
+        this.bluetoothDevice = bluetoothDevice;
+        this.deviceName = deviceName;
+        this.address = bluetoothDevice.getAddress();
+        this.serviceUuid = serviceUuid;
+        this.smoothedRssi = rssi;
+        this.sampleCount = 1;
+        this.lastSeenTime = timestamp;
+    }
+
+    /**
+     * Adds new advertisement sample for this device.
+     *
+     * @param serviceUuid Primary service UUID from the advertisement. Ignored if empty.
+     * @param rssi        RSSI of the advertisement.
+     * @param timestamp   Time of the advertisement as per SystemClock.elapsedRealtime().
+     */
+    synchronized void update(String serviceUuid, int rssi, long timestamp) {
+
+        if (serviceUuid != null && !serviceUuid.isEmpty()) {
+            this.serviceUuid = serviceUuid;
+        }
+        smoothedRssi = smoothedRssi + RSSI_SMOOTHING_FACTOR * (rssi - smoothedRssi);
+        sampleCount++;
+        lastSeenTime = timestamp;
+    }
+
+    public BluetoothDevice getBluetoothDevice() {
+        return bluetoothDevice;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getServiceUuid() {
+        return serviceUuid;
+    }
+
+    /**
+     * This method is used to get RSSI smoothed with exponential moving average over received advertisements.
+     *
+     * @return Returns smoothed RSSI in dBm.
+     */
+    public float getSmoothedRssi() {
+        return smoothedRssi;
+    }
+
+    /**
+     * This method is used to get number of advertisements received from this device.
+     *
+     * @return Returns number of RSSI samples.
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * This method is used to get time when device was last seen.
+     *
+     * @return Returns time as per SystemClock.elapsedRealtime().
+     */
+    public long getLastSeenTime() {
+        return lastSeenTime;
+    }
+}
@@ -0,0 +1,221 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.device_scanner;
+
+import android.Manifest;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.ScanResult;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.RequiresPermission;
+
+import com.espressif.provisioning.ProvisionedDeviceJournal;
+import com.espressif.provisioning.listeners.BleScanBatchListener;
+import com.espressif.provisioning.listeners.NearestDeviceListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+
+/**
+ * This class is used to select nearest BLE device which is not provisioned yet.
+ * Devices are scanned for some time, ranked by smoothed RSSI and devices recorded in ProvisionedDeviceJournal are skipped.
+ */
+public class NearestDeviceSelector {
+
+    private static final String TAG = "ESP:" + NearestDeviceSelector.class.getSimpleName();
+
+    private static final long DEFAULT_SCAN_DURATION = 3000;
+    private static final long REPORT_DELAY = 500;
+
+    // RSSI difference (in dB) from second nearest device for full confidence.
+    private static final float FULL_CONFIDENCE_RSSI_MARGIN = 10;
+    // Number of advertisements required for full confidence.
+    private static final int FULL_CONFIDENCE_SAMPLES = 5;
+
+    private Context context;
+    private String prefix;
+    private ProvisionedDeviceJournal journal;
+    private NearestDeviceListener nearestDeviceListener;
+    private BleScanner bleScanner;
+    private long scanDuration = DEFAULT_SCAN_DURATION;
+    // Set when selection is cancelled, failed or completed. Listener is not called after that.
+    private boolean isFinished = false;
+
+    // Key is device address.
+    private final LinkedHashMap<String, DiscoveredBleDevice> devices = new LinkedHashMap<>();
+    private ArrayList<DiscoveredBleDevice> rankedDevices = new ArrayList<>();
+
+    public NearestDeviceSelector(Context context, String prefix, ProvisionedDeviceJournal journal,
+                                 NearestDeviceListener nearestDeviceListener) {
+
+        this.context = context;
+        this.prefix = prefix;
+        this.journal = journal;
+        this.nearestDeviceListener = nearestDeviceListener;
+    }
+
+    /**
+     * This method is used to set duration of RSSI sampling. Default is 3 seconds.
+     * It should be set before starting the selection.
+     *
+     * @param scanDurationMs Scan duration in milliseconds.
+     */
+    public void setScanDuration(long scanDurationMs) {
+        this.scanDuration = scanDurationMs;
+    }
+
+    /**
+     * This method is used to start scanning and select nearest unprovisioned device.
+     * Result will be given in NearestDeviceListener after scan duration.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    public void start() {
+
+        Log.d(TAG, "Start nearest device selection");
+        isFinished = false;
+        devices.clear();
+        rankedDevices = new ArrayList<>();
+        bleScanner = new BleScanner(context, prefix, bleScanListener);
+        bleScanner.setScanTimeout(scanDuration);
+        bleScanner.setReportDelay(REPORT_DELAY);
+        bleScanner.startScan();
+    }
+
+    /**
+     * This method is used to stop the selection. NearestDeviceListener will not be called after this.
+     */
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    public void cancel() {
+
+        isFinished = true;
+        stopScan();
+    }
+
+    /**
+     * This method is used to get unprovisioned devices found in last selection, nearest device first.
+     *
+     * @return Returns list of devices.
+     */
+    public ArrayList<DiscoveredBleDevice> getRankedDevices() {
+        return new ArrayList<>(rankedDevices);
+    }
+
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+    private void stopScan() {
+
+        if (bleScanner != null && bleScanner.isScanning()) {
+            bleScanner.stopScan();
+        }
+    }
+
+    private void selectNearestDevice() {
+
+        ArrayList<DiscoveredBleDevice> candidates = new ArrayList<>();
+
+        for (DiscoveredBleDevice device : devices.values()) {
+
+            if (journal != null && journal.contains(device.getDeviceName())) {
+                Log.d(TAG, "Skipping provisioned device : " + device.getDeviceName());
+                continue;
+            }
+            candidates.add(device);
+        }
+
+        Collections.sort(candidates, new Comparator<DiscoveredBleDevice>() {
+
+            @Override
+            public int compare(DiscoveredBleDevice d1, DiscoveredBleDevice d2) {
+                return Float.compare(d2.getSmoothedRssi(), d1.getSmoothedRssi());
+            }
+        });
+        rankedDevices = candidates;
+
+        if (candidates.isEmpty()) {
+            nearestDeviceListener.onNoDeviceFound();
+            return;
+        }
+
+        DiscoveredBleDevice nearest = candidates.get(0);
+        float confidence = getConfidence(candidates);
+        Log.d(TAG, "Nearest device : " + nearest.getDeviceName() + ", RSSI : " + nearest.getSmoothedRssi()
+                + ", confidence : " + confidence);
+        nearestDeviceListener.onNearestDeviceSelected(nearest, confidence);
+    }
+
+    /**
+     * Confidence is based on RSSI margin from second nearest device and number of RSSI samples of nearest device.
+     */
+    private static float getConfidence(ArrayList<DiscoveredBleDevice> rankedDevices) {
+
+        DiscoveredBleDevice nearest = rankedDevices.get(0);
+        float marginScore = 1;
+
+        if (rankedDevices.size() > 1) {
+            float margin = nearest.getSmoothedRssi() - rankedDevices.get(1).getSmoothedRssi();
+            marginScore = Math.min(1, margin / FULL_CONFIDENCE_RSSI_MARGIN);
+        }
+        float sampleScore = Math.min(1, (float) nearest.getSampleCount() / FULL_CONFIDENCE_SAMPLES);
+        return marginScore * sampleScore;
+    }
+
+    private BleScanBatchListener bleScanListener = new BleScanBatchListener() {
+
+        @Override
+        public void onPeripheralsUpdated(ArrayList<DiscoveredBleDevice> updatedDevices) {
+
+            for (DiscoveredBleDevice device : updatedDevices) {
+                devices.put(device.getAddress(), device);
+            }
+        }
+
+        @Override
+        public void scanStartFailed() {
+
+            if (!isFinished) {
+                isFinished = true;
+                nearestDeviceListener.onFailure(new RuntimeException("Failed to start BLE scan"));
+            }
+        }
+
+        @Override
+        public void onPeripheralFound(BluetoothDevice device, ScanResult scanResult) {
+            // Devices are collected from onPeripheralsUpdated with smoothed RSSI.
+        }
+
+        @Override
+        public void scanCompleted() {
+
+            if (!isFinished) {
+                isFinished = true;
+                selectNearestDevice();
+            }
+        }
+
+        @Override
+        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_ADMIN, Manifest.permission.BLUETOOTH})
+        public void onFailure(Exception e) {
+
+            if (!isFinished) {
+                isFinished = true;
+                // Stopping the scan removes pending stop task, its scan completed callback is ignored.
+                stopScan();
+                nearestDeviceListener.onFailure(e);
+            }
+        }
+    };
+}
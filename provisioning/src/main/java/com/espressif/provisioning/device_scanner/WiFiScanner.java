@@ -21,6 +21,9 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -29,23 +32,49 @@ import androidx.annotation.RequiresPermission;
 import com.espressif.provisioning.ESPConstants;
 import com.espressif.provisioning.WiFiAccessPoint;
 import com.espressif.provisioning.listeners.WiFiScanListener;
+import com.espressif.provisioning.listeners.WiFiScanUpdateListener;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
  * This class is used for Wi-Fi scan functionality.
+ * Scan results cached by the system are returned directly if they are fresh enough.
+ * Android allows only 4 scan requests in 2 minutes, so new scan is requested only if it is within that limit.
+ *
+ * <p>When new scan is requested, cached results are given to {@link WiFiScanUpdateListener} immediately
+ * and devices found in each scan results broadcast are given as they arrive.
+ * Results are de-duplicated per SSID with maximum RSSI of all BSSIDs, so list given to
+ * {@link WiFiScanListener#onWifiListReceived(ArrayList)} has one entry for each SSID.
  */
 public class WiFiScanner {
 
     private static final String TAG = "ESP:" + WiFiScanner.class.getSimpleName();
 
+    private static final long DEFAULT_MAX_CACHE_AGE = 15000;
+    private static final long SCAN_TIME_OUT = 10000;
+    private static final int SCAN_THROTTLE_MAX_REQUESTS = 4;
+    private static final long SCAN_THROTTLE_WINDOW = 120000;
+
+    // Times of scan requests made by any instance, as per SystemClock.elapsedRealtime().
+    private static final ArrayDeque<Long> scanRequestTimes = new ArrayDeque<>();
+
     private Context context;
     private WiFiScanListener wiFiScanListener;
     private WifiManager wifiManager;
+    private Handler handler;
     private ArrayList<WiFiAccessPoint> results;
 
+    // Key is SSID.
+    private LinkedHashMap<String, WiFiAccessPoint> devices = new LinkedHashMap<>();
+    private HashSet<String> rejectedSsids = new HashSet<>();
+
+    private long maxCacheAge = DEFAULT_MAX_CACHE_AGE;
     private boolean isScanning = false;
+    private boolean isReceiverRegistered = false;
     private String prefix;
 
     @RequiresPermission(Manifest.permission.CHANGE_WIFI_STATE)
@@ -54,6 +83,7 @@ public class WiFiScanner {
         this.context = context;
         this.wiFiScanListener = wiFiScanListener;
         results = new ArrayList<>();
+        handler = new Handler(Looper.getMainLooper());
         wifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
 
         if (!wifiManager.isWifiEnabled()) {
@@ -69,14 +99,50 @@ public class WiFiScanner {
         this.prefix = prefix;
     }
 
+    /**
+     * This method is used to set maximum age of system scan results which can be returned without new scan.
+     * Default is 15 seconds. Set 0 to always request new scan (if allowed by the scan limit).
+     * It should be set before starting the scan.
+     *
+     * @param maxCacheAgeMs Maximum age in milliseconds.
+     */
+    public void setMaxCacheAge(long maxCacheAgeMs) {
+        this.maxCacheAge = maxCacheAgeMs;
+    }
+
     @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE})
     public void startScan() {
 
         Log.d(TAG, "Starting Wi-Fi device scanning...");
         isScanning = true;
         results.clear();
+        devices.clear();
+        rejectedSsids.clear();
+
+        List<ScanResult> cachedResults = wifiManager.getScanResults();
+
+        if (!cachedResults.isEmpty() && getAge(cachedResults) <= maxCacheAge) {
+            Log.d(TAG, "Using cached Wi-Fi scan results");
+            postCachedResults(cachedResults);
+            return;
+        }
+
+        if (!acquireScanRequest()) {
+            Log.w(TAG, "Wi-Fi scan limit reached, using cached scan results");
+            postCachedResults(cachedResults);
+            return;
+        }
+
         context.registerReceiver(wifiReceiver, new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
-        wifiManager.startScan();
+        isReceiverRegistered = true;
+
+        if (!wifiManager.startScan()) {
+            Log.w(TAG, "Wi-Fi scan request is rejected, using cached scan results");
+            postCachedResults(cachedResults);
+            return;
+        }
+        handler.postDelayed(scanTimeoutTask, SCAN_TIME_OUT);
+        postScanUpdate(cachedResults);
     }
 
     /**
@@ -88,41 +154,237 @@ public class WiFiScanner {
         return isScanning;
     }
 
-    private BroadcastReceiver wifiReceiver = new BroadcastReceiver() {
+    /**
+     * Records scan request if it is within the system scan limit.
+     *
+     * @return Returns true if scan can be requested.
+     */
+    private static boolean acquireScanRequest() {
 
-        @Override
-        @RequiresPermission(Manifest.permission.ACCESS_WIFI_STATE)
-        public void onReceive(Context context, Intent intent) {
+        long now = SystemClock.elapsedRealtime();
 
-            List<ScanResult> scanResults = wifiManager.getScanResults();
-            context.unregisterReceiver(this);
+        synchronized (scanRequestTimes) {
+
+            while (!scanRequestTimes.isEmpty() && now - scanRequestTimes.peekFirst() >= SCAN_THROTTLE_WINDOW) {
+                scanRequestTimes.pollFirst();
+            }
+
+            if (scanRequestTimes.size() >= SCAN_THROTTLE_MAX_REQUESTS) {
+                return false;
+            }
+            scanRequestTimes.addLast(now);
+            return true;
+        }
+    }
 
-            for (ScanResult scanResult : scanResults) {
+    /**
+     * Gives cached scan results to the listener through the handler,
+     * so that listener is always called asynchronously as for new scan.
+     */
+    private void postCachedResults(final List<ScanResult> cachedResults) {
 
-                Log.d(TAG, "========== Device Found : " + scanResult.SSID + " - " + scanResult.capabilities);
-                String deviceName = scanResult.SSID;
-                WiFiAccessPoint wiFiAccessPoint = new WiFiAccessPoint();
-                wiFiAccessPoint.setWifiName(scanResult.SSID);
-                wiFiAccessPoint.setRssi(scanResult.level);
+        handler.post(new Runnable() {
 
-                if (scanResult.capabilities.contains("WPA") || scanResult.capabilities.contains("WEP")) {
-                    wiFiAccessPoint.setSecurity(ESPConstants.WIFI_WEP);
-                } else {
-                    wiFiAccessPoint.setSecurity(ESPConstants.WIFI_OPEN);
+            @Override
+            public void run() {
+
+                if (!isScanning) {
+                    return;
                 }
+                processScanResults(cachedResults);
+                scanCompleted();
+            }
+        });
+    }
 
-                if (TextUtils.isEmpty(prefix)) {
+    /**
+     * Gives devices of older scan results to WiFiScanUpdateListener while new scan is running.
+     */
+    private void postScanUpdate(final List<ScanResult> cachedResults) {
+
+        if (cachedResults.isEmpty()) {
+            return;
+        }
 
-                    results.add(wiFiAccessPoint);
+        handler.post(new Runnable() {
 
-                } else if (deviceName.startsWith(prefix)) {
+            @Override
+            public void run() {
 
-                    results.add(wiFiAccessPoint);
+                if (isScanning) {
+                    processScanResults(cachedResults);
                 }
+            }
+        });
+    }
+
+    /**
+     * Returns age of the newest scan result in milliseconds.
+     */
+    private static long getAge(List<ScanResult> scanResults) {
+
+        long newest = 0;
+
+        for (ScanResult scanResult : scanResults) {
+            newest = Math.max(newest, scanResult.timestamp);
+        }
+        // ScanResult timestamp is in microseconds since boot.
+        return SystemClock.elapsedRealtime() - newest / 1000;
+    }
+
+    /**
+     * Adds scan results in the device list. Prefix is checked only once for each SSID.
+     * Newly found devices are given to WiFiScanUpdateListener.
+     */
+    private void processScanResults(List<ScanResult> scanResults) {
+
+        ArrayList<WiFiAccessPoint> newDevices = new ArrayList<>();
+
+        for (ScanResult scanResult : scanResults) {
+
+            String deviceName = scanResult.SSID;
+
+            if (TextUtils.isEmpty(deviceName)) {
+                continue;
+            }
+
+            WiFiAccessPoint wiFiAccessPoint = devices.get(deviceName);
+
+            if (wiFiAccessPoint != null) {
+                // Same SSID from another BSSID or newer scan.
+                wiFiAccessPoint.setRssi(Math.max(wiFiAccessPoint.getRssi(), scanResult.level));
+                continue;
+            }
+
+            if (rejectedSsids.contains(deviceName)) {
+                continue;
+            }
+
+            if (!TextUtils.isEmpty(prefix) && !deviceName.startsWith(prefix)) {
+                rejectedSsids.add(deviceName);
+                continue;
+            }
+
+            Log.d(TAG, "========== Device Found : " + scanResult.SSID + " - " + scanResult.capabilities);
+            wiFiAccessPoint = new WiFiAccessPoint();
+            wiFiAccessPoint.setWifiName(deviceName);
+            wiFiAccessPoint.setRssi(scanResult.level);
+            wiFiAccessPoint.setSecurity(getSecurityType(scanResult.capabilities));
+            devices.put(deviceName, wiFiAccessPoint);
+            newDevices.add(wiFiAccessPoint);
+        }
+
+        if (!newDevices.isEmpty() && wiFiScanListener instanceof WiFiScanUpdateListener) {
+            ((WiFiScanUpdateListener) wiFiScanListener).onWifiDevicesFound(newDevices);
+        }
+    }
+
+    /**
+     * Gets security type from capabilities of the scan result. e.g. "[WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS]"
+     *
+     * @param capabilities Capabilities of the access point.
+     * @return Returns security type as per ESPConstants.
+     */
+    static int getSecurityType(String capabilities) {
+
+        if (TextUtils.isEmpty(capabilities)) {
+            return ESPConstants.WIFI_OPEN;
+        }
+
+        boolean isWpa = false, isWpa2 = false, isPsk = false, isSae = false, isEap = false, isWep = false;
+        int start = capabilities.indexOf('[');
+
+        while (start >= 0) {
+
+            int end = capabilities.indexOf(']', start);
+
+            if (end < 0) {
+                break;
+            }
+            String token = capabilities.substring(start + 1, end);
+
+            if (token.startsWith("WPA2-") || token.startsWith("RSN-")) {
+                isWpa2 = true;
+            } else if (token.startsWith("WPA-")) {
+                isWpa = true;
+            } else if (token.startsWith("WEP")) {
+                isWep = true;
+            }
+
+            if (token.contains("PSK")) {
+                isPsk = true;
+            }
+            if (token.contains("SAE")) {
+                isSae = true;
+            }
+            if (token.contains("EAP")) {
+                isEap = true;
+            }
+            start = capabilities.indexOf('[', end);
+        }
+
+        if (isEap) {
+            return ESPConstants.WIFI_WPA2_ENTERPRISE;
+        } else if (isSae) {
+            return isPsk ? ESPConstants.WIFI_WPA2_WPA3_PSK : ESPConstants.WIFI_WPA3_PSK;
+        } else if (isWpa && isWpa2) {
+            return ESPConstants.WIFI_WPA_WPA2_PSK;
+        } else if (isWpa2) {
+            return ESPConstants.WIFI_WPA2_PSK;
+        } else if (isWpa) {
+            return ESPConstants.WIFI_WPA_PSK;
+        } else if (isWep) {
+            return ESPConstants.WIFI_WEP;
+        }
+        return ESPConstants.WIFI_OPEN;
+    }
+
+    private void scanCompleted() {
+
+        handler.removeCallbacks(scanTimeoutTask);
+
+        if (isReceiverRegistered) {
+            context.unregisterReceiver(wifiReceiver);
+            isReceiverRegistered = false;
+        }
+
+        if (!isScanning) {
+            return;
+        }
+        isScanning = false;
+        results.clear();
+        results.addAll(devices.values());
+        wiFiScanListener.onWifiListReceived(results);
+    }
+
+    private Runnable scanTimeoutTask = new Runnable() {
+
+        @Override
+        @RequiresPermission(Manifest.permission.ACCESS_WIFI_STATE)
+        public void run() {
+            Log.w(TAG, "Wi-Fi scan results are not received, using cached scan results");
+            processScanResults(wifiManager.getScanResults());
+            scanCompleted();
+        }
+    };
+
+    private BroadcastReceiver wifiReceiver = new BroadcastReceiver() {
+
+        @Override
+        @RequiresPermission(Manifest.permission.ACCESS_WIFI_STATE)
+        public void onReceive(Context context, Intent intent) {
+
+            if (!isScanning) {
+                return;
+            }
+            List<ScanResult> scanResults = wifiManager.getScanResults();
+            processScanResults(scanResults);
 
+            // Results are not updated if scan is failed. New devices are still given and
+            // scanning continues till time out, as scan of another app can give new results.
+            if (intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, true)) {
+                scanCompleted();
             }
-            isScanning = false;
-            wiFiScanListener.onWifiListReceived(results);
         }
     };
 }
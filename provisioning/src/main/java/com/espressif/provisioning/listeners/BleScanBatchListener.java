@@ -0,0 +1,33 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import com.espressif.provisioning.device_scanner.DiscoveredBleDevice;
+
+import java.util.ArrayList;
+
+/**
+ * Interface for BLE device scanning with batched delivery.
+ * Used when report delay is set in BleScanner.
+ */
+public interface BleScanBatchListener extends BleScanListener {
+
+    /**
+     * Called once per report delay with devices which are found or seen again since the last batch.
+     *
+     * @param devices List of devices with smoothed RSSI.
+     */
+    void onPeripheralsUpdated(ArrayList<DiscoveredBleDevice> devices);
+}
@@ -0,0 +1,44 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import com.espressif.provisioning.ESPDevice;
+
+/**
+ * Interface for connection callbacks of a single ESPDevice.
+ */
+public interface DeviceConnectionListener {
+
+    /**
+     * Called when device is connected.
+     *
+     * @param device Connected device.
+     */
+    void onDeviceConnected(ESPDevice device);
+
+    /**
+     * Called when device connection is failed.
+     *
+     * @param device Device which could not be connected.
+     */
+    void onDeviceConnectionFailed(ESPDevice device);
+
+    /**
+     * Called when device is disconnected.
+     *
+     * @param device Disconnected device.
+     */
+    void onDeviceDisconnected(ESPDevice device);
+}
@@ -0,0 +1,44 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import com.espressif.provisioning.device_scanner.DiscoveredBleDevice;
+
+/**
+ * Interface for selection of nearest unprovisioned BLE device.
+ */
+public interface NearestDeviceListener {
+
+    /**
+     * Called when nearest unprovisioned device is selected.
+     *
+     * @param device     Selected device.
+     * @param confidence Confidence of the selection from 0 to 1.
+     *                   It is low if other devices have similar RSSI or device is seen only few times.
+     */
+    void onNearestDeviceSelected(DiscoveredBleDevice device, float confidence);
+
+    /**
+     * Called when no unprovisioned device is found in scanning.
+     */
+    void onNoDeviceFound();
+
+    /**
+     * Failed to scan for BLE devices.
+     *
+     * @param e Exception
+     */
+    void onFailure(Exception e);
+}
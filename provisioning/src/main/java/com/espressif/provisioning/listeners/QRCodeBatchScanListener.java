@@ -0,0 +1,41 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import com.espressif.provisioning.ESPDevice;
+
+/**
+ * Interface for batch QR code scanning callbacks. Callbacks are given on frame processing thread,
+ * or on main thread for BLE devices which are found in BLE scan.
+ */
+public interface QRCodeBatchScanListener {
+
+    /**
+     * Called when QR code of a new device is scanned and device is added in the queue.
+     *
+     * @param espDevice Device created from QR code data.
+     * @param queueSize Number of devices waiting in the queue, including this device.
+     */
+    void onDeviceQueued(ESPDevice espDevice, int queueSize);
+
+    /**
+     * Called once for each QR code which does not have valid device information,
+     * or whose BLE device is not found in BLE scan.
+     *
+     * @param e    Exception
+     * @param data QR code data string.
+     */
+    void onFailure(Exception e, String data);
+}
@@ -0,0 +1,33 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import com.espressif.provisioning.WiFiAccessPoint;
+
+import java.util.ArrayList;
+
+/**
+ * Interface for Wi-Fi device scanning with incremental results.
+ * Complete list is still returned in WiFiScanListener.onWifiListReceived when scanning is finished.
+ */
+public interface WiFiScanUpdateListener extends WiFiScanListener {
+
+    /**
+     * Called with Wi-Fi devices which are found for the first time in current scan.
+     *
+     * @param newDevices ArrayList of newly found Wi-Fi access points.
+     */
+    void onWifiDevicesFound(ArrayList<WiFiAccessPoint> newDevices);
+}
@@ -0,0 +1,48 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+/**
+ * Interface for QR code decoder backend.
+ * Decoder works on luminance (Y) plane of camera frame, so same decoder can be used with any frame source
+ * and it can be benchmarked on JVM without Android framework.
+ */
+public interface QRCodeDecoder {
+
+    /**
+     * This method is used to get name of the decoder, used in logs and benchmark results.
+     *
+     * @return Returns decoder name.
+     */
+    String getName();
+
+    /**
+     * This method is used to decode QR code from luminance plane.
+     * Decoder can keep reference of the data only till this method returns.
+     *
+     * @param luma      Luminance data, one byte per pixel.
+     * @param offset    Offset of first pixel in the data.
+     * @param width     Width of the image in pixels.
+     * @param height    Height of the image in pixels.
+     * @param rowStride Number of bytes between start of two rows.
+     * @return Returns text of QR code or null if QR code is not found.
+     */
+    String decode(byte[] luma, int offset, int width, int height, int rowStride);
+
+    /**
+     * This method is used to release resources held by the decoder.
+     */
+    void release();
+}
@@ -0,0 +1,525 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark to select QR code decoder for the device. Same set of frames is decoded with each decoder and
+ * fastest decoder among decoders which decode most frames is selected.
+ * It does not use Android framework, so it can be run on JVM with sample images as well :
+ * java -Dqrcode.decoders=com.example.MyDecoder QRCodeDecoderBenchmark [image.pgm ...]
+ * Synthetic QR code frames are used if images are not given. JVM runner benchmarks ZXing and decoder classes
+ * given in "qrcode.decoders" property (comma separated, constructor without arguments).
+ * Vision decoder needs Play services, so it is benchmarked only on device with ESPProvisionManager.selectQRCodeDecoder.
+ * <p>
+ * Samples from camera of the device are recorded with {@link SampleRecorder} set as QR code decoder while scanning.
+ * They can be given to ESPProvisionManager.selectQRCodeDecoder directly or saved with {@link #writePgm}
+ * and given to the JVM runner.
+ */
+public final class QRCodeDecoderBenchmark {
+
+    private static final int DEFAULT_ROUNDS = 5;
+    private static final String DECODERS_PROPERTY = "qrcode.decoders";
+
+    private static final String SAMPLE_DATA = "{\"ver\":\"v1\",\"name\":\"PROV_123456\",\"pop\":\"abcd1234\",\"transport\":\"ble\"}";
+    private static final int SAMPLE_FRAME_WIDTH = 640;
+    private static final int SAMPLE_FRAME_HEIGHT = 480;
+
+    private QRCodeDecoderBenchmark() {
+    }
+
+    /**
+     * Luminance frame used in the benchmark.
+     */
+    public static final class Sample {
+
+        private final byte[] luma;
+        private final int width;
+        private final int height;
+        private final int rowStride;
+        private final String expectedText;
+
+        /**
+         * @param luma         Luminance data, one byte per pixel.
+         * @param width        Width of the image in pixels.
+         * @param height       Height of the image in pixels.
+         * @param rowStride    Number of bytes between start of two rows.
+         * @param expectedText Text of QR code in the frame or null if any text is accepted.
+         */
+        public Sample(byte[] luma, int width, int height, int rowStride, String expectedText) {
+
+            if (rowStride < width || luma.length < rowStride * height) {
+                throw new IllegalArgumentException("Image data is smaller than image size");
+            }
+            this.luma = luma;
+            this.width = width;
+            this.height = height;
+            this.rowStride = rowStride;
+            this.expectedText = expectedText;
+        }
+
+        boolean isDecoded(String text) {
+            return text != null && (expectedText == null || expectedText.equals(text));
+        }
+    }
+
+    /**
+     * Decoder which records frames in which QR code is decoded by the wrapped decoder, e.g. to get benchmark samples
+     * from camera of the device. It is set with ESPProvisionManager.setQRCodeDecoder for normal scanning.
+     * Frames are copied only till maximum number of samples is recorded.
+     */
+    public static final class SampleRecorder implements QRCodeDecoder {
+
+        private final QRCodeDecoder decoder;
+        private final int maxSamples;
+        private final ArrayList<Sample> samples = new ArrayList<>();
+
+        /**
+         * @param decoder    Decoder used to decode frames. It is released with this recorder.
+         * @param maxSamples Maximum number of samples to record.
+         */
+        public SampleRecorder(QRCodeDecoder decoder, int maxSamples) {
+            this.decoder = decoder;
+            this.maxSamples = maxSamples;
+        }
+
+        @Override
+        public String getName() {
+            return decoder.getName();
+        }
+
+        @Override
+        public String decode(byte[] luma, int offset, int width, int height, int rowStride) {
+
+            String text = decoder.decode(luma, offset, width, height, rowStride);
+
+            if (text != null) {
+
+                synchronized (samples) {
+
+                    if (samples.size() < maxSamples) {
+
+                        byte[] copy = new byte[width * height];
+
+                        for (int y = 0; y < height; y++) {
+                            System.arraycopy(luma, offset + y * rowStride, copy, y * width, width);
+                        }
+                        samples.add(new Sample(copy, width, height, width, text));
+                    }
+                }
+            }
+            return text;
+        }
+
+        /**
+         * This method is used to get recorded samples. Decoded text of each sample is its expected text.
+         *
+         * @return Returns copy of the list of recorded samples.
+         */
+        public List<Sample> getSamples() {
+
+            synchronized (samples) {
+                return new ArrayList<>(samples);
+            }
+        }
+
+        @Override
+        public void release() {
+            decoder.release();
+        }
+    }
+
+    /**
+     * Benchmark result of one decoder.
+     */
+    public static final class DecoderResult {
+
+        private final QRCodeDecoder decoder;
+        private final int decodedCount;
+        private final int sampleCount;
+        private final long medianNanos;
+        private final long maxNanos;
+        private final RuntimeException error;
+
+        DecoderResult(QRCodeDecoder decoder, int decodedCount, int sampleCount, long medianNanos, long maxNanos,
+                      RuntimeException error) {
+
+            this.decoder = decoder;
+            this.decodedCount = decodedCount;
+            this.sampleCount = sampleCount;
+            this.medianNanos = medianNanos;
+            this.maxNanos = maxNanos;
+            this.error = error;
+        }
+
+        public QRCodeDecoder getDecoder() {
+            return decoder;
+        }
+
+        /**
+         * This method is used to get number of samples decoded with expected text.
+         *
+         * @return Returns number of decoded samples.
+         */
+        public int getDecodedCount() {
+            return decodedCount;
+        }
+
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * This method is used to get median time taken to decode one sample.
+         *
+         * @return Returns time in nanoseconds.
+         */
+        public long getMedianDecodeTime() {
+            return medianNanos;
+        }
+
+        /**
+         * This method is used to get maximum time taken to decode one sample.
+         *
+         * @return Returns time in nanoseconds.
+         */
+        public long getMaxDecodeTime() {
+            return maxNanos;
+        }
+
+        /**
+         * This method is used to get error thrown by the decoder, e.g. if decoder is not available on the device.
+         *
+         * @return Returns error or null if decoder did not fail.
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+
+            if (error != null) {
+                return decoder.getName() + " : failed, " + error.getMessage();
+            }
+            return String.format(Locale.US, "%s : decoded %d/%d, median %.2f ms, max %.2f ms", decoder.getName(),
+                    decodedCount, sampleCount, medianNanos / 1e6, maxNanos / 1e6);
+        }
+    }
+
+    /**
+     * Benchmark results of all decoders.
+     */
+    public static final class Result {
+
+        private final List<DecoderResult> decoderResults;
+        private final DecoderResult fastest;
+
+        Result(List<DecoderResult> decoderResults, DecoderResult fastest) {
+            this.decoderResults = Collections.unmodifiableList(decoderResults);
+            this.fastest = fastest;
+        }
+
+        public List<DecoderResult> getDecoderResults() {
+            return decoderResults;
+        }
+
+        /**
+         * This method is used to get fastest decoder among decoders which decoded most samples.
+         *
+         * @return Returns decoder or null if no decoder could decode any sample.
+         */
+        public QRCodeDecoder getFastestDecoder() {
+            return fastest == null ? null : fastest.getDecoder();
+        }
+
+        @Override
+        public String toString() {
+
+            StringBuilder builder = new StringBuilder();
+
+            for (DecoderResult decoderResult : decoderResults) {
+                builder.append(decoderResult).append('\n');
+            }
+            builder.append("Selected : ").append(fastest == null ? "none" : fastest.getDecoder().getName());
+            return builder.toString();
+        }
+    }
+
+    /**
+     * This method is used to run the benchmark. Each decoder decodes all samples once for warm up
+     * (e.g. class loading, JIT, loading of native model) and then given rounds are measured.
+     * It should be called from background thread.
+     *
+     * @param decoders Decoders to compare.
+     * @param samples  Frames to decode.
+     * @param rounds   Number of measured rounds.
+     * @return Returns benchmark result.
+     */
+    public static Result run(List<? extends QRCodeDecoder> decoders, List<Sample> samples, int rounds) {
+
+        if (samples.isEmpty() || rounds < 1) {
+            throw new IllegalArgumentException("Samples and rounds are required");
+        }
+
+        ArrayList<DecoderResult> decoderResults = new ArrayList<>();
+        DecoderResult fastest = null;
+
+        for (QRCodeDecoder decoder : decoders) {
+
+            DecoderResult decoderResult = measure(decoder, samples, rounds);
+            decoderResults.add(decoderResult);
+
+            if (decoderResult.error != null || decoderResult.decodedCount == 0) {
+                continue;
+            }
+            if (fastest == null || decoderResult.decodedCount > fastest.decodedCount
+                    || (decoderResult.decodedCount == fastest.decodedCount && decoderResult.medianNanos < fastest.medianNanos)) {
+                fastest = decoderResult;
+            }
+        }
+        return new Result(decoderResults, fastest);
+    }
+
+    private static DecoderResult measure(QRCodeDecoder decoder, List<Sample> samples, int rounds) {
+
+        int decodedCount = 0;
+        long[] times = new long[samples.size() * rounds];
+        int index = 0;
+
+        try {
+            for (Sample sample : samples) {
+                if (sample.isDecoded(decode(decoder, sample))) {
+                    decodedCount++;
+                }
+            }
+
+            for (int round = 0; round < rounds; round++) {
+                for (Sample sample : samples) {
+                    long startTime = System.nanoTime();
+                    decode(decoder, sample);
+                    times[index++] = System.nanoTime() - startTime;
+                }
+            }
+        } catch (RuntimeException e) {
+            return new DecoderResult(decoder, 0, samples.size(), 0, 0, e);
+        }
+
+        Arrays.sort(times);
+        return new DecoderResult(decoder, decodedCount, samples.size(), times[times.length / 2],
+                times[times.length - 1], null);
+    }
+
+    private static String decode(QRCodeDecoder decoder, Sample sample) {
+        return decoder.decode(sample.luma, 0, sample.width, sample.height, sample.rowStride);
+    }
+
+    /**
+     * This method is used to read sample from binary PGM (P5) image, e.g. frame recorded from camera.
+     *
+     * @param in           Input stream of the image. It is not closed.
+     * @param expectedText Text of QR code in the image or null if any text is accepted.
+     * @return Returns sample.
+     * @throws IOException If image can not be read or it is not 8 bit binary PGM.
+     */
+    public static Sample readPgm(InputStream in, String expectedText) throws IOException {
+
+        if (!"P5".equals(readPgmToken(in))) {
+            throw new IOException("Image is not binary PGM");
+        }
+        int width = Integer.parseInt(readPgmToken(in));
+        int height = Integer.parseInt(readPgmToken(in));
+        int maxValue = Integer.parseInt(readPgmToken(in));
+
+        if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 255) {
+            throw new IOException("PGM image is not supported");
+        }
+
+        byte[] luma = new byte[width * height];
+        int read = 0;
+
+        while (read < luma.length) {
+            int count = in.read(luma, read, luma.length - read);
+            if (count < 0) {
+                throw new EOFException("PGM image is truncated");
+            }
+            read += count;
+        }
+        return new Sample(luma, width, height, width, expectedText);
+    }
+
+    /**
+     * This method is used to write sample as binary PGM (P5) image, which can be read with {@link #readPgm}.
+     *
+     * @param out    Output stream of the image. It is not closed.
+     * @param sample Sample to write.
+     * @throws IOException If image can not be written.
+     */
+    public static void writePgm(OutputStream out, Sample sample) throws IOException {
+
+        out.write(("P5\n" + sample.width + " " + sample.height + "\n255\n").getBytes("US-ASCII"));
+
+        for (int y = 0; y < sample.height; y++) {
+            out.write(sample.luma, y * sample.rowStride, sample.width);
+        }
+    }
+
+    /**
+     * Reads header token. Single whitespace after last token is consumed, as image data starts after it.
+     */
+    private static String readPgmToken(InputStream in) throws IOException {
+
+        StringBuilder token = new StringBuilder();
+        int c;
+
+        while ((c = in.read()) >= 0) {
+
+            if (c == '#' && token.length() == 0) {
+                while (c >= 0 && c != '\n') {
+                    c = in.read();
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (token.length() > 0) {
+                    return token.toString();
+                }
+            } else {
+                token.append((char) c);
+            }
+        }
+        throw new EOFException("PGM header is truncated");
+    }
+
+    /**
+     * This method is used to create frames with QR code of given text in different sizes and contrast, with sensor noise.
+     *
+     * @param text Text of QR code.
+     * @return Returns samples.
+     */
+    public static List<Sample> createSyntheticSamples(String text) {
+
+        ArrayList<Sample> samples = new ArrayList<>();
+        Random random = new Random(text.hashCode());
+        int[] codeSizes = {160, 240, 360};
+
+        for (int codeSize : codeSizes) {
+            // Full contrast and low contrast (e.g. dim light), second one has padding at the end of rows.
+            samples.add(renderSample(text, codeSize, 20, 230, SAMPLE_FRAME_WIDTH, random));
+            samples.add(renderSample(text, codeSize, 70, 170, SAMPLE_FRAME_WIDTH + 64, random));
+        }
+        return samples;
+    }
+
+    private static Sample renderSample(String text, int codeSize, int dark, int light, int rowStride, Random random) {
+
+        BitMatrix matrix;
+
+        try {
+            matrix = new QRCodeWriter().encode(text, BarcodeFormat.QR_CODE, codeSize, codeSize);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Text can not be encoded in QR code", e);
+        }
+
+        int width = SAMPLE_FRAME_WIDTH;
+        int height = SAMPLE_FRAME_HEIGHT;
+        byte[] luma = new byte[rowStride * height];
+        int left = random.nextInt(width - matrix.getWidth() + 1);
+        int top = random.nextInt(height - matrix.getHeight() + 1);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+
+                int mx = x - left;
+                int my = y - top;
+                boolean isDark = mx >= 0 && my >= 0 && mx < matrix.getWidth() && my < matrix.getHeight() && matrix.get(mx, my);
+                int value = (isDark ? dark : light) + (int) (random.nextGaussian() * 2);
+                luma[y * rowStride + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return new Sample(luma, width, height, rowStride, text);
+    }
+
+    /**
+     * Runs benchmark of decoders available on JVM and prints the result.
+     * Decoders are ZXing and classes given in "qrcode.decoders" system property.
+     *
+     * @param args Paths of PGM images. Synthetic frames are used if no path is given.
+     * @throws IOException If image can not be read.
+     */
+    public static void main(String[] args) throws IOException {
+
+        List<Sample> samples;
+
+        if (args.length == 0) {
+            samples = createSyntheticSamples(SAMPLE_DATA);
+        } else {
+            samples = new ArrayList<>();
+
+            for (String path : args) {
+                InputStream in = new BufferedInputStream(new FileInputStream(path));
+                try {
+                    samples.add(readPgm(in, null));
+                } finally {
+                    in.close();
+                }
+            }
+        }
+
+        List<QRCodeDecoder> decoders = createDecoders(System.getProperty(DECODERS_PROPERTY, ""));
+        System.out.println(run(decoders, samples, DEFAULT_ROUNDS));
+
+        for (QRCodeDecoder decoder : decoders) {
+            decoder.release();
+        }
+    }
+
+    private static List<QRCodeDecoder> createDecoders(String classNames) {
+
+        ArrayList<QRCodeDecoder> decoders = new ArrayList<>();
+        decoders.add(new ZXingQRCodeDecoder());
+
+        for (String className : classNames.split(",")) {
+
+            className = className.trim();
+
+            if (className.isEmpty()) {
+                continue;
+            }
+
+            try {
+                decoders.add((QRCodeDecoder) Class.forName(className).getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                System.err.println("Decoder " + className + " is not available : " + e);
+            }
+        }
+        return decoders;
+    }
+}
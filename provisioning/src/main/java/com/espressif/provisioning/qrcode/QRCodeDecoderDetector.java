@@ -0,0 +1,79 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Detector which decodes frames with given QR code decoder, so that any decoder can be used with
+ * CameraSource and Camera2Source. Detected item is text of the QR code.
+ * Decoder is not released with the detector, it is owned by the caller.
+ */
+public class QRCodeDecoderDetector extends Detector<String> {
+
+    private final QRCodeDecoder decoder;
+    private byte[] buffer;
+
+    public QRCodeDecoderDetector(QRCodeDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    @Override
+    public SparseArray<String> detect(Frame frame) {
+
+        SparseArray<String> results = new SparseArray<>();
+        ByteBuffer data = frame.getGrayscaleImageData();
+        int width = frame.getMetadata().getWidth();
+        int height = frame.getMetadata().getHeight();
+        int size = width * height;
+
+        if (data == null || data.remaining() < size) {
+            return results;
+        }
+
+        byte[] luma;
+        int offset;
+
+        if (data.hasArray()) {
+            luma = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            // Direct buffer of Camera2 image.
+            if (buffer == null || buffer.length < size) {
+                buffer = new byte[size];
+            }
+            data.duplicate().get(buffer, 0, size);
+            luma = buffer;
+            offset = 0;
+        }
+
+        String text = decoder.decode(luma, offset, width, height, width);
+
+        if (text != null) {
+            results.append(0, text);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return true;
+    }
+}
@@ -0,0 +1,230 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import com.espressif.provisioning.ESPConstants;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Device information from QR code data, in JSON or compact format (see QRCodePayloadParser).
+ * All QR code decoders and scanning modes use this class to parse QR code data.
+ */
+public final class QRCodePayload {
+
+    private static final String KEY_NAME = "name";
+    private static final String KEY_POP = "pop";
+    private static final String KEY_TRANSPORT = "transport";
+    private static final String KEY_SECURITY = "security";
+    private static final String KEY_USERNAME = "username";
+    private static final String KEY_PASSWORD = "password";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String TRANSPORT_SOFTAP = "softap";
+    static final String TRANSPORT_BLE = "ble";
+
+    private final String deviceName;
+    private final String proofOfPossession;
+    private final String transport;
+    private final ESPConstants.SecurityType securityType;
+    private final String userName;
+    private final String password;
+
+    QRCodePayload(String deviceName, String proofOfPossession, String transport,
+                          ESPConstants.SecurityType securityType, String userName, String password) {
+
+        this.deviceName = deviceName;
+        this.proofOfPossession = proofOfPossession;
+        this.transport = transport;
+        this.securityType = securityType;
+        this.userName = userName;
+        this.password = password;
+    }
+
+    /**
+     * This method is used to create device information, e.g. to generate QR code in compact format.
+     *
+     * @param deviceName        Device name.
+     * @param proofOfPossession Proof of possession, empty if not required.
+     * @param transportType     Transport type.
+     * @param securityType      Security type.
+     * @param userName          User name for security 2, empty if not required.
+     * @param password          Password of SoftAP, empty if not required.
+     * @return Returns device information.
+     */
+    public static QRCodePayload create(String deviceName, String proofOfPossession, ESPConstants.TransportType transportType,
+                                       ESPConstants.SecurityType securityType, String userName, String password) {
+
+        String transport = transportType == ESPConstants.TransportType.TRANSPORT_SOFTAP ? TRANSPORT_SOFTAP : TRANSPORT_BLE;
+        return new QRCodePayload(emptyIfNull(deviceName), emptyIfNull(proofOfPossession), transport, securityType,
+                emptyIfNull(userName), emptyIfNull(password));
+    }
+
+    /**
+     * This method is used to parse QR code data in any supported format.
+     * QRCodePayloadParser should be reused instead, if data of many frames is parsed.
+     *
+     * @param data Text of QR code.
+     * @return Returns device information or null if data is not valid. Missing values are empty.
+     */
+    public static QRCodePayload parse(String data) {
+
+        QRCodePayloadParser parser = new QRCodePayloadParser();
+        return parser.parse(data) ? parser.toPayload() : null;
+    }
+
+    static QRCodePayload fromJson(JSONObject jsonObject) {
+
+        return new QRCodePayload(jsonObject.optString(KEY_NAME),
+                jsonObject.optString(KEY_POP),
+                jsonObject.optString(KEY_TRANSPORT),
+                getSecurityType(jsonObject.optInt(KEY_SECURITY, ESPConstants.SecurityType.SECURITY_2.ordinal())),
+                jsonObject.optString(KEY_USERNAME),
+                jsonObject.optString(KEY_PASSWORD));
+    }
+
+    /**
+     * This method is used to get QR code data of this device information in compact format.
+     *
+     * @return Returns text for QR code.
+     * @throws IllegalStateException If transport is not supported or a value is longer than 255 bytes.
+     */
+    public String toCompactString() {
+
+        ESPConstants.TransportType transportType = getTransportType();
+
+        if (transportType == null) {
+            throw new IllegalStateException("Transport is not supported : " + transport);
+        }
+
+        int transportValue = transportType == ESPConstants.TransportType.TRANSPORT_SOFTAP
+                ? QRCodePayloadParser.TRANSPORT_SOFTAP : QRCodePayloadParser.TRANSPORT_BLE;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(QRCodePayloadParser.COMPACT_VERSION);
+        out.write(transportValue | (securityType.ordinal() << QRCodePayloadParser.SECURITY_SHIFT));
+
+        String[] fields = new String[QRCodePayloadParser.FIELD_COUNT];
+        fields[QRCodePayloadParser.FIELD_NAME] = deviceName;
+        fields[QRCodePayloadParser.FIELD_POP] = proofOfPossession;
+        fields[QRCodePayloadParser.FIELD_USERNAME] = userName;
+        fields[QRCodePayloadParser.FIELD_PASSWORD] = password;
+
+        // Trailing empty fields are left out.
+        int fieldCount = fields.length;
+
+        while (fieldCount > 0 && (fields[fieldCount - 1] == null || fields[fieldCount - 1].isEmpty())) {
+            fieldCount--;
+        }
+
+        for (int i = 0; i < fieldCount; i++) {
+
+            byte[] bytes = emptyIfNull(fields[i]).getBytes(UTF_8);
+
+            if (bytes.length > QRCodePayloadParser.MAX_FIELD_LENGTH) {
+                throw new IllegalStateException("Value is too long for compact format");
+            }
+            out.write(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        return QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(out.toByteArray());
+    }
+
+    private static String encodeBase45(byte[] data) {
+
+        String alphabet = QRCodePayloadParser.BASE45_ALPHABET;
+        StringBuilder builder = new StringBuilder((data.length + 1) / 2 * 3);
+
+        for (int i = 0; i < data.length; i += 2) {
+
+            if (i + 1 < data.length) {
+                int value = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+                builder.append(alphabet.charAt(value % 45))
+                        .append(alphabet.charAt(value / 45 % 45))
+                        .append(alphabet.charAt(value / (45 * 45)));
+            } else {
+                int value = data[i] & 0xFF;
+                builder.append(alphabet.charAt(value % 45))
+                        .append(alphabet.charAt(value / 45));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String emptyIfNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    static ESPConstants.SecurityType getSecurityType(int security) {
+        switch (security) {
+            case 0:
+                return ESPConstants.SecurityType.SECURITY_0;
+            case 1:
+                return ESPConstants.SecurityType.SECURITY_1;
+            case 2:
+            default:
+                return ESPConstants.SecurityType.SECURITY_2;
+        }
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    public String getProofOfPossession() {
+        return proofOfPossession;
+    }
+
+    /**
+     * This method is used to get transport as given in QR code data.
+     *
+     * @return Returns transport, empty if it is not available.
+     */
+    public String getTransport() {
+        return transport;
+    }
+
+    /**
+     * This method is used to get transport type.
+     *
+     * @return Returns transport type or null if transport is not available or not supported.
+     */
+    public ESPConstants.TransportType getTransportType() {
+
+        if (transport == null || transport.isEmpty()) {
+            return null;
+        } else if (transport.equalsIgnoreCase(TRANSPORT_SOFTAP)) {
+            return ESPConstants.TransportType.TRANSPORT_SOFTAP;
+        } else if (transport.equalsIgnoreCase(TRANSPORT_BLE)) {
+            return ESPConstants.TransportType.TRANSPORT_BLE;
+        }
+        return null;
+    }
+
+    public ESPConstants.SecurityType getSecurityType() {
+        return securityType;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+}
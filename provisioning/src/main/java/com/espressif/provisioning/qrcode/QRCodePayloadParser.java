@@ -0,0 +1,276 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import com.espressif.provisioning.ESPConstants;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+
+/**
+ * Parser of QR code data. Two formats are supported :
+ * <ul>
+ * <li>JSON, e.g. {"ver":"v1","name":"PROV_XXX","pop":"abcd1234","transport":"ble","security":2}</li>
+ * <li>Compact, "ESP:" followed by base45 (RFC 9285) encoded binary payload. Base45 uses QR code alphanumeric
+ * characters only, so QR code is smaller than JSON code with same data and it can be scanned from longer distance.</li>
+ * </ul>
+ * Compact payload version 1 :
+ * <pre>
+ * byte 0    : Version
+ * byte 1    : Bits 0-1 transport (0 : softap, 1 : ble), bits 2-3 security (0, 1 or 2)
+ * byte 2... : Name, pop, username and password, each is one byte length followed by UTF-8 bytes.
+ *             Trailing fields can be left out if they are empty. Bytes after known fields are ignored.
+ * </pre>
+ * Data of other QR codes is rejected by first characters, before parsing.
+ * Compact payload is decoded in the buffer of the parser and strings are created only by toPayload(),
+ * so parser instance should be reused to parse data of many frames. Instance is not thread safe.
+ */
+public final class QRCodePayloadParser {
+
+    public static final String COMPACT_PREFIX = "ESP:";
+    public static final int COMPACT_VERSION = 1;
+
+    static final int TRANSPORT_SOFTAP = 0;
+    static final int TRANSPORT_BLE = 1;
+    static final int TRANSPORT_MASK = 0x03;
+    static final int SECURITY_SHIFT = 2;
+    static final int SECURITY_MASK = 0x03;
+
+    static final int FIELD_NAME = 0;
+    static final int FIELD_POP = 1;
+    static final int FIELD_USERNAME = 2;
+    static final int FIELD_PASSWORD = 3;
+    static final int FIELD_COUNT = 4;
+
+    static final int MAX_FIELD_LENGTH = 255;
+    static final String BASE45_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    // Version, flags and 4 fields of maximum length.
+    private static final int MAX_COMPACT_SIZE = 2 + FIELD_COUNT * (1 + MAX_FIELD_LENGTH);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] BASE45_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < BASE45_VALUES.length; i++) {
+            BASE45_VALUES[i] = -1;
+        }
+        for (int i = 0; i < BASE45_ALPHABET.length(); i++) {
+            BASE45_VALUES[BASE45_ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final byte[] buffer = new byte[MAX_COMPACT_SIZE];
+    private final int[] fieldOffsets = new int[FIELD_COUNT];
+    private final int[] fieldLengths = new int[FIELD_COUNT];
+    private int flags;
+    private boolean isCompact;
+    private QRCodePayload jsonPayload;
+
+    /**
+     * This method is used to check quickly whether data can be provisioning information of a device, i.e. JSON object
+     * or compact payload. It does not parse the data.
+     *
+     * @param data Text of QR code.
+     * @return Returns false if data is not provisioning information.
+     */
+    public static boolean isCandidate(CharSequence data) {
+
+        if (data == null) {
+            return false;
+        }
+        int start = 0;
+
+        while (start < data.length() && Character.isWhitespace(data.charAt(start))) {
+            start++;
+        }
+        return start < data.length() && (data.charAt(start) == '{' || isCompact(data));
+    }
+
+    /**
+     * This method is used to check whether data is in compact format.
+     *
+     * @param data Text of QR code.
+     * @return Returns true if data starts with compact payload prefix.
+     */
+    public static boolean isCompact(CharSequence data) {
+
+        if (data == null || data.length() < COMPACT_PREFIX.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < COMPACT_PREFIX.length(); i++) {
+            if (data.charAt(i) != COMPACT_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to parse QR code data. Result of the last successful parse is available with toPayload().
+     *
+     * @param data Text of QR code.
+     * @return Returns true if data is valid provisioning information.
+     */
+    public boolean parse(CharSequence data) {
+
+        isCompact = false;
+        jsonPayload = null;
+
+        if (!isCandidate(data)) {
+            return false;
+        }
+
+        if (isCompact(data)) {
+            isCompact = parseCompact(data);
+            return isCompact;
+        }
+
+        try {
+            jsonPayload = QRCodePayload.fromJson(new JSONObject(data.toString()));
+            return true;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method is used to get device information of the last successful parse.
+     *
+     * @return Returns device information or null if last parse was not successful.
+     */
+    public QRCodePayload toPayload() {
+
+        if (!isCompact) {
+            return jsonPayload;
+        }
+
+        int transport = flags & TRANSPORT_MASK;
+        String transportName;
+
+        if (transport == TRANSPORT_SOFTAP) {
+            transportName = QRCodePayload.TRANSPORT_SOFTAP;
+        } else if (transport == TRANSPORT_BLE) {
+            transportName = QRCodePayload.TRANSPORT_BLE;
+        } else {
+            // Reserved for new transports, it is reported as unsupported transport.
+            transportName = String.valueOf(transport);
+        }
+
+        return new QRCodePayload(getField(FIELD_NAME),
+                getField(FIELD_POP),
+                transportName,
+                QRCodePayload.getSecurityType((flags >> SECURITY_SHIFT) & SECURITY_MASK),
+                getField(FIELD_USERNAME),
+                getField(FIELD_PASSWORD));
+    }
+
+    private String getField(int field) {
+        return new String(buffer, fieldOffsets[field], fieldLengths[field], UTF_8);
+    }
+
+    /**
+     * Decodes base45 data after the prefix in the buffer and finds fields in it, without allocation.
+     */
+    private boolean parseCompact(CharSequence data) {
+
+        int start = COMPACT_PREFIX.length();
+        int charCount = data.length() - start;
+
+        // Every 3 characters give 2 bytes and 2 remaining characters give 1 byte.
+        if (charCount % 3 == 1) {
+            return false;
+        }
+        int size = charCount / 3 * 2 + (charCount % 3 == 2 ? 1 : 0);
+
+        if (size < 2 || size > buffer.length) {
+            return false;
+        }
+
+        int index = 0;
+
+        for (int i = start; i < data.length(); i += 3) {
+
+            int c0 = base45Value(data.charAt(i));
+            int c1 = base45Value(data.charAt(i + 1));
+
+            if (c0 < 0 || c1 < 0) {
+                return false;
+            }
+
+            if (i + 2 < data.length()) {
+
+                int c2 = base45Value(data.charAt(i + 2));
+
+                if (c2 < 0) {
+                    return false;
+                }
+                int value = c0 + c1 * 45 + c2 * 45 * 45;
+
+                if (value > 0xFFFF) {
+                    return false;
+                }
+                buffer[index++] = (byte) (value >> 8);
+                buffer[index++] = (byte) value;
+
+            } else {
+
+                int value = c0 + c1 * 45;
+
+                if (value > 0xFF) {
+                    return false;
+                }
+                buffer[index++] = (byte) value;
+            }
+        }
+
+        if ((buffer[0] & 0xFF) != COMPACT_VERSION) {
+            return false;
+        }
+        flags = buffer[1] & 0xFF;
+
+        if (((flags >> SECURITY_SHIFT) & SECURITY_MASK) > ESPConstants.SecurityType.SECURITY_2.ordinal()) {
+            return false;
+        }
+
+        int offset = 2;
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+
+            if (offset >= size) {
+                // Left out trailing field.
+                fieldOffsets[field] = offset;
+                fieldLengths[field] = 0;
+                continue;
+            }
+
+            int length = buffer[offset++] & 0xFF;
+
+            if (offset + length > size) {
+                return false;
+            }
+            fieldOffsets[field] = offset;
+            fieldLengths[field] = length;
+            offset += length;
+        }
+        return true;
+    }
+
+    private static int base45Value(char c) {
+        return c < BASE45_VALUES.length ? BASE45_VALUES[c] : -1;
+    }
+}
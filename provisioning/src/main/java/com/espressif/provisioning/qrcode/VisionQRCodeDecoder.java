@@ -0,0 +1,88 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * QR code decoder backed by Play services Vision barcode detector.
+ * It can be used only on devices having Play services.
+ */
+public class VisionQRCodeDecoder implements QRCodeDecoder {
+
+    public static final String NAME = "Play services Vision";
+
+    private final BarcodeDetector detector;
+    private byte[] buffer;
+
+    public VisionQRCodeDecoder(Context context) {
+        detector = new BarcodeDetector.Builder(context)
+                .setBarcodeFormats(Barcode.QR_CODE)
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException If detector dependencies are not downloaded by Play services yet.
+     */
+    @Override
+    public String decode(byte[] luma, int offset, int width, int height, int rowStride) {
+
+        if (!detector.isOperational()) {
+            throw new IllegalStateException("Barcode detector is not operational");
+        }
+
+        // Detector reads frame from the start of the buffer, padding at the end of rows is given as image width.
+        int size = rowStride * height;
+        byte[] data = luma;
+
+        if (offset != 0) {
+            if (buffer == null || buffer.length < size) {
+                buffer = new byte[size];
+            }
+            System.arraycopy(luma, offset, buffer, 0, size);
+            data = buffer;
+        }
+
+        Frame frame = new Frame.Builder()
+                .setImageData(ByteBuffer.wrap(data, 0, size), rowStride, height, ImageFormat.NV21)
+                .build();
+        SparseArray<Barcode> barcodes = detector.detect(frame);
+
+        if (barcodes.size() == 0) {
+            return null;
+        }
+        return barcodes.valueAt(0).rawValue;
+    }
+
+    @Override
+    public void release() {
+        detector.release();
+    }
+}
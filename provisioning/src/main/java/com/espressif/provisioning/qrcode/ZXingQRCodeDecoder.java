@@ -0,0 +1,65 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+
+/**
+ * QR code decoder backed by ZXing. It is pure Java, so it works on all devices and on JVM.
+ * Instance is not thread safe.
+ */
+public class ZXingQRCodeDecoder implements QRCodeDecoder {
+
+    public static final String NAME = "ZXing";
+
+    private final QRCodeReader reader = new QRCodeReader();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String decode(byte[] luma, int offset, int width, int height, int rowStride) {
+
+        // Offset is given to ZXing as crop position in the data.
+        int top = offset / rowStride;
+        int left = offset % rowStride;
+
+        if (left + width > rowStride) {
+            throw new IllegalArgumentException("Row stride is smaller than width");
+        }
+
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(luma, rowStride, top + height,
+                left, top, width, height, false);
+
+        try {
+            return reader.decode(new BinaryBitmap(new HybridBinarizer(source))).getText();
+        } catch (ReaderException e) {
+            // QR code is not found in the image.
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,59 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Security implementation which can encrypt and decrypt ByteBuffers directly,
+ * so messages can be processed in pooled buffers without intermediate byte arrays.
+ * Session uses these methods when both Security and Transport support buffers.
+ */
+public interface BufferSecurity extends Security {
+
+    /**
+     * Get length of the encrypted data for given length of plain data.
+     * @param length length of data to be encrypted
+     * @return
+     */
+    int getEncryptedLength(int length);
+
+    /**
+     * Get maximum length of the decrypted data for given length of encrypted data.
+     * @param length length of data to be decrypted
+     * @return
+     */
+    int getDecryptedLength(int length);
+
+    /**
+     * Encrypt remaining bytes of src into dst according to the Security implementation.
+     * src and dst must be different objects but can share the same memory for in place encryption.
+     * @param src data to be encrypted, position is moved to limit
+     * @param dst buffer for encrypted data, position is moved by number of bytes written
+     * @return number of bytes written in dst
+     * @throws CryptoException
+     */
+    int encrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException;
+
+    /**
+     * Decrypt remaining bytes of src into dst according to the Security implementation.
+     * src and dst must be different objects but can share the same memory for in place decryption.
+     * @param src data to be decrypted, position is moved to limit
+     * @param dst buffer for decrypted data, position is moved by number of bytes written
+     * @return number of bytes written in dst
+     * @throws CryptoException
+     */
+    int decrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException;
+}
@@ -0,0 +1,413 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.security;
+
+import android.util.Log;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Selects security provider used for ciphers and message digests of the security implementations.
+ *
+ * <p>Candidates are the providers installed in the platform (e.g. Conscrypt / AndroidOpenSSL, BouncyCastle)
+ * and providers added with {@link #addProvider(Provider)} (e.g. a pure Java implementation).
+ * On first use of an algorithm, each candidate is checked against the platform default for correct output
+ * and timed with a short benchmark. Fastest correct provider is cached for the algorithm.
+ * Ciphers are checked and timed with encryption and decryption, initialised again with same key and IV
+ * for every message as done by the security implementations.
+ *
+ * <p>Selection runs in the thread which first uses an algorithm, which is the first session establishment
+ * if nothing else is done. It takes few milliseconds per algorithm on a phone.
+ * Call {@link #preselect(String...)} from a background thread (e.g. on app start) to keep it out of
+ * the session establishment.
+ * Selection can be overridden with {@link #setPreferredProvider(String, String)} or
+ * disabled with {@link #setBenchmarkEnabled(boolean)}.
+ */
+public class CryptoProviders {
+
+    private static final String TAG = "Espressif::" + CryptoProviders.class.getSimpleName();
+
+    /**
+     * Name returned by {@link #getSelectedProvider(String)} when platform default provider is used.
+     */
+    public static final String PLATFORM_DEFAULT = "default";
+
+    private static final int BENCHMARK_DATA_SIZE = 1024;
+    private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+    private static final int BENCHMARK_ITERATIONS = 10;
+
+    private static final CopyOnWriteArrayList<Provider> extraProviders = new CopyOnWriteArrayList<>();
+    // Key is algorithm / transformation and value is provider name.
+    private static final ConcurrentHashMap<String, String> preferredProviders = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Selection> selectedProviders = new ConcurrentHashMap<>();
+
+    // Used as value in selectedProviders when platform default is to be used.
+    private static final Selection DEFAULT_SELECTION = new Selection(null);
+
+    private static volatile boolean isBenchmarkEnabled = true;
+
+    /**
+     * This method is used to add a provider which is not installed in the platform as candidate.
+     *
+     * @param provider Security provider.
+     */
+    public static void addProvider(Provider provider) {
+
+        extraProviders.addIfAbsent(provider);
+        selectedProviders.clear();
+    }
+
+    /**
+     * This method is used to force a provider for an algorithm, skipping the benchmark.
+     *
+     * @param algorithm    Cipher transformation or message digest algorithm, e.g. "AES/GCM/NoPadding".
+     * @param providerName Name of the provider. Null to remove the override.
+     * @throws IllegalArgumentException If provider is not installed in the platform or added with
+     *                                  {@link #addProvider(Provider)}.
+     */
+    public static void setPreferredProvider(String algorithm, String providerName) {
+
+        if (providerName == null) {
+            preferredProviders.remove(algorithm);
+        } else {
+            if (findProvider(providerName) == null) {
+                throw new IllegalArgumentException("Security provider " + providerName + " is not available");
+            }
+            preferredProviders.put(algorithm, providerName);
+        }
+        selectedProviders.remove(algorithm);
+    }
+
+    /**
+     * This method is used to enable / disable benchmark. If it is disabled, platform default provider is used
+     * for algorithms which do not have preferred provider. Default is enabled.
+     *
+     * @param enabled True to enable benchmark.
+     */
+    public static void setBenchmarkEnabled(boolean enabled) {
+
+        isBenchmarkEnabled = enabled;
+        selectedProviders.clear();
+    }
+
+    /**
+     * This method is used to get provider selected for an algorithm.
+     *
+     * @param algorithm Cipher transformation or message digest algorithm.
+     * @return Returns name of the provider or null if it is not selected yet.
+     */
+    public static String getSelectedProvider(String algorithm) {
+
+        Selection selection = selectedProviders.get(algorithm);
+
+        if (selection == null) {
+            return null;
+        }
+        return selection.provider == null ? PLATFORM_DEFAULT : selection.provider.getName();
+    }
+
+    /**
+     * This method is used to select providers for given algorithms in advance, so that selection does not
+     * run during session establishment. It runs benchmarks in the calling thread, so call it from a background thread.
+     * Security 1 uses "AES/CTR/NoPadding" and "SHA256". Security 2 uses "AES/GCM/NoPadding" and "SHA-512".
+     *
+     * @param algorithms Cipher transformations (containing "/") or message digest algorithms.
+     */
+    public static void preselect(String... algorithms) {
+
+        for (String algorithm : algorithms) {
+            try {
+                if (algorithm.indexOf('/') >= 0) {
+                    getCipher(algorithm);
+                } else {
+                    getMessageDigest(algorithm);
+                }
+            } catch (GeneralSecurityException e) {
+                Log.e(TAG, "Algorithm " + algorithm + " is not supported : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This method is used to get Cipher from the selected provider.
+     *
+     * @param transformation Cipher transformation, e.g. "AES/CTR/NoPadding".
+     * @return Returns Cipher instance.
+     * @throws NoSuchAlgorithmException If transformation is not supported.
+     * @throws NoSuchPaddingException   If padding is not supported.
+     */
+    public static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+
+        Selection selection = selectedProviders.get(transformation);
+
+        if (selection == null) {
+            selection = selectCipherProvider(transformation);
+            selectedProviders.put(transformation, selection);
+        }
+
+        if (selection.provider == null) {
+            return Cipher.getInstance(transformation);
+        }
+        return Cipher.getInstance(transformation, selection.provider);
+    }
+
+    /**
+     * This method is used to get MessageDigest from the selected provider.
+     *
+     * @param algorithm Message digest algorithm, e.g. "SHA-512".
+     * @return Returns MessageDigest instance.
+     * @throws NoSuchAlgorithmException If algorithm is not supported.
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+
+        Selection selection = selectedProviders.get(algorithm);
+
+        if (selection == null) {
+            selection = selectDigestProvider(algorithm);
+            selectedProviders.put(algorithm, selection);
+        }
+
+        if (selection.provider == null) {
+            return MessageDigest.getInstance(algorithm);
+        }
+        return MessageDigest.getInstance(algorithm, selection.provider);
+    }
+
+    private static ArrayList<Provider> getCandidates() {
+
+        ArrayList<Provider> providers = new ArrayList<>(Arrays.asList(java.security.Security.getProviders()));
+
+        for (Provider provider : extraProviders) {
+            if (!providers.contains(provider)) {
+                providers.add(provider);
+            }
+        }
+        return providers;
+    }
+
+    private static Provider findProvider(String providerName) {
+
+        for (Provider provider : getCandidates()) {
+            if (provider.getName().equals(providerName)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    private static Provider findPreferredProvider(String algorithm) {
+
+        String providerName = preferredProviders.get(algorithm);
+
+        if (providerName == null) {
+            return null;
+        }
+
+        Provider provider = findProvider(providerName);
+
+        if (provider == null) {
+            Log.e(TAG, "Preferred provider " + providerName + " for " + algorithm + " is removed, selecting other provider");
+        }
+        return provider;
+    }
+
+    private static Selection selectCipherProvider(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+
+        Provider preferred = findPreferredProvider(transformation);
+
+        if (preferred != null) {
+            return new Selection(preferred);
+        }
+
+        AlgorithmParameterSpec params = getBenchmarkParams(transformation);
+
+        if (!isBenchmarkEnabled || params == null) {
+            return DEFAULT_SELECTION;
+        }
+
+        byte[] keyBytes = new byte[32];
+        Arrays.fill(keyBytes, (byte) 0x5A);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "AES");
+        byte[] data = getBenchmarkData();
+        byte[] expected;
+
+        try {
+            Cipher cipher = Cipher.getInstance(transformation);
+            cipher.init(Cipher.ENCRYPT_MODE, key, params);
+            expected = cipher.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            return DEFAULT_SELECTION;
+        }
+
+        Provider fastest = null;
+        long fastestTime = Long.MAX_VALUE;
+
+        for (Provider provider : getCandidates()) {
+
+            try {
+                Cipher encryptCipher = Cipher.getInstance(transformation, provider);
+                Cipher decryptCipher = Cipher.getInstance(transformation, provider);
+
+                // Security implementations init cipher again with same key and IV for every message
+                // (e.g. fixed device nonce of security 2) so check it the same way.
+                // Some providers reject reuse of key and IV for AES/GCM encryption, those are skipped here.
+                byte[] output = null;
+
+                for (int i = 0; i < 2; i++) {
+                    encryptCipher.init(Cipher.ENCRYPT_MODE, key, params);
+                    output = encryptCipher.doFinal(data);
+
+                    if (!Arrays.equals(expected, output)) {
+                        break;
+                    }
+                    decryptCipher.init(Cipher.DECRYPT_MODE, key, params);
+
+                    if (!Arrays.equals(data, decryptCipher.doFinal(output))) {
+                        output = null;
+                        break;
+                    }
+                }
+
+                if (!Arrays.equals(expected, output)) {
+                    continue;
+                }
+
+                long time = 0;
+
+                for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS + BENCHMARK_ITERATIONS; i++) {
+
+                    long start = System.nanoTime();
+                    encryptCipher.init(Cipher.ENCRYPT_MODE, key, params);
+                    encryptCipher.doFinal(data);
+                    decryptCipher.init(Cipher.DECRYPT_MODE, key, params);
+                    decryptCipher.doFinal(output);
+
+                    if (i >= BENCHMARK_WARMUP_ITERATIONS) {
+                        time += System.nanoTime() - start;
+                    }
+                }
+
+                if (time < fastestTime) {
+                    fastestTime = time;
+                    fastest = provider;
+                }
+            } catch (GeneralSecurityException | RuntimeException e) {
+                // Provider does not support this transformation or is not working, skip it.
+            }
+        }
+        return fastest == null ? DEFAULT_SELECTION : new Selection(fastest);
+    }
+
+    private static Selection selectDigestProvider(String algorithm) throws NoSuchAlgorithmException {
+
+        Provider preferred = findPreferredProvider(algorithm);
+
+        if (preferred != null) {
+            return new Selection(preferred);
+        }
+
+        if (!isBenchmarkEnabled) {
+            return DEFAULT_SELECTION;
+        }
+
+        byte[] data = getBenchmarkData();
+        byte[] expected = MessageDigest.getInstance(algorithm).digest(data);
+        Provider fastest = null;
+        long fastestTime = Long.MAX_VALUE;
+
+        for (Provider provider : getCandidates()) {
+
+            try {
+                MessageDigest digest = MessageDigest.getInstance(algorithm, provider);
+
+                if (!Arrays.equals(expected, digest.digest(data))) {
+                    continue;
+                }
+
+                long time = 0;
+
+                for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS + BENCHMARK_ITERATIONS; i++) {
+
+                    long start = System.nanoTime();
+                    digest.digest(data);
+
+                    if (i >= BENCHMARK_WARMUP_ITERATIONS) {
+                        time += System.nanoTime() - start;
+                    }
+                }
+
+                if (time < fastestTime) {
+                    fastestTime = time;
+                    fastest = provider;
+                }
+            } catch (GeneralSecurityException | RuntimeException e) {
+                // Provider does not support this algorithm or is not working, skip it.
+            }
+        }
+        return fastest == null ? DEFAULT_SELECTION : new Selection(fastest);
+    }
+
+    /**
+     * Returns parameters for benchmark of AES transformations or null if transformation is not known.
+     */
+    private static AlgorithmParameterSpec getBenchmarkParams(String transformation) {
+
+        if (transformation.startsWith("AES/GCM/")) {
+            return new GCMParameterSpec(128, new byte[12]);
+        } else if (transformation.startsWith("AES/CTR/") || transformation.startsWith("AES/CBC/")) {
+            return new IvParameterSpec(new byte[16]);
+        }
+        return null;
+    }
+
+    private static byte[] getBenchmarkData() {
+
+        byte[] data = new byte[BENCHMARK_DATA_SIZE];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    /**
+     * Provider selected for an algorithm. Null provider means platform default.
+     */
+    private static final class Selection {
+
+        final Provider provider;
+
+        Selection(Provider provider) {
+            this.provider = provider;
+        }
+    }
+
+    private CryptoProviders() {
+    }
+}
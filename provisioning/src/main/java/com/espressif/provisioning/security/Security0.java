@@ -19,6 +19,8 @@ import android.util.Log;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.nio.ByteBuffer;
+
 import espressif.Sec0;
 import espressif.Session;
 
@@ -27,7 +29,7 @@ import espressif.Session;
  * protocol.
  * Security 0 specifies no encryption and only a single step handshake.
  */
-public class Security0 implements Security {
+public class Security0 implements BufferSecurity {
     private static final String TAG = "Espressif::" + Security1.class.getSimpleName();
 
     private static final int SESSION_STATE_0 = 0;
@@ -61,6 +63,37 @@ public class Security0 implements Security {
         return data;
     }
 
+    @Override
+    public int getEncryptedLength(int length) {
+        return length;
+    }
+
+    @Override
+    public int getDecryptedLength(int length) {
+        return length;
+    }
+
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+        return copy(src, dst);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+        return copy(src, dst);
+    }
+
+    private int copy(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        int length = src.remaining();
+
+        if (dst.remaining() < length) {
+            throw new CryptoException("Output buffer is too short");
+        }
+        dst.put(src);
+        return length;
+    }
+
     private byte[] getStep0Request() {
         Sec0.S0SessionCmd s0SessionCmd = Sec0.S0SessionCmd
                 .newBuilder()
@@ -22,6 +22,7 @@ import com.google.crypto.tink.subtle.X25519;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
@@ -30,6 +31,7 @@ import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -42,7 +44,7 @@ import espressif.Session;
  * Security 1 is based on AES CTR mode with NoPadding
  *
  */
-public class Security1 implements Security {
+public class Security1 implements BufferSecurity {
     private static final String TAG = "Espressif::" + Security1.class.getSimpleName();
 
     private static final int SESSION_STATE_REQUEST1 = 0;
@@ -149,7 +151,7 @@ public class Security1 implements Security {
             byte[] sharedKey = X25519.computeSharedSecret(this.privateKey, devicePublicKey);
 
             if (this.proofOfPossession.length > 0) {
-                MessageDigest md = MessageDigest.getInstance("SHA256");
+                MessageDigest md = CryptoProviders.getMessageDigest("SHA256");
                 md.update(this.proofOfPossession);
                 byte[] digest = md.digest();
                 sharedKey = HexEncoder.xor(sharedKey, digest);
@@ -158,7 +160,7 @@ public class Security1 implements Security {
             IvParameterSpec ivParameterSpec = new IvParameterSpec(deviceRandom);
             SecretKeySpec secretKeySpec = new SecretKeySpec(sharedKey, 0, sharedKey.length, "AES");
 
-            this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+            this.cipher = CryptoProviders.getCipher("AES/CTR/NoPadding");
             this.cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, ivParameterSpec);
 
             this.clientVerify = this.encrypt(devicePublicKey);
@@ -207,4 +209,37 @@ public class Security1 implements Security {
     public byte[] decrypt(byte[] data) {
         return this.cipher.update(data);
     }
+
+    @Override
+    public int getEncryptedLength(int length) {
+        return length;
+    }
+
+    @Override
+    public int getDecryptedLength(int length) {
+        return length;
+    }
+
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+        return update(src, dst);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+        return update(src, dst);
+    }
+
+    private int update(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        if (this.cipher == null) {
+            throw new CryptoException("Session is not established");
+        }
+        try {
+            // AES CTR is a stream cipher, same counter is used for both directions.
+            return this.cipher.update(src, dst);
+        } catch (ShortBufferException e) {
+            throw new CryptoException("Output buffer is too short", e);
+        }
+    }
 }
@@ -25,18 +25,9 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import java.math.BigInteger;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-
 import espressif.Sec2;
 import espressif.Session;
 
@@ -45,7 +36,7 @@ import espressif.Session;
  * protocols.
  * Security 1 is based on AES CTR mode with NoPadding
  */
-public class Security2 implements Security {
+public class Security2 implements BufferSecurity {
     private static final String TAG = "Espressif::" + Security2.class.getSimpleName();
 
     private static final int SESSION_STATE_REQUEST1 = 0;
@@ -57,8 +48,8 @@ public class Security2 implements Security {
 
     private String userName;
 
-    private Cipher cipher;
     private SRP6ClientSession client;
+    private Security2RecordLayer recordLayer;
 
     private BigInteger clientPublicKey = null;
     private BigInteger devicePublicKey = null;
@@ -75,11 +66,6 @@ public class Security2 implements Security {
         userName = username;
         Log.d(TAG, "User name : " + username + " password : " + password);
 
-        try {
-            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            e.printStackTrace();
-        }
         client = new SRP6ClientSession();
         client.step1(username, password);
     }
@@ -209,54 +195,76 @@ public class Security2 implements Security {
 
             sharedKey = BigIntegerUtils.bigIntegerToBytes(client.K);
             key = Arrays.copyOfRange(sharedKey, 0, 32);
+            recordLayer = new Security2RecordLayer(key, deviceNonce);
 
         } catch (InvalidProtocolBufferException e) {
             Log.e(TAG, e.getMessage());
+        } catch (CryptoException e) {
+            Log.e(TAG, "Failed to create record layer : " + e.getMessage());
         }
     }
 
+    /**
+     * This method is used to get record layer of the established session, for ByteBuffer based encryption
+     * and typed errors.
+     *
+     * @return Returns record layer or null if session is not established.
+     */
+    public Security2RecordLayer getRecordLayer() {
+        return recordLayer;
+    }
+
     public byte[] encrypt(byte[] data) {
 
-        // Device nonce = IV
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec parameterSpec = new IvParameterSpec(deviceNonce);
         try {
-            this.cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, parameterSpec);
-        } catch (InvalidAlgorithmParameterException e) {
-            e.printStackTrace();
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
+            if (recordLayer == null) {
+                throw new CryptoException("Session is not established");
+            }
+            return recordLayer.encrypt(data);
+        } catch (CryptoException e) {
+            Log.e(TAG, "Encryption failed : " + e.getMessage());
         }
+        return null;
+    }
+
+    public byte[] decrypt(byte[] data) {
 
         try {
-            return this.cipher.doFinal(data);
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
+            if (recordLayer == null) {
+                throw new CryptoException("Session is not established");
+            }
+            return recordLayer.decrypt(data);
+        } catch (CryptoException e) {
+            Log.e(TAG, "Decryption failed : " + e.getMessage());
         }
         return null;
     }
 
-    public byte[] decrypt(byte[] data) {
+    @Override
+    public int getEncryptedLength(int length) {
+        return length + Security2RecordLayer.TAG_LENGTH;
+    }
 
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec parameterSpec = new IvParameterSpec(deviceNonce);
-        try {
-            this.cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, parameterSpec);
-        } catch (InvalidAlgorithmParameterException e) {
-            e.printStackTrace();
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
+    @Override
+    public int getDecryptedLength(int length) {
+        return Math.max(0, length - Security2RecordLayer.TAG_LENGTH);
+    }
+
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        if (recordLayer == null) {
+            throw new CryptoException("Session is not established");
         }
+        return recordLayer.encrypt(src, dst);
+    }
 
-        try {
-            return this.cipher.doFinal(data);
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        if (recordLayer == null) {
+            throw new CryptoException("Session is not established");
         }
-        return null;
+        return recordLayer.decrypt(src, dst);
     }
 }
@@ -0,0 +1,149 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.security;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encryption and decryption of messages of an established Security 2 session.
+ * Messages are encrypted with AES-GCM using the session key and the device nonce as IV.
+ *
+ * <p>Key and parameters are created once. Encryption and decryption use separate ciphers,
+ * so encrypting a request while a response is being decrypted is safe.
+ */
+public class Security2RecordLayer {
+
+    // GCM authentication tag length in bytes.
+    public static final int TAG_LENGTH = 16;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final SecretKeySpec key;
+    private final GCMParameterSpec parameterSpec;
+    private final Cipher encryptCipher;
+    private final Cipher decryptCipher;
+
+    /**
+     * @param key   AES key (first 32 bytes of the shared session key).
+     * @param nonce Device nonce, used as IV.
+     * @throws CryptoException If AES-GCM is not available.
+     */
+    public Security2RecordLayer(byte[] key, byte[] nonce) throws CryptoException {
+
+        if (key == null || nonce == null) {
+            throw new CryptoException("Session is not established");
+        }
+        this.key = new SecretKeySpec(key, "AES");
+        parameterSpec = new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+
+        try {
+            encryptCipher = CryptoProviders.getCipher(TRANSFORMATION);
+            decryptCipher = CryptoProviders.getCipher(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("AES-GCM is not supported", e);
+        }
+    }
+
+    /**
+     * @param plainTextLength Length of data to be encrypted.
+     * @return Returns length of encrypted data.
+     */
+    public int getEncryptedLength(int plainTextLength) {
+        return plainTextLength + TAG_LENGTH;
+    }
+
+    /**
+     * @param cipherTextLength Length of data to be decrypted.
+     * @return Returns length of decrypted data.
+     */
+    public int getDecryptedLength(int cipherTextLength) {
+        return Math.max(0, cipherTextLength - TAG_LENGTH);
+    }
+
+    /**
+     * Encrypts remaining bytes of src into dst. src and dst can share the same memory for in place encryption.
+     *
+     * @param src Data to be encrypted. Position is moved to limit.
+     * @param dst Buffer for encrypted data, must have {@link #getEncryptedLength(int)} bytes remaining.
+     *            Position is moved by number of bytes written.
+     * @return Returns number of bytes written in dst.
+     * @throws CryptoException If data can not be encrypted.
+     */
+    public int encrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        synchronized (encryptCipher) {
+            return process(encryptCipher, Cipher.ENCRYPT_MODE, src, dst);
+        }
+    }
+
+    /**
+     * Decrypts remaining bytes of src into dst. src and dst can share the same memory for in place decryption.
+     *
+     * @param src Data to be decrypted. Position is moved to limit.
+     * @param dst Buffer for decrypted data, must have {@link #getDecryptedLength(int)} bytes remaining.
+     *            Position is moved by number of bytes written.
+     * @return Returns number of bytes written in dst.
+     * @throws CryptoException If data can not be decrypted or authentication fails.
+     */
+    public int decrypt(ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        synchronized (decryptCipher) {
+            return process(decryptCipher, Cipher.DECRYPT_MODE, src, dst);
+        }
+    }
+
+    /**
+     * @param data Data to be encrypted.
+     * @return Returns encrypted data.
+     * @throws CryptoException If data can not be encrypted.
+     */
+    public byte[] encrypt(byte[] data) throws CryptoException {
+
+        byte[] output = new byte[getEncryptedLength(data.length)];
+        encrypt(ByteBuffer.wrap(data), ByteBuffer.wrap(output));
+        return output;
+    }
+
+    /**
+     * @param data Data to be decrypted.
+     * @return Returns decrypted data.
+     * @throws CryptoException If data can not be decrypted or authentication fails.
+     */
+    public byte[] decrypt(byte[] data) throws CryptoException {
+
+        if (data.length < TAG_LENGTH) {
+            throw new CryptoException("Encrypted data is too short : " + data.length);
+        }
+        byte[] output = new byte[getDecryptedLength(data.length)];
+        decrypt(ByteBuffer.wrap(data), ByteBuffer.wrap(output));
+        return output;
+    }
+
+    private int process(Cipher cipher, int mode, ByteBuffer src, ByteBuffer dst) throws CryptoException {
+
+        try {
+            // Same IV is used for every message, so cipher needs to be initialised for each message.
+            cipher.init(mode, key, parameterSpec);
+            return cipher.doFinal(src, dst);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(mode == Cipher.ENCRYPT_MODE ? "Encryption failed" : "Decryption failed", e);
+        }
+    }
+}
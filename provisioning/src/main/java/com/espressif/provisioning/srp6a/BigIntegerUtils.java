@@ -6,6 +6,7 @@ package com.espressif.provisioning.srp6a;
 
 
 import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.util.Arrays;
 
 
@@ -20,6 +21,14 @@ import java.util.Arrays;
  */
 public class BigIntegerUtils {
 
+
+	/**
+	 * Zero bytes fed to digests for padding, enough for a 8192-bit 'N'
+	 * in one update.
+	 */
+	private static final byte[] ZEROS = new byte[1024];
+
+
 	/**
 	 * Encodes the specified big integer into a hex string.
 	 *
@@ -85,6 +94,41 @@ public class BigIntegerUtils {
 		return bytes;
 	}
 
+	/**
+	 * Updates the digest with a BigInteger in RFC2945 format, same as
+	 * {@code digest.update(bigIntegerToBytes(bigInteger))} but without
+	 * copying the value to a new array.
+	 *
+	 * @param digest     The digest to update. Must not be {@code null}.
+	 * @param bigInteger BigInteger, must not be null, should not be negative
+	 */
+	public static void updateDigest(final MessageDigest digest, final BigInteger bigInteger) {
+		updateDigestPadded(digest, bigInteger, 0);
+	}
+
+	/**
+	 * Updates the digest with a BigInteger padded with leading zeros up to
+	 * the specified length, same as {@code digest.update(PAD(bigInteger))}.
+	 * Padding is fed to the digest from a shared zero buffer instead of
+	 * copying the value to a padded array.
+	 *
+	 * @param digest     The digest to update. Must not be {@code null}.
+	 * @param bigInteger BigInteger, must not be null, should not be negative
+	 * @param length     The padded length in bytes. Values longer than
+	 *                   this are not truncated.
+	 */
+	public static void updateDigestPadded(final MessageDigest digest, final BigInteger bigInteger, final int length) {
+		assert(bigInteger.signum() != -1); // NOSONAR
+		byte[] bytes = bigInteger.toByteArray();
+		int offset = bytes[0] == 0 ? 1 : 0;
+		int valueLength = bytes.length - offset;
+
+		for (int padding = length - valueLength; padding > 0; padding -= ZEROS.length) {
+			digest.update(ZEROS, 0, Math.min(padding, ZEROS.length));
+		}
+		digest.update(bytes, offset, valueLength);
+	}
+
 	/**
 	 * Prevents instantiation.
 	 */
@@ -43,39 +43,18 @@ public class ClientSRP6Routines implements ClientEvidenceRoutine {
      */
     public BigInteger computeClientEvidence(SRP6CryptoParams cryptoParams, SRP6ClientEvidenceContext ctx) {
 
-        byte[] big_N = BigIntegerUtils.bigIntegerToBytes(cryptoParams.N);
-        byte[] big_g = BigIntegerUtils.bigIntegerToBytes(cryptoParams.g);
-
-        int padding = big_N.length - big_g.length;
-
-        digest.update(big_N);
-        byte[] hn = digest.digest();
-
-        if (big_g.length < big_N.length) {
-
-            byte[] tmp = new byte[big_N.length];
-            System.arraycopy(big_g, 0, tmp, padding, big_g.length);
-            big_g = tmp;
-        }
-
-        digest.update(big_g);
-        byte[] hg = digest.digest();
-
-        byte[] c = new byte[hn.length];
-
-        for (int i = 0; i < hn.length; i++) {
-            c[i] = (byte) (hn[i] ^ hg[i]);
-        }
+        // H(N) XOR H(g) is constant for the crypto parameters.
+        byte[] c = cryptoParams.getHashNXorHashG();
 
         digest.update(ctx.userID.getBytes());
         byte[] hi = digest.digest();
 
         digest.update(c);
         digest.update(hi);
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.s));
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.A));
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.B));
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.K));
+        BigIntegerUtils.updateDigest(digest, ctx.s);
+        BigIntegerUtils.updateDigest(digest, ctx.A);
+        BigIntegerUtils.updateDigest(digest, ctx.B);
+        BigIntegerUtils.updateDigest(digest, ctx.K);
 
         return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
     }
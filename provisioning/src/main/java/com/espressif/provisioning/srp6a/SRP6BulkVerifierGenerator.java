@@ -0,0 +1,494 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.srp6a;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates salt and verifier for many devices in parallel, e.g. to prepare Security2 credentials for manufacturing.
+ * It can be run on a host machine. Message digests are taken from CryptoProviders, which logs with android.util.Log,
+ * so Android classes (e.g. android.jar of the SDK) are needed in the class path.
+ *
+ * <p>Input is CSV with one device per line, either "username,password" or only "serial". Fields can be quoted
+ * as per RFC 4180, same as in CSV output, but quoted fields can not have line breaks. For serial only lines,
+ * username is "wifiprov" and random password is generated. Serial is written in output, so generated credentials
+ * stay tied to the device. Empty lines and lines starting with '#' are skipped.
+ *
+ * <p>Lines are processed in chunks. Each chunk is computed in parallel on a fork-join pool and written before
+ * next chunk is read, so memory usage does not depend on the number of devices and output order is same as input.
+ *
+ * <p>Command line usage:
+ * <pre>
+ * java com.espressif.provisioning.srp6a.SRP6BulkVerifierGenerator [-binary] [-threads N] input.csv output
+ * </pre>
+ */
+public class SRP6BulkVerifierGenerator {
+
+    public static final String DEFAULT_USERNAME = "wifiprov";
+
+    private static final int DEFAULT_SALT_LENGTH = 16;
+    private static final int GENERATED_PASSWORD_LENGTH = 8;
+    private static final int CHUNK_SIZE = 4096;
+    // Number of devices computed in one fork-join task.
+    private static final int TASK_SIZE = 16;
+
+    private static final char[] PASSWORD_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz23456789".toCharArray();
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Output format.
+     */
+    public enum OutputFormat {
+
+        /**
+         * CSV lines "serial,username,password,salt,verifier" with salt and verifier in hex.
+         * Serial is empty for "username,password" input and password is empty if it is given in input.
+         * Fields containing comma, quote or line break are quoted as per RFC 4180.
+         */
+        CSV,
+
+        /**
+         * Binary records: serial length (2 bytes), serial, username length (2 bytes), username,
+         * password length (2 bytes), generated password, salt length (2 bytes), salt,
+         * verifier length (2 bytes), verifier. Lengths are big endian. Serial and password are empty as for CSV.
+         */
+        BINARY
+    }
+
+    /**
+     * Result of bulk generation.
+     */
+    public static class Result {
+
+        public final long count;
+        public final long elapsedNanos;
+
+        Result(long count, long elapsedNanos) {
+            this.count = count;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return Returns number of verifiers generated per second.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+        }
+    }
+
+    private final SRP6CryptoParams config;
+    private final SRP6Routines srp6Routines = new SRP6Routines();
+    private final XRoutine xRoutine = new XRoutineWithUserIdentity();
+    // Separate instance for each thread, so workers don't contend on one generator.
+    private final ThreadLocal<SecureRandom> random = new ThreadLocal<SecureRandom>() {
+
+        @Override
+        protected SecureRandom initialValue() {
+            return new SecureRandom();
+        }
+    };
+    private int saltLength = DEFAULT_SALT_LENGTH;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates generator with parameters used by Security2, i.e. 3072-bit group and SHA-512.
+     */
+    public SRP6BulkVerifierGenerator() {
+        this(SRP6CryptoParams.getInstance(3072, "SHA-512"));
+    }
+
+    public SRP6BulkVerifierGenerator(SRP6CryptoParams config) {
+
+        if (config == null) {
+            throw new IllegalArgumentException("The SRP-6a crypto parameters must not be null");
+        }
+        this.config = config;
+    }
+
+    /**
+     * @param saltLength Length of salt in bytes. Default is 16.
+     */
+    public void setSaltLength(int saltLength) {
+        this.saltLength = saltLength;
+    }
+
+    /**
+     * @param parallelism Number of threads. Default is number of available processors.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Generates salt and verifier for each device in input and writes them to output.
+     * Output stream is flushed but not closed.
+     *
+     * @param in     CSV input.
+     * @param out    Output stream.
+     * @param format Output format.
+     * @return Returns number of devices and time taken.
+     * @throws IOException If input can not be read, output can not be written or input line is invalid.
+     */
+    public Result generate(Reader in, OutputStream out, OutputFormat format) throws IOException {
+
+        long startTime = System.nanoTime();
+        long count = 0;
+        int lineNumber = 0;
+
+        BufferedReader reader = new BufferedReader(in);
+        Writer csvWriter = format == OutputFormat.CSV ? new BufferedWriter(new OutputStreamWriter(out, UTF_8)) : null;
+        DataOutputStream binaryWriter = format == OutputFormat.BINARY ? new DataOutputStream(out) : null;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            ArrayList<Entry> chunk = new ArrayList<>(CHUNK_SIZE);
+            String line;
+
+            while (true) {
+
+                line = reader.readLine();
+
+                if (line != null) {
+
+                    lineNumber++;
+                    line = line.trim();
+
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    chunk.add(parseLine(line, lineNumber));
+
+                    if (chunk.size() < CHUNK_SIZE) {
+                        continue;
+                    }
+                }
+
+                if (!chunk.isEmpty()) {
+
+                    Entry[] entries = chunk.toArray(new Entry[0]);
+                    pool.invoke(new GenerateTask(this, entries, 0, entries.length));
+
+                    for (Entry entry : entries) {
+                        if (csvWriter != null) {
+                            writeCsv(csvWriter, entry);
+                        } else {
+                            writeBinary(binaryWriter, entry);
+                        }
+                    }
+                    count += entries.length;
+                    chunk.clear();
+                }
+
+                if (line == null) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (csvWriter != null) {
+            csvWriter.flush();
+        } else {
+            binaryWriter.flush();
+        }
+        return new Result(count, System.nanoTime() - startTime);
+    }
+
+    private Entry parseLine(String line, int lineNumber) throws IOException {
+
+        ArrayList<String> fields = parseCsvFields(line, lineNumber);
+
+        if (fields.size() == 1) {
+            return new Entry(fields.get(0), DEFAULT_USERNAME, generatePassword());
+        }
+
+        if (fields.size() != 2 || fields.get(0).isEmpty() || fields.get(1).isEmpty()) {
+            throw new IOException("Invalid input at line " + lineNumber + ", expected \"username,password\" or \"serial\"");
+        }
+        return new Entry(null, fields.get(0), fields.get(1));
+    }
+
+    /**
+     * Splits line in fields as per RFC 4180. Unquoted fields are trimmed, quoted fields are taken as they are
+     * with doubled quotes replaced by one quote.
+     */
+    private static ArrayList<String> parseCsvFields(String line, int lineNumber) throws IOException {
+
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+
+        while (true) {
+
+            while (i < line.length() && line.charAt(i) == ' ') {
+                i++;
+            }
+
+            if (i < line.length() && line.charAt(i) == '"') {
+
+                i++;
+
+                while (true) {
+
+                    if (i >= line.length()) {
+                        throw new IOException("Invalid input at line " + lineNumber + ", quoted field is not closed");
+                    }
+                    char c = line.charAt(i++);
+
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+
+                while (i < line.length() && line.charAt(i) == ' ') {
+                    i++;
+                }
+
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IOException("Invalid input at line " + lineNumber + ", unexpected character after quoted field");
+                }
+                fields.add(field.toString());
+            } else {
+
+                int comma = line.indexOf(',', i);
+                String value = line.substring(i, comma < 0 ? line.length() : comma).trim();
+
+                if (value.indexOf('"') >= 0) {
+                    throw new IOException("Invalid input at line " + lineNumber + ", quote in unquoted field");
+                }
+                fields.add(value);
+                i = comma < 0 ? line.length() : comma;
+            }
+            field.setLength(0);
+
+            if (i >= line.length()) {
+                return fields;
+            }
+            // Skip comma.
+            i++;
+        }
+    }
+
+    private String generatePassword() {
+
+        char[] password = new char[GENERATED_PASSWORD_LENGTH];
+        SecureRandom random = this.random.get();
+
+        for (int i = 0; i < password.length; i++) {
+            password[i] = PASSWORD_CHARS[random.nextInt(PASSWORD_CHARS.length)];
+        }
+        return new String(password);
+    }
+
+    private void compute(Entry entry) {
+
+        MessageDigest digest = config.getThreadLocalMessageDigest();
+        entry.salt = srp6Routines.generateRandomSalt(saltLength, random.get());
+        BigInteger x = xRoutine.computeX(digest, entry.salt, entry.username.getBytes(UTF_8), entry.password.getBytes(UTF_8));
+        entry.verifier = BigIntegerUtils.bigIntegerToBytes(srp6Routines.computeVerifier(config.N, config.g, x));
+    }
+
+    private static void writeCsv(Writer writer, Entry entry) throws IOException {
+
+        if (entry.serial != null) {
+            writeCsvField(writer, entry.serial);
+        }
+        writer.write(',');
+        writeCsvField(writer, entry.username);
+        writer.write(',');
+
+        if (entry.isPasswordGenerated()) {
+            writeCsvField(writer, entry.password);
+        }
+        writer.write(',');
+        writeHex(writer, entry.salt);
+        writer.write(',');
+        writeHex(writer, entry.verifier);
+        writer.write('\n');
+    }
+
+    /**
+     * Writes field as it is, or quoted with doubled quotes if it contains comma, quote or line break.
+     */
+    private static void writeCsvField(Writer writer, String field) throws IOException {
+
+        boolean isQuoteNeeded = false;
+
+        for (int i = 0; i < field.length() && !isQuoteNeeded; i++) {
+            char c = field.charAt(i);
+            isQuoteNeeded = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+
+        if (!isQuoteNeeded) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static void writeHex(Writer writer, byte[] bytes) throws IOException {
+
+        for (byte b : bytes) {
+            writer.write(HEX_CHARS[(b >> 4) & 0x0F]);
+            writer.write(HEX_CHARS[b & 0x0F]);
+        }
+    }
+
+    private static void writeBinary(DataOutputStream out, Entry entry) throws IOException {
+
+        writeBytes(out, entry.serial != null ? entry.serial.getBytes(UTF_8) : new byte[0]);
+        writeBytes(out, entry.username.getBytes(UTF_8));
+        writeBytes(out, entry.isPasswordGenerated() ? entry.password.getBytes(UTF_8) : new byte[0]);
+        writeBytes(out, entry.salt);
+        writeBytes(out, entry.verifier);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static class Entry {
+
+        // Null if credentials are given in input.
+        final String serial;
+        final String username;
+        final String password;
+        byte[] salt;
+        byte[] verifier;
+
+        Entry(String serial, String username, String password) {
+            this.serial = serial;
+            this.username = username;
+            this.password = password;
+        }
+
+        boolean isPasswordGenerated() {
+            return serial != null;
+        }
+    }
+
+    private static class GenerateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient SRP6BulkVerifierGenerator generator;
+        private final transient Entry[] entries;
+        private final int from;
+        private final int to;
+
+        GenerateTask(SRP6BulkVerifierGenerator generator, Entry[] entries, int from, int to) {
+            this.generator = generator;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= TASK_SIZE) {
+
+                for (int i = from; i < to; i++) {
+                    generator.compute(entries[i]);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new GenerateTask(generator, entries, from, middle), new GenerateTask(generator, entries, middle, to));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        OutputFormat format = OutputFormat.CSV;
+        int threads = 0;
+        String inputFile = null;
+        String outputFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+
+            if ("-binary".equals(args[i])) {
+                format = OutputFormat.BINARY;
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (inputFile == null) {
+                inputFile = args[i];
+            } else {
+                outputFile = args[i];
+            }
+        }
+
+        if (inputFile == null || outputFile == null) {
+            System.err.println("Usage: SRP6BulkVerifierGenerator [-binary] [-threads N] input.csv output");
+            System.exit(1);
+            return;
+        }
+
+        SRP6BulkVerifierGenerator generator = new SRP6BulkVerifierGenerator();
+
+        if (threads > 0) {
+            generator.setParallelism(threads);
+        }
+
+        Reader in = new InputStreamReader(new FileInputStream(inputFile), UTF_8);
+        OutputStream out = new FileOutputStream(outputFile);
+
+        try {
+            Result result = generator.generate(in, out, format);
+            System.err.println(String.format("Generated %d verifiers in %.1f s, %.1f verifiers/s",
+                    result.count, result.elapsedNanos / 1e9, result.getThroughput()));
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
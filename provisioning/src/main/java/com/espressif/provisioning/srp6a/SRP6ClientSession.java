@@ -228,7 +228,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
         this.config = config;
 
-        MessageDigest digest = config.getMessageDigestInstance();
+        MessageDigest digest = config.getThreadLocalMessageDigest();
 
         if (digest == null)
             throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
@@ -273,7 +273,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
         this.config = config;
 
-        MessageDigest digest = config.getMessageDigestInstance();
+        MessageDigest digest = config.getThreadLocalMessageDigest();
 
         if (digest == null)
             throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
@@ -325,8 +325,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
         }
 
         // Compute the session key
-        k = srp6Routines.computeK(digest, config.N, config.g);
-        digest.reset();
+        k = config.getK();
 
         if (hashedKeysRoutine != null) {
             URoutineContext hashedKeysContext = new URoutineContext(A, B);
@@ -398,7 +397,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
         this.config = config;
 
-        MessageDigest digest = config.getMessageDigestInstance();
+        MessageDigest digest = config.getThreadLocalMessageDigest();
 
         if (digest == null)
             throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
@@ -454,8 +453,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
 
         // Compute the session key
-        k = srp6Routines.computeK(digest, config.N, config.g);
-        digest.reset();
+        k = config.getK();
 
         if (hashedKeysRoutine != null) {
             URoutineContext hashedKeysContext = new URoutineContext(A, B);
@@ -539,7 +537,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
         } else {
             // Pass shared session key "K" instead of "S" to compute server evidence for Espressif devices
             // With default routine
-            MessageDigest digest = config.getMessageDigestInstance();
+            MessageDigest digest = config.getThreadLocalMessageDigest();
             computedM2 = srp6Routines.computeServerEvidence(digest, A, M1, K);
         }
 
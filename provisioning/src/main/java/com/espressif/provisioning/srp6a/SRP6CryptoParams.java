@@ -5,10 +5,13 @@
 package com.espressif.provisioning.srp6a;
 
 
+import com.espressif.provisioning.security.CryptoProviders;
+
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -35,6 +38,13 @@ public class SRP6CryptoParams implements Serializable {
 	 */
 	private static final long serialVersionUID = -8758433435502894107L;
 
+
+	/**
+	 * Shared instances returned by {@link #getInstance(int, String)}, keyed
+	 * by bitsize and hash algorithm.
+	 */
+	private static final ConcurrentHashMap<String, SRP6CryptoParams> instances = new ConcurrentHashMap<>();
+
 	// Pre-computed primes 'N' for a set of bitsizes
 
 	/**
@@ -152,6 +162,9 @@ public class SRP6CryptoParams implements Serializable {
 	 *                default security provider of the underlying Java
 	 *                runtime.
 	 *
+	 * <p>Instances are shared, so values derived from the parameters (the
+	 * multiplier 'k', padded 'N' and 'g') are computed only once.
+	 *
 	 * @return The matching SRP-6a crypto parameters instance, or
 	 *         {@code null} if no matching constants or hash algorithm
 	 *         provider could be found.
@@ -161,6 +174,26 @@ public class SRP6CryptoParams implements Serializable {
 		if (H == null || H.isEmpty())
 			throw new IllegalArgumentException("Undefined hash algorithm 'H'");
 
+		final String key = bitsize + ":" + H;
+
+		SRP6CryptoParams params = instances.get(key);
+
+		if (params != null)
+			return params;
+
+		params = createInstance(bitsize, H);
+
+		if (params == null)
+			return null;
+
+		SRP6CryptoParams existing = instances.putIfAbsent(key, params);
+
+		return existing != null ? existing : params;
+	}
+
+
+	private static SRP6CryptoParams createInstance(final int bitsize, final String H) {
+
 		switch (bitsize) {
 			case 256:
 				return new SRP6CryptoParams(N_256, g_common, H);
@@ -270,8 +303,38 @@ public class SRP6CryptoParams implements Serializable {
 	}
 
 
+	/**
+	 * The message digest used as a prototype for new instances.
+	 */
+	private transient volatile MessageDigest digestPrototype;
+
+
+	/**
+	 * Per-thread message digests.
+	 */
+	private transient volatile ThreadLocal<MessageDigest> threadLocalDigest;
+
+
+	/**
+	 * The padded 'N' and 'g' and the multiplier 'k', computed on first
+	 * use.
+	 */
+	private transient volatile byte[] paddedN;
+	private transient volatile byte[] paddedG;
+	private transient volatile BigInteger k;
+
+
+	/**
+	 * H(N) XOR H(PAD(g)), used by the client evidence message of
+	 * Espressif devices, computed on first use.
+	 */
+	private transient volatile byte[] hashNXorHashG;
+
+
 	/**
 	 * Returns a new message digest instance for the hash algorithm 'H'.
+	 * The instance is cloned from a prototype where possible, to avoid a
+	 * provider lookup on each call.
 	 *
 	 * @return A new message digest instance or {@code null} if not
 	 *         supported by the default security provider of the underlying
@@ -280,11 +343,175 @@ public class SRP6CryptoParams implements Serializable {
 	public MessageDigest getMessageDigestInstance() {
 
 		try {
-			return MessageDigest.getInstance(H);
+			MessageDigest prototype = digestPrototype;
+
+			if (prototype == null) {
+				prototype = CryptoProviders.getMessageDigest(H);
+				digestPrototype = prototype;
+			}
+
+			return (MessageDigest) prototype.clone();
 
 		} catch (NoSuchAlgorithmException e) {
 
 			return null;
+
+		} catch (CloneNotSupportedException e) {
+
+			try {
+				return MessageDigest.getInstance(H);
+
+			} catch (NoSuchAlgorithmException ex) {
+
+				return null;
+			}
+		}
+	}
+
+
+	/**
+	 * Returns a message digest instance for the hash algorithm 'H' which
+	 * is reused by all calls from the current thread. The digest is reset
+	 * before it is returned, so it must not be kept across calls that may
+	 * use it again.
+	 *
+	 * @return The message digest instance of the current thread or
+	 *         {@code null} if not supported by the default security
+	 *         provider of the underlying Java runtime.
+	 */
+	public MessageDigest getThreadLocalMessageDigest() {
+
+		ThreadLocal<MessageDigest> local = threadLocalDigest;
+
+		if (local == null) {
+
+			synchronized (this) {
+
+				if (threadLocalDigest == null)
+					threadLocalDigest = new ThreadLocal<>();
+
+				local = threadLocalDigest;
+			}
+		}
+
+		MessageDigest digest = local.get();
+
+		if (digest == null) {
+
+			digest = getMessageDigestInstance();
+
+			if (digest == null)
+				return null;
+
+			local.set(digest);
+		}
+
+		digest.reset();
+
+		return digest;
+	}
+
+
+	/**
+	 * Returns 'N' as a big-endian byte array without leading zero. Its
+	 * length is the pad length used by the SRP-6a routines. The returned
+	 * array is shared and must not be modified.
+	 *
+	 * @return The padded 'N'.
+	 */
+	byte[] getPaddedN() {
+
+		byte[] bytes = paddedN;
+
+		if (bytes == null) {
+			bytes = BigIntegerUtils.bigIntegerToBytes(N);
+			paddedN = bytes;
+		}
+
+		return bytes;
+	}
+
+
+	/**
+	 * Returns 'g' padded with leading zeros to the length of 'N'. The
+	 * returned array is shared and must not be modified.
+	 *
+	 * @return The padded 'g'.
+	 */
+	byte[] getPaddedG() {
+
+		byte[] bytes = paddedG;
+
+		if (bytes == null) {
+
+			final byte[] padded = new byte[getPaddedN().length];
+			final byte[] gBytes = BigIntegerUtils.bigIntegerToBytes(g);
+			System.arraycopy(gBytes, 0, padded, padded.length - gBytes.length, gBytes.length);
+			bytes = padded;
+			paddedG = bytes;
+		}
+
+		return bytes;
+	}
+
+
+	/**
+	 * Returns the SRP-6a multiplier k = H(N | PAD(g)), computed once for
+	 * these parameters.
+	 *
+	 * <p>Specification: RFC 5054.
+	 *
+	 * @return The multiplier 'k'.
+	 */
+	public BigInteger getK() {
+
+		BigInteger value = k;
+
+		if (value == null) {
+
+			MessageDigest digest = getMessageDigestInstance();
+
+			if (digest == null)
+				throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + H);
+
+			digest.update(getPaddedN());
+			digest.update(getPaddedG());
+			value = BigIntegerUtils.bigIntegerFromBytes(digest.digest());
+			k = value;
+		}
+
+		return value;
+	}
+
+
+	/**
+	 * Returns H(N) XOR H(PAD(g)), computed once for these parameters. The
+	 * returned array is shared and must not be modified.
+	 *
+	 * @return The XOR of the hashes of 'N' and padded 'g'.
+	 */
+	byte[] getHashNXorHashG() {
+
+		byte[] value = hashNXorHashG;
+
+		if (value == null) {
+
+			MessageDigest digest = getMessageDigestInstance();
+
+			if (digest == null)
+				throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + H);
+
+			final byte[] hn = digest.digest(getPaddedN());
+			final byte[] hg = digest.digest(getPaddedG());
+
+			value = new byte[hn.length];
+
+			for (int i = 0; i < hn.length; i++)
+				value[i] = (byte) (hn[i] ^ hg[i]);
+
+			hashNXorHashG = value;
 		}
+
+		return value;
 	}
 }
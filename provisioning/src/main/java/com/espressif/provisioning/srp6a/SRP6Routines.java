@@ -31,6 +31,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>This class contains portions of code from Bouncy Castle's SRP6
  * implementation.
  *
+ * <p>Exponentiations use {@link BigInteger#modPow}, which runs in native code on Android.
+ * Fixed-base comb tables were evaluated and not used: they were not faster than modPow and
+ * table lookups indexed by the secret exponent would leak timing.
+ *
  * @author Vladimir Dzhuvinov
  */
 public class SRP6Routines implements Serializable {
@@ -307,7 +311,7 @@ public class SRP6Routines implements Serializable {
 	public BigInteger computeSharedSessionKey(final MessageDigest digest,
 											  final BigInteger S) {
 
-		digest.update(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, S);
 
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
@@ -332,9 +336,9 @@ public class SRP6Routines implements Serializable {
 	                                               final BigInteger B,
 	                                               final BigInteger S) {
 
-		digest.update(BigIntegerUtils.bigIntegerToBytes(A));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(B));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, A);
+		BigIntegerUtils.updateDigest(digest, B);
+		BigIntegerUtils.updateDigest(digest, S);
 
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
@@ -360,9 +364,9 @@ public class SRP6Routines implements Serializable {
 	                                                  final BigInteger M1,
 	                                                  final BigInteger S) {
 
-		digest.update(BigIntegerUtils.bigIntegerToBytes(A));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(M1));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, A);
+		BigIntegerUtils.updateDigest(digest, M1);
+		BigIntegerUtils.updateDigest(digest, S);
 
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
@@ -389,12 +393,8 @@ public class SRP6Routines implements Serializable {
 
 		final int padLength = (N.bitLength() + 7) / 8;
 
-		byte[] n1_bytes = getPadded(n1, padLength);
-
-		byte[] n2_bytes = getPadded(n2, padLength);
-
-		digest.update(n1_bytes);
-		digest.update(n2_bytes);
+		BigIntegerUtils.updateDigestPadded(digest, n1, padLength);
+		BigIntegerUtils.updateDigestPadded(digest, n2, padLength);
 
 		byte[] output = digest.digest();
 
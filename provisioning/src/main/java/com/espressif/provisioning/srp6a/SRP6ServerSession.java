@@ -194,14 +194,10 @@ public class SRP6ServerSession extends SRP6Session implements Serializable {
 		if (state != State.INIT)
 			throw new IllegalStateException("State violation: Session must be in INIT state");
 		
-		MessageDigest digest = config.getMessageDigestInstance();
-		
 		// Generate server private and public values
-		k = srp6Routines.computeK(digest, config.N, config.g);
-		digest.reset();
+		k = config.getK();
 		
 		b = srp6Routines.generatePrivateValue(config.N, random);
-		digest.reset();
 		
 		B = srp6Routines.computePublicServerValue(config.N, config.g, k, v, b);
 
@@ -298,7 +294,7 @@ public class SRP6ServerSession extends SRP6Session implements Serializable {
 		if (! srp6Routines.isValidPublicValue(config.N, A))
 			throw new SRP6Exception("Bad client public value 'A'", SRP6Exception.CauseType.BAD_PUBLIC_VALUE);
 		
-		MessageDigest digest = config.getMessageDigestInstance();
+		MessageDigest digest = config.getThreadLocalMessageDigest();
 		
 		if (hashedKeysRoutine != null) {
 			URoutineContext hashedKeysContext = new URoutineContext(A, B);
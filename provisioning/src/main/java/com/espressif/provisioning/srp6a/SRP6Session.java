@@ -430,12 +430,14 @@ public abstract class SRP6Session implements Serializable {
 		if (S == null)
 			return null;
 
-		MessageDigest digest = config.getMessageDigestInstance();
+		MessageDigest digest = config.getThreadLocalMessageDigest();
 
 		if (digest == null)
 			throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
 		
-		return digest.digest(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, S);
+
+		return digest.digest();
 	}
 	
 	
@@ -26,20 +26,22 @@ import android.content.Context;
 import android.os.Build;
 import android.util.Log;
 
+import com.espressif.provisioning.DeviceCapabilities;
 import com.espressif.provisioning.DeviceConnectionEvent;
+import com.espressif.provisioning.DeviceInfoCache;
 import com.espressif.provisioning.ESPConstants;
+import com.espressif.provisioning.listeners.BufferResponseListener;
 import com.espressif.provisioning.listeners.ResponseListener;
 
 import org.greenrobot.eventbus.EventBus;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
@@ -47,7 +49,7 @@ import java.util.concurrent.Semaphore;
 /**
  * Bluetooth implementation of the Transport protocol.
  */
-public class BLETransport implements Transport {
+public class BLETransport implements BufferTransport {
 
     private static final String TAG = "Espressif::" + BLETransport.class.getSimpleName();
 
@@ -57,15 +59,34 @@ public class BLETransport implements Transport {
     private BluetoothGattService service;
     private ResponseListener currentResponseListener;
     private Semaphore transportToken;
+    private byte[] writeBuffer;
     private ExecutorService dispatcherThreadPool;
     private HashMap<String, String> uuidMap = new HashMap<>();
     private ArrayList<String> charUuidList = new ArrayList<>();
 
     private String serviceUuid;
     private boolean isReadingDescriptors = false;
+    private boolean isReadingVersionInfo = false;
+    private boolean isVersionInfoCached = false;
+    private DeviceInfoCache deviceInfoCache;
+    private DeviceCapabilities capabilities;
+    private ConnectionEventListener connectionEventListener;
     public ArrayList<String> deviceCapabilities = new ArrayList<>();
     public String versionInfo;
 
+    /**
+     * Listener to get connection events of this transport.
+     */
+    public interface ConnectionEventListener {
+
+        /**
+         * Called when device is connected, connection is failed or device is disconnected.
+         *
+         * @param eventType One of the device connection event types of ESPConstants.
+         */
+        void onConnectionEvent(short eventType);
+    }
+
     /**
      * Create BLETransport implementation
      *
@@ -77,6 +98,46 @@ public class BLETransport implements Transport {
         this.dispatcherThreadPool = Executors.newSingleThreadExecutor();
     }
 
+    /**
+     * This method is used to set cache of device information.
+     * If device is found in cache, "proto-ver" is not read from device while connecting.
+     * Cached information should then be checked by sending "proto-ver" request, see {@link #isVersionInfoCached()}.
+     *
+     * @param deviceInfoCache Cache of device information. Null to always read from device.
+     */
+    public void setDeviceInfoCache(DeviceInfoCache deviceInfoCache) {
+        this.deviceInfoCache = deviceInfoCache;
+    }
+
+    /**
+     * This method is used to set listener for connection events.
+     * If listener is set, events are given only to it and are not posted on EventBus.
+     *
+     * @param connectionEventListener Listener for connection events. Null to post events on EventBus.
+     */
+    public void setConnectionEventListener(ConnectionEventListener connectionEventListener) {
+        this.connectionEventListener = connectionEventListener;
+    }
+
+    /**
+     * This method is used to get version and capabilities of connected device.
+     *
+     * @return Returns device capabilities or null if not available yet.
+     */
+    public DeviceCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * This method is used to check whether information of connected device is taken from cache
+     * instead of reading "proto-ver" characteristic.
+     *
+     * @return Returns true if version information is from cache.
+     */
+    public boolean isVersionInfoCached() {
+        return isVersionInfoCached;
+    }
+
     /**
      * BLE implementation of Transport protocol
      *
@@ -86,6 +147,38 @@ public class BLETransport implements Transport {
      */
     @Override
     public void sendConfigData(String path, byte[] data, ResponseListener listener) {
+        writeCharacteristic(path, data, null, listener);
+    }
+
+    /**
+     * BLE implementation of Transport protocol for ByteBuffer.
+     * Response is given as buffer wrapping characteristic value, without copying it.
+     *
+     * @param path     path of the config endpoint.
+     * @param data     config data to be sent
+     * @param listener listener implementation which receives events when response is received.
+     */
+    @Override
+    public void sendConfigData(String path, ByteBuffer data, final BufferResponseListener listener) {
+
+        writeCharacteristic(path, null, data, listener == null ? null : new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                listener.onSuccess(returnData == null ? null : ByteBuffer.wrap(returnData));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Writes data on characteristic of given path. Either data or buffer is written.
+     */
+    private void writeCharacteristic(String path, byte[] data, ByteBuffer buffer, ResponseListener listener) {
 
         if (uuidMap.containsKey(path)) {
 
@@ -98,12 +191,11 @@ public class BLETransport implements Transport {
             if (characteristic != null) {
                 try {
                     this.transportToken.acquire();
-                    characteristic.setValue(data);
+                    characteristic.setValue(data != null ? data : getWriteValue(buffer));
                     bluetoothGatt.writeCharacteristic(characteristic);
                     currentResponseListener = listener;
                 } catch (Exception e) {
                     e.printStackTrace();
-                    listener.onFailure(e);
                     this.transportToken.release();
                     currentResponseListener = listener;
                     if (currentResponseListener != null) {
@@ -126,6 +218,27 @@ public class BLETransport implements Transport {
         }
     }
 
+    /**
+     * Characteristic value must be an array of exact length. Backing array of buffer is used if it matches,
+     * otherwise data is copied in write buffer which is reused while message length is same.
+     * Must be called only while holding transport token, as write buffer is in use till response is read.
+     */
+    private byte[] getWriteValue(ByteBuffer buffer) {
+
+        int length = buffer.remaining();
+
+        if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0 && buffer.array().length == length) {
+            buffer.position(buffer.limit());
+            return buffer.array();
+        }
+
+        if (writeBuffer == null || writeBuffer.length != length) {
+            writeBuffer = new byte[length];
+        }
+        buffer.get(writeBuffer);
+        return writeBuffer;
+    }
+
     /**
      * Connect to a BLE peripheral device.
      *
@@ -143,7 +256,8 @@ public class BLETransport implements Transport {
     }
 
     /**
-     * Disconnect from the current connected peripheral
+     * Disconnect from the current connected peripheral.
+     * Request which is waiting for response is failed, as its response will not be received after closing GATT.
      */
     public void disconnect() {
 
@@ -154,6 +268,33 @@ public class BLETransport implements Transport {
             this.bluetoothGatt.close();
             bluetoothGatt = null;
         }
+
+        // Token is held only while request is waiting for response.
+        if (transportToken.availablePermits() == 0) {
+
+            ResponseListener pendingListener = currentResponseListener;
+            currentResponseListener = null;
+            transportToken.release();
+
+            if (pendingListener != null) {
+                pendingListener.onFailure(new RuntimeException("Device disconnected"));
+            }
+        }
+    }
+
+    /**
+     * This method is used to cancel request which is waiting for response. Its listener gets failure.
+     * Transport stays busy till response of the cancelled request is received, its response is then dropped.
+     */
+    public void cancelActiveRequest() {
+
+        ResponseListener pendingListener = currentResponseListener;
+        currentResponseListener = null;
+
+        if (pendingListener != null) {
+            Log.d(TAG, "Cancel active request");
+            pendingListener.onFailure(new CancellationException("Request cancelled"));
+        }
     }
 
     public void refreshServices() {
@@ -179,10 +320,10 @@ public class BLETransport implements Transport {
             Log.d(TAG, "onConnectionStateChange, New state : " + newState + ", Status : " + status);
 
             if (status == BluetoothGatt.GATT_FAILURE) {
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             } else if (status == 133) {
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             } else if (status != BluetoothGatt.GATT_SUCCESS && newState != BluetoothProfile.STATE_DISCONNECTED) {
                 // TODO need to check this status
@@ -194,7 +335,7 @@ public class BLETransport implements Transport {
                 gatt.requestMtu(512);
             } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
                 Log.e(TAG, "Disconnected from GATT server.");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_DISCONNECTED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_DISCONNECTED);
             }
         }
 
@@ -206,7 +347,7 @@ public class BLETransport implements Transport {
 
             if (status != BluetoothGatt.GATT_SUCCESS) {
                 Log.d(TAG, "Status not success");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             }
 
@@ -214,7 +355,7 @@ public class BLETransport implements Transport {
 
             if (service == null) {
                 Log.e(TAG, "Service not found!");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             }
 
@@ -222,7 +363,7 @@ public class BLETransport implements Transport {
 
                 if (characteristic == null) {
                     Log.e(TAG, "Tx characteristic not found!");
-                    EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                    postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                     return;
                 }
 
@@ -243,7 +384,7 @@ public class BLETransport implements Transport {
                 Log.d(TAG, "Read Descriptor : " + bluetoothGatt.readDescriptor(descriptor));
             } else {
                 Log.e(TAG, "Fail to write descriptor");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
             }
         }
 
@@ -275,14 +416,7 @@ public class BLETransport implements Transport {
                 readNextDescriptor();
 
             } else {
-
-                BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuidMap.get(ESPConstants.HANDLER_PROTO_VER)));
-
-                if (characteristic != null) {
-                    // Write anything. It doesn't matter. We need to read characteristic and for that we need to write something.
-                    characteristic.setValue("ESP");
-                    bluetoothGatt.writeCharacteristic(characteristic);
-                }
+                readVersionInfo();
             }
         }
 
@@ -309,33 +443,20 @@ public class BLETransport implements Transport {
             Log.d(TAG, "onCharacteristicRead, status " + status + " UUID : " + characteristic.getUuid().toString());
             super.onCharacteristicRead(gatt, characteristic, status);
 
-            if (uuidMap.get((ESPConstants.HANDLER_PROTO_VER)).equals(characteristic.getUuid().toString())) {
+            if (isReadingVersionInfo && uuidMap.get((ESPConstants.HANDLER_PROTO_VER)).equals(characteristic.getUuid().toString())) {
 
+                isReadingVersionInfo = false;
                 String data = new String(characteristic.getValue(), StandardCharsets.UTF_8);
                 Log.d(TAG, "Value : " + data);
-                versionInfo = data;
-
-                try {
-                    JSONObject jsonObject = new JSONObject(data);
-                    JSONObject provInfo = jsonObject.getJSONObject("prov");
-
-                    String deviceVersion = provInfo.getString("ver");
-                    Log.d(TAG, "Device Version : " + deviceVersion);
-
-                    JSONArray capabilities = provInfo.getJSONArray("cap");
-
-                    for (int i = 0; i < capabilities.length(); i++) {
-                        String cap = capabilities.getString(i);
-                        deviceCapabilities.add(cap);
-                    }
-                    Log.d(TAG, "Capabilities : " + deviceCapabilities);
+                setCapabilities(DeviceCapabilities.parse(data));
 
-                } catch (JSONException e) {
-                    e.printStackTrace();
+                if (!capabilities.isValid()) {
                     Log.d(TAG, "Capabilities JSON not available.");
+                } else if (deviceInfoCache != null) {
+                    deviceInfoCache.put(currentDevice.getAddress(), capabilities);
                 }
 
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED);
             }
 
             if (currentResponseListener != null) {
@@ -398,7 +519,7 @@ public class BLETransport implements Transport {
                 if (characteristic == null) {
                     Log.e(TAG, "Tx characteristic not found!");
                     disconnect();
-                    EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                    postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                     return;
                 }
 
@@ -418,13 +539,59 @@ public class BLETransport implements Transport {
         } else {
 
             isReadingDescriptors = false;
+            readVersionInfo();
+        }
+    }
 
-            BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuidMap.get(ESPConstants.HANDLER_PROTO_VER)));
+    /**
+     * Reads version information from "proto-ver" characteristic, unless device is found in cache.
+     */
+    private void readVersionInfo() {
 
-            if (characteristic != null) {
-                characteristic.setValue("ESP");
-                bluetoothGatt.writeCharacteristic(characteristic);
-            }
+        DeviceCapabilities cachedCapabilities = deviceInfoCache == null ? null : deviceInfoCache.get(currentDevice.getAddress());
+
+        isVersionInfoCached = cachedCapabilities != null;
+
+        if (cachedCapabilities != null) {
+            Log.d(TAG, "Using cached version info : " + cachedCapabilities.getVersionInfo());
+            setCapabilities(cachedCapabilities);
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED);
+            return;
+        }
+
+        BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuidMap.get(ESPConstants.HANDLER_PROTO_VER)));
+
+        if (characteristic != null) {
+            // Write anything. It doesn't matter. We need to read characteristic and for that we need to write something.
+            characteristic.setValue("ESP");
+            isReadingVersionInfo = true;
+            bluetoothGatt.writeCharacteristic(characteristic);
         }
     }
+
+    private void postConnectionEvent(short eventType) {
+
+        ConnectionEventListener listener = connectionEventListener;
+
+        if (listener != null) {
+            listener.onConnectionEvent(eventType);
+        } else {
+            EventBus.getDefault().post(new DeviceConnectionEvent(eventType));
+        }
+    }
+
+    /**
+     * This method is used to update version information of connected device, e.g. after cached information
+     * is checked with "proto-ver" request.
+     *
+     * @param capabilities Version and capabilities received from device.
+     */
+    public void setCapabilities(DeviceCapabilities capabilities) {
+
+        this.capabilities = capabilities;
+        versionInfo = capabilities.getVersionInfo();
+        deviceCapabilities.clear();
+        deviceCapabilities.addAll(capabilities.getCapabilities());
+        Log.d(TAG, "Device Version : " + capabilities.getVersion() + ", Capabilities : " + deviceCapabilities);
+    }
 }
@@ -0,0 +1,132 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import com.espressif.provisioning.DeviceEventLoop;
+import com.espressif.provisioning.listeners.BufferResponseListener;
+import com.espressif.provisioning.listeners.ResponseListener;
+import com.espressif.provisioning.utils.BufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transport which sends data through another transport and gives responses on device's event loop.
+ * Session and its security state are then used only from the event loop, whichever thread receives the response.
+ * <p>
+ * Buffer response of the wrapped transport is valid only while its listener runs, so it is copied in pooled
+ * buffer which is released after listener returns.
+ */
+public class EventLoopTransport implements BufferTransport {
+
+    private final BufferTransport transport;
+    private final DeviceEventLoop eventLoop;
+    private final BufferPool bufferPool;
+
+    /**
+     * @param transport Transport used to send data.
+     * @param eventLoop Event loop on which responses are given.
+     */
+    public EventLoopTransport(BufferTransport transport, DeviceEventLoop eventLoop) {
+        this.transport = transport;
+        this.eventLoop = eventLoop;
+        this.bufferPool = BufferPool.getDefault();
+    }
+
+    /**
+     * @return Returns transport which is used to send data.
+     */
+    public BufferTransport getTransport() {
+        return transport;
+    }
+
+    @Override
+    public void sendConfigData(String path, byte[] data, final ResponseListener listener) {
+
+        transport.sendConfigData(path, data, listener == null ? null : new ResponseListener() {
+
+            @Override
+            public void onSuccess(final byte[] returnData) {
+
+                eventLoop.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        listener.onSuccess(returnData);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                postFailure(e, listener, null);
+            }
+        });
+    }
+
+    @Override
+    public void sendConfigData(String path, ByteBuffer data, final BufferResponseListener listener) {
+
+        transport.sendConfigData(path, data, listener == null ? null : new BufferResponseListener() {
+
+            @Override
+            public void onSuccess(ByteBuffer returnData) {
+
+                final ByteBuffer response;
+
+                if (returnData == null) {
+                    response = null;
+                } else {
+                    response = bufferPool.acquire(returnData.remaining());
+                    response.put(returnData);
+                    response.flip();
+                }
+
+                eventLoop.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        try {
+                            listener.onSuccess(response);
+                        } finally {
+                            bufferPool.release(response);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                postFailure(e, null, listener);
+            }
+        });
+    }
+
+    private void postFailure(final Exception e, final ResponseListener listener, final BufferResponseListener bufferListener) {
+
+        eventLoop.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                if (listener != null) {
+                    listener.onFailure(e);
+                } else {
+                    bufferListener.onFailure(e);
+                }
+            }
+        });
+    }
+}
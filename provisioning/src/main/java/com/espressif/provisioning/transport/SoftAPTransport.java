@@ -19,17 +19,18 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import com.espressif.provisioning.ESPConstants;
+import com.espressif.provisioning.listeners.BufferResponseListener;
 import com.espressif.provisioning.listeners.ResponseListener;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.CookieManager;
 import java.net.HttpCookie;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -40,14 +41,19 @@ import java.util.concurrent.Executors;
  * This transport assumes that the device establishes a Wifi
  * Access point and the device connects to that AP
  */
-public class SoftAPTransport implements Transport {
+public class SoftAPTransport implements BufferTransport {
 
     private static final String TAG = "Espressif::" + SoftAPTransport.class.getSimpleName();
     private static final String SET_COOKIE_HEADER = "Set-Cookie";
     private static final String COOKIE_HEADER = "Cookie";
+    private static final int RESPONSE_BUFFER_SIZE = 4096;
 
     private String baseUrl = ESPConstants.DEFAULT_WIFI_BASE_URL;
     private ExecutorService workerThreadPool;
+    // Used only from worker thread.
+    private byte[] responseBuffer = new byte[RESPONSE_BUFFER_SIZE];
+    // Connection of the request which is in progress, used to cancel it.
+    private volatile HttpURLConnection activeConnection;
     private static CookieManager cookieManager;
 
     /**
@@ -61,70 +67,101 @@ public class SoftAPTransport implements Transport {
         }
     }
 
-    private byte[] sendPostRequest(String path, byte[] data, final ResponseListener listener) {
-        byte[] responseBytes = null;
+    /**
+     * This method is used to cancel request which is in progress.
+     * Its listener gets failure. Requests which are not started yet are sent as usual.
+     */
+    public void cancelActiveRequest() {
+
+        HttpURLConnection connection = activeConnection;
+
+        if (connection != null) {
+            Log.d(TAG, "Cancel active request");
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Sends remaining bytes of data as POST request body.
+     * Response is read in response buffer which is reused for next requests, so returned buffer is valid
+     * only till next request. All requests are sent from single worker thread.
+     *
+     * @return Returns response or null if response code is not HTTP OK.
+     */
+    private ByteBuffer sendPostRequest(String path, ByteBuffer data) throws IOException {
+
+        URL url = new URL("http://" + baseUrl + "/" + path);
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        activeConnection = urlConnection;
+
         try {
-            URL url = new URL("http://" + baseUrl + "/" + path);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setDoOutput(true);
-
-            urlConnection.setRequestMethod("POST");
-            urlConnection.setRequestProperty("Accept", "text/plain");
-            urlConnection.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
-            urlConnection.setConnectTimeout(5000);
-
-            if (cookieManager.getCookieStore().getCookies().size() > 0) {
-
-                Log.d(TAG, "Cookie - Name : " + cookieManager.getCookieStore().getCookies().get(0).getName());
-                Log.d(TAG, "Cookie - Value : " + cookieManager.getCookieStore().getCookies().get(0).getValue());
-                // While joining the Cookies, use ',' or ';' as needed. Most of the servers are using ';'
-                urlConnection.setRequestProperty(COOKIE_HEADER,
-                        TextUtils.join(";", cookieManager.getCookieStore().getCookies()));
-            }
+            return sendPostRequest(urlConnection, data);
+        } finally {
+            activeConnection = null;
+        }
+    }
 
-            OutputStream os = urlConnection.getOutputStream();
-            os.write(data);
-            os.close();
-
-            int responseCode = urlConnection.getResponseCode();
-            Map<String, List<String>> headerFields = urlConnection.getHeaderFields();
-            List<String> cookiesHeader = headerFields.get(SET_COOKIE_HEADER);
-
-            if (cookiesHeader != null) {
-                for (String cookie : cookiesHeader) {
-                    HttpCookie httpCookie = HttpCookie.parse(cookie).get(0);
-                    // Default version of HttpCookie is 1. In version 1, quotes will be added.
-                    // So set version 0 so that quotes will not be added.
-                    httpCookie.setVersion(0);
-                    cookieManager.getCookieStore().add(null, httpCookie);
-                }
-            }
+    private ByteBuffer sendPostRequest(HttpURLConnection urlConnection, ByteBuffer data) throws IOException {
+
+        urlConnection.setDoOutput(true);
+
+        urlConnection.setRequestMethod("POST");
+        urlConnection.setRequestProperty("Accept", "text/plain");
+        urlConnection.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
+        urlConnection.setConnectTimeout(5000);
+        // Request body is written directly instead of buffering it for computing content length.
+        urlConnection.setFixedLengthStreamingMode(data.remaining());
 
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                int n;
-                byte[] byteChunk = new byte[4096];
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                InputStream is = urlConnection.getInputStream();
-                while ((n = is.read(byteChunk)) > 0) {
-                    outputStream.write(byteChunk, 0, n);
-                }
-                responseBytes = outputStream.toByteArray();
+        if (cookieManager.getCookieStore().getCookies().size() > 0) {
+
+            Log.d(TAG, "Cookie - Name : " + cookieManager.getCookieStore().getCookies().get(0).getName());
+            Log.d(TAG, "Cookie - Value : " + cookieManager.getCookieStore().getCookies().get(0).getValue());
+            // While joining the Cookies, use ',' or ';' as needed. Most of the servers are using ';'
+            urlConnection.setRequestProperty(COOKIE_HEADER,
+                    TextUtils.join(";", cookieManager.getCookieStore().getCookies()));
+        }
+
+        OutputStream os = urlConnection.getOutputStream();
+        if (data.hasArray()) {
+            os.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+        } else {
+            byte[] body = new byte[data.remaining()];
+            data.get(body);
+            os.write(body);
+        }
+        os.close();
+
+        int responseCode = urlConnection.getResponseCode();
+        Map<String, List<String>> headerFields = urlConnection.getHeaderFields();
+        List<String> cookiesHeader = headerFields.get(SET_COOKIE_HEADER);
+
+        if (cookiesHeader != null) {
+            for (String cookie : cookiesHeader) {
+                HttpCookie httpCookie = HttpCookie.parse(cookie).get(0);
+                // Default version of HttpCookie is 1. In version 1, quotes will be added.
+                // So set version 0 so that quotes will not be added.
+                httpCookie.setVersion(0);
+                cookieManager.getCookieStore().add(null, httpCookie);
             }
-        } catch (MalformedURLException e) {
-            Log.e(TAG, e.getMessage());
-            e.printStackTrace();
-            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
-        } catch (IOException e) {
-            Log.e(TAG, e.getMessage());
-            e.printStackTrace();
-            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
-        } catch (Exception e) {
-            Log.e(TAG, e.getMessage());
-            e.printStackTrace();
-            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
         }
 
-        return responseBytes;
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            Log.e(TAG, "Response code : " + responseCode);
+            return null;
+        }
+
+        int n;
+        int length = 0;
+        InputStream is = urlConnection.getInputStream();
+        while ((n = is.read(responseBuffer, length, responseBuffer.length - length)) > 0) {
+            length += n;
+            if (length == responseBuffer.length) {
+                responseBuffer = Arrays.copyOf(responseBuffer, length * 2);
+            }
+        }
+        is.close();
+        return ByteBuffer.wrap(responseBuffer, 0, length);
     }
 
     /***
@@ -139,11 +176,51 @@ public class SoftAPTransport implements Transport {
                 .submit(new Runnable() {
                     @Override
                     public void run() {
+                        ByteBuffer response;
+                        try {
+                            response = sendPostRequest(path, ByteBuffer.wrap(data));
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error in sending data : " + e.getMessage());
+                            e.printStackTrace();
+                            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
+                            return;
+                        }
+                        byte[] returnData = null;
+                        if (response != null) {
+                            returnData = new byte[response.remaining()];
+                            response.get(returnData);
+                        }
+                        listener.onSuccess(returnData);
+                    }
+                });
+    }
+
+    /***
+     * HTTP implementation of the Transport protocol for ByteBuffer.
+     * Response is given as buffer wrapping internal response buffer, without copying it.
+     * @param path path of the config endpoint.
+     * @param data config data to be sent
+     * @param listener listener implementation which receives events when response is received.
+     */
+    @Override
+    public void sendConfigData(final String path, final ByteBuffer data, final BufferResponseListener listener) {
+        this.workerThreadPool
+                .submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ByteBuffer response;
                         try {
-                            byte[] returnData = sendPostRequest(path, data, listener);
-                            listener.onSuccess(returnData);
+                            response = sendPostRequest(path, data);
                         } catch (Exception e) {
-                            listener.onFailure(e);
+                            Log.e(TAG, "Error in sending data : " + e.getMessage());
+                            e.printStackTrace();
+                            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
+                            return;
+                        }
+                        if (response == null) {
+                            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
+                        } else {
+                            listener.onSuccess(response);
                         }
                     }
                 });
@@ -0,0 +1,137 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of heap ByteBuffers used for messages sent to and received from the device.
+ * Buffers are kept in power of two size classes, so buffers released after a request
+ * are reused by next requests of similar size instead of allocating new arrays.
+ * This class is thread safe.
+ */
+public class BufferPool {
+
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_BUFFERS_PER_SIZE = 4;
+
+    private static BufferPool defaultPool;
+
+    private final ArrayDeque<ByteBuffer>[] freeBuffers;
+    private final int buffersPerSize;
+
+    public BufferPool() {
+        this(DEFAULT_BUFFERS_PER_SIZE);
+    }
+
+    /**
+     * @param buffersPerSize Maximum number of free buffers kept for each size class.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int buffersPerSize) {
+
+        this.buffersPerSize = buffersPerSize;
+        freeBuffers = new ArrayDeque[getSizeClass(MAX_BUFFER_SIZE) + 1];
+
+        for (int i = 0; i < freeBuffers.length; i++) {
+            freeBuffers[i] = new ArrayDeque<>(buffersPerSize);
+        }
+    }
+
+    /**
+     * This method is used to get pool shared by all sessions.
+     *
+     * @return Returns default buffer pool.
+     */
+    public static synchronized BufferPool getDefault() {
+
+        if (defaultPool == null) {
+            defaultPool = new BufferPool();
+        }
+        return defaultPool;
+    }
+
+    /**
+     * This method is used to get a buffer with at least given number of bytes.
+     * Returned buffer has position 0 and limit set to the requested size.
+     * It should be given back with {@link #release(ByteBuffer)} when it is not needed.
+     *
+     * @param size Required size in bytes.
+     * @return Returns buffer from pool, or new buffer if no free buffer is available.
+     */
+    public ByteBuffer acquire(int size) {
+
+        if (size > MAX_BUFFER_SIZE) {
+            return ByteBuffer.allocate(size);
+        }
+        int sizeClass = getSizeClass(size);
+        ByteBuffer buffer;
+        ArrayDeque<ByteBuffer> buffers = freeBuffers[sizeClass];
+
+        synchronized (buffers) {
+            buffer = buffers.pollFirst();
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(MIN_BUFFER_SIZE << sizeClass);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * This method is used to give back buffer received from {@link #acquire(int)}.
+     * Buffer must not be used after it is released. Releasing the same buffer again has no effect.
+     *
+     * @param buffer Buffer to be released. Null and buffers not created by pool are ignored.
+     */
+    public void release(ByteBuffer buffer) {
+
+        if (buffer == null || !buffer.hasArray() || buffer.arrayOffset() != 0) {
+            return;
+        }
+        int capacity = buffer.capacity();
+
+        if (capacity < MIN_BUFFER_SIZE || capacity > MAX_BUFFER_SIZE || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        ArrayDeque<ByteBuffer> buffers = freeBuffers[getSizeClass(capacity)];
+
+        synchronized (buffers) {
+
+            if (buffers.size() >= buffersPerSize) {
+                return;
+            }
+            for (ByteBuffer freeBuffer : buffers) {
+                if (freeBuffer == buffer) {
+                    return;
+                }
+            }
+            buffers.addLast(buffer);
+        }
+    }
+
+    private static int getSizeClass(int size) {
+
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        // Index of the smallest power of two which is >= size, relative to MIN_BUFFER_SIZE.
+        return (32 - Integer.numberOfLeadingZeros(size - 1)) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+}
@@ -16,17 +16,159 @@
 package com.espressif.provisioning.utils;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 import espressif.NetworkConfig;
 import espressif.NetworkScan;
 
+/**
+ * Helper class to prepare messages sent to the device.
+ * Messages without parameters are encoded only once and the same bytes are used for every request.
+ * Messages with parameters can be encoded in pooled buffers with the buffer methods.
+ */
 public class MessengeHelper {
 
+    private static final byte[] WIFI_SCAN_MSG = buildWiFiScanMsg().toByteArray();
+    private static final byte[] THREAD_SCAN_MSG = buildThreadScanMsg().toByteArray();
+    private static final byte[] GET_WIFI_SCAN_STATUS_MSG = buildGetWiFiScanStatusMsg().toByteArray();
+    private static final byte[] GET_THREAD_SCAN_STATUS_MSG = buildGetThreadScanStatusMsg().toByteArray();
+    private static final byte[] APPLY_WIFI_CONFIG_MSG = buildApplyWiFiConfigMsg().toByteArray();
+    private static final byte[] APPLY_THREAD_CONFIG_MSG = buildApplyThreadConfigMsg().toByteArray();
+    private static final byte[] GET_WIFI_CONFIG_STATUS_MSG = buildGetWiFiConfigStatusMsg().toByteArray();
+    private static final byte[] GET_THREAD_CONFIG_STATUS_MSG = buildGetThreadConfigStatusMsg().toByteArray();
+
     // Send Wi-Fi Scan command
     public static byte[] prepareWiFiScanMsg() {
+        return WIFI_SCAN_MSG.clone();
+    }
+
+    public static byte[] prepareThreadScanMsg() {
+        return THREAD_SCAN_MSG.clone();
+    }
+
+    public static byte[] prepareGetWiFiScanStatusMsg() {
+        return GET_WIFI_SCAN_STATUS_MSG.clone();
+    }
+
+    public static byte[] prepareGetThreadScanStatusMsg() {
+        return GET_THREAD_SCAN_STATUS_MSG.clone();
+    }
+
+    // Get Wi-Fi scan list
+    public static byte[] prepareGetWiFiScanListMsg(int start, int count) {
+        return buildGetWiFiScanListMsg(start, count).toByteArray();
+    }
+
+    public static byte[] prepareGetThreadScanListMsg(int start, int count) {
+        return buildGetThreadScanListMsg(start, count).toByteArray();
+    }
+
+    // Send Wi-Fi Config
+    public static byte[] prepareWiFiConfigMsg(String ssid, String passphrase) {
+        return buildWiFiConfigMsg(ssid, passphrase).toByteArray();
+    }
+
+    public static byte[] prepareThreadConfigMsg(String activeDataset) {
+        return buildThreadConfigMsg(activeDataset).toByteArray();
+    }
+
+    // Apply Wi-Fi config
+    public static byte[] prepareApplyWiFiConfigMsg() {
+        return APPLY_WIFI_CONFIG_MSG.clone();
+    }
+
+    public static byte[] prepareApplyThreadConfigMsg() {
+        return APPLY_THREAD_CONFIG_MSG.clone();
+    }
+
+    // Get Wi-Fi Config status
+    public static byte[] prepareGetWiFiConfigStatusMsg() {
+        return GET_WIFI_CONFIG_STATUS_MSG.clone();
+    }
+
+    // Get Thread Config status
+    public static byte[] prepareGetThreadConfigStatusMsg() {
+        return GET_THREAD_CONFIG_STATUS_MSG.clone();
+    }
+
+    // Buffer variants. Constant messages are read only views of pre-encoded bytes, so nothing is allocated except the view.
+    // Other messages are encoded in buffer from given pool, which should be released after the request is sent.
+
+    public static ByteBuffer prepareWiFiScanBuffer() {
+        return ByteBuffer.wrap(WIFI_SCAN_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareThreadScanBuffer() {
+        return ByteBuffer.wrap(THREAD_SCAN_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareGetWiFiScanStatusBuffer() {
+        return ByteBuffer.wrap(GET_WIFI_SCAN_STATUS_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareGetThreadScanStatusBuffer() {
+        return ByteBuffer.wrap(GET_THREAD_SCAN_STATUS_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareApplyWiFiConfigBuffer() {
+        return ByteBuffer.wrap(APPLY_WIFI_CONFIG_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareApplyThreadConfigBuffer() {
+        return ByteBuffer.wrap(APPLY_THREAD_CONFIG_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareGetWiFiConfigStatusBuffer() {
+        return ByteBuffer.wrap(GET_WIFI_CONFIG_STATUS_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareGetThreadConfigStatusBuffer() {
+        return ByteBuffer.wrap(GET_THREAD_CONFIG_STATUS_MSG).asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer prepareGetWiFiScanListBuffer(int start, int count, BufferPool bufferPool) {
+        return encode(buildGetWiFiScanListMsg(start, count), bufferPool);
+    }
+
+    public static ByteBuffer prepareGetThreadScanListBuffer(int start, int count, BufferPool bufferPool) {
+        return encode(buildGetThreadScanListMsg(start, count), bufferPool);
+    }
+
+    public static ByteBuffer prepareWiFiConfigBuffer(String ssid, String passphrase, BufferPool bufferPool) {
+        return encode(buildWiFiConfigMsg(ssid, passphrase), bufferPool);
+    }
+
+    public static ByteBuffer prepareThreadConfigBuffer(String activeDataset, BufferPool bufferPool) {
+        return encode(buildThreadConfigMsg(activeDataset), bufferPool);
+    }
+
+    /**
+     * Encodes message directly in pooled buffer of its serialized size, without intermediate byte array.
+     */
+    private static ByteBuffer encode(MessageLite message, BufferPool bufferPool) {
+
+        int size = message.getSerializedSize();
+        ByteBuffer buffer = bufferPool.acquire(size);
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer.array(), buffer.arrayOffset(), size);
+
+        try {
+            message.writeTo(output);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            // Not expected as buffer is of serialized size.
+            bufferPool.release(buffer);
+            throw new RuntimeException("Failed to encode message", e);
+        }
+        return buffer;
+    }
+
+    private static NetworkScan.NetworkScanPayload buildWiFiScanMsg() {
 
         NetworkScan.CmdScanWifiStart configRequest = NetworkScan.CmdScanWifiStart.newBuilder()
                 .setBlocking(true)
@@ -35,86 +177,74 @@ public class MessengeHelper {
                 .setPeriodMs(120)
                 .build();
         NetworkScan.NetworkScanMsgType msgType = NetworkScan.NetworkScanMsgType.TypeCmdScanWifiStart;
-        NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.newBuilder()
+        return NetworkScan.NetworkScanPayload.newBuilder()
                 .setMsg(msgType)
                 .setCmdScanWifiStart(configRequest)
                 .build();
-
-        return payload.toByteArray();
     }
 
-    public static byte[] prepareThreadScanMsg() {
+    private static NetworkScan.NetworkScanPayload buildThreadScanMsg() {
 
         NetworkScan.CmdScanThreadStart configRequest = NetworkScan.CmdScanThreadStart.newBuilder()
                 .setBlocking(true)
                 .setChannelMask(0)
                 .build();
         NetworkScan.NetworkScanMsgType msgType = NetworkScan.NetworkScanMsgType.TypeCmdScanThreadStart;
-        NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.newBuilder()
+        return NetworkScan.NetworkScanPayload.newBuilder()
                 .setMsg(msgType)
                 .setCmdScanThreadStart(configRequest)
                 .build();
-
-        return payload.toByteArray();
     }
 
-    public static byte[] prepareGetWiFiScanStatusMsg() {
+    private static NetworkScan.NetworkScanPayload buildGetWiFiScanStatusMsg() {
 
         NetworkScan.CmdScanWifiStatus configRequest = NetworkScan.CmdScanWifiStatus.newBuilder()
                 .build();
         NetworkScan.NetworkScanMsgType msgType = NetworkScan.NetworkScanMsgType.TypeCmdScanWifiStatus;
-        NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.newBuilder()
+        return NetworkScan.NetworkScanPayload.newBuilder()
                 .setMsg(msgType)
                 .setCmdScanWifiStatus(configRequest)
                 .build();
-        return payload.toByteArray();
     }
 
-    public static byte[] prepareGetThreadScanStatusMsg() {
+    private static NetworkScan.NetworkScanPayload buildGetThreadScanStatusMsg() {
 
         NetworkScan.CmdScanThreadStatus configRequest = NetworkScan.CmdScanThreadStatus.newBuilder()
                 .build();
         NetworkScan.NetworkScanMsgType msgType = NetworkScan.NetworkScanMsgType.TypeCmdScanThreadStatus;
-        NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.newBuilder()
+        return NetworkScan.NetworkScanPayload.newBuilder()
                 .setMsg(msgType)
                 .setCmdScanThreadStatus(configRequest)
                 .build();
-        return payload.toByteArray();
     }
 
-    // Get Wi-Fi scan list
-    public static byte[] prepareGetWiFiScanListMsg(int start, int count) {
+    private static NetworkScan.NetworkScanPayload buildGetWiFiScanListMsg(int start, int count) {
 
         NetworkScan.CmdScanWifiResult configRequest = NetworkScan.CmdScanWifiResult.newBuilder()
                 .setStartIndex(start)
                 .setCount(count)
                 .build();
         NetworkScan.NetworkScanMsgType msgType = NetworkScan.NetworkScanMsgType.TypeCmdScanWifiResult;
-        NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.newBuilder()
+        return NetworkScan.NetworkScanPayload.newBuilder()
                 .setMsg(msgType)
                 .setCmdScanWifiResult(configRequest)
                 .build();
-
-        return payload.toByteArray();
     }
 
-    public static byte[] prepareGetThreadScanListMsg(int start, int count) {
+    private static NetworkScan.NetworkScanPayload buildGetThreadScanListMsg(int start, int count) {
 
         NetworkScan.CmdScanThreadResult configRequest = NetworkScan.CmdScanThreadResult.newBuilder()
                 .setStartIndex(start)
                 .setCount(count)
                 .build();
         NetworkScan.NetworkScanMsgType msgType = NetworkScan.NetworkScanMsgType.TypeCmdScanThreadResult;
-        NetworkScan.NetworkScanPayload payload = NetworkScan.NetworkScanPayload.newBuilder()
+        return NetworkScan.NetworkScanPayload.newBuilder()
                 .setMsg(msgType)
                 .setCmdScanThreadResult(configRequest)
                 .build();
-
-        return payload.toByteArray();
     }
 
-    // Send Wi-Fi Config
-    public static byte[] prepareWiFiConfigMsg(String ssid, String passphrase) {
+    private static NetworkConfig.NetworkConfigPayload buildWiFiConfigMsg(String ssid, String passphrase) {
 
         NetworkConfig.CmdSetWifiConfig cmdSetConfig;
 
@@ -131,16 +261,14 @@ public class MessengeHelper {
                     .setSsid(ByteString.copyFrom(ssid.getBytes()))
                     .build();
         }
-        NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload
+        return NetworkConfig.NetworkConfigPayload
                 .newBuilder()
                 .setMsg(NetworkConfig.NetworkConfigMsgType.TypeCmdSetWifiConfig)
                 .setCmdSetWifiConfig(cmdSetConfig)
                 .build();
-
-        return wiFiConfigPayload.toByteArray();
     }
 
-    public static byte[] prepareThreadConfigMsg(String activeDataset) {
+    private static NetworkConfig.NetworkConfigPayload buildThreadConfigMsg(String activeDataset) {
 
         byte[] dataset = dsToByteArray(activeDataset);
 
@@ -148,13 +276,11 @@ public class MessengeHelper {
                 .newBuilder()
                 .setDataset(ByteString.copyFrom(dataset))
                 .build();
-        NetworkConfig.NetworkConfigPayload threadConfigPayload = NetworkConfig.NetworkConfigPayload
+        return NetworkConfig.NetworkConfigPayload
                 .newBuilder()
                 .setMsg(NetworkConfig.NetworkConfigMsgType.TypeCmdSetThreadConfig)
                 .setCmdSetThreadConfig(cmdSetConfig)
                 .build();
-
-        return threadConfigPayload.toByteArray();
     }
 
     private static byte[] dsToByteArray(String input) {
@@ -170,58 +296,51 @@ public class MessengeHelper {
         return result;
     }
 
-    // Apply Wi-Fi config
-    public static byte[] prepareApplyWiFiConfigMsg() {
+    private static NetworkConfig.NetworkConfigPayload buildApplyWiFiConfigMsg() {
 
         NetworkConfig.CmdApplyWifiConfig cmdApplyConfig = NetworkConfig.CmdApplyWifiConfig
                 .newBuilder()
                 .build();
-        NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload
+        return NetworkConfig.NetworkConfigPayload
                 .newBuilder()
                 .setMsg(NetworkConfig.NetworkConfigMsgType.TypeCmdApplyWifiConfig)
                 .setCmdApplyWifiConfig(cmdApplyConfig)
                 .build();
-        return wiFiConfigPayload.toByteArray();
     }
 
-    public static byte[] prepareApplyThreadConfigMsg() {
+    private static NetworkConfig.NetworkConfigPayload buildApplyThreadConfigMsg() {
 
         NetworkConfig.CmdApplyThreadConfig cmdApplyConfig = NetworkConfig.CmdApplyThreadConfig
                 .newBuilder()
                 .build();
-        NetworkConfig.NetworkConfigPayload threadConfigPayload = NetworkConfig.NetworkConfigPayload
+        return NetworkConfig.NetworkConfigPayload
                 .newBuilder()
                 .setMsg(NetworkConfig.NetworkConfigMsgType.TypeCmdApplyThreadConfig)
                 .setCmdApplyThreadConfig(cmdApplyConfig)
                 .build();
-        return threadConfigPayload.toByteArray();
     }
 
-    // Get Wi-Fi Config status
-    public static byte[] prepareGetWiFiConfigStatusMsg() {
+    private static NetworkConfig.NetworkConfigPayload buildGetWiFiConfigStatusMsg() {
 
         NetworkConfig.CmdGetWifiStatus cmdGetStatus = NetworkConfig.CmdGetWifiStatus
                 .newBuilder()
                 .build();
-        NetworkConfig.NetworkConfigPayload wiFiConfigPayload = NetworkConfig.NetworkConfigPayload
+        return NetworkConfig.NetworkConfigPayload
                 .newBuilder()
                 .setMsg(NetworkConfig.NetworkConfigMsgType.TypeCmdGetWifiStatus)
                 .setCmdGetWifiStatus(cmdGetStatus)
                 .build();
-        return wiFiConfigPayload.toByteArray();
     }
 
-    // Get Wi-Fi Config status
-    public static byte[] prepareGetThreadConfigStatusMsg() {
+    private static NetworkConfig.NetworkConfigPayload buildGetThreadConfigStatusMsg() {
 
         NetworkConfig.CmdGetThreadStatus cmdGetStatus = NetworkConfig.CmdGetThreadStatus
                 .newBuilder()
                 .build();
-        NetworkConfig.NetworkConfigPayload threadConfigPayload = NetworkConfig.NetworkConfigPayload
+        return NetworkConfig.NetworkConfigPayload
                 .newBuilder()
                 .setMsg(NetworkConfig.NetworkConfigMsgType.TypeCmdGetThreadStatus)
                 .setCmdGetThreadStatus(cmdGetStatus)
                 .build();
-        return threadConfigPayload.toByteArray();
     }
 }
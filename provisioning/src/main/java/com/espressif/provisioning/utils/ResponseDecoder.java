@@ -0,0 +1,436 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.utils;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decoder for responses of network scan and network config endpoints.
+ * It walks the protobuf wire format with CodedInputStream and reads only the fields used by the library,
+ * instead of parsing complete NetworkScanPayload / NetworkConfigPayload messages.
+ * Scan entries are given to the listener as offsets in the response array, without creating entry objects.
+ * Missing fields have proto3 default value, same as generated getters.
+ */
+public class ResponseDecoder {
+
+    // Field numbers of NetworkScanPayload, as per network_scan.proto
+    private static final int RESP_SCAN_WIFI_STATUS = 13;
+    private static final int RESP_SCAN_WIFI_RESULT = 15;
+    private static final int RESP_SCAN_THREAD_STATUS = 19;
+    private static final int RESP_SCAN_THREAD_RESULT = 21;
+
+    // Field numbers of NetworkConfigPayload, as per network_config.proto
+    private static final int RESP_GET_WIFI_STATUS = 11;
+    private static final int RESP_SET_WIFI_CONFIG = 13;
+    private static final int RESP_APPLY_WIFI_CONFIG = 15;
+    private static final int RESP_GET_THREAD_STATUS = 17;
+    private static final int RESP_SET_THREAD_CONFIG = 19;
+    private static final int RESP_APPLY_THREAD_CONFIG = 21;
+
+    // RespScanWifiStatus / RespScanThreadStatus
+    private static final int SCAN_FINISHED = 1;
+    private static final int RESULT_COUNT = 2;
+
+    // RespScanWifiResult / RespScanThreadResult
+    private static final int ENTRIES = 1;
+
+    // WiFiScanResult
+    private static final int WIFI_SSID = 1;
+    private static final int WIFI_CHANNEL = 2;
+    private static final int WIFI_RSSI = 3;
+    private static final int WIFI_BSSID = 4;
+    private static final int WIFI_AUTH = 5;
+
+    // ThreadScanResult
+    private static final int THREAD_PAN_ID = 1;
+    private static final int THREAD_CHANNEL = 2;
+    private static final int THREAD_RSSI = 3;
+    private static final int THREAD_LQI = 4;
+    private static final int THREAD_NETWORK_NAME = 6;
+
+    // RespSet*Config / RespApply*Config
+    private static final int CONFIG_STATUS = 1;
+
+    // RespGetWifiStatus / RespGetThreadStatus
+    private static final int NETWORK_STATE = 2;
+    private static final int FAIL_REASON = 10;
+
+    private static final int NOT_FOUND = -2;
+
+    /**
+     * Listener which receives Wi-Fi scan entries. Byte fields are given as offset and length in data array,
+     * which is valid only till the method returns.
+     */
+    public interface WiFiScanEntryListener {
+
+        void onWiFiScanEntry(byte[] data, int ssidOffset, int ssidLength, int channel, int rssi,
+                             int bssidOffset, int bssidLength, int auth);
+    }
+
+    /**
+     * Listener which receives Thread scan entries. Network name is given as offset and length of UTF-8 bytes
+     * in data array, which is valid only till the method returns.
+     */
+    public interface ThreadScanEntryListener {
+
+        void onThreadScanEntry(byte[] data, int nameOffset, int nameLength, int panId, int channel, int rssi, int lqi);
+    }
+
+    /**
+     * This method is used to decode Wi-Fi scan status response.
+     *
+     * @param response NetworkScanPayload bytes.
+     * @return Returns number of scan results if scan is finished, otherwise -1.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeWiFiScanStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeScanStatus(response, RESP_SCAN_WIFI_STATUS);
+    }
+
+    /**
+     * This method is used to decode Thread scan status response.
+     *
+     * @param response NetworkScanPayload bytes.
+     * @return Returns number of scan results if scan is finished, otherwise -1.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeThreadScanStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeScanStatus(response, RESP_SCAN_THREAD_STATUS);
+    }
+
+    /**
+     * This method is used to decode Wi-Fi scan result response and give each entry to the listener.
+     *
+     * @param response NetworkScanPayload bytes.
+     * @param listener Listener which receives entries.
+     * @return Returns number of entries.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeWiFiScanResult(ByteBuffer response, WiFiScanEntryListener listener)
+            throws InvalidProtocolBufferException {
+
+        byte[] data = getArray(response);
+        int base = getArrayOffset(response);
+
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(data, base, response.remaining());
+            int count = 0;
+
+            if (enterField(input, RESP_SCAN_WIFI_RESULT) == NOT_FOUND) {
+                return 0;
+            }
+            int oldLimit;
+
+            while ((oldLimit = enterField(input, ENTRIES)) != NOT_FOUND) {
+
+                int ssidOffset = 0, ssidLength = 0, channel = 0, rssi = 0, bssidOffset = 0, bssidLength = 0, auth = 0;
+                int tag;
+
+                while ((tag = input.readTag()) != 0) {
+
+                    int wireType = WireFormat.getTagWireType(tag);
+                    int field = WireFormat.getTagFieldNumber(tag);
+
+                    if ((field == WIFI_SSID || field == WIFI_BSSID) && wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+
+                        int length = input.readRawVarint32();
+                        int offset = base + input.getTotalBytesRead();
+                        input.skipRawBytes(length);
+
+                        if (field == WIFI_SSID) {
+                            ssidOffset = offset;
+                            ssidLength = length;
+                        } else {
+                            bssidOffset = offset;
+                            bssidLength = length;
+                        }
+                    } else if (field == WIFI_CHANNEL && wireType == WireFormat.WIRETYPE_VARINT) {
+                        channel = input.readUInt32();
+                    } else if (field == WIFI_RSSI && wireType == WireFormat.WIRETYPE_VARINT) {
+                        rssi = input.readInt32();
+                    } else if (field == WIFI_AUTH && wireType == WireFormat.WIRETYPE_VARINT) {
+                        auth = input.readEnum();
+                    } else if (!input.skipField(tag)) {
+                        break;
+                    }
+                }
+                input.popLimit(oldLimit);
+                count++;
+                listener.onWiFiScanEntry(data, ssidOffset, ssidLength, channel, rssi, bssidOffset, bssidLength, auth);
+            }
+            return count;
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to decode Thread scan result response and give each entry to the listener.
+     *
+     * @param response NetworkScanPayload bytes.
+     * @param listener Listener which receives entries.
+     * @return Returns number of entries.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeThreadScanResult(ByteBuffer response, ThreadScanEntryListener listener)
+            throws InvalidProtocolBufferException {
+
+        byte[] data = getArray(response);
+        int base = getArrayOffset(response);
+
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(data, base, response.remaining());
+            int count = 0;
+
+            if (enterField(input, RESP_SCAN_THREAD_RESULT) == NOT_FOUND) {
+                return 0;
+            }
+            int oldLimit;
+
+            while ((oldLimit = enterField(input, ENTRIES)) != NOT_FOUND) {
+
+                int nameOffset = 0, nameLength = 0, panId = 0, channel = 0, rssi = 0, lqi = 0;
+                int tag;
+
+                while ((tag = input.readTag()) != 0) {
+
+                    int wireType = WireFormat.getTagWireType(tag);
+                    int field = WireFormat.getTagFieldNumber(tag);
+
+                    if (field == THREAD_NETWORK_NAME && wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                        nameLength = input.readRawVarint32();
+                        nameOffset = base + input.getTotalBytesRead();
+                        input.skipRawBytes(nameLength);
+                    } else if (field == THREAD_PAN_ID && wireType == WireFormat.WIRETYPE_VARINT) {
+                        panId = input.readUInt32();
+                    } else if (field == THREAD_CHANNEL && wireType == WireFormat.WIRETYPE_VARINT) {
+                        channel = input.readUInt32();
+                    } else if (field == THREAD_RSSI && wireType == WireFormat.WIRETYPE_VARINT) {
+                        rssi = input.readInt32();
+                    } else if (field == THREAD_LQI && wireType == WireFormat.WIRETYPE_VARINT) {
+                        lqi = input.readUInt32();
+                    } else if (!input.skipField(tag)) {
+                        break;
+                    }
+                }
+                input.popLimit(oldLimit);
+                count++;
+                listener.onThreadScanEntry(data, nameOffset, nameLength, panId, channel, rssi, lqi);
+            }
+            return count;
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns status number of RespSetWifiConfig.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeSetWiFiConfigStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_SET_WIFI_CONFIG, CONFIG_STATUS);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns status number of RespSetThreadConfig.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeSetThreadConfigStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_SET_THREAD_CONFIG, CONFIG_STATUS);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns status number of RespApplyWifiConfig.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeApplyWiFiConfigStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_APPLY_WIFI_CONFIG, CONFIG_STATUS);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns status number of RespApplyThreadConfig.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeApplyThreadConfigStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_APPLY_THREAD_CONFIG, CONFIG_STATUS);
+    }
+
+    /**
+     * This method is used to decode state and fail reason of RespGetWifiStatus in one pass.
+     *
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns array of WifiStationState number and WifiConnectFailedReason number.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int[] decodeWiFiStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarints(response, RESP_GET_WIFI_STATUS, NETWORK_STATE, FAIL_REASON);
+    }
+
+    /**
+     * This method is used to decode state and fail reason of RespGetThreadStatus in one pass.
+     *
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns array of ThreadNetworkState number and ThreadAttachFailedReason number.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int[] decodeThreadStatus(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarints(response, RESP_GET_THREAD_STATUS, NETWORK_STATE, FAIL_REASON);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns WifiStationState number of RespGetWifiStatus.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeWiFiStationState(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_GET_WIFI_STATUS, NETWORK_STATE);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns WifiConnectFailedReason number of RespGetWifiStatus.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeWiFiFailReason(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_GET_WIFI_STATUS, FAIL_REASON);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns ThreadNetworkState number of RespGetThreadStatus.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeThreadNetworkState(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_GET_THREAD_STATUS, NETWORK_STATE);
+    }
+
+    /**
+     * @param response NetworkConfigPayload bytes.
+     * @return Returns ThreadAttachFailedReason number of RespGetThreadStatus.
+     * @throws InvalidProtocolBufferException If response is not valid.
+     */
+    public static int decodeThreadFailReason(ByteBuffer response) throws InvalidProtocolBufferException {
+        return decodeVarint(response, RESP_GET_THREAD_STATUS, FAIL_REASON);
+    }
+
+    private static int decodeScanStatus(ByteBuffer response, int payloadField) throws InvalidProtocolBufferException {
+
+        int[] values = decodeVarints(response, payloadField, SCAN_FINISHED, RESULT_COUNT);
+        return values[0] != 0 ? values[1] : -1;
+    }
+
+    private static int decodeVarint(ByteBuffer response, int payloadField, int field) throws InvalidProtocolBufferException {
+        return decodeVarints(response, payloadField, field)[0];
+    }
+
+    /**
+     * Reads varint fields of the payload message in one pass. Value is 0 if payload or field is not present.
+     * Last occurrence of each field is used, same as protobuf parser.
+     *
+     * @return Returns values in the order of given fields.
+     */
+    private static int[] decodeVarints(ByteBuffer response, int payloadField, int... fields) throws InvalidProtocolBufferException {
+
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(getArray(response), getArrayOffset(response), response.remaining());
+            int[] values = new int[fields.length];
+            int oldLimit;
+
+            while ((oldLimit = enterField(input, payloadField)) != NOT_FOUND) {
+
+                int tag;
+
+                while ((tag = input.readTag()) != 0) {
+
+                    int index = WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_VARINT
+                            ? indexOf(fields, WireFormat.getTagFieldNumber(tag)) : -1;
+
+                    if (index >= 0) {
+                        values[index] = input.readInt32();
+                    } else if (!input.skipField(tag)) {
+                        break;
+                    }
+                }
+                input.popLimit(oldLimit);
+            }
+            return values;
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
+    /**
+     * Skips fields till length delimited field with given number and limits input to that field.
+     *
+     * @return Returns previous limit which must be restored with popLimit, or NOT_FOUND if field is not found
+     * till current limit.
+     */
+    private static int enterField(CodedInputStream input, int field) throws IOException {
+
+        int tag;
+
+        while ((tag = input.readTag()) != 0) {
+
+            if (WireFormat.getTagFieldNumber(tag) == field && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                int length = input.readRawVarint32();
+                return input.pushLimit(length);
+            }
+            if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private static int indexOf(int[] fields, int field) {
+
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == field) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] getArray(ByteBuffer buffer) {
+
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        // Read only or direct buffer.
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
+    private static int getArrayOffset(ByteBuffer buffer) {
+        return buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0;
+    }
+}
@@ -0,0 +1,284 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.qrcode;
+
+import com.espressif.provisioning.ESPConstants;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of compact QR code payload parsing.
+ * JSON payloads are not tested here, as org.json of android.jar is not available in local unit tests.
+ */
+public class QRCodePayloadParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int FLAGS_BLE_SECURITY_2 = QRCodePayloadParser.TRANSPORT_BLE | (2 << QRCodePayloadParser.SECURITY_SHIFT);
+
+    private final QRCodePayloadParser parser = new QRCodePayloadParser();
+
+    @Test
+    public void base45Encoder_matchesRfc9285() {
+        assertEquals("BB8", encodeBase45("AB".getBytes(UTF_8)));
+        assertEquals("%69 VD92EX0", encodeBase45("Hello!!".getBytes(UTF_8)));
+        assertEquals("QED8WEX0", encodeBase45("ietf!".getBytes(UTF_8)));
+    }
+
+    @Test
+    public void parse_allFields() {
+
+        String data = compact(1, FLAGS_BLE_SECURITY_2, "PROV_123456", "abcd1234", "wifiprov", "secret");
+
+        assertTrue(parser.parse(data));
+        QRCodePayload payload = parser.toPayload();
+        assertEquals("PROV_123456", payload.getDeviceName());
+        assertEquals("abcd1234", payload.getProofOfPossession());
+        assertEquals("wifiprov", payload.getUserName());
+        assertEquals("secret", payload.getPassword());
+        assertEquals(QRCodePayload.TRANSPORT_BLE, payload.getTransport());
+        assertEquals(ESPConstants.SecurityType.SECURITY_2, payload.getSecurityType());
+    }
+
+    @Test
+    public void parse_softApSecurity0() {
+
+        String data = compact(1, QRCodePayloadParser.TRANSPORT_SOFTAP, "PROV_AP");
+
+        assertTrue(parser.parse(data));
+        QRCodePayload payload = parser.toPayload();
+        assertEquals(QRCodePayload.TRANSPORT_SOFTAP, payload.getTransport());
+        assertEquals(ESPConstants.SecurityType.SECURITY_0, payload.getSecurityType());
+    }
+
+    @Test
+    public void parse_leftOutTrailingFieldsAreEmpty() {
+
+        assertTrue(parser.parse(compact(1, FLAGS_BLE_SECURITY_2, "PROV_1", "pop")));
+        QRCodePayload payload = parser.toPayload();
+        assertEquals("PROV_1", payload.getDeviceName());
+        assertEquals("pop", payload.getProofOfPossession());
+        assertEquals("", payload.getUserName());
+        assertEquals("", payload.getPassword());
+    }
+
+    @Test
+    public void parse_fieldOffsetsAfterEmptyAndMultiByteFields() {
+
+        String name = "PROV_é€";
+        assertTrue(parser.parse(compact(1, FLAGS_BLE_SECURITY_2, name, "", "user", "")));
+        QRCodePayload payload = parser.toPayload();
+        assertEquals(name, payload.getDeviceName());
+        assertEquals("", payload.getProofOfPossession());
+        assertEquals("user", payload.getUserName());
+        assertEquals("", payload.getPassword());
+    }
+
+    @Test
+    public void parse_bytesAfterKnownFieldsAreIgnored() {
+
+        byte[] bytes = payloadBytes(1, FLAGS_BLE_SECURITY_2, "PROV_1", "pop", "user", "pass");
+        byte[] extended = new byte[bytes.length + 3];
+        System.arraycopy(bytes, 0, extended, 0, bytes.length);
+
+        assertTrue(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(extended)));
+        assertEquals("pass", parser.toPayload().getPassword());
+    }
+
+    @Test
+    public void parse_reservedTransportIsNotKnown() {
+
+        assertTrue(parser.parse(compact(1, 2, "PROV_1")));
+        assertEquals("2", parser.toPayload().getTransport());
+    }
+
+    @Test
+    public void parse_truncatedInput() {
+
+        String data = compact(1, FLAGS_BLE_SECURITY_2, "PROV_123456", "abcd1234");
+
+        // Base45 data can not end with single character.
+        assertFalse(parser.parse(data.substring(0, data.length() - 1)));
+        // Field length is more than remaining data.
+        byte[] bytes = payloadBytes(1, FLAGS_BLE_SECURITY_2, "PROV_123456");
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertFalse(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(truncated)));
+        // Version and flags are required.
+        assertFalse(parser.parse(QRCodePayloadParser.COMPACT_PREFIX));
+        assertFalse(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(new byte[]{1})));
+    }
+
+    @Test
+    public void parse_oversizedInput() {
+
+        String max = repeat('a', QRCodePayloadParser.MAX_FIELD_LENGTH);
+        byte[] bytes = payloadBytes(1, FLAGS_BLE_SECURITY_2, max, max, max, max);
+
+        assertTrue(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(bytes)));
+        assertEquals(max, parser.toPayload().getPassword());
+
+        byte[] oversized = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, oversized, 0, bytes.length);
+        assertFalse(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(oversized)));
+    }
+
+    @Test
+    public void parse_invalidBase45() {
+
+        String data = compact(1, FLAGS_BLE_SECURITY_2, "PROV_1");
+        assertTrue(parser.parse(data));
+
+        // Lower case is not in base45 alphabet.
+        int letter = QRCodePayloadParser.COMPACT_PREFIX.length();
+
+        while (!Character.isUpperCase(data.charAt(letter))) {
+            letter++;
+        }
+        String lowerCase = data.substring(0, letter) + Character.toLowerCase(data.charAt(letter)) + data.substring(letter + 1);
+        assertFalse(parser.parse(lowerCase));
+        // ":::" is more than 0xFFFF and "::" is more than 0xFF.
+        assertFalse(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + ":::"));
+        assertFalse(parser.parse(QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(new byte[]{1, 1}) + "::"));
+    }
+
+    @Test
+    public void parse_unsupportedVersionAndSecurity() {
+
+        assertFalse(parser.parse(compact(2, FLAGS_BLE_SECURITY_2, "PROV_1")));
+        assertFalse(parser.parse(compact(1, QRCodePayloadParser.TRANSPORT_BLE | (3 << QRCodePayloadParser.SECURITY_SHIFT), "PROV_1")));
+    }
+
+    @Test
+    public void rejectPrefix() {
+
+        assertFalse(QRCodePayloadParser.isCandidate(null));
+        assertFalse(QRCodePayloadParser.isCandidate(""));
+        assertFalse(QRCodePayloadParser.isCandidate("https://www.espressif.com"));
+        assertFalse(QRCodePayloadParser.isCandidate("WIFI:S:network;T:WPA;P:password;;"));
+        assertFalse(QRCodePayloadParser.isCandidate("esp:BB8"));
+        assertFalse(parser.parse("WIFI:S:network;T:WPA;P:password;;"));
+        assertNull(parser.toPayload());
+
+        assertTrue(QRCodePayloadParser.isCandidate(" \n{\"name\":\"PROV_1\"}"));
+        assertTrue(QRCodePayloadParser.isCandidate("ESP:"));
+        assertTrue(QRCodePayloadParser.isCompact("ESP:BB8"));
+        assertFalse(QRCodePayloadParser.isCompact("{\"name\":\"ESP:\"}"));
+    }
+
+    @Test
+    public void parse_reusedParserDropsPreviousResult() {
+
+        assertTrue(parser.parse(compact(1, FLAGS_BLE_SECURITY_2, "PROV_LONG_NAME", "pop1")));
+        assertFalse(parser.parse(compact(9, FLAGS_BLE_SECURITY_2, "PROV_2")));
+        assertNull(parser.toPayload());
+
+        assertTrue(parser.parse(compact(1, FLAGS_BLE_SECURITY_2, "PROV_2")));
+        QRCodePayload payload = parser.toPayload();
+        assertEquals("PROV_2", payload.getDeviceName());
+        assertEquals("", payload.getProofOfPossession());
+    }
+
+    @Test
+    public void toCompactString_roundTrip() {
+
+        QRCodePayload payload = QRCodePayload.create("PROV_é€", "abcd1234", ESPConstants.TransportType.TRANSPORT_BLE,
+                ESPConstants.SecurityType.SECURITY_2, "wifiprov", "secret");
+
+        assertTrue(parser.parse(payload.toCompactString()));
+        QRCodePayload parsed = parser.toPayload();
+        assertEquals(payload.getDeviceName(), parsed.getDeviceName());
+        assertEquals(payload.getProofOfPossession(), parsed.getProofOfPossession());
+        assertEquals(payload.getUserName(), parsed.getUserName());
+        assertEquals(payload.getPassword(), parsed.getPassword());
+        assertEquals(ESPConstants.TransportType.TRANSPORT_BLE, parsed.getTransportType());
+        assertEquals(ESPConstants.SecurityType.SECURITY_2, parsed.getSecurityType());
+    }
+
+    @Test
+    public void toCompactString_trailingEmptyFieldsAreLeftOut() {
+
+        QRCodePayload payload = QRCodePayload.create("PROV_AP", null, ESPConstants.TransportType.TRANSPORT_SOFTAP,
+                ESPConstants.SecurityType.SECURITY_0, null, "");
+
+        assertEquals(compact(1, QRCodePayloadParser.TRANSPORT_SOFTAP, "PROV_AP"), payload.toCompactString());
+        assertTrue(parser.parse(payload.toCompactString()));
+        assertEquals(ESPConstants.TransportType.TRANSPORT_SOFTAP, parser.toPayload().getTransportType());
+        assertEquals(ESPConstants.SecurityType.SECURITY_0, parser.toPayload().getSecurityType());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void toCompactString_tooLongValueThrows() {
+
+        QRCodePayload.create(repeat('a', QRCodePayloadParser.MAX_FIELD_LENGTH + 1), "", ESPConstants.TransportType.TRANSPORT_BLE,
+                ESPConstants.SecurityType.SECURITY_1, "", "").toCompactString();
+    }
+
+    private static String compact(int version, int flags, String... fields) {
+        return QRCodePayloadParser.COMPACT_PREFIX + encodeBase45(payloadBytes(version, flags, fields));
+    }
+
+    private static byte[] payloadBytes(int version, int flags, String... fields) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(version);
+        out.write(flags);
+
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(UTF_8);
+            out.write(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Base45 encoder as per RFC 9285, written separately from QRCodePayload to check decoding of the parser.
+     */
+    private static String encodeBase45(byte[] data) {
+
+        String alphabet = QRCodePayloadParser.BASE45_ALPHABET;
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < data.length; i += 2) {
+
+            if (i + 1 < data.length) {
+                int value = (data[i] & 0xFF) * 256 + (data[i + 1] & 0xFF);
+                builder.append(alphabet.charAt(value % 45));
+                builder.append(alphabet.charAt(value / 45 % 45));
+                builder.append(alphabet.charAt(value / 2025));
+            } else {
+                int value = data[i] & 0xFF;
+                builder.append(alphabet.charAt(value % 45));
+                builder.append(alphabet.charAt(value / 45));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String repeat(char c, int count) {
+
+        StringBuilder builder = new StringBuilder(count);
+
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
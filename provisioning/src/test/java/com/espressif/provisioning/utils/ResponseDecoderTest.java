@@ -0,0 +1,395 @@
+// Copyright 2026 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.utils;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import espressif.Constants;
+import espressif.NetworkConfig;
+import espressif.NetworkConstants;
+import espressif.NetworkScan;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests which check that ResponseDecoder gives same values as parseFrom of the generated messages.
+ * Responses are encoded with generated classes of network_scan.proto and network_config.proto.
+ */
+public class ResponseDecoderTest {
+
+    @Test
+    public void decodeWiFiScanResult_matchesParseFrom() throws Exception {
+
+        NetworkScan.RespScanWifiResult result = NetworkScan.RespScanWifiResult.newBuilder()
+                .addEntries(wiFiEntry("Espressif", 6, -42, new byte[]{0x24, 0x0A, (byte) 0xC4, 0x01, 0x02, 0x03},
+                        NetworkConstants.WifiAuthMode.WPA2_PSK))
+                .addEntries(wiFiEntry("", 0, 0, new byte[0], NetworkConstants.WifiAuthMode.Open))
+                .addEntries(wiFiEntry("Café", 13, -90, new byte[]{(byte) 0xFF, 0, 0, 0, 0, 1},
+                        NetworkConstants.WifiAuthMode.WPA2_WPA3_PSK))
+                .build();
+        byte[] data = NetworkScan.NetworkScanPayload.newBuilder()
+                .setMsg(NetworkScan.NetworkScanMsgType.TypeRespScanWifiResult)
+                .setStatus(Constants.Status.Success)
+                .setRespScanWifiResult(result)
+                .build()
+                .toByteArray();
+
+        for (ByteBuffer response : buffers(data)) {
+
+            List<NetworkScan.WiFiScanResult> expected = NetworkScan.NetworkScanPayload.parseFrom(data)
+                    .getRespScanWifiResult().getEntriesList();
+            final List<NetworkScan.WiFiScanResult> decoded = new ArrayList<>();
+
+            int count = ResponseDecoder.decodeWiFiScanResult(response, new ResponseDecoder.WiFiScanEntryListener() {
+
+                @Override
+                public void onWiFiScanEntry(byte[] data, int ssidOffset, int ssidLength, int channel, int rssi,
+                                            int bssidOffset, int bssidLength, int auth) {
+
+                    decoded.add(NetworkScan.WiFiScanResult.newBuilder()
+                            .setSsid(ByteString.copyFrom(data, ssidOffset, ssidLength))
+                            .setChannel(channel)
+                            .setRssi(rssi)
+                            .setBssid(ByteString.copyFrom(data, bssidOffset, bssidLength))
+                            .setAuthValue(auth)
+                            .build());
+                }
+            });
+
+            assertEquals(expected.size(), count);
+            assertEquals(expected, decoded);
+        }
+    }
+
+    @Test
+    public void decodeThreadScanResult_matchesParseFrom() throws Exception {
+
+        NetworkScan.RespScanThreadResult result = NetworkScan.RespScanThreadResult.newBuilder()
+                .addEntries(NetworkScan.ThreadScanResult.newBuilder()
+                        .setPanId(0x1234)
+                        .setChannel(15)
+                        .setRssi(-70)
+                        .setLqi(200)
+                        // Fields which are not used by the decoder are skipped.
+                        .setExtAddr(ByteString.copyFrom(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}))
+                        .setNetworkName("OpenThread-ESP")
+                        .setExtPanId(ByteString.copyFrom(new byte[]{(byte) 0xDE, (byte) 0xAD, 0, 0, (byte) 0xBE, (byte) 0xEF, 0, 0}))
+                        .build())
+                .addEntries(NetworkScan.ThreadScanResult.newBuilder()
+                        .setPanId(0xFFFF)
+                        .setChannel(26)
+                        .setRssi(-1)
+                        .setNetworkName("Thréad")
+                        .build())
+                .addEntries(NetworkScan.ThreadScanResult.getDefaultInstance())
+                .build();
+        byte[] data = NetworkScan.NetworkScanPayload.newBuilder()
+                .setMsg(NetworkScan.NetworkScanMsgType.TypeRespScanThreadResult)
+                .setRespScanThreadResult(result)
+                .build()
+                .toByteArray();
+
+        for (ByteBuffer response : buffers(data)) {
+
+            List<NetworkScan.ThreadScanResult> parsed = NetworkScan.NetworkScanPayload.parseFrom(data)
+                    .getRespScanThreadResult().getEntriesList();
+            List<NetworkScan.ThreadScanResult> expected = new ArrayList<>();
+
+            for (NetworkScan.ThreadScanResult entry : parsed) {
+                // Only these fields are decoded.
+                expected.add(NetworkScan.ThreadScanResult.newBuilder()
+                        .setPanId(entry.getPanId())
+                        .setChannel(entry.getChannel())
+                        .setRssi(entry.getRssi())
+                        .setLqi(entry.getLqi())
+                        .setNetworkName(entry.getNetworkName())
+                        .build());
+            }
+            final List<NetworkScan.ThreadScanResult> decoded = new ArrayList<>();
+
+            int count = ResponseDecoder.decodeThreadScanResult(response, new ResponseDecoder.ThreadScanEntryListener() {
+
+                @Override
+                public void onThreadScanEntry(byte[] data, int nameOffset, int nameLength, int panId, int channel,
+                                              int rssi, int lqi) {
+
+                    decoded.add(NetworkScan.ThreadScanResult.newBuilder()
+                            .setPanId(panId)
+                            .setChannel(channel)
+                            .setRssi(rssi)
+                            .setLqi(lqi)
+                            .setNetworkNameBytes(ByteString.copyFrom(data, nameOffset, nameLength))
+                            .build());
+                }
+            });
+
+            assertEquals(expected.size(), count);
+            assertEquals(expected, decoded);
+        }
+    }
+
+    @Test
+    public void decodeScanResult_otherPayloadHasNoEntries() throws Exception {
+
+        byte[] data = NetworkScan.NetworkScanPayload.newBuilder()
+                .setMsg(NetworkScan.NetworkScanMsgType.TypeRespScanWifiStatus)
+                .setRespScanWifiStatus(NetworkScan.RespScanWifiStatus.newBuilder().setScanFinished(true).setResultCount(3))
+                .build()
+                .toByteArray();
+
+        assertEquals(0, NetworkScan.NetworkScanPayload.parseFrom(data).getRespScanWifiResult().getEntriesCount());
+        assertEquals(0, ResponseDecoder.decodeWiFiScanResult(ByteBuffer.wrap(data), new ResponseDecoder.WiFiScanEntryListener() {
+
+            @Override
+            public void onWiFiScanEntry(byte[] data, int ssidOffset, int ssidLength, int channel, int rssi,
+                                        int bssidOffset, int bssidLength, int auth) {
+                fail("Entry is not expected");
+            }
+        }));
+        assertEquals(0, ResponseDecoder.decodeThreadScanResult(ByteBuffer.wrap(new byte[0]), new ResponseDecoder.ThreadScanEntryListener() {
+
+            @Override
+            public void onThreadScanEntry(byte[] data, int nameOffset, int nameLength, int panId, int channel, int rssi, int lqi) {
+                fail("Entry is not expected");
+            }
+        }));
+    }
+
+    @Test
+    public void decodeScanStatus_matchesParseFrom() throws Exception {
+
+        byte[] wifiFinished = NetworkScan.NetworkScanPayload.newBuilder()
+                .setMsg(NetworkScan.NetworkScanMsgType.TypeRespScanWifiStatus)
+                .setRespScanWifiStatus(NetworkScan.RespScanWifiStatus.newBuilder().setScanFinished(true).setResultCount(17))
+                .build()
+                .toByteArray();
+        byte[] wifiRunning = NetworkScan.NetworkScanPayload.newBuilder()
+                .setMsg(NetworkScan.NetworkScanMsgType.TypeRespScanWifiStatus)
+                .setRespScanWifiStatus(NetworkScan.RespScanWifiStatus.newBuilder().setScanFinished(false).setResultCount(5))
+                .build()
+                .toByteArray();
+        byte[] threadFinished = NetworkScan.NetworkScanPayload.newBuilder()
+                .setMsg(NetworkScan.NetworkScanMsgType.TypeRespScanThreadStatus)
+                .setRespScanThreadStatus(NetworkScan.RespScanThreadStatus.newBuilder().setScanFinished(true).setResultCount(2))
+                .build()
+                .toByteArray();
+
+        assertEquals(NetworkScan.NetworkScanPayload.parseFrom(wifiFinished).getRespScanWifiStatus().getResultCount(),
+                ResponseDecoder.decodeWiFiScanStatus(ByteBuffer.wrap(wifiFinished)));
+        assertFalse(NetworkScan.NetworkScanPayload.parseFrom(wifiRunning).getRespScanWifiStatus().getScanFinished());
+        assertEquals(-1, ResponseDecoder.decodeWiFiScanStatus(ByteBuffer.wrap(wifiRunning)));
+        assertEquals(NetworkScan.NetworkScanPayload.parseFrom(threadFinished).getRespScanThreadStatus().getResultCount(),
+                ResponseDecoder.decodeThreadScanStatus(ByteBuffer.wrap(threadFinished)));
+    }
+
+    @Test
+    public void decodeVarint_wiFiStatusMatchesParseFrom() throws Exception {
+
+        byte[] data = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespGetWifiStatus)
+                .setRespGetWifiStatus(NetworkConfig.RespGetWifiStatus.newBuilder()
+                        .setStatus(Constants.Status.Success)
+                        .setWifiStaState(NetworkConstants.WifiStationState.ConnectionFailed)
+                        .setWifiFailReason(NetworkConstants.WifiConnectFailedReason.WifiNetworkNotFound))
+                .build()
+                .toByteArray();
+
+        for (ByteBuffer response : buffers(data)) {
+
+            NetworkConfig.RespGetWifiStatus expected = NetworkConfig.NetworkConfigPayload.parseFrom(data).getRespGetWifiStatus();
+            assertEquals(expected.getWifiStaStateValue(), ResponseDecoder.decodeWiFiStationState(response));
+            assertEquals(expected.getWifiFailReasonValue(), ResponseDecoder.decodeWiFiFailReason(response));
+            assertArrayEquals(new int[]{expected.getWifiStaStateValue(), expected.getWifiFailReasonValue()},
+                    ResponseDecoder.decodeWiFiStatus(response));
+        }
+    }
+
+    @Test
+    public void decodeVarint_connectedWiFiStatusHasDefaultFailReason() throws Exception {
+
+        byte[] data = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespGetWifiStatus)
+                .setRespGetWifiStatus(NetworkConfig.RespGetWifiStatus.newBuilder()
+                        .setWifiStaState(NetworkConstants.WifiStationState.Connected)
+                        .setWifiConnected(NetworkConstants.WifiConnectedState.newBuilder()
+                                .setIp4Addr("192.168.1.20")
+                                .setAuthMode(NetworkConstants.WifiAuthMode.WPA2_PSK)
+                                .setChannel(6)))
+                .build()
+                .toByteArray();
+
+        NetworkConfig.RespGetWifiStatus expected = NetworkConfig.NetworkConfigPayload.parseFrom(data).getRespGetWifiStatus();
+        assertEquals(expected.getWifiStaStateValue(), ResponseDecoder.decodeWiFiStationState(ByteBuffer.wrap(data)));
+        assertEquals(expected.getWifiFailReasonValue(), ResponseDecoder.decodeWiFiFailReason(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void decodeVarint_threadStatusMatchesParseFrom() throws Exception {
+
+        byte[] data = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespGetThreadStatus)
+                .setRespGetThreadStatus(NetworkConfig.RespGetThreadStatus.newBuilder()
+                        .setStatus(Constants.Status.Success)
+                        .setThreadState(NetworkConstants.ThreadNetworkState.AttachingFailed)
+                        .setThreadFailReason(NetworkConstants.ThreadAttachFailedReason.ThreadNetworkNotFound))
+                .build()
+                .toByteArray();
+
+        NetworkConfig.RespGetThreadStatus expected = NetworkConfig.NetworkConfigPayload.parseFrom(data).getRespGetThreadStatus();
+        assertEquals(expected.getThreadStateValue(), ResponseDecoder.decodeThreadNetworkState(ByteBuffer.wrap(data)));
+        assertEquals(expected.getThreadFailReasonValue(), ResponseDecoder.decodeThreadFailReason(ByteBuffer.wrap(data)));
+        assertArrayEquals(new int[]{expected.getThreadStateValue(), expected.getThreadFailReasonValue()},
+                ResponseDecoder.decodeThreadStatus(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void decodeVarint_configStatusMatchesParseFrom() throws Exception {
+
+        byte[] setWiFi = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespSetWifiConfig)
+                .setRespSetWifiConfig(NetworkConfig.RespSetWifiConfig.newBuilder().setStatus(Constants.Status.InvalidArgument))
+                .build()
+                .toByteArray();
+        byte[] applyWiFi = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespApplyWifiConfig)
+                .setRespApplyWifiConfig(NetworkConfig.RespApplyWifiConfig.newBuilder().setStatus(Constants.Status.Success))
+                .build()
+                .toByteArray();
+        byte[] setThread = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespSetThreadConfig)
+                .setRespSetThreadConfig(NetworkConfig.RespSetThreadConfig.newBuilder().setStatus(Constants.Status.InternalError))
+                .build()
+                .toByteArray();
+        byte[] applyThread = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setMsg(NetworkConfig.NetworkConfigMsgType.TypeRespApplyThreadConfig)
+                .setRespApplyThreadConfig(NetworkConfig.RespApplyThreadConfig.newBuilder().setStatus(Constants.Status.CryptoError))
+                .build()
+                .toByteArray();
+
+        assertEquals(NetworkConfig.NetworkConfigPayload.parseFrom(setWiFi).getRespSetWifiConfig().getStatusValue(),
+                ResponseDecoder.decodeSetWiFiConfigStatus(ByteBuffer.wrap(setWiFi)));
+        assertEquals(NetworkConfig.NetworkConfigPayload.parseFrom(applyWiFi).getRespApplyWifiConfig().getStatusValue(),
+                ResponseDecoder.decodeApplyWiFiConfigStatus(ByteBuffer.wrap(applyWiFi)));
+        assertEquals(NetworkConfig.NetworkConfigPayload.parseFrom(setThread).getRespSetThreadConfig().getStatusValue(),
+                ResponseDecoder.decodeSetThreadConfigStatus(ByteBuffer.wrap(setThread)));
+        assertEquals(NetworkConfig.NetworkConfigPayload.parseFrom(applyThread).getRespApplyThreadConfig().getStatusValue(),
+                ResponseDecoder.decodeApplyThreadConfigStatus(ByteBuffer.wrap(applyThread)));
+
+        // Payload of other message gives default value, same as generated getter.
+        assertEquals(NetworkConfig.NetworkConfigPayload.parseFrom(setWiFi).getRespApplyWifiConfig().getStatusValue(),
+                ResponseDecoder.decodeApplyWiFiConfigStatus(ByteBuffer.wrap(setWiFi)));
+    }
+
+    @Test
+    public void decodeVarint_lastOccurrenceWins() throws Exception {
+
+        // Concatenated messages are merged by protobuf parser, so last value of the field is used.
+        byte[] first = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setRespSetWifiConfig(NetworkConfig.RespSetWifiConfig.newBuilder().setStatus(Constants.Status.InvalidProto))
+                .build()
+                .toByteArray();
+        byte[] second = NetworkConfig.NetworkConfigPayload.newBuilder()
+                .setRespSetWifiConfig(NetworkConfig.RespSetWifiConfig.newBuilder().setStatus(Constants.Status.InvalidSession))
+                .build()
+                .toByteArray();
+        byte[] data = concat(first, second);
+
+        assertEquals(NetworkConfig.NetworkConfigPayload.parseFrom(data).getRespSetWifiConfig().getStatusValue(),
+                ResponseDecoder.decodeSetWiFiConfigStatus(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void decode_truncatedResponseThrows() {
+
+        byte[] data = NetworkScan.NetworkScanPayload.newBuilder()
+                .setRespScanWifiResult(NetworkScan.RespScanWifiResult.newBuilder()
+                        .addEntries(wiFiEntry("Espressif", 1, -30, new byte[6], NetworkConstants.WifiAuthMode.WPA_PSK)))
+                .build()
+                .toByteArray();
+        byte[] truncated = Arrays.copyOf(data, data.length - 3);
+
+        try {
+            NetworkScan.NetworkScanPayload.parseFrom(truncated);
+            fail("parseFrom must fail for truncated response");
+        } catch (InvalidProtocolBufferException e) {
+            // Expected
+        }
+
+        try {
+            ResponseDecoder.decodeWiFiScanResult(ByteBuffer.wrap(truncated), new ResponseDecoder.WiFiScanEntryListener() {
+
+                @Override
+                public void onWiFiScanEntry(byte[] data, int ssidOffset, int ssidLength, int channel, int rssi,
+                                            int bssidOffset, int bssidLength, int auth) {
+                }
+            });
+            fail("Decoder must fail for truncated response");
+        } catch (InvalidProtocolBufferException e) {
+            // Expected
+        }
+    }
+
+    private static NetworkScan.WiFiScanResult wiFiEntry(String ssid, int channel, int rssi, byte[] bssid,
+                                                        NetworkConstants.WifiAuthMode auth) {
+
+        return NetworkScan.WiFiScanResult.newBuilder()
+                .setSsid(ByteString.copyFromUtf8(ssid))
+                .setChannel(channel)
+                .setRssi(rssi)
+                .setBssid(ByteString.copyFrom(bssid))
+                .setAuth(auth)
+                .build();
+    }
+
+    /**
+     * Returns buffers with given data, as responses can be heap buffers at an offset, read only or direct buffers.
+     */
+    private static List<ByteBuffer> buffers(byte[] data) {
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        buffers.add(ByteBuffer.wrap(data));
+
+        byte[] padded = new byte[data.length + 7];
+        System.arraycopy(data, 0, padded, 5, data.length);
+        ByteBuffer offset = ByteBuffer.wrap(padded);
+        offset.position(5);
+        offset.limit(5 + data.length);
+        buffers.add(offset);
+        buffers.add(offset.slice());
+
+        buffers.add(ByteBuffer.wrap(data).asReadOnlyBuffer());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        direct.flip();
+        buffers.add(direct);
+        return buffers;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+
+        byte[] data = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, data, first.length, second.length);
+        return data;
+    }
+}